@@ -337,6 +337,124 @@ public class AWSAuthConnection {
         return new Response(makeRequest("DELETE", bucket, Utils.urlencode(key), null, headers));
     }
 
+    /**
+     * Starts a multipart upload of an object.  The parts are then sent with
+     * uploadPart() and assembled with completeMultipartUpload().
+     * @param bucket The name of the bucket to which the object will be added.
+     * @param key The name of the key to use.
+     * @param headers A Map of String to List of Strings representing the http
+     * headers to pass (can be null).
+     */
+    public InitiateMultipartUploadResponse initiateMultipartUpload(String bucket, String key, Map headers)
+        throws MalformedURLException, IOException
+    {
+        Map pathArgs = new HashMap();
+        pathArgs.put("uploads", null);
+        HttpURLConnection request =
+            makeRequest("POST", bucket, Utils.urlencode(key), pathArgs, headers);
+
+        request.setDoOutput(true);
+        request.getOutputStream().write(new byte[] {});
+
+        return new InitiateMultipartUploadResponse(request);
+    }
+
+    /**
+     * Uploads a part of a multipart upload.  The ETag of the part is in the
+     * ETag header of the response.
+     * @param bucket The name of the bucket to which the object will be added.
+     * @param key The name of the key to use.
+     * @param uploadId The id returned by initiateMultipartUpload().
+     * @param partNumber The number of the part, from 1 to 10000.
+     * @param data The buffer holding the part.
+     * @param offset The offset of the part in the buffer.
+     * @param length The size of the part.
+     * @param headers A Map of String to List of Strings representing the http
+     * headers to pass (can be null).
+     */
+    public Response uploadPart(String bucket, String key, String uploadId, int partNumber,
+                               byte[] data, int offset, int length, Map headers)
+        throws MalformedURLException, IOException
+    {
+        Map pathArgs = new HashMap();
+        pathArgs.put("partNumber", Integer.toString(partNumber));
+        pathArgs.put("uploadId", Utils.urlencode(uploadId));
+        HttpURLConnection request =
+            makeRequest("PUT", bucket, Utils.urlencode(key), pathArgs, headers);
+
+        request.setDoOutput(true);
+        request.setFixedLengthStreamingMode(length);
+        request.getOutputStream().write(data, offset, length);
+
+        return new Response(request);
+    }
+
+    /**
+     * Assembles the parts of a multipart upload into the object.
+     * @param bucket The name of the bucket to which the object will be added.
+     * @param key The name of the key to use.
+     * @param uploadId The id returned by initiateMultipartUpload().
+     * @param eTags The ETags of the parts (Strings), in the order of the part numbers.
+     * @param headers A Map of String to List of Strings representing the http
+     * headers to pass (can be null).
+     */
+    public Response completeMultipartUpload(String bucket, String key, String uploadId, List eTags, Map headers)
+        throws MalformedURLException, IOException
+    {
+        StringBuffer body = new StringBuffer("<CompleteMultipartUpload>");
+        for (int i = 0; i < eTags.size(); i++) {
+            body.append("<Part><PartNumber>").append(i + 1).append("</PartNumber>");
+            body.append("<ETag>").append(eTags.get(i)).append("</ETag></Part>");
+        }
+        body.append("</CompleteMultipartUpload>");
+
+        Map pathArgs = new HashMap();
+        pathArgs.put("uploadId", Utils.urlencode(uploadId));
+        HttpURLConnection request =
+            makeRequest("POST", bucket, Utils.urlencode(key), pathArgs, headers);
+
+        request.setDoOutput(true);
+        request.getOutputStream().write(body.toString().getBytes("UTF-8"));
+
+        return verifyComplete(new Response(request));
+    }
+
+    /**
+     * Aborts a multipart upload, discarding the parts uploaded so far.
+     * @param bucket The name of the bucket to which the object was to be added.
+     * @param key The name of the key.
+     * @param uploadId The id returned by initiateMultipartUpload().
+     * @param headers A Map of String to List of Strings representing the http
+     * headers to pass (can be null).
+     */
+    public Response abortMultipartUpload(String bucket, String key, String uploadId, Map headers)
+        throws MalformedURLException, IOException
+    {
+        Map pathArgs = new HashMap();
+        pathArgs.put("uploadId", Utils.urlencode(uploadId));
+        return new Response(makeRequest("DELETE", bucket, Utils.urlencode(key), pathArgs, headers));
+    }
+
+    /**
+     * Like copy, completing a multipart upload may fail after a successful
+     * response code, with the error in the body.
+     * @param response Response object from the POST request.
+     * @return The response with the input stream drained.
+     * @throws IOException If anything goes wrong.
+     */
+    private Response verifyComplete( Response response ) throws IOException {
+        if (response.connection.getResponseCode() < 400) {
+            byte[] body = GetResponse.slurpInputStream(response.connection.getInputStream());
+            String message = new String( body );
+            if ( message.indexOf( "<Error" ) != -1 ) {
+                throw new IOException( message.substring( message.indexOf( "<Error" ) ) );
+            } else if ( message.indexOf( "</CompleteMultipartUploadResult>" ) == -1 ) {
+                throw new IOException( "Unexpected response: " + message );
+            }
+        }
+        return response;
+    }
+
     /**
      * Get the requestPayment xml document for a given bucket
      * @param bucket The name of the bucket
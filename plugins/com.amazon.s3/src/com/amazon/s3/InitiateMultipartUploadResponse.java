@@ -0,0 +1,75 @@
+//  This software code is made available "AS IS" without warranties of any
+//  kind.  You may copy, display, modify and redistribute the software
+//  code either by itself or as incorporated into your code; provided that
+//  you do not remove any proprietary notices.  Your use of this software
+//  code is at your own risk and you waive any claim against Amazon
+//  Digital Services, Inc. or its affiliates with respect to your use of
+//  this software code. (c) 2006-2007 Amazon Digital Services, Inc. or its
+//  affiliates.
+
+package com.amazon.s3;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * A Response object returned from AWSAuthConnection.initiateMultipartUpload().
+ * Parses the response XML and exposes the id of the upload.
+ */
+public class InitiateMultipartUploadResponse extends Response {
+
+    /**
+     * The id of the upload, to pass to the part, complete and abort requests.
+     * Null if the request fails.
+     */
+    public String uploadId = null;
+
+    public InitiateMultipartUploadResponse(HttpURLConnection connection) throws IOException {
+        super(connection);
+        if (connection.getResponseCode() < 400) {
+            try {
+                XMLReader xr = Utils.createXMLReader();
+                InitiateMultipartUploadHandler handler = new InitiateMultipartUploadHandler();
+                xr.setContentHandler(handler);
+                xr.setErrorHandler(handler);
+
+                xr.parse(new InputSource(connection.getInputStream()));
+                this.uploadId = handler.uploadId;
+            } catch (SAXException e) {
+                throw new RuntimeException("Unexpected error parsing InitiateMultipartUploadResult xml", e);
+            }
+        }
+    }
+
+    /**
+     * Helper class to parse InitiateMultipartUploadResult response XML
+     */
+    static class InitiateMultipartUploadHandler extends DefaultHandler {
+        String uploadId = null;
+        private StringBuffer currText = null;
+
+        public void startElement(String uri, String name, String qName, Attributes attrs) {
+            if (name.equals("UploadId")) {
+                this.currText = new StringBuffer();
+            }
+        }
+
+        public void endElement(String uri, String name, String qName) {
+            if (name.equals("UploadId")) {
+                uploadId = this.currText.toString();
+                this.currText = null;
+            }
+        }
+
+        public void characters(char ch[], int start, int length) {
+            if (currText != null)
+                this.currText.append(ch, start, length);
+        }
+    }
+}
@@ -10,6 +10,7 @@
 package com.amazon.s3;
 
 import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
@@ -39,6 +40,11 @@ public class Utils {
     public static final int SECURE_PORT = 443;
     public static final int INSECURE_PORT = 80;
 
+    /**
+     * The query parameters of the multipart upload requests that are part of the signed resource, sorted.
+     */
+    private static final String[] MULTIPART_SUBRESOURCES = { "partNumber", "uploadId", "uploads" };
+
 
     /**
      * HMAC/SHA1 Algorithm per RFC 2104.
@@ -131,6 +137,20 @@ public class Utils {
 	            buf.append("?logging");
                 } else if (pathArgs.containsKey("location")) {
                     buf.append("?location");
+                } else {
+                    // the multipart upload sub-resources are signed in lexicographic order
+                    String separator = "?";
+                    for (int i = 0; i < MULTIPART_SUBRESOURCES.length; i++) {
+                        String name = MULTIPART_SUBRESOURCES[i];
+                        if (pathArgs.containsKey(name)) {
+                            buf.append(separator).append(name);
+                            String value = (String)pathArgs.get(name);
+                            if (value != null) {
+                                buf.append('=').append(urldecode(value));
+                            }
+                            separator = "&";
+                        }
+                    }
                 }
         }
 
@@ -246,6 +266,15 @@ public class Utils {
         }
     }
 
+    static String urldecode(String encoded) {
+        try {
+            return URLDecoder.decode(encoded, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // should never happen
+            throw new RuntimeException("Could not url decode from UTF-8", e);
+        }
+    }
+
     static XMLReader createXMLReader() {
         try {
             return XMLReaderFactory.createXMLReader();
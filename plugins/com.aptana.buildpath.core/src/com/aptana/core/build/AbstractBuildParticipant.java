@@ -67,9 +67,11 @@ public abstract class AbstractBuildParticipant implements IBuildParticipant, IEx
 	private static final String NAME = "name"; //$NON-NLS-1$
 	private static final String ID = "id"; //$NON-NLS-1$
 	private static final String ATTR_PRIORITY = "priority"; //$NON-NLS-1$
+	private static final String ATTR_THREAD_SAFE = "threadSafe"; //$NON-NLS-1$
 	public static final int DEFAULT_PRIORITY = 50;
 
 	private int fPriority = DEFAULT_PRIORITY;
+	private boolean fThreadSafe;
 	private Set<IContentType> contentTypes = Collections.emptySet();
 	private String fId;
 	private String fName;
@@ -86,6 +88,14 @@ public abstract class AbstractBuildParticipant implements IBuildParticipant, IEx
 		return fPriority;
 	}
 
+	/**
+	 * Declared through the <code>threadSafe</code> attribute of the extension. False by default.
+	 */
+	public boolean isThreadSafe()
+	{
+		return fThreadSafe;
+	}
+
 	public Set<IContentType> getContentTypes()
 	{
 		return Collections.unmodifiableSet(contentTypes);
@@ -361,6 +371,7 @@ public abstract class AbstractBuildParticipant implements IBuildParticipant, IEx
 						"Unable to parse priority value ({0}) as an integer, defaulting to 50.", rawPriority), e); //$NON-NLS-1$
 			}
 		}
+		this.fThreadSafe = Boolean.parseBoolean(config.getAttribute(ATTR_THREAD_SAFE));
 		this.fId = config.getAttribute(ID);
 		this.fName = config.getAttribute(NAME);
 		this.contributor = config.getContributor().getName();
@@ -68,6 +68,14 @@ public interface IBuildParticipant
 	 */
 	public void buildFile(BuildContext context, IProgressMonitor monitor);
 
+	/**
+	 * Can {@link #buildFile(BuildContext, IProgressMonitor)} be called by several threads at the same time (on different
+	 * files)? The builder never calls a participant that is not thread-safe from more than one thread at a time.
+	 * 
+	 * @return
+	 */
+	public boolean isThreadSafe();
+
 	/**
 	 * Called on an individual file. For incremental builds we traverse the diff and call this for every updated/added
 	 * file.
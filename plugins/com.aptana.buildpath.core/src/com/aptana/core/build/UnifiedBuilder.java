@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -11,28 +11,37 @@ import java.net.URI;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.resources.IFile;
-import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.resources.IResourceDeltaVisitor;
 import org.eclipse.core.resources.IResourceVisitor;
-import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.IWorkspaceRoot;
-import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.resources.IncrementalProjectBuilder;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 
@@ -42,6 +51,7 @@ import com.aptana.core.IDebugScopes;
 import com.aptana.core.IFilter;
 import com.aptana.core.IMap;
 import com.aptana.core.build.IBuildParticipant.BuildType;
+import com.aptana.core.internal.build.ProblemMarkerBatch;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.resources.IMarkerConstants;
 import com.aptana.core.util.ArrayUtil;
@@ -58,6 +68,18 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 {
 
 	public static final String ID = "com.aptana.ide.core.unifiedBuilder"; //$NON-NLS-1$
+
+	/**
+	 * The system property to look at for the number of threads building the files. By default (1), the files are
+	 * built sequentially by the builder thread.
+	 */
+	private static final String STUDIO_BUILD_CONCURRENCY = "studio.buildConcurrency"; //$NON-NLS-1$
+
+	/**
+	 * The number of files whose markers are updated in a single workspace operation.
+	 */
+	private static final int MARKER_BATCH_SIZE = 50;
+
 	private boolean traceParticipantsEnabled = false;
 
 	public UnifiedBuilder()
@@ -323,6 +345,19 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 			return;
 		}
 
+		if (getBuildConcurrency() > 1)
+		{
+			new ParallelBuild<IFileStore>(participants, getBuildConcurrency())
+			{
+				@Override
+				protected BuildContext createContext(IFileStore file)
+				{
+					return new FileStoreBuildContext(file);
+				}
+			}.build(files, monitor);
+			return;
+		}
+
 		SubMonitor sub = SubMonitor.convert(monitor, 15 * files.size());
 		for (IFileStore file : files)
 		{
@@ -377,6 +412,16 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 		return (plugin == null) ? null : plugin.getIndexManager();
 	}
 
+	/**
+	 * Returns the number of threads building the files, from the system property {@value #STUDIO_BUILD_CONCURRENCY}.
+	 * 
+	 * @return 1 to build the files sequentially on the builder thread
+	 */
+	protected int getBuildConcurrency()
+	{
+		return Math.max(1, Integer.getInteger(STUDIO_BUILD_CONCURRENCY, 1));
+	}
+
 	/**
 	 * Ugly, but necessary for testing so we can pass in a project.
 	 * 
@@ -423,7 +468,21 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 			return;
 		}
 
+		if (getBuildConcurrency() > 1)
+		{
+			new ParallelBuild<IFile>(participants, getBuildConcurrency())
+			{
+				@Override
+				protected BuildContext createContext(IFile file)
+				{
+					return new BuildContext(file);
+				}
+			}.build(files, monitor);
+			return;
+		}
+
 		SubMonitor sub = SubMonitor.convert(monitor, 15 * files.size());
+		ProblemMarkerBatch markers = createMarkerBatch();
 		for (IFile file : files)
 		{
 			BuildContext context = new BuildContext(file);
@@ -433,7 +492,12 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 					participants, context.getContentType());
 			sub.worked(2);
 
-			buildFile(context, filteredParticipants, sub.newChild(12));
+			buildFile(context, filteredParticipants, sub.newChild(10));
+			markers.add(file, context.getProblems());
+			if (markers.size() >= MARKER_BATCH_SIZE)
+			{
+				markers.apply(sub.newChild(2 * markers.size()));
+			}
 
 			// stop building if canceled
 			if (sub.isCanceled())
@@ -441,6 +505,7 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 				break;
 			}
 		}
+		markers.apply(sub.newChild(2 * markers.size()));
 		sub.done();
 	}
 
@@ -518,19 +583,10 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 			return;
 		}
 
-		SubMonitor sub = SubMonitor.convert(monitor, 2 * participants.size());
+		SubMonitor sub = SubMonitor.convert(monitor, participants.size());
 		for (IBuildParticipant participant : participants)
 		{
-			long startTime = System.nanoTime();
-			participant.buildFile(context, sub.newChild(1));
-			if (traceParticipantsEnabled)
-			{
-				double endTime = ((double) System.nanoTime() - startTime) / 1000000;
-				IdeLog.logTrace(
-						BuildPathCorePlugin.getDefault(),
-						MessageFormat
-								.format("Executed build participant ''{0}'' on ''{1}'' in {2} ms.", participant.getName(), context.getURI(), endTime), IDebugScopes.BUILDER_PARTICIPANTS); //$NON-NLS-1$
-			}
+			buildFile(context, participant, sub.newChild(1));
 
 			// stop building if it has been canceled
 			if (sub.isCanceled())
@@ -538,36 +594,29 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 				break;
 			}
 		}
-		updateMarkers(context, sub.newChild(participants.size()));
 		sub.done();
 	}
 
-	private void updateMarkers(BuildContext context, IProgressMonitor monitor)
+	private void buildFile(BuildContext context, IBuildParticipant participant, IProgressMonitor monitor)
 	{
-		final IFile file = context.getFile();
-		final Map<String, Collection<IProblem>> itemsByType = context.getProblems();
-		if (CollectionsUtil.isEmpty(itemsByType))
+		long startTime = System.nanoTime();
+		participant.buildFile(context, monitor);
+		if (traceParticipantsEnabled)
 		{
-			return;
+			double endTime = ((double) System.nanoTime() - startTime) / 1000000;
+			IdeLog.logTrace(
+					BuildPathCorePlugin.getDefault(),
+					MessageFormat
+							.format("Executed build participant ''{0}'' on ''{1}'' in {2} ms.", participant.getName(), context.getURI(), endTime), IDebugScopes.BUILDER_PARTICIPANTS); //$NON-NLS-1$
 		}
-		// Performance fix: schedules the error handling as a single workspace update so that we don't trigger a
-		// bunch of resource updated events while problem markers are being added to the file.
-		IWorkspaceRunnable runnable = new IWorkspaceRunnable()
-		{
-			public void run(IProgressMonitor monitor)
-			{
-				updateMarkers(file, itemsByType, monitor);
-			}
-		};
+	}
 
-		try
-		{
-			ResourcesPlugin.getWorkspace().run(runnable, getMarkerRule(file), IWorkspace.AVOID_UPDATE, monitor);
-		}
-		catch (CoreException e)
-		{
-			IdeLog.logError(BuildPathCorePlugin.getDefault(), "Error updating markers", e); //$NON-NLS-1$
-		}
+	/**
+	 * @return a batch to update the markers of the project, in a single workspace operation
+	 */
+	private ProblemMarkerBatch createMarkerBatch()
+	{
+		return new ProblemMarkerBatch(getMarkerRule(getProjectHandle()));
 	}
 
 	/**
@@ -583,53 +632,169 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 		return null;
 	}
 
-	private synchronized void updateMarkers(IFile file, Map<String, Collection<IProblem>> itemsByType,
-			IProgressMonitor monitor)
+	/**
+	 * Builds files with a pool of worker threads. Each file is built by a single worker, which calls the participants
+	 * of the file in order, sharing the {@link BuildContext} (and so the parse) of the file. Participants that are not
+	 * thread-safe are called by one worker at a time.
+	 * <p>
+	 * The builder thread creates the contexts as the workers need them and reads the contents of the files (reading
+	 * may refresh a file, which needs the workspace lock held by the build). It updates the markers of the built files
+	 * in batches and then drops their contexts, so only the files in flight keep their contents and parse in memory.
+	 */
+	private abstract class ParallelBuild<T>
 	{
-		if (!file.exists())
+		private final List<IBuildParticipant> participants;
+		private final int concurrency;
+
+		/**
+		 * A lock per participant that is not thread-safe.
+		 */
+		private final Map<IBuildParticipant, Object> locks = new HashMap<IBuildParticipant, Object>();
+
+		private volatile boolean canceled;
+
+		private ParallelBuild(List<IBuildParticipant> participants, int concurrency)
 		{
-			// no need to update the marker when the resource no longer exists
-			return;
+			this.participants = participants;
+			this.concurrency = concurrency;
+			for (IBuildParticipant participant : participants)
+			{
+				if (!participant.isThreadSafe())
+				{
+					locks.put(participant, new Object());
+				}
+			}
 		}
-		SubMonitor sub = SubMonitor.convert(monitor, itemsByType.size() * 10);
 
-		// FIXME Do a diff like we do in ValidationManager!
-		for (String markerType : itemsByType.keySet())
+		/**
+		 * Creates the build context of a file.
+		 * 
+		 * @param file
+		 * @return
+		 */
+		protected abstract BuildContext createContext(T file);
+
+		private void build(Collection<T> files, IProgressMonitor monitor) throws CoreException
 		{
+			SubMonitor sub = SubMonitor.convert(monitor, 15 * files.size());
+			ExecutorService executor = Executors.newFixedThreadPool(concurrency, new ThreadFactory()
+			{
+				public Thread newThread(Runnable runnable)
+				{
+					Thread thread = new Thread(runnable, "Build Worker"); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			CompletionService<BuildContext> completionService = new ExecutorCompletionService<BuildContext>(executor);
+			ProblemMarkerBatch markers = createMarkerBatch();
+			Iterator<T> iterator = files.iterator();
+			int pending = 0;
 			try
 			{
-				Collection<IProblem> newItems = itemsByType.get(markerType);
-				// deletes the old markers
-				file.deleteMarkers(markerType, false, IResource.DEPTH_INFINITE);
-				sub.worked(1);
+				while (true)
+				{
+					// Keep the workers busy, without reading too many files ahead
+					while (pending < 2 * concurrency && iterator.hasNext() && !canceled)
+					{
+						final BuildContext context = createContext(iterator.next());
+						final List<IBuildParticipant> filteredParticipants = getBuildParticipantManager()
+								.filterParticipants(participants, context.getContentType());
+						context.getContents();
+						sub.worked(3);
+						completionService.submit(new Callable<BuildContext>()
+						{
+							public BuildContext call() throws Exception
+							{
+								buildFile(context, filteredParticipants);
+								return context;
+							}
+						});
+						pending++;
+					}
+					if (pending == 0)
+					{
+						break;
+					}
 
-				// adds the new ones
-				addMarkers(newItems, markerType, file, sub.newChild(9));
+					BuildContext context = take(completionService);
+					pending--;
+					sub.worked(10);
+					markers.add(context.getFile(), context.getProblems());
+					if (markers.size() >= MARKER_BATCH_SIZE)
+					{
+						markers.apply(sub.newChild(2 * markers.size()));
+					}
+					// stop building if canceled, but finish the pending files
+					if (sub.isCanceled())
+					{
+						canceled = true;
+					}
+				}
+				markers.apply(sub.newChild(2 * markers.size()));
 			}
-			catch (CoreException e)
+			finally
 			{
-				IdeLog.logError(BuildPathCorePlugin.getDefault(), e);
+				canceled = true;
+				executor.shutdownNow();
 			}
+			sub.done();
 		}
-		sub.done();
-	}
 
-	private void addMarkers(Collection<IProblem> items, String markerType, IFile file, IProgressMonitor monitor)
-			throws CoreException
-	{
-		if (CollectionsUtil.isEmpty(items))
+		private void buildFile(BuildContext context, List<IBuildParticipant> participants)
 		{
-			return;
+			IProgressMonitor monitor = new NullProgressMonitor();
+			for (IBuildParticipant participant : participants)
+			{
+				if (canceled)
+				{
+					break;
+				}
+				Object lock = locks.get(participant);
+				if (lock == null)
+				{
+					UnifiedBuilder.this.buildFile(context, participant, monitor);
+				}
+				else
+				{
+					synchronized (lock)
+					{
+						UnifiedBuilder.this.buildFile(context, participant, monitor);
+					}
+				}
+			}
 		}
-		SubMonitor sub = SubMonitor.convert(monitor, items.size() * 2);
-		for (IProblem item : items)
+
+		private BuildContext take(CompletionService<BuildContext> completionService) throws CoreException
 		{
-			IMarker marker = file.createMarker(markerType);
-			sub.worked(1);
-			marker.setAttributes(item.createMarkerAttributes());
-			sub.worked(1);
+			try
+			{
+				return completionService.take().get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new CoreException(new Status(IStatus.CANCEL, BuildPathCorePlugin.PLUGIN_ID, e.getMessage(), e));
+			}
+			catch (ExecutionException e)
+			{
+				Throwable cause = e.getCause();
+				if (cause instanceof CoreException)
+				{
+					throw (CoreException) cause;
+				}
+				if (cause instanceof RuntimeException)
+				{
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error)
+				{
+					throw (Error) cause;
+				}
+				throw new CoreException(new Status(IStatus.ERROR, BuildPathCorePlugin.PLUGIN_ID, cause.getMessage(),
+						cause));
+			}
 		}
-		sub.done();
 	}
 
 	/**
@@ -70,6 +70,11 @@ public class BuildParticipantWorkingCopy implements IBuildParticipantWorkingCopy
 		return wrapped.getPriority();
 	}
 
+	public boolean isThreadSafe()
+	{
+		return wrapped.isThreadSafe();
+	}
+
 	public void buildFile(BuildContext context, IProgressMonitor monitor)
 	{
 		wrapped.buildFile(context, monitor);
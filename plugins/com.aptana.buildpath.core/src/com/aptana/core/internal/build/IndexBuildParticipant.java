@@ -12,6 +12,7 @@ import java.net.URI;
 import java.text.MessageFormat;
 import java.util.List;
 
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -20,6 +21,7 @@ import org.eclipse.core.runtime.SubMonitor;
 import com.aptana.buildpath.core.BuildPathCorePlugin;
 import com.aptana.core.CorePlugin;
 import com.aptana.core.IDebugScopes;
+import com.aptana.core.build.ReconcileContext;
 import com.aptana.core.build.RequiredBuildParticipant;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.CollectionsUtil;
@@ -27,6 +29,7 @@ import com.aptana.index.core.IFileStoreIndexingParticipant;
 import com.aptana.index.core.Index;
 import com.aptana.index.core.IndexManager;
 import com.aptana.index.core.IndexPlugin;
+import com.aptana.index.core.TrigramIndex;
 import com.aptana.index.core.build.BuildContext;
 
 public class IndexBuildParticipant extends RequiredBuildParticipant
@@ -46,6 +49,11 @@ public class IndexBuildParticipant extends RequiredBuildParticipant
 				logTrace(MessageFormat.format("Cleaning index for project ''{0}'' ({1})", project.getName(), uri)); //$NON-NLS-1$
 			}
 			getIndexManager().removeIndex(uri);
+			TrigramIndex contentIndex = getIndexManager().getContentIndex();
+			if (contentIndex != null)
+			{
+				contentIndex.removeAll(uri);
+			}
 		}
 		index_trace_enabled = IdeLog.isTraceEnabled(BuildPathCorePlugin.getDefault(), IDebugScopes.BUILDER_INDEXER);
 		advanced_trace_enabled = IdeLog.isTraceEnabled(BuildPathCorePlugin.getDefault(), IDebugScopes.BUILDER_ADVANCED);
@@ -98,6 +106,17 @@ public class IndexBuildParticipant extends RequiredBuildParticipant
 			// wipe the index for the file first
 			deleteFile(context, sub.newChild(10));
 
+			TrigramIndex contentIndex = getIndexManager().getContentIndex();
+			// a reconcile holds the unsaved editor buffer, which may never reach the disk. The file was removed from
+			// the content index above, so it's searched as a whole until it's built again.
+			if (contentIndex != null && !(context instanceof ReconcileContext))
+			{
+				// stamp the content with the modification time of the file, so searches can tell when it is outdated
+				IFile file = context.getFile();
+				long stamp = (file == null) ? System.currentTimeMillis() : file.getLocalTimeStamp();
+				contentIndex.add(context.getURI(), context.getContents(), stamp);
+			}
+
 			List<IFileStoreIndexingParticipant> indexers = getIndexParticipants(context);
 			if (!CollectionsUtil.isEmpty(indexers))
 			{
@@ -162,6 +181,11 @@ public class IndexBuildParticipant extends RequiredBuildParticipant
 			}
 		}
 		fIndex.remove(context.getURI());
+		TrigramIndex contentIndex = getIndexManager().getContentIndex();
+		if (contentIndex != null)
+		{
+			contentIndex.remove(context.getURI());
+		}
 		if (advanced_trace_enabled)
 		{
 			IdeLog.logTrace(BuildPathCorePlugin.getDefault(),
@@ -0,0 +1,261 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.internal.build;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+
+import com.aptana.buildpath.core.BuildPathCorePlugin;
+import com.aptana.core.build.IProblem;
+import com.aptana.core.logging.IdeLog;
+import com.aptana.core.util.CollectionsUtil;
+
+/**
+ * Collects the problems of built files and updates their markers in a single workspace operation, so that a batch of
+ * files produces a single resource delta.
+ * <p>
+ * The markers are diffed against the problems instead of being deleted and recreated: a marker of the same type, offset,
+ * message and severity as a problem is kept (its other attributes are updated if they changed), the markers without a
+ * matching problem are deleted and markers are created for the remaining problems only. Marker types a file has no
+ * problems for are left untouched.
+ */
+public class ProblemMarkerBatch
+{
+
+	private final ISchedulingRule fRule;
+	private final Map<IFile, Map<String, Collection<IProblem>>> fProblems = new LinkedHashMap<IFile, Map<String, Collection<IProblem>>>();
+
+	private int fAdded;
+	private int fRemoved;
+	private int fUpdated;
+
+	/**
+	 * @param rule
+	 *            the scheduling rule of the marker updates
+	 */
+	public ProblemMarkerBatch(ISchedulingRule rule)
+	{
+		fRule = rule;
+	}
+
+	/**
+	 * Adds the problems of a file to the batch, replacing the ones previously added for the file.
+	 *
+	 * @param file
+	 *            the file, null for a file outside the workspace (which has no markers)
+	 * @param problemsByType
+	 *            the problems by marker type
+	 */
+	public synchronized void add(IFile file, Map<String, Collection<IProblem>> problemsByType)
+	{
+		if (file == null || CollectionsUtil.isEmpty(problemsByType))
+		{
+			return;
+		}
+		// copies the map, so that the build context isn't kept alive
+		fProblems.put(file, new HashMap<String, Collection<IProblem>>(problemsByType));
+	}
+
+	/**
+	 * @return the number of files in the batch
+	 */
+	public synchronized int size()
+	{
+		return fProblems.size();
+	}
+
+	/**
+	 * Updates the markers of the files in the batch, and empties the batch.
+	 *
+	 * @param monitor
+	 */
+	public void apply(IProgressMonitor monitor)
+	{
+		final Map<IFile, Map<String, Collection<IProblem>>> problems;
+		synchronized (this)
+		{
+			if (fProblems.isEmpty())
+			{
+				return;
+			}
+			problems = new LinkedHashMap<IFile, Map<String, Collection<IProblem>>>(fProblems);
+			fProblems.clear();
+		}
+
+		IWorkspaceRunnable runnable = new IWorkspaceRunnable()
+		{
+			public void run(IProgressMonitor monitor)
+			{
+				SubMonitor sub = SubMonitor.convert(monitor, problems.size());
+				for (Map.Entry<IFile, Map<String, Collection<IProblem>>> entry : problems.entrySet())
+				{
+					updateMarkers(entry.getKey(), entry.getValue());
+					sub.worked(1);
+				}
+				sub.done();
+			}
+		};
+
+		try
+		{
+			ResourcesPlugin.getWorkspace().run(runnable, fRule, IWorkspace.AVOID_UPDATE, monitor);
+		}
+		catch (CoreException e)
+		{
+			IdeLog.logError(BuildPathCorePlugin.getDefault(), "Error updating markers", e); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * @return the number of markers created since the batch was created
+	 */
+	public synchronized int getAddedCount()
+	{
+		return fAdded;
+	}
+
+	/**
+	 * @return the number of markers deleted since the batch was created
+	 */
+	public synchronized int getRemovedCount()
+	{
+		return fRemoved;
+	}
+
+	/**
+	 * @return the number of kept markers whose attributes were changed since the batch was created
+	 */
+	public synchronized int getUpdatedCount()
+	{
+		return fUpdated;
+	}
+
+	private void updateMarkers(IFile file, Map<String, Collection<IProblem>> problemsByType)
+	{
+		if (!file.exists())
+		{
+			// no need to update the marker when the resource no longer exists
+			return;
+		}
+
+		for (Map.Entry<String, Collection<IProblem>> entry : problemsByType.entrySet())
+		{
+			try
+			{
+				updateMarkers(file, entry.getKey(), entry.getValue());
+			}
+			catch (CoreException e)
+			{
+				IdeLog.logError(BuildPathCorePlugin.getDefault(), e);
+			}
+		}
+	}
+
+	private void updateMarkers(IFile file, String markerType, Collection<IProblem> problems) throws CoreException
+	{
+		// the existing markers, by key
+		Map<List<Object>, List<IMarker>> existing = new HashMap<List<Object>, List<IMarker>>();
+		for (IMarker marker : file.findMarkers(markerType, false, IResource.DEPTH_ZERO))
+		{
+			Map<String, Object> attributes = getAttributes(marker);
+			List<Object> key = getKey(attributes);
+			List<IMarker> markers = existing.get(key);
+			if (markers == null)
+			{
+				markers = new LinkedList<IMarker>();
+				existing.put(key, markers);
+			}
+			markers.add(marker);
+		}
+
+		int added = 0;
+		int updated = 0;
+		if (problems != null)
+		{
+			for (IProblem problem : problems)
+			{
+				Map<String, Object> attributes = getAttributes(problem);
+				List<IMarker> markers = existing.get(getKey(attributes));
+				if (CollectionsUtil.isEmpty(markers))
+				{
+					file.createMarker(markerType).setAttributes(attributes);
+					added++;
+				}
+				else
+				{
+					IMarker marker = markers.remove(0);
+					if (!attributes.equals(getAttributes(marker)))
+					{
+						marker.setAttributes(attributes);
+						updated++;
+					}
+				}
+			}
+		}
+
+		List<IMarker> removed = new ArrayList<IMarker>();
+		for (List<IMarker> markers : existing.values())
+		{
+			removed.addAll(markers);
+		}
+		if (!removed.isEmpty())
+		{
+			file.getWorkspace().deleteMarkers(removed.toArray(new IMarker[removed.size()]));
+		}
+
+		synchronized (this)
+		{
+			fAdded += added;
+			fUpdated += updated;
+			fRemoved += removed.size();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> getAttributes(IMarker marker) throws CoreException
+	{
+		return CollectionsUtil.getMapValue((Map<String, Object>) marker.getAttributes());
+	}
+
+	/**
+	 * @return the marker attributes of the problem, without the null values (which markers don't store)
+	 */
+	private static Map<String, Object> getAttributes(IProblem problem)
+	{
+		Map<String, Object> attributes = new HashMap<String, Object>(problem.createMarkerAttributes());
+		attributes.values().removeAll(Collections.singleton(null));
+		return attributes;
+	}
+
+	/**
+	 * The markers and problems are matched by offset, message and severity.
+	 */
+	private static List<Object> getKey(Map<String, Object> attributes)
+	{
+		return Arrays.asList(attributes.get(IMarker.CHAR_START), attributes.get(IMarker.MESSAGE),
+				attributes.get(IMarker.SEVERITY));
+	}
+}
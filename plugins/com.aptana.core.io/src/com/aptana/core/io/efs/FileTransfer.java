@@ -0,0 +1,491 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+// $codepro.audit.disable exceptionUsage.exceptionCreation
+
+package com.aptana.core.io.efs;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.text.MessageFormat;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+
+import com.aptana.ide.core.io.CoreIOPlugin;
+
+/**
+ * Moves the content of a file from the input stream of its source to the output stream of its destination. Files on
+ * local disks are transferred between the channels of their streams, which lets the system copy them without going
+ * through the Java heap. Other streams are copied through a buffer which grows as long as the reads fill it, so that
+ * fast connections are used with larger windows; large files are read ahead by another thread while the calling
+ * thread writes, so that a slow source and a slow destination are waited for at the same time.
+ */
+abstract class FileTransfer
+{
+
+	/**
+	 * The system property setting the largest buffer used by stream transfers, in bytes.
+	 */
+	static final String MAX_BUFFER_SIZE_PROPERTY = "studio.copy.maxBufferSize"; //$NON-NLS-1$
+
+	/**
+	 * The system property setting how many buffers may be read ahead of the writes; 0 disables reading ahead.
+	 */
+	static final String READ_AHEAD_BUFFERS_PROPERTY = "studio.copy.readAheadBuffers"; //$NON-NLS-1$
+
+	static final int MIN_BUFFER_SIZE = 8192;
+	private static final int DEFAULT_MAX_BUFFER_SIZE = 1024 * 1024;
+	private static final int DEFAULT_READ_AHEAD_BUFFERS = 4;
+
+	/**
+	 * The part of a file transferred by a single channel call, so that progress and cancellation are checked.
+	 */
+	private static final long CHANNEL_CHUNK_SIZE = 8 * 1024 * 1024;
+
+	/**
+	 * The progress is reported by kilobytes, so that the work of files over 2 GB still fits.
+	 */
+	private static final int WORK_UNIT = 1024;
+
+	private static final long POLL_INTERVAL = 100;
+
+	private static ExecutorService readAheadExecutor;
+
+	protected final IFileStore source;
+	protected final IFileStore destination;
+	protected final InputStream in;
+	protected final OutputStream out;
+	protected final long length;
+
+	private long transferred;
+	private long reported;
+
+	protected FileTransfer(IFileStore source, IFileStore destination, InputStream in, OutputStream out, long length)
+	{
+		this.source = source;
+		this.destination = destination;
+		this.in = in;
+		this.out = out;
+		this.length = length;
+	}
+
+	/**
+	 * Picks the transfer suited to the given streams.
+	 *
+	 * @param source
+	 * @param destination
+	 * @param in
+	 *            the stream opened on the source
+	 * @param out
+	 *            the stream opened on the destination
+	 * @param length
+	 *            the length of the source, or -1 if unknown
+	 * @return the transfer
+	 */
+	static FileTransfer create(IFileStore source, IFileStore destination, InputStream in, OutputStream out,
+			long length)
+	{
+		if (in instanceof FileInputStream && out instanceof FileOutputStream)
+		{
+			return new ChannelTransfer(source, destination, (FileInputStream) in, (FileOutputStream) out, length);
+		}
+		int maxBufferSize = getMaxBufferSize();
+		int readAheadBuffers = Integer.getInteger(READ_AHEAD_BUFFERS_PROPERTY, DEFAULT_READ_AHEAD_BUFFERS);
+		if (readAheadBuffers > 0 && (length == -1 || length > maxBufferSize))
+		{
+			return new ReadAheadTransfer(source, destination, in, out, length, maxBufferSize, readAheadBuffers);
+		}
+		return new BufferedTransfer(source, destination, in, out, length, maxBufferSize);
+	}
+
+	private static int getMaxBufferSize()
+	{
+		return Math.max(MIN_BUFFER_SIZE, Integer.getInteger(MAX_BUFFER_SIZE_PROPERTY, DEFAULT_MAX_BUFFER_SIZE));
+	}
+
+	private static synchronized ExecutorService getReadAheadExecutor()
+	{
+		if (readAheadExecutor == null)
+		{
+			readAheadExecutor = Executors.newCachedThreadPool(new ThreadFactory()
+			{
+				public Thread newThread(Runnable runnable)
+				{
+					Thread thread = new Thread(runnable, "File Transfer Read-Ahead"); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return readAheadExecutor;
+	}
+
+	/**
+	 * Transfers the whole content. The streams are left open, but for the input of a transfer which was cancelled or
+	 * failed while another thread was reading ahead: it is closed to stop that thread.
+	 *
+	 * @param monitor
+	 *            the monitor to report the progress to; the task is begun here
+	 * @throws CoreException
+	 */
+	final void transfer(IProgressMonitor monitor) throws CoreException
+	{
+		int totalWork = (length == -1) ? IProgressMonitor.UNKNOWN : 1 + (int) (length / WORK_UNIT);
+		monitor.beginTask(MessageFormat.format(Messages.SyncUtils_Copying, source.toString()), totalWork);
+		try
+		{
+			doTransfer(monitor);
+		}
+		finally
+		{
+			monitor.done();
+		}
+	}
+
+	protected abstract void doTransfer(IProgressMonitor monitor) throws CoreException;
+
+	protected void worked(IProgressMonitor monitor, long count)
+	{
+		transferred += count;
+		int work = (int) (transferred / WORK_UNIT - reported);
+		if (work > 0)
+		{
+			reported += work;
+			monitor.worked(work);
+		}
+	}
+
+	protected static void checkCanceled(IProgressMonitor monitor)
+	{
+		if (monitor.isCanceled())
+		{
+			throw new OperationCanceledException();
+		}
+	}
+
+	protected void readError(IOException e) throws CoreException
+	{
+		throw new CoreException(new Status(IStatus.ERROR, CoreIOPlugin.PLUGIN_ID, MessageFormat.format(
+				Messages.SyncUtils_ERR_Reading, source.toString()), e));
+	}
+
+	protected void writeError(IOException e) throws CoreException
+	{
+		throw new CoreException(new Status(IStatus.ERROR, CoreIOPlugin.PLUGIN_ID, MessageFormat.format(
+				Messages.SyncUtils_ERR_Writing, destination.toString()), e));
+	}
+
+	/**
+	 * Copies between the channels of local files.
+	 */
+	private static class ChannelTransfer extends FileTransfer
+	{
+
+		ChannelTransfer(IFileStore source, IFileStore destination, FileInputStream in, FileOutputStream out,
+				long length)
+		{
+			super(source, destination, in, out, length);
+		}
+
+		@Override
+		protected void doTransfer(IProgressMonitor monitor) throws CoreException
+		{
+			FileChannel inChannel = ((FileInputStream) in).getChannel();
+			FileChannel outChannel = ((FileOutputStream) out).getChannel();
+			long size = 0;
+			try
+			{
+				size = inChannel.size();
+			}
+			catch (IOException e)
+			{
+				checkCanceled(monitor);
+				readError(e);
+			}
+			long position = 0;
+			while (position < size)
+			{
+				checkCanceled(monitor);
+				long count = 0;
+				try
+				{
+					count = inChannel.transferTo(position, Math.min(CHANNEL_CHUNK_SIZE, size - position), outChannel);
+				}
+				catch (IOException e)
+				{
+					checkCanceled(monitor);
+					writeError(e);
+				}
+				if (count <= 0)
+				{
+					// truncated in the meantime
+					break;
+				}
+				position += count;
+				worked(monitor, count);
+			}
+		}
+	}
+
+	/**
+	 * Copies through a buffer, doubled while the reads fill it.
+	 */
+	private static class BufferedTransfer extends FileTransfer
+	{
+
+		private final int maxBufferSize;
+
+		BufferedTransfer(IFileStore source, IFileStore destination, InputStream in, OutputStream out, long length,
+				int maxBufferSize)
+		{
+			super(source, destination, in, out, length);
+			this.maxBufferSize = maxBufferSize;
+		}
+
+		@Override
+		protected void doTransfer(IProgressMonitor monitor) throws CoreException
+		{
+			byte[] buffer = new byte[MIN_BUFFER_SIZE];
+			long total = 0;
+			while (true)
+			{
+				checkCanceled(monitor);
+				int bytesRead = -1;
+				try
+				{
+					bytesRead = in.read(buffer);
+				}
+				catch (IOException e)
+				{
+					checkCanceled(monitor);
+					readError(e);
+				}
+				if (bytesRead == -1)
+				{
+					break;
+				}
+				checkCanceled(monitor);
+				try
+				{
+					out.write(buffer, 0, bytesRead);
+				}
+				catch (IOException e)
+				{
+					checkCanceled(monitor);
+					writeError(e);
+				}
+				total += bytesRead;
+				worked(monitor, bytesRead);
+				if (bytesRead == buffer.length && buffer.length < maxBufferSize
+						&& (length == -1 || length - total > buffer.length))
+				{
+					buffer = new byte[Math.min(buffer.length * 2, maxBufferSize)];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copies through buffers read by another thread, doubled while the reads fill them.
+	 */
+	private static class ReadAheadTransfer extends FileTransfer
+	{
+
+		private final int maxBufferSize;
+		private final BlockingQueue<Chunk> chunks;
+		private volatile boolean stopped;
+
+		ReadAheadTransfer(IFileStore source, IFileStore destination, InputStream in, OutputStream out, long length,
+				int maxBufferSize, int buffers)
+		{
+			super(source, destination, in, out, length);
+			this.maxBufferSize = maxBufferSize;
+			this.chunks = new ArrayBlockingQueue<Chunk>(buffers);
+		}
+
+		@Override
+		protected void doTransfer(IProgressMonitor monitor) throws CoreException
+		{
+			Future<?> reader = getReadAheadExecutor().submit(new Runnable()
+			{
+				public void run()
+				{
+					read();
+				}
+			});
+			boolean completed = false;
+			try
+			{
+				while (true)
+				{
+					checkCanceled(monitor);
+					Chunk chunk;
+					try
+					{
+						chunk = chunks.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+					}
+					catch (InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+						throw new OperationCanceledException();
+					}
+					if (chunk == null)
+					{
+						// still reading
+						continue;
+					}
+					if (chunk.error != null)
+					{
+						checkCanceled(monitor);
+						readError(chunk.error);
+					}
+					if (chunk.data == null)
+					{
+						completed = true;
+						break;
+					}
+					try
+					{
+						out.write(chunk.data, 0, chunk.count);
+					}
+					catch (IOException e)
+					{
+						checkCanceled(monitor);
+						writeError(e);
+					}
+					worked(monitor, chunk.count);
+				}
+			}
+			finally
+			{
+				stopped = true;
+				if (!completed)
+				{
+					// release a reader blocked in the stream, so that it is done before the caller closes the streams
+					try
+					{
+						in.close();
+					}
+					catch (IOException e)
+					{
+						// the reader stops anyway
+					}
+				}
+				join(reader);
+			}
+		}
+
+		/**
+		 * Waits for the reader to be done, even if the current thread is interrupted.
+		 * 
+		 * @param reader
+		 */
+		private static void join(Future<?> reader)
+		{
+			boolean interrupted = Thread.interrupted();
+			while (true)
+			{
+				try
+				{
+					reader.get();
+					break;
+				}
+				catch (InterruptedException e)
+				{
+					interrupted = true;
+				}
+				catch (ExecutionException e)
+				{
+					break;
+				}
+			}
+			if (interrupted)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		private void read()
+		{
+			int bufferSize = MIN_BUFFER_SIZE;
+			long total = 0;
+			try
+			{
+				while (!stopped)
+				{
+					byte[] buffer = new byte[bufferSize];
+					int bytesRead;
+					try
+					{
+						bytesRead = in.read(buffer);
+					}
+					catch (IOException e)
+					{
+						put(new Chunk(null, 0, e));
+						return;
+					}
+					if (bytesRead == -1)
+					{
+						put(new Chunk(null, 0, null));
+						return;
+					}
+					put(new Chunk(buffer, bytesRead, null));
+					total += bytesRead;
+					if (bytesRead == bufferSize && bufferSize < maxBufferSize
+							&& (length == -1 || length - total > bufferSize))
+					{
+						bufferSize = Math.min(bufferSize * 2, maxBufferSize);
+					}
+				}
+			}
+			catch (InterruptedException e)
+			{
+				// stopped
+			}
+		}
+
+		private void put(Chunk chunk) throws InterruptedException
+		{
+			while (!stopped && !chunks.offer(chunk, POLL_INTERVAL, TimeUnit.MILLISECONDS))
+			{
+				// the writer is slower
+			}
+		}
+	}
+
+	private static class Chunk
+	{
+
+		final byte[] data;
+		final int count;
+		final IOException error;
+
+		Chunk(byte[] data, int count, IOException error)
+		{
+			this.data = data;
+			this.count = count;
+			this.error = error;
+		}
+	}
+}
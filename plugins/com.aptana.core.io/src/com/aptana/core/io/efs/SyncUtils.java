@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -14,7 +14,6 @@ package com.aptana.core.io.efs;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.text.MessageFormat;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileInfo;
@@ -53,7 +52,8 @@ public final class SyncUtils
 	 * ignore exceptions on output stream close (FTP implementation finalizes transfer on close) 5. it ignores
 	 * permission exceptions on transferring attributes 6. it always works as it EFS.SHALLOW would be set 7. EFS
 	 * implementation prevent concurrent copying of FileStores due static synchronized buffer (see
-	 * org.eclipse.core.filesystem.provider.FileStore.transferStreams)
+	 * org.eclipse.core.filesystem.provider.FileStore.transferStreams) 8. local files are copied between file channels,
+	 * and other streams through growing buffers read ahead of the writes (see {@link FileTransfer})
 	 * 
 	 * @param source
 	 * @param sourceInfo
@@ -81,9 +81,6 @@ public final class SyncUtils
 			}
 			else
 			{
-				final byte[] buffer = new byte[8192];
-				long length = sourceInfo.getLength();
-				int totalWork = (length == -1) ? IProgressMonitor.UNKNOWN : 1 + (int) (length / buffer.length);
 				InputStream in = null;
 				OutputStream out = null;
 				ProgressMonitorInterrupter interrupter = new ProgressMonitorInterrupter(monitor);
@@ -91,40 +88,8 @@ public final class SyncUtils
 				{
 					in = source.openInputStream(EFS.NONE, subMonitorFor(monitor, 0));
 					out = destination.openOutputStream(EFS.NONE, subMonitorFor(monitor, 0));
-					IProgressMonitor subMonitor = subMonitorFor(monitor, 2);
-					subMonitor
-							.beginTask(MessageFormat.format(Messages.SyncUtils_Copying, source.toString()), totalWork);
-					int bytesRead;
-					while (true)
-					{
-						checkCanceled(monitor);
-						try
-						{
-							bytesRead = in.read(buffer);
-						}
-						catch (IOException e)
-						{
-							bytesRead = -1;
-							checkCanceled(monitor);
-							error(MessageFormat.format(Messages.SyncUtils_ERR_Reading, source.toString()), e);
-						}
-						if (bytesRead == -1)
-						{
-							break;
-						}
-						checkCanceled(monitor);
-						try
-						{
-							out.write(buffer, 0, bytesRead);
-						}
-						catch (IOException e)
-						{
-							checkCanceled(monitor);
-							error(MessageFormat.format(Messages.SyncUtils_ERR_Writing, destination.toString()), e);
-						}
-						subMonitor.worked(1);
-					}
-					subMonitor.done();
+					FileTransfer.create(source, destination, in, out, sourceInfo.getLength()).transfer(
+							subMonitorFor(monitor, 2));
 				}
 				finally
 				{
@@ -175,11 +140,6 @@ public final class SyncUtils
 			throw new OperationCanceledException();
 	}
 
-	private static void error(String message, Exception e) throws CoreException
-	{
-		throw new CoreException(new Status(IStatus.ERROR, CoreIOPlugin.PLUGIN_ID, message, e));
-	}
-
 	private static void safeClose(InputStream in)
 	{
 		try
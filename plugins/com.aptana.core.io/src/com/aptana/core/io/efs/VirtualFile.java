@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -13,9 +13,10 @@ package com.aptana.core.io.efs;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
-import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileInfo;
@@ -27,7 +28,9 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 
+import com.aptana.core.IFilter;
 import com.aptana.core.io.vfs.IConnectionFileManager;
+import com.aptana.core.io.vfs.IExtendedFileInfo;
 import com.aptana.core.io.vfs.IExtendedFileStore;
 import com.aptana.core.io.vfs.IFileTreeVisitor;
 import com.aptana.core.util.URLEncoder;
@@ -215,40 +218,77 @@ public class VirtualFile extends FileStore implements IExtendedFileStore {
 		return fileManager.getCanonicalURI(path);
 	}
 	
-	public IFileTree fetchFileTree(IFileTreeVisitor visitor, IProgressMonitor monitor) throws CoreException {
+	public IFileTree fetchFileTree(final IFileTreeVisitor visitor, IProgressMonitor monitor) throws CoreException {
 		monitor = Policy.monitorFor(monitor);
 		try {
+			// the visitor decides on the directories while they are listed; its decisions are kept for building the tree
+			final Map<IPath, Boolean> included = new HashMap<IPath, Boolean>();
+			final CoreException[] visitorException = new CoreException[1];
+			IFilter<IPath> filter = null;
+			if (visitor != null) {
+				filter = new IFilter<IPath>() {
+					public boolean include(IPath item) {
+						if (visitorException[0] != null) {
+							return false;
+						}
+						try {
+							boolean include = visitor.include(new VirtualFile(fileManager, baseURI, item));
+							included.put(item, include);
+							return include;
+						} catch (CoreException e) {
+							visitorException[0] = e;
+							return false;
+						}
+					}
+				};
+			}
+			Map<IPath, IExtendedFileInfo[]> listings = fileManager.fetchTree(path, IExtendedFileStore.DETAILED, filter,
+					new InfiniteProgressMonitor(monitor));
+			if (visitorException[0] != null) {
+				throw visitorException[0];
+			}
 			FileTree fileTree = new FileTree(this);
-			buildFileTree(fileTree, this, visitor, new InfiniteProgressMonitor(monitor));
+			buildFileTree(fileTree, this, listings, visitor, included);
 			return fileTree;
-			} finally {
-				monitor.done();
-			}
+		} finally {
+			monitor.done();
+		}
 	}
 
 	public String toString() {
 	    return toCanonicalURI().toString();
 	}
 
-	private static void buildFileTree(FileTree fileTree, VirtualFile parent, IFileTreeVisitor visitor, IProgressMonitor monitor) throws CoreException {
-		monitor.beginTask(MessageFormat.format(Messages.VirtualFile_ListingDirectory, parent.path), 20);
-		IFileInfo[] infos = parent.fileManager.childInfos(parent.path, IExtendedFileStore.DETAILED, monitor);
+	private static void buildFileTree(FileTree fileTree, VirtualFile parent, Map<IPath, IExtendedFileInfo[]> listings,
+			IFileTreeVisitor visitor, Map<IPath, Boolean> included) throws CoreException {
+		IFileInfo[] infos = listings.get(parent.path);
+		if (infos == null) {
+			return;
+		}
 		List<IFileStore> stores = new ArrayList<IFileStore>();
-		List<IFileStore> dirs = new ArrayList<IFileStore>();
+		List<IFileInfo> storeInfos = new ArrayList<IFileInfo>();
+		List<VirtualFile> dirs = new ArrayList<VirtualFile>();
 		for (IFileInfo fileInfo : infos) {
-			IFileStore store = parent.getChild(fileInfo.getName());
-			if (visitor != null && !visitor.include(store)) {
-				continue;
+			VirtualFile store = (VirtualFile) parent.getChild(fileInfo.getName());
+			if (visitor != null) {
+				Boolean include = included.get(store.path);
+				if (include == null) {
+					include = visitor.include(store);
+				}
+				if (!include) {
+					continue;
+				}
 			}
 			stores.add(store);
+			storeInfos.add(fileInfo);
 			if (fileInfo.isDirectory()) {
 				dirs.add(store);
 			}
 		}
-		fileTree.addChildren(parent, stores.toArray(new IFileStore[stores.size()]), infos);
-		monitor.worked(1);
-		for (IFileStore store : dirs) {
-			buildFileTree(fileTree, (VirtualFile) store, visitor, monitor);
+		fileTree.addChildren(parent, stores.toArray(new IFileStore[stores.size()]),
+				storeInfos.toArray(new IFileInfo[storeInfos.size()]));
+		for (VirtualFile store : dirs) {
+			buildFileTree(fileTree, store, listings, visitor, included);
 		}
 	}
 }
@@ -21,6 +21,7 @@ import java.io.OutputStream;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -36,6 +37,7 @@ import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
 
+import com.aptana.core.IFilter;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.ExpiringMap;
 import com.aptana.core.util.ProgressMonitorInterrupter;
@@ -236,6 +238,89 @@ public abstract class BaseConnectionFileManager implements IConnectionFileManage
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.IConnectionFileManager#fetchTree(org.eclipse.core.runtime.IPath, int,
+	 * com.aptana.core.IFilter, org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	public final synchronized Map<IPath, IExtendedFileInfo[]> fetchTree(IPath path, int options,
+			IFilter<IPath> filter, IProgressMonitor monitor) throws CoreException
+	{
+		monitor = Policy.monitorFor(monitor);
+		monitor.beginTask(
+				MessageFormat.format(Messages.BaseConnectionFileManager_listing_directory, path.toPortableString()),
+				IProgressMonitor.UNKNOWN);
+		options = (options & IExtendedFileStore.DETAILED);
+		Map<IPath, IExtendedFileInfo[]> result = new LinkedHashMap<IPath, IExtendedFileInfo[]>();
+		try
+		{
+			ProgressMonitorInterrupter.setCurrentThreadInterruptDelegate(interruptDelegate);
+			testOrConnect(monitor);
+			List<IPath> pending = new ArrayList<IPath>();
+			pending.add(path);
+			while (!pending.isEmpty())
+			{
+				List<IPath> symlinkedDirs = new ArrayList<IPath>();
+				for (IPath dirPath : pending)
+				{
+					Map<IPath, ExtendedFileInfo[]> listings;
+					try
+					{
+						listings = fetchFileTree(basePath.append(dirPath), options,
+								(filter != null) ? new RelativePathFilter(basePath.append(path), path, filter) : null,
+								monitor);
+						setLastOperationTime();
+					}
+					catch (FileNotFoundException e)
+					{
+						setLastOperationTime();
+						if (dirPath == path)
+						{
+							return result;
+						}
+						continue;
+					}
+					catch (PermissionDeniedException e)
+					{
+						setLastOperationTime();
+						throw new CoreException(new Status(IStatus.ERROR, CoreIOPlugin.PLUGIN_ID,
+								MessageFormat.format(Messages.BaseConnectionFileManager_PermissionDenied0,
+										dirPath.toPortableString()), e));
+					}
+					for (Map.Entry<IPath, ExtendedFileInfo[]> entry : listings.entrySet())
+					{
+						IPath absolutePath = entry.getKey();
+						IPath listedPath = path.append(absolutePath.removeFirstSegments(basePath.append(path)
+								.segmentCount()));
+						ExtendedFileInfo[] fileInfos = cache(listedPath, entry.getValue());
+						for (ExtendedFileInfo fileInfo : fileInfos)
+						{
+							boolean symlink = fileInfo.getAttribute(EFS.ATTRIBUTE_SYMLINK);
+							postProcessFileInfo(fileInfo, absolutePath, options, monitor);
+							IPath childPath = listedPath.append(fileInfo.getName());
+							cache(childPath, fileInfo);
+							// symlinked directories are only known as such now
+							if (symlink && fileInfo.isDirectory() && !result.containsKey(childPath)
+									&& !listings.containsKey(absolutePath.append(fileInfo.getName()))
+									&& (filter == null || filter.include(childPath)))
+							{
+								symlinkedDirs.add(childPath);
+							}
+						}
+						result.put(listedPath, fileInfos.clone());
+					}
+				}
+				pending = symlinkedDirs;
+			}
+			return result;
+		}
+		finally
+		{
+			ProgressMonitorInterrupter.setCurrentThreadInterruptDelegate(null);
+			monitor.done();
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.core.io.vfs.IConnectionFileManager#openInputStream(org.eclipse.core.runtime.IPath, int,
@@ -694,6 +779,54 @@ public abstract class BaseConnectionFileManager implements IConnectionFileManage
 	protected abstract void changeFileGroup(IPath path, String group, IProgressMonitor monitor) throws CoreException,
 			FileNotFoundException;
 
+	/**
+	 * Lists the directory and the sub-directories accepted by the filter, down to the bottom of the tree. By default,
+	 * the directories are listed one at a time over the connection; subclasses knowing of a faster way override it.
+	 * 
+	 * @param path
+	 *            the absolute path of the directory
+	 * @param options
+	 * @param filter
+	 *            decides which of the sub-directories are listed (by absolute path), or null for all of them
+	 * @param monitor
+	 * @return the file infos of each listed directory, by absolute path
+	 */
+	protected Map<IPath, ExtendedFileInfo[]> fetchFileTree(IPath path, int options, IFilter<IPath> filter,
+			IProgressMonitor monitor) throws CoreException, FileNotFoundException, PermissionDeniedException
+	{
+		Map<IPath, ExtendedFileInfo[]> result = new LinkedHashMap<IPath, ExtendedFileInfo[]>();
+		List<IPath> dirs = new ArrayList<IPath>();
+		dirs.add(path);
+		for (int i = 0; i < dirs.size(); ++i)
+		{
+			IPath dirPath = dirs.get(i);
+			ExtendedFileInfo[] fileInfos;
+			try
+			{
+				fileInfos = fetchFilesInternal(dirPath, options, monitor);
+			}
+			catch (FileNotFoundException e)
+			{
+				if (i == 0)
+				{
+					throw e;
+				}
+				// removed in the meantime
+				continue;
+			}
+			result.put(dirPath, fileInfos);
+			for (ExtendedFileInfo fileInfo : fileInfos)
+			{
+				IPath childPath = dirPath.append(fileInfo.getName());
+				if (fileInfo.isDirectory() && (filter == null || filter.include(childPath)))
+				{
+					dirs.add(childPath);
+				}
+			}
+		}
+		return result;
+	}
+
 	protected final ExtendedFileInfo[] fetchFilesInternal(IPath path, int options, IProgressMonitor monitor)
 			throws CoreException, FileNotFoundException, PermissionDeniedException
 	{
@@ -983,4 +1116,27 @@ public abstract class BaseConnectionFileManager implements IConnectionFileManage
 		return e;
 	}
 
+	/**
+	 * Hands the absolute paths of the listed directories to a filter of the paths the tree was asked for.
+	 */
+	private static final class RelativePathFilter implements IFilter<IPath>
+	{
+
+		private final IPath absoluteRoot;
+		private final IPath root;
+		private final IFilter<IPath> filter;
+
+		RelativePathFilter(IPath absoluteRoot, IPath root, IFilter<IPath> filter)
+		{
+			this.absoluteRoot = absoluteRoot;
+			this.root = root;
+			this.filter = filter;
+		}
+
+		public boolean include(IPath item)
+		{
+			return filter.include(root.append(item.removeFirstSegments(absoluteRoot.segmentCount())));
+		}
+	}
+
 }
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -11,12 +11,15 @@ package com.aptana.core.io.vfs;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.util.Map;
 
 import org.eclipse.core.filesystem.IFileInfo;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 
+import com.aptana.core.IFilter;
+
 
 /**
  * @author Max Stepanov
@@ -33,6 +36,21 @@ public interface IConnectionFileManager {
 	public IExtendedFileInfo fetchInfo(IPath path, int options, IProgressMonitor monitor) throws CoreException;
 	public String[] childNames(IPath path, int options, IProgressMonitor monitor) throws CoreException;
 	public IExtendedFileInfo[] childInfos(IPath path, int options, IProgressMonitor monitor) throws CoreException;
+
+	/**
+	 * Lists a directory and the directories below it in one pass, as childInfos() would one at a time.
+	 * 
+	 * @param path
+	 *            the directory
+	 * @param options
+	 * @param filter
+	 *            decides which of the sub-directories are listed, or null for all of them
+	 * @param monitor
+	 * @return the child infos of each listed directory, by path
+	 * @throws CoreException
+	 */
+	public Map<IPath, IExtendedFileInfo[]> fetchTree(IPath path, int options, IFilter<IPath> filter,
+			IProgressMonitor monitor) throws CoreException;
 	
 	public InputStream openInputStream(IPath path, int options, IProgressMonitor monitor) throws CoreException;
 	public OutputStream openOutputStream(IPath path, int options, IProgressMonitor monitor) throws CoreException;
@@ -0,0 +1,419 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.util;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.aptana.core.CorePlugin;
+import com.aptana.core.logging.IdeLog;
+
+/**
+ * The base of the object pools. Idle instances wait in a lock-free queue, oldest first, so that checking out and in
+ * never blocks other threads; the subclasses decide which idle instances may be handed out and which get expired, on
+ * checkout or by a reaper. At most {@link #MAX_IDLE_PROPERTY} instances are kept idle, extra ones are expired on
+ * check in. The pool counts the instances created, expired, idle and checked out, and the time checkouts take.
+ * 
+ * @param <T>
+ */
+public abstract class AbstractObjectPool<T> implements IObjectPool<T>
+{
+
+	/**
+	 * The system property setting the maximum number of idle instances each pool keeps.
+	 */
+	public static final String MAX_IDLE_PROPERTY = "studio.pool.maxIdle"; //$NON-NLS-1$
+
+	private static final int DEFAULT_MAX_IDLE = 16;
+
+	/**
+	 * An idle instance, with the time it was checked in.
+	 */
+	protected static final class IdleEntry<E>
+	{
+		private final E object;
+		private final long since;
+
+		private IdleEntry(E object, long since)
+		{
+			this.object = object;
+			this.since = since;
+		}
+
+		/**
+		 * @return the instance
+		 */
+		public E getObject()
+		{
+			return object;
+		}
+
+		/**
+		 * @return the time the instance was checked in
+		 */
+		public long getIdleSince()
+		{
+			return since;
+		}
+	}
+
+	/**
+	 * The single thread reaping the idle instances of all the pools.
+	 */
+	private static ScheduledExecutorService reaperExecutor;
+
+	private final Queue<IdleEntry<T>> idle = new ConcurrentLinkedQueue<IdleEntry<T>>();
+	private final int maxIdle;
+	private final long startTime = System.currentTimeMillis();
+
+	private final AtomicInteger idleCount = new AtomicInteger();
+	private final AtomicInteger checkedOutCount = new AtomicInteger();
+	private final AtomicLong createdCount = new AtomicLong();
+	private final AtomicLong expiredCount = new AtomicLong();
+	private final AtomicLong borrowCount = new AtomicLong();
+	private final AtomicLong totalBorrowTime = new AtomicLong();
+	private final AtomicLong maxBorrowTime = new AtomicLong();
+
+	private volatile ScheduledFuture<?> reaper;
+	private volatile boolean disposed;
+
+	protected AbstractObjectPool()
+	{
+		this(Integer.getInteger(MAX_IDLE_PROPERTY, DEFAULT_MAX_IDLE));
+	}
+
+	/**
+	 * @param maxIdle
+	 *            the maximum number of idle instances kept
+	 */
+	protected AbstractObjectPool(int maxIdle)
+	{
+		this.maxIdle = Math.max(1, maxIdle);
+	}
+
+	private static synchronized ScheduledExecutorService getReaperExecutor()
+	{
+		if (reaperExecutor == null)
+		{
+			reaperExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+			{
+				public Thread newThread(Runnable runnable)
+				{
+					Thread thread = new Thread(runnable, "Object Pool Reaper"); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return reaperExecutor;
+	}
+
+	/**
+	 * Hands out an idle instance, or a new one if none is available.
+	 */
+	public T checkOut()
+	{
+		long start = System.nanoTime();
+		T t = null;
+		IdleEntry<T> entry;
+		while ((entry = pollIdle()) != null)
+		{
+			if (acceptOnCheckOut(entry, System.currentTimeMillis()))
+			{
+				t = entry.getObject();
+				break;
+			}
+			expireInstance(entry.getObject());
+		}
+		if (t == null)
+		{
+			t = create();
+			if (t != null)
+			{
+				createdCount.incrementAndGet();
+			}
+		}
+		if (t != null)
+		{
+			checkedOutCount.incrementAndGet();
+		}
+		recordBorrow(System.nanoTime() - start);
+		return t;
+	}
+
+	/**
+	 * Takes an instance back. It is expired if the pool already keeps as many idle instances as it may.
+	 */
+	public void checkIn(T t)
+	{
+		if (t == null)
+		{
+			return;
+		}
+		checkedOutCount.decrementAndGet();
+		while (true)
+		{
+			int current = idleCount.get();
+			if (current >= maxIdle)
+			{
+				expireInstance(t);
+				return;
+			}
+			if (idleCount.compareAndSet(current, current + 1))
+			{
+				break;
+			}
+		}
+		idle.offer(new IdleEntry<T>(t, System.currentTimeMillis()));
+		// a dispose may have drained the queue before the offer
+		if (disposed)
+		{
+			expireIdle();
+		}
+	}
+
+	/**
+	 * Expires all idle instances and stops the reaper.
+	 */
+	public void dispose()
+	{
+		disposed = true;
+		stopReaper();
+		expireIdle();
+		int stillCheckedOut = checkedOutCount.get();
+		if (stillCheckedOut > 0)
+		{
+			IdeLog.logWarning(CorePlugin.getDefault(), MessageFormat.format(
+					"Killed a connection pool that still has {0} locked items", stillCheckedOut)); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Decides whether an idle instance may be handed out. Refused instances are expired.
+	 * 
+	 * @param entry
+	 * @param now
+	 * @return
+	 */
+	protected abstract boolean acceptOnCheckOut(IdleEntry<T> entry, long now);
+
+	/**
+	 * Decides whether the reaper expires an idle instance. The entry is taken out of the idle queue for the call, so
+	 * the instance may be used, to validate it for example, without a checkout handing it out meanwhile.
+	 * 
+	 * @param entry
+	 * @param now
+	 * @return
+	 */
+	protected boolean shouldReap(IdleEntry<T> entry, long now)
+	{
+		return false;
+	}
+
+	/**
+	 * Expires the idle instances {@link #shouldReap(IdleEntry, long)} picks, and puts the others back. Instances checked
+	 * out meanwhile are left alone. The instances being looked at still count as idle.
+	 */
+	protected void reapIdle()
+	{
+		long now = System.currentTimeMillis();
+		// the kept entries are offered again, iterate over a copy to visit each once
+		List<IdleEntry<T>> entries = new ArrayList<IdleEntry<T>>(idle);
+		for (IdleEntry<T> entry : entries)
+		{
+			// only the thread which removes the entry from the queue may use it
+			if (!idle.remove(entry))
+			{
+				continue;
+			}
+			boolean reap = true;
+			try
+			{
+				reap = shouldReap(entry, now);
+			}
+			finally
+			{
+				if (reap)
+				{
+					idleCount.decrementAndGet();
+					expireInstance(entry.getObject());
+				}
+				else
+				{
+					idle.offer(entry);
+					// a dispose may have drained the queue before the offer
+					if (disposed)
+					{
+						expireIdle();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs {@link #reapIdle()} periodically on the shared reaper thread until {@link #dispose()}.
+	 * 
+	 * @param interval
+	 *            the time in milliseconds between two runs
+	 */
+	protected void startReaper(long interval)
+	{
+		if (reaper != null)
+		{
+			return;
+		}
+		reaper = getReaperExecutor().scheduleWithFixedDelay(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					reapIdle();
+				}
+				catch (Throwable e)
+				{
+					IdeLog.logError(CorePlugin.getDefault(), e);
+				}
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	private void stopReaper()
+	{
+		ScheduledFuture<?> current = reaper;
+		if (current != null)
+		{
+			current.cancel(false);
+			reaper = null;
+		}
+	}
+
+	private void expireIdle()
+	{
+		IdleEntry<T> entry;
+		while ((entry = pollIdle()) != null)
+		{
+			expireInstance(entry.getObject());
+		}
+	}
+
+	private IdleEntry<T> pollIdle()
+	{
+		IdleEntry<T> entry = idle.poll();
+		if (entry != null)
+		{
+			idleCount.decrementAndGet();
+		}
+		return entry;
+	}
+
+	private void expireInstance(T t)
+	{
+		expiredCount.incrementAndGet();
+		expire(t);
+	}
+
+	private void recordBorrow(long nanos)
+	{
+		borrowCount.incrementAndGet();
+		totalBorrowTime.addAndGet(nanos);
+		while (true)
+		{
+			long max = maxBorrowTime.get();
+			if (nanos <= max || maxBorrowTime.compareAndSet(max, nanos))
+			{
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of instances waiting to be checked out
+	 */
+	public int getIdleCount()
+	{
+		return idleCount.get();
+	}
+
+	/**
+	 * @return the number of instances checked out and not checked in yet
+	 */
+	public int getCheckedOutCount()
+	{
+		return checkedOutCount.get();
+	}
+
+	/**
+	 * @return the maximum number of idle instances kept
+	 */
+	public int getMaxIdle()
+	{
+		return maxIdle;
+	}
+
+	/**
+	 * @return the number of instances created
+	 */
+	public long getCreatedCount()
+	{
+		return createdCount.get();
+	}
+
+	/**
+	 * @return the number of instances created per second since the pool was created
+	 */
+	public double getCreationRate()
+	{
+		long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+		return createdCount.get() * 1000.0 / elapsed;
+	}
+
+	/**
+	 * @return the number of instances expired
+	 */
+	public long getExpiredCount()
+	{
+		return expiredCount.get();
+	}
+
+	/**
+	 * @return the number of checkouts
+	 */
+	public long getBorrowCount()
+	{
+		return borrowCount.get();
+	}
+
+	/**
+	 * @return the average time in milliseconds a checkout took, creating or validating instances included
+	 */
+	public double getAverageBorrowTime()
+	{
+		long count = borrowCount.get();
+		return (count == 0) ? 0 : totalBorrowTime.get() / (count * 1000000.0);
+	}
+
+	/**
+	 * @return the longest time in milliseconds a checkout took
+	 */
+	public double getMaxBorrowTime()
+	{
+		return maxBorrowTime.get() / 1000000.0;
+	}
+}
@@ -0,0 +1,377 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.MessageFormat;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+
+import com.aptana.core.CorePlugin;
+import com.aptana.core.logging.IdeLog;
+
+/**
+ * A process whose output is handed to a listener while it runs, see
+ * {@link ProcessUtil#runAsync(Process, String, IProcessOutputListener, long, IProgressMonitor)}. The process is
+ * destroyed if it runs longer than its timeout, if the progress monitor is cancelled, or if {@link #cancel()} is called.
+ * Once it exited on its own, the listener gets all of its output before it is told the process finished.
+ */
+public class AsyncProcess
+{
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final long POLL_INTERVAL = 50;
+
+	/**
+	 * The time in milliseconds to wait for the output to end once the process was destroyed. Children of a destroyed
+	 * process may keep its streams open.
+	 */
+	private static final long DRAIN_TIMEOUT = 2000;
+
+	private final Process process;
+	private final String input;
+	private final IProcessOutputListener listener;
+	private final long timeout;
+	private final IProgressMonitor monitor;
+
+	private final Object listenerLock = new Object();
+	private final CountDownLatch done = new CountDownLatch(1);
+	private volatile boolean cancelled;
+	private volatile boolean destroyed;
+	private volatile IStatus status;
+
+	/**
+	 * @param process
+	 * @param input
+	 *            the text to write to the input of the process, or null
+	 * @param listener
+	 * @param timeout
+	 *            the maximum time in milliseconds the process may run, or 0 for no limit
+	 * @param monitor
+	 *            the monitor whose cancellation cancels the process, or null
+	 */
+	AsyncProcess(Process process, String input, IProcessOutputListener listener, long timeout,
+			IProgressMonitor monitor)
+	{
+		this.process = process;
+		this.input = input;
+		this.listener = listener;
+		this.timeout = timeout;
+		this.monitor = (monitor != null) ? monitor : new NullProgressMonitor();
+	}
+
+	/**
+	 * Starts reading the output and watching the process.
+	 */
+	void start()
+	{
+		if (input != null)
+		{
+			new OutputStreamThread(process.getOutputStream(), input, IOUtil.UTF_8).start();
+		}
+		final Thread stdoutReader = createReader(IProcessOutputListener.STDOUT, process.getInputStream());
+		final Thread stderrReader = createReader(IProcessOutputListener.STDERR, process.getErrorStream());
+		stdoutReader.start();
+		stderrReader.start();
+
+		Thread watcher = new Thread("Process Watcher") //$NON-NLS-1$
+		{
+			@Override
+			public void run()
+			{
+				watch(stdoutReader, stderrReader);
+			}
+		};
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+
+	private Thread createReader(final int stream, final InputStream is)
+	{
+		Thread reader = new Thread("Process Output Reader") //$NON-NLS-1$
+		{
+			@Override
+			public void run()
+			{
+				read(stream, is);
+			}
+		};
+		reader.setDaemon(true);
+		return reader;
+	}
+
+	private void read(int stream, InputStream is)
+	{
+		byte[] buffer = new byte[BUFFER_SIZE];
+		try
+		{
+			int read;
+			while ((read = is.read(buffer)) != -1)
+			{
+				// the next read waits for the listener, which keeps the process from getting ahead of it
+				synchronized (listenerLock)
+				{
+					listener.bytesRead(stream, buffer, 0, read);
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			// the stream is closed when the process is destroyed
+			if (!destroyed)
+			{
+				IdeLog.logError(CorePlugin.getDefault(), e);
+			}
+		}
+		catch (RuntimeException e)
+		{
+			IdeLog.logError(CorePlugin.getDefault(), e);
+			cancel();
+		}
+		finally
+		{
+			try
+			{
+				is.close();
+			}
+			catch (IOException e)
+			{
+				// ignore
+			}
+		}
+	}
+
+	private void watch(Thread stdoutReader, Thread stderrReader)
+	{
+		long deadline = (timeout > 0) ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+		boolean timedOut = false;
+		while (!hasExited())
+		{
+			if (cancelled || monitor.isCanceled())
+			{
+				cancelled = true;
+				break;
+			}
+			if (System.currentTimeMillis() >= deadline)
+			{
+				timedOut = true;
+				break;
+			}
+			sleep(stdoutReader, stderrReader);
+		}
+		if (cancelled || timedOut)
+		{
+			destroy();
+		}
+		int exitCode = waitForExit();
+
+		// A process which exited on its own may have left output in the pipes that a slow listener is still taking,
+		// wait for all of it unless the process gets cancelled or times out meanwhile.
+		while (!destroyed && (stdoutReader.isAlive() || stderrReader.isAlive()))
+		{
+			if (cancelled || monitor.isCanceled())
+			{
+				cancelled = true;
+				destroy();
+			}
+			else if (System.currentTimeMillis() >= deadline)
+			{
+				timedOut = true;
+				destroy();
+			}
+			else
+			{
+				sleep(stdoutReader, stderrReader);
+			}
+		}
+		if (destroyed)
+		{
+			drain(stdoutReader, process.getInputStream());
+			drain(stderrReader, process.getErrorStream());
+		}
+
+		IStatus result;
+		if (cancelled)
+		{
+			result = new Status(IStatus.CANCEL, CorePlugin.PLUGIN_ID, exitCode, Messages.ProcessUtil_Cancelled, null);
+		}
+		else if (timedOut)
+		{
+			result = new Status(IStatus.ERROR, CorePlugin.PLUGIN_ID, exitCode, MessageFormat.format(
+					Messages.ProcessUtil_TimedOut, timeout), null);
+		}
+		else
+		{
+			result = new Status((exitCode == 0) ? IStatus.OK : IStatus.ERROR, CorePlugin.PLUGIN_ID, exitCode,
+					StringUtil.EMPTY, null);
+		}
+		status = result;
+
+		try
+		{
+			synchronized (listenerLock)
+			{
+				listener.processFinished(result);
+			}
+		}
+		catch (RuntimeException e)
+		{
+			IdeLog.logError(CorePlugin.getDefault(), e);
+		}
+		finally
+		{
+			done.countDown();
+		}
+	}
+
+	private void destroy()
+	{
+		destroyed = true;
+		process.destroy();
+	}
+
+	/**
+	 * Waits for a poll interval, or less if the readers are done.
+	 * 
+	 * @param stdoutReader
+	 * @param stderrReader
+	 */
+	private void sleep(Thread stdoutReader, Thread stderrReader)
+	{
+		try
+		{
+			if (stdoutReader.isAlive())
+			{
+				stdoutReader.join(POLL_INTERVAL);
+			}
+			else if (stderrReader.isAlive())
+			{
+				stderrReader.join(POLL_INTERVAL);
+			}
+			else
+			{
+				Thread.sleep(POLL_INTERVAL);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			// check again
+		}
+	}
+
+	private boolean hasExited()
+	{
+		try
+		{
+			process.exitValue();
+			return true;
+		}
+		catch (IllegalThreadStateException e)
+		{
+			return false;
+		}
+	}
+
+	private int waitForExit()
+	{
+		while (true)
+		{
+			try
+			{
+				return process.waitFor();
+			}
+			catch (InterruptedException e)
+			{
+				// keep waiting, the process is exiting or destroyed
+			}
+		}
+	}
+
+	/**
+	 * Waits for the reader of a destroyed process to reach the end of its stream, and closes the stream if it takes too
+	 * long.
+	 * 
+	 * @param reader
+	 * @param is
+	 */
+	private void drain(Thread reader, InputStream is)
+	{
+		try
+		{
+			reader.join(DRAIN_TIMEOUT);
+			if (reader.isAlive())
+			{
+				is.close();
+				reader.join(DRAIN_TIMEOUT);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			// give up on the output
+		}
+		catch (IOException e)
+		{
+			// ignore
+		}
+	}
+
+	/**
+	 * Destroys the process. The listener is then told the process finished with a CANCEL status.
+	 */
+	public void cancel()
+	{
+		cancelled = true;
+	}
+
+	/**
+	 * @return whether the process finished and the listener was told
+	 */
+	public boolean isDone()
+	{
+		return done.getCount() == 0;
+	}
+
+	/**
+	 * Waits for the process to finish and the listener to be told.
+	 * 
+	 * @return the status the listener was given
+	 * @throws InterruptedException
+	 */
+	public IStatus waitFor() throws InterruptedException
+	{
+		done.await();
+		return status;
+	}
+
+	/**
+	 * Waits for the process to finish and the listener to be told, for a while.
+	 * 
+	 * @param time
+	 *            the maximum time to wait in milliseconds
+	 * @return the status the listener was given, or null if the process is still running
+	 * @throws InterruptedException
+	 */
+	public IStatus waitFor(long time) throws InterruptedException
+	{
+		return done.await(time, TimeUnit.MILLISECONDS) ? status : null;
+	}
+
+	/**
+	 * @return the process
+	 */
+	public Process getProcess()
+	{
+		return process;
+	}
+}
@@ -0,0 +1,52 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.util;
+
+import org.eclipse.core.runtime.IStatus;
+
+/**
+ * Receives the output of a process run through {@link ProcessUtil#runAsync(Process, String, IProcessOutputListener,
+ * long, org.eclipse.core.runtime.IProgressMonitor)} as it is read. Calls are never made concurrently, but they come
+ * from threads reading the process: the process is held back while a call is running, so a slow listener slows the
+ * process down rather than letting its output pile up in memory.
+ * 
+ * @see LineOutputListener
+ */
+public interface IProcessOutputListener
+{
+
+	/**
+	 * The standard output of the process.
+	 */
+	public static final int STDOUT = 1;
+
+	/**
+	 * The standard error of the process.
+	 */
+	public static final int STDERR = 2;
+
+	/**
+	 * Output was read. The buffer is reused once this returns.
+	 * 
+	 * @param stream
+	 *            {@link #STDOUT} or {@link #STDERR}
+	 * @param buffer
+	 * @param offset
+	 * @param length
+	 */
+	public void bytesRead(int stream, byte[] buffer, int offset, int length);
+
+	/**
+	 * The process is over and all its output was read. This is the last call.
+	 * 
+	 * @param status
+	 *            holds the exit code of the process as its code. It is an OK status if the process exited with 0, an
+	 *            ERROR one if it exited with another code or timed out, and a CANCEL one if it was cancelled.
+	 */
+	public void processFinished(IStatus status);
+}
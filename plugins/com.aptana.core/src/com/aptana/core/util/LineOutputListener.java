@@ -0,0 +1,131 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+
+import org.eclipse.core.runtime.IStatus;
+
+/**
+ * Splits the output of a process into lines, without their line terminators. Only the line being read is kept in
+ * memory. Lines end with '\n' by default, or with another byte such as the '\0' ending the records of git's -z output.
+ * The charset has to encode the terminator as that single byte, as UTF-8 and the other ASCII based charsets do.
+ */
+public abstract class LineOutputListener implements IProcessOutputListener
+{
+
+	private final String charset;
+	private final byte terminator;
+	private final ByteArrayOutputStream stdoutLine = new ByteArrayOutputStream();
+	private final ByteArrayOutputStream stderrLine = new ByteArrayOutputStream();
+
+	public LineOutputListener()
+	{
+		this(IOUtil.UTF_8);
+	}
+
+	/**
+	 * @param charset
+	 *            the charset of the output, or null for the platform default
+	 */
+	public LineOutputListener(String charset)
+	{
+		this(charset, (byte) '\n');
+	}
+
+	/**
+	 * @param charset
+	 *            the charset of the output, or null for the platform default
+	 * @param terminator
+	 *            the byte ending the lines. A CR before a '\n' terminator is dropped too.
+	 */
+	public LineOutputListener(String charset, byte terminator)
+	{
+		this.charset = charset;
+		this.terminator = terminator;
+	}
+
+	/**
+	 * A line was read.
+	 * 
+	 * @param stream
+	 *            {@link #STDOUT} or {@link #STDERR}
+	 * @param line
+	 */
+	protected abstract void lineRead(int stream, String line);
+
+	/**
+	 * The process is over, and all its lines were read.
+	 * 
+	 * @param status
+	 * @see IProcessOutputListener#processFinished(IStatus)
+	 */
+	protected void finished(IStatus status)
+	{
+	}
+
+	public void bytesRead(int stream, byte[] buffer, int offset, int length)
+	{
+		ByteArrayOutputStream line = (stream == STDERR) ? stderrLine : stdoutLine;
+		int start = offset;
+		int end = offset + length;
+		for (int i = offset; i < end; i++)
+		{
+			if (buffer[i] == terminator)
+			{
+				line.write(buffer, start, i - start);
+				emit(stream, line);
+				start = i + 1;
+			}
+		}
+		line.write(buffer, start, end - start);
+	}
+
+	public void processFinished(IStatus status)
+	{
+		// the last lines may have no terminator
+		if (stdoutLine.size() > 0)
+		{
+			emit(STDOUT, stdoutLine);
+		}
+		if (stderrLine.size() > 0)
+		{
+			emit(STDERR, stderrLine);
+		}
+		finished(status);
+	}
+
+	private void emit(int stream, ByteArrayOutputStream line)
+	{
+		byte[] bytes = line.toByteArray();
+		line.reset();
+		int length = bytes.length;
+		if (terminator == '\n' && length > 0 && bytes[length - 1] == '\r')
+		{
+			length--;
+		}
+		String text = null;
+		if (charset != null)
+		{
+			try
+			{
+				text = new String(bytes, 0, length, charset);
+			}
+			catch (UnsupportedEncodingException e)
+			{
+				// use the default charset
+			}
+		}
+		if (text == null)
+		{
+			text = new String(bytes, 0, length);
+		}
+		lineRead(stream, text);
+	}
+}
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -38,8 +38,12 @@ public class Messages extends NLS
 
 	public static String PlatformUtils_CoreLibraryNotFound;
 
+	public static String ProcessUtil_Cancelled;
+
 	public static String ProcessUtil_RunningProcess;
 
+	public static String ProcessUtil_TimedOut;
+
 	public static String URLEncoder_Cannot_Encode_URL;
 
 	public static String URLUtil_EvenNumberUrlParameters;
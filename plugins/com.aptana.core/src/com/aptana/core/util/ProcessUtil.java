@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -16,6 +16,7 @@ import java.util.TreeMap;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 
@@ -204,6 +205,62 @@ public class ProcessUtil
 		}
 	}
 
+	/**
+	 * Launches the process and hands its output to the listener as it is read, instead of collecting it into a String.
+	 * The call returns right away; the listener is told when the process finished through
+	 * {@link IProcessOutputListener#processFinished(IStatus)}.
+	 * 
+	 * @param command
+	 *            The executable/script to run
+	 * @param workingDirectory
+	 *            The working directory to use for the process.
+	 * @param environment
+	 *            Environment variable map to use for the process.
+	 * @param listener
+	 *            The listener receiving the output of the process.
+	 * @param timeout
+	 *            The maximum time in milliseconds the process may run before it is destroyed, or 0 for no limit.
+	 * @param monitor
+	 *            A monitor whose cancellation destroys the process, or null.
+	 * @param arguments
+	 *            A List of String arguments to the command.
+	 * @return a handle to wait for or cancel the process
+	 * @throws IOException
+	 * @throws CoreException
+	 */
+	public static AsyncProcess runAsync(String command, IPath workingDirectory, Map<String, String> environment,
+			IProcessOutputListener listener, long timeout, IProgressMonitor monitor, String... arguments)
+			throws IOException, CoreException
+	{
+		Process p = run(command, workingDirectory, environment, arguments);
+		return runAsync(p, null, listener, timeout, monitor);
+	}
+
+	/**
+	 * Pipes input to STDIN of a launched process and hands its output to the listener as it is read. The output of
+	 * STDOUT and STDERR is read in chunks on two threads, and a thread only reads on once the listener took the
+	 * previous chunk, so a slow listener slows the process down instead of piling its output up in memory.
+	 * 
+	 * @param process
+	 *            The launched process.
+	 * @param input
+	 *            String input to pipe to STDIN, or null.
+	 * @param listener
+	 *            The listener receiving the output of the process.
+	 * @param timeout
+	 *            The maximum time in milliseconds the process may run before it is destroyed, or 0 for no limit.
+	 * @param monitor
+	 *            A monitor whose cancellation destroys the process, or null.
+	 * @return a handle to wait for or cancel the process
+	 */
+	public static AsyncProcess runAsync(Process process, String input, IProcessOutputListener listener, long timeout,
+			IProgressMonitor monitor)
+	{
+		AsyncProcess asyncProcess = new AsyncProcess(process, input, listener, timeout, monitor);
+		asyncProcess.start();
+		return asyncProcess;
+	}
+
 	/**
 	 * Launches the process and returns a handle to the active Process.
 	 * 
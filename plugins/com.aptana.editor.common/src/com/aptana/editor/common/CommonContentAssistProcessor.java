@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -45,6 +45,7 @@ import org.jruby.Ruby;
 import org.jruby.RubyArray;
 import org.jruby.RubyHash;
 import org.jruby.RubySymbol;
+import org.jruby.embed.ScriptingContainer;
 import org.jruby.runtime.builtin.IRubyObject;
 
 import com.aptana.core.logging.IdeLog;
@@ -65,6 +66,8 @@ import com.aptana.index.core.Index;
 import com.aptana.index.core.QueryResult;
 import com.aptana.index.core.SearchPattern;
 import com.aptana.parsing.ast.IParseNode;
+import com.aptana.scripting.ScriptingContainerPool;
+import com.aptana.scripting.ScriptingEngine;
 import com.aptana.scripting.model.BundleManager;
 import com.aptana.scripting.model.CommandContext;
 import com.aptana.scripting.model.CommandResult;
@@ -89,6 +92,11 @@ public class CommonContentAssistProcessor implements IContentAssistProcessor, IC
 	private static final String TOOL_TIP = "tool_tip"; //$NON-NLS-1$
 	private static final String LOCATION = "location"; //$NON-NLS-1$
 
+	/**
+	 * The time in milliseconds to wait for a warm Ruby runtime before starting a new one
+	 */
+	private static final long RUNTIME_WAIT_TIME = 250;
+
 	private static final String PERFORMANCE_EVENT_PREFIX = CommonEditorPlugin.PLUGIN_ID + "/perf/content_assist"; //$NON-NLS-1$
 	private static final String RUBLE_PERF = PERFORMANCE_EVENT_PREFIX + "/rubles"; //$NON-NLS-1$
 	private static final String SNIPPET_PERF = PERFORMANCE_EVENT_PREFIX + "/snippets"; //$NON-NLS-1$
@@ -323,10 +331,22 @@ public class CommonContentAssistProcessor implements IContentAssistProcessor, IC
 			List<ContentAssistElement> commands = getBundleManager().getContentAssists(new ScopeFilter(scope));
 			if (!CollectionsUtil.isEmpty(commands))
 			{
-				Ruby ruby = Ruby.newInstance();
-				for (ContentAssistElement ce : commands)
+				// Take a warm runtime to read the results, rather than starting one on every request. The results are
+				// the inspected arrays printed by the commands, evaluated in a scope of their own, so they leave the
+				// runtime as it was and it goes back to the pool.
+				ScriptingContainerPool pool = ScriptingEngine.getInstance().getRuntimePool();
+				ScriptingContainer container = pool.acquire(RUNTIME_WAIT_TIME);
+				try
 				{
-					proposals.addAll(addRubleCAProposals(viewer, offset, ruby, ce));
+					Ruby ruby = (container != null) ? container.getProvider().getRuntime() : Ruby.newInstance();
+					for (ContentAssistElement ce : commands)
+					{
+						proposals.addAll(addRubleCAProposals(viewer, offset, ruby, ce));
+					}
+				}
+				finally
+				{
+					pool.release(container);
 				}
 			}
 		}
@@ -334,6 +354,10 @@ public class CommonContentAssistProcessor implements IContentAssistProcessor, IC
 		{
 			IdeLog.logError(CommonEditorPlugin.getDefault(), e);
 		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
 
 		proposals.trimToSize();
 		return proposals;
@@ -0,0 +1,621 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common.contentassist;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.ITypedRegion;
+
+import beaver.Scanner;
+import beaver.Symbol;
+
+import com.aptana.parsing.lexer.IRange;
+import com.aptana.parsing.lexer.ITypePredicate;
+import com.aptana.parsing.lexer.Lexeme;
+
+/**
+ * The tokens of a whole document, kept up to date as the document changes. Content assist and friends get their
+ * lexemes from the store instead of re-scanning the text on each invocation.
+ * <p>
+ * The document is scanned the first time lexemes are asked for. After that, each document change re-scans from the
+ * first token whose scan read the changed text (the scanner may look ahead, up to the end of the document for an
+ * unterminated comment), until the scanner produces a token identical to one that followed the change (same shifted
+ * offsets, same type, same preceding type); the tokens after it are reused, shifted by the length delta.
+ * <p>
+ * Lexemes are handed out as immutable {@link ILexemeProvider} snapshots, with binary searches on offsets. The arrays
+ * of a snapshot are copied on the next change only.
+ *
+ * @param <T>
+ *            the token type
+ */
+public abstract class LexemeStore<T extends ITypePredicate> implements IDocumentListener
+{
+
+	/**
+	 * The tokens at a point in time. The arrays may be longer than the count.
+	 */
+	private static class Tokens
+	{
+		private int[] starts;
+		private int[] ends;
+		/**
+		 * How far the scanner had read when it returned each token, which bounds the text the token depends on (the
+		 * length of the document plus one if the scanner reached its end)
+		 */
+		private int[] reaches;
+		private short[] ids;
+		private String[] texts;
+		private int count;
+
+		private Tokens(int capacity)
+		{
+			starts = new int[capacity];
+			ends = new int[capacity];
+			reaches = new int[capacity];
+			ids = new short[capacity];
+			texts = new String[capacity];
+		}
+
+		private Tokens copy(int capacity)
+		{
+			Tokens result = new Tokens(Math.max(capacity, count));
+			System.arraycopy(starts, 0, result.starts, 0, count);
+			System.arraycopy(ends, 0, result.ends, 0, count);
+			System.arraycopy(reaches, 0, result.reaches, 0, count);
+			System.arraycopy(ids, 0, result.ids, 0, count);
+			System.arraycopy(texts, 0, result.texts, 0, count);
+			result.count = count;
+			return result;
+		}
+
+		private void add(int start, int end, int reach, short id, String text)
+		{
+			if (count == starts.length)
+			{
+				Tokens grown = copy(count * 3 / 2 + 16);
+				starts = grown.starts;
+				ends = grown.ends;
+				reaches = grown.reaches;
+				ids = grown.ids;
+				texts = grown.texts;
+			}
+			starts[count] = start;
+			ends[count] = end;
+			reaches[count] = reach;
+			ids[count] = id;
+			texts[count] = text;
+			count++;
+		}
+
+		/**
+		 * @return the index of the first token whose scan read the character at the given offset
+		 */
+		private int firstReaching(int offset)
+		{
+			int low = 0;
+			int high = count - 1;
+			while (low <= high)
+			{
+				int mid = (low + high) >>> 1;
+				if (reaches[mid] <= offset)
+				{
+					low = mid + 1;
+				}
+				else
+				{
+					high = mid - 1;
+				}
+			}
+			return low;
+		}
+
+		/**
+		 * @return the index of the first token starting at or after the given offset
+		 */
+		private int firstStartingAtOrAfter(int offset)
+		{
+			int low = 0;
+			int high = count - 1;
+			while (low <= high)
+			{
+				int mid = (low + high) >>> 1;
+				if (starts[mid] < offset)
+				{
+					low = mid + 1;
+				}
+				else
+				{
+					high = mid - 1;
+				}
+			}
+			return low;
+		}
+	}
+
+	/**
+	 * Reads the text of a document from an offset, in small chunks so that a scan that is quickly back in sync doesn't
+	 * copy much of the document.
+	 */
+	private static class DocumentReader extends Reader
+	{
+		private static final int CHUNK_SIZE = 256;
+
+		private final IDocument document;
+		private int offset;
+		private boolean eof;
+
+		private DocumentReader(IDocument document, int offset)
+		{
+			this.document = document;
+			this.offset = offset;
+		}
+
+		/**
+		 * @return the offset of the next character to read, or the length of the document plus one once the end of
+		 *         the document has been read
+		 */
+		private int getReach()
+		{
+			return eof ? document.getLength() + 1 : offset;
+		}
+
+		@Override
+		public int read(char[] buffer, int off, int len) throws IOException
+		{
+			int length = Math.min(Math.min(len, CHUNK_SIZE), document.getLength() - offset);
+			if (length <= 0)
+			{
+				eof = true;
+				return -1;
+			}
+			try
+			{
+				document.get(offset, length).getChars(0, length, buffer, off);
+			}
+			catch (BadLocationException e)
+			{
+				throw new IOException(e.getMessage());
+			}
+			offset += length;
+			return length;
+		}
+
+		@Override
+		public void close()
+		{
+		}
+	}
+
+	/**
+	 * A view of the tokens of a range of the document.
+	 */
+	private class Snapshot implements ILexemeProvider<T>
+	{
+		private final Tokens tokens;
+		private final int from;
+		private final int to;
+
+		private Snapshot(Tokens tokens, int from, int to)
+		{
+			this.tokens = tokens;
+			this.from = from;
+			this.to = to;
+		}
+
+		public Lexeme<T> getCeilingLexeme(int offset)
+		{
+			return getLexeme(getLexemeCeilingIndex(offset));
+		}
+
+		public Lexeme<T> getFirstLexeme()
+		{
+			return getLexeme(0);
+		}
+
+		public Lexeme<T> getFloorLexeme(int offset)
+		{
+			return getLexeme(getLexemeFloorIndex(offset));
+		}
+
+		public Lexeme<T> getLastLexeme()
+		{
+			return getLexeme(size() - 1);
+		}
+
+		public Lexeme<T> getLexeme(int index)
+		{
+			if (index < 0 || index >= size())
+			{
+				return null;
+			}
+			int i = from + index;
+			return new Lexeme<T>(getTypeFromId(tokens.ids[i]), tokens.starts[i], tokens.ends[i], tokens.texts[i]);
+		}
+
+		public int getLexemeCeilingIndex(int offset)
+		{
+			int result = getLexemeIndex(offset);
+			if (result < 0)
+			{
+				result = -(result + 1);
+				if (result >= size())
+				{
+					result = -1;
+				}
+			}
+			return result;
+		}
+
+		public int getLexemeFloorIndex(int offset)
+		{
+			int result = getLexemeIndex(offset);
+			if (result < 0)
+			{
+				result = -(result + 1) - 1;
+			}
+			return result;
+		}
+
+		public Lexeme<T> getLexemeFromOffset(int offset)
+		{
+			return getLexeme(getLexemeIndex(offset));
+		}
+
+		public int getLexemeIndex(int offset)
+		{
+			int low = from;
+			int high = to - 1;
+			while (low <= high)
+			{
+				int mid = (low + high) >>> 1;
+				if (offset < tokens.starts[mid])
+				{
+					high = mid - 1;
+				}
+				else if (tokens.ends[mid] < offset)
+				{
+					low = mid + 1;
+				}
+				else
+				{
+					return mid - from;
+				}
+			}
+			return -(low - from + 1);
+		}
+
+		public int size()
+		{
+			return to - from;
+		}
+
+		public Iterator<Lexeme<T>> iterator()
+		{
+			return new Iterator<Lexeme<T>>()
+			{
+				private int index;
+
+				public boolean hasNext()
+				{
+					return index < size();
+				}
+
+				public Lexeme<T> next()
+				{
+					if (!hasNext())
+					{
+						throw new NoSuchElementException();
+					}
+					return getLexeme(index++);
+				}
+
+				public void remove()
+				{
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+	}
+
+	private final IDocument fDocument;
+
+	/**
+	 * The current tokens, null until the document is scanned
+	 */
+	private Tokens fTokens;
+
+	/**
+	 * Whether the current tokens were handed out in a snapshot, and so must be copied before being changed
+	 */
+	private boolean fShared;
+
+	/**
+	 * @param document
+	 *            the document to follow. The store is a listener of the document until {@link #dispose()}
+	 */
+	protected LexemeStore(IDocument document)
+	{
+		fDocument = document;
+		document.addDocumentListener(this);
+	}
+
+	/**
+	 * Stops following the document.
+	 */
+	public synchronized void dispose()
+	{
+		fDocument.removeDocumentListener(this);
+		fTokens = null;
+	}
+
+	/**
+	 * @return the lexemes of the whole document
+	 */
+	public synchronized ILexemeProvider<T> getLexemeProvider()
+	{
+		Tokens tokens = getTokens();
+		return new Snapshot(tokens, 0, tokens.count);
+	}
+
+	/**
+	 * @param range
+	 * @return the lexemes starting in the given range, as {@link AbstractLexemeProvider} would scan them
+	 */
+	public synchronized ILexemeProvider<T> getLexemeProvider(IRange range)
+	{
+		return createSnapshot(range.getStartingOffset(), range.getStartingOffset() + range.getLength());
+	}
+
+	/**
+	 * @param offset
+	 * @param includeOffset
+	 * @return the lexemes of the partition containing the offset, extended to include the second offset, as
+	 *         {@link AbstractLexemeProvider} would scan them
+	 */
+	public synchronized ILexemeProvider<T> getLexemeProvider(int offset, int includeOffset)
+	{
+		int start = offset;
+		int end = offset;
+		try
+		{
+			ITypedRegion partition = fDocument.getPartition(offset);
+
+			start = partition.getOffset();
+			end = start + partition.getLength();
+
+			start = Math.max(0, Math.min(start, includeOffset));
+			end = Math.min(Math.max(end, includeOffset), fDocument.getLength());
+		}
+		catch (BadLocationException e)
+		{
+		}
+		return createSnapshot(start, end);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.jface.text.IDocumentListener#documentAboutToBeChanged(org.eclipse.jface.text.DocumentEvent)
+	 */
+	public void documentAboutToBeChanged(DocumentEvent event)
+	{
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.jface.text.IDocumentListener#documentChanged(org.eclipse.jface.text.DocumentEvent)
+	 */
+	public synchronized void documentChanged(DocumentEvent event)
+	{
+		if (fTokens == null)
+		{
+			// not scanned yet
+			return;
+		}
+		String text = event.getText();
+		update(event.getOffset(), event.getLength(), text == null ? 0 : text.length());
+	}
+
+	/**
+	 * @return a new scanner of the language
+	 */
+	protected abstract Scanner createScanner();
+
+	/**
+	 * Sets the text to scan, and resets the state of the scanner.
+	 *
+	 * @param scanner
+	 * @param source
+	 */
+	protected abstract void setSource(Scanner scanner, Reader source);
+
+	/**
+	 * @param id
+	 * @return the token type of the given token id
+	 */
+	protected abstract T getTypeFromId(short id);
+
+	/**
+	 * Tells whether scanning can restart at a token of the given type, with the scanner in its initial state. For
+	 * instance, a '/' at the start of a JavaScript source is a regular expression, while it may be a division after
+	 * the previous token.
+	 *
+	 * @param id
+	 * @return true by default
+	 */
+	protected boolean isRestartable(short id)
+	{
+		return true;
+	}
+
+	private ILexemeProvider<T> createSnapshot(int start, int end)
+	{
+		Tokens tokens = getTokens();
+		int from = tokens.firstStartingAtOrAfter(start);
+		int to = Math.max(from, tokens.firstStartingAtOrAfter(end));
+		return new Snapshot(tokens, from, to);
+	}
+
+	private Tokens getTokens()
+	{
+		if (fTokens == null)
+		{
+			fTokens = new Tokens(Math.max(16, fDocument.getLength() / 8));
+			scan(0, fTokens, null, 0, 0, -1);
+		}
+		fShared = true;
+		return fTokens;
+	}
+
+	/**
+	 * Rescans the tokens after text of the given length at the given offset was replaced with text of the given
+	 * length.
+	 */
+	private void update(int offset, int removed, int inserted)
+	{
+		Tokens old = fTokens;
+		int delta = inserted - removed;
+
+		// restart at the first token whose scan read the changed text, or at the token before if the change is
+		// between tokens
+		int restart = old.firstReaching(offset);
+		if (restart == old.count || old.starts[restart] > offset)
+		{
+			restart--;
+		}
+		while (restart > 0 && !isRestartable(old.ids[restart]))
+		{
+			restart--;
+		}
+		int start;
+		if (restart < 0 || (restart == 0 && !isRestartable(old.ids[0])))
+		{
+			restart = 0;
+			start = 0;
+		}
+		else
+		{
+			start = old.starts[restart];
+		}
+
+		// scan until back in sync with the old tokens after the change
+		Tokens scanned = new Tokens(16);
+		int resume = scan(start, scanned, old, old.firstStartingAtOrAfter(offset + removed), delta,
+				restart > 0 ? old.ids[restart - 1] : -1);
+
+		// the old tokens before the restart, the scanned tokens, then the old tokens after the resume
+		int tail = old.count - resume;
+		int count = restart + scanned.count + tail;
+		Tokens tokens;
+		if (!fShared && count <= old.starts.length)
+		{
+			// nobody else sees the old tokens, update them in place
+			tokens = old;
+			move(old, resume, tokens, restart + scanned.count, tail);
+		}
+		else
+		{
+			tokens = new Tokens(count + 16);
+			move(old, 0, tokens, 0, restart);
+			move(old, resume, tokens, restart + scanned.count, tail);
+		}
+		move(scanned, 0, tokens, restart, scanned.count);
+		for (int i = count - tail; i < count; i++)
+		{
+			tokens.starts[i] += delta;
+			tokens.ends[i] += delta;
+			tokens.reaches[i] += delta;
+		}
+		// the reaches must not decrease, for the binary search: a token depends on the text the tokens before it
+		// depend on
+		for (int i = Math.max(restart, 1); i < count; i++)
+		{
+			if (tokens.reaches[i] < tokens.reaches[i - 1])
+			{
+				tokens.reaches[i] = tokens.reaches[i - 1];
+			}
+		}
+		tokens.count = count;
+
+		fTokens = tokens;
+		fShared = false;
+	}
+
+	private static void move(Tokens source, int from, Tokens destination, int to, int length)
+	{
+		System.arraycopy(source.starts, from, destination.starts, to, length);
+		System.arraycopy(source.ends, from, destination.ends, to, length);
+		System.arraycopy(source.reaches, from, destination.reaches, to, length);
+		System.arraycopy(source.ids, from, destination.ids, to, length);
+		System.arraycopy(source.texts, from, destination.texts, to, length);
+	}
+
+	/**
+	 * Scans from the given offset until the end of the document, or until the scan is back in sync with the old
+	 * tokens.
+	 *
+	 * @param offset
+	 *            where to start scanning
+	 * @param tokens
+	 *            where to add the scanned tokens
+	 * @param old
+	 *            the old tokens, null if there are none
+	 * @param resume
+	 *            the index of the first old token after the change
+	 * @param delta
+	 *            the offset shift of the old tokens after the change
+	 * @param previousId
+	 *            the id of the token before the offset, -1 if none
+	 * @return the index of the first old token to reuse, or the count of old tokens if none
+	 */
+	private int scan(int offset, Tokens tokens, Tokens old, int resume, int delta, int previousId)
+	{
+		int oldCount = old == null ? 0 : old.count;
+		Scanner scanner = createScanner();
+		DocumentReader reader = new DocumentReader(fDocument, offset);
+		setSource(scanner, reader);
+		try
+		{
+			Symbol token = scanner.nextToken();
+			while (token.getId() != 0)
+			{
+				int start = token.getStart() + offset;
+				int end = token.getEnd() + offset;
+				short id = token.getId();
+
+				while (resume < oldCount && old.starts[resume] + delta < start)
+				{
+					resume++;
+				}
+				if (resume < oldCount && old.starts[resume] + delta == start && old.ends[resume] + delta == end
+						&& old.ids[resume] == id && (resume > 0 ? old.ids[resume - 1] : -1) == previousId)
+				{
+					// back in sync, the rest of the old tokens are still valid
+					return resume;
+				}
+
+				tokens.add(start, end, reader.getReach(), id, token.value == null ? null : token.value.toString());
+				previousId = id;
+				token = scanner.nextToken();
+			}
+		}
+		catch (IOException e)
+		{
+		}
+		catch (Scanner.Exception e)
+		{
+		}
+		return oldCount;
+	}
+}
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -198,6 +198,14 @@ public class CommonReconciler extends Reconciler
 	@Override
 	public void forceReconciling()
 	{
+		// a forced reconcile runs in full even if the document is unchanged
+		for (IReconcilingStrategy s : reconcilingStrategies)
+		{
+			if (s instanceof IChangeAwareReconcilingStrategy)
+			{
+				((IChangeAwareReconcilingStrategy) s).invalidate();
+			}
+		}
 		super.forceReconciling();
 	}
 }
@@ -1,24 +1,37 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
  */
 package com.aptana.editor.common.text.reconciler;
 
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IncrementalProjectBuilder;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.Region;
 import org.eclipse.jface.text.reconciler.DirtyRegion;
 import org.eclipse.jface.text.reconciler.IReconcilingStrategy;
 import org.eclipse.jface.text.reconciler.IReconcilingStrategyExtension;
@@ -35,6 +48,7 @@ import com.aptana.core.IFilter;
 import com.aptana.core.build.IBuildParticipant;
 import com.aptana.core.build.IBuildParticipant.BuildType;
 import com.aptana.core.build.IBuildParticipantManager;
+import com.aptana.core.build.IProblem;
 import com.aptana.core.build.ReconcileContext;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.CollectionsUtil;
@@ -42,13 +56,22 @@ import com.aptana.core.util.ResourceUtil;
 import com.aptana.editor.common.AbstractThemeableEditor;
 import com.aptana.editor.common.CommonEditorPlugin;
 import com.aptana.editor.common.ICommonAnnotationModel;
+import com.aptana.editor.common.IDebugScopes;
 import com.aptana.editor.common.util.EditorUtil;
 import com.aptana.parsing.ast.IParseRootNode;
 
 public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconcilingStrategyExtension,
-		IBatchReconcilingStrategy, IDisposableReconcilingStrategy
+		IBatchReconcilingStrategy, IDisposableReconcilingStrategy, IChangeAwareReconcilingStrategy
 {
 
+	/**
+	 * The system property setting the time in milliseconds a build participant may take to reconcile a document before
+	 * it is moved to the background. Zero or less runs all participants in the reconcile itself.
+	 */
+	public static final String PARTICIPANT_BUDGET_PROPERTY = "studio.reconcile.participantBudget"; //$NON-NLS-1$
+
+	private static final int DEFAULT_PARTICIPANT_BUDGET = 500;
+
 	/**
 	 * The editor we're operating on.
 	 */
@@ -75,6 +98,49 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 	 */
 	private Map<ProjectionAnnotation, Position> fPositions = new HashMap<ProjectionAnnotation, Position>();
 
+	/**
+	 * The modification stamp of the document when it was last reconciled in full, and whether folding was enabled then.
+	 * Only accessed by the reconciler thread.
+	 */
+	private long fReconciledStamp = IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	private boolean fReconciledFolding;
+	private volatile boolean fReconciled;
+
+	/**
+	 * The region of the document changed since it was last reconciled, or null. Any access should obtain
+	 * fDirtyRegionLock.
+	 */
+	private IRegion fDirtyRegion;
+	private final Object fDirtyRegionLock = new Object();
+
+	private IDocumentListener documentListener = new IDocumentListener()
+	{
+		public void documentAboutToBeChanged(DocumentEvent event)
+		{
+		}
+
+		public void documentChanged(DocumentEvent event)
+		{
+			addDirtyRegion(event.getOffset(), event.getText() == null ? 0 : event.getText().length());
+		}
+	};
+
+	/**
+	 * The ids of the participants which overran their budget, and are run in the background.
+	 */
+	private final Set<String> fDeferredParticipants = Collections.synchronizedSet(new HashSet<String>());
+
+	/**
+	 * The problems last reported by the participants run in the reconcile, and by those run in the background, with the
+	 * modification stamp of the document the latter were computed on. Any access should obtain fProblemsLock.
+	 */
+	private Map<String, Collection<IProblem>> fReconcileProblems = Collections.emptyMap();
+	private Map<String, Collection<IProblem>> fDeferredProblems = Collections.emptyMap();
+	private long fDeferredProblemsStamp = IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	private final Object fProblemsLock = new Object();
+
+	private DeferredParticipantsJob fDeferredJob;
+
 	private IPropertyListener propertyListener = new IPropertyListener()
 	{
 		public void propertyChanged(Object source, int propId)
@@ -99,6 +165,11 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 			fEditor.removePropertyListener(propertyListener);
 			fEditor = null;
 		}
+		if (fDocument != null)
+		{
+			fDocument.removeDocumentListener(documentListener);
+		}
+		cancelDeferredParticipants();
 		synchronized (fPositionsLock)
 		{
 			fPositions.clear();
@@ -128,7 +199,88 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 	public void setDocument(IDocument document)
 	{
 		folder = createFoldingComputer(document);
+		if (fDocument != null)
+		{
+			fDocument.removeDocumentListener(documentListener);
+		}
 		fDocument = document;
+		if (document != null)
+		{
+			document.addDocumentListener(documentListener);
+		}
+		invalidate();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.common.text.reconciler.IChangeAwareReconcilingStrategy#invalidate()
+	 */
+	public void invalidate()
+	{
+		fReconciled = false;
+	}
+
+	/**
+	 * Returns the region of the document changed since it was last reconciled.
+	 * 
+	 * @return the region, or null if the document has not been edited since
+	 */
+	protected IRegion getDirtyRegion()
+	{
+		synchronized (fDirtyRegionLock)
+		{
+			return fDirtyRegion;
+		}
+	}
+
+	private void addDirtyRegion(int offset, int length)
+	{
+		synchronized (fDirtyRegionLock)
+		{
+			if (fDirtyRegion == null)
+			{
+				fDirtyRegion = new Region(offset, length);
+			}
+			else
+			{
+				int start = Math.min(fDirtyRegion.getOffset(), offset);
+				int end = Math.max(fDirtyRegion.getOffset() + fDirtyRegion.getLength(), offset + length);
+				fDirtyRegion = new Region(start, end - start);
+			}
+		}
+	}
+
+	private IRegion takeDirtyRegion()
+	{
+		synchronized (fDirtyRegionLock)
+		{
+			IRegion region = fDirtyRegion;
+			fDirtyRegion = null;
+			return region;
+		}
+	}
+
+	/**
+	 * @return the modification stamp of the document, or {@link IDocumentExtension4#UNKNOWN_MODIFICATION_STAMP} if it
+	 *         does not keep one
+	 */
+	protected long getModificationStamp()
+	{
+		IDocument document = fDocument;
+		if (document instanceof IDocumentExtension4)
+		{
+			return ((IDocumentExtension4) document).getModificationStamp();
+		}
+		return IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	}
+
+	/**
+	 * @return the time in milliseconds a participant may take to reconcile the document before it is moved to the
+	 *         background, or zero or less to run all participants in the reconcile
+	 */
+	protected long getParticipantBudget()
+	{
+		return Integer.getInteger(PARTICIPANT_BUDGET_PROPERTY, DEFAULT_PARTICIPANT_BUDGET);
 	}
 
 	protected IFoldingComputer createFoldingComputer(IDocument document)
@@ -235,6 +387,12 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 	{
 		SubMonitor monitor = SubMonitor.convert(fMonitor, 100);
 
+		// read before the contents, so that any later change is seen by the next reconcile
+		IRegion dirtyRegion = takeDirtyRegion();
+		long stamp = getModificationStamp();
+		boolean changed = initialReconcile || force || !fReconciled || dirtyRegion != null
+				|| stamp == IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP || stamp != fReconciledStamp;
+
 		IParseRootNode ast = null;
 		AbstractThemeableEditor editor = fEditor;
 		if (editor != null)
@@ -250,8 +408,15 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 		}
 		monitor.worked(5);
 
-		// FIXME only do folding and validation when the source was changed
-		if (editor != null && editor.isFoldingEnabled())
+		// only do folding and validation when the source was changed, or folding was turned on or off
+		boolean foldingEnabled = editor != null && editor.isFoldingEnabled();
+		if (!changed && foldingEnabled == fReconciledFolding)
+		{
+			monitor.done();
+			return;
+		}
+
+		if (foldingEnabled)
 		{
 			calculatePositions(initialReconcile, monitor.newChild(20), ast);
 		}
@@ -263,14 +428,21 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 			}
 			updatePositions();
 		}
+		fReconciledFolding = foldingEnabled;
 		monitor.setWorkRemaining(75);
 
-		if (monitor.isCanceled())
+		if (!changed || monitor.isCanceled())
 		{
 			return;
 		}
 
 		runParticipants(monitor.newChild(75));
+
+		if (!monitor.isCanceled())
+		{
+			fReconciledStamp = stamp;
+			fReconciled = true;
+		}
 	}
 
 	public Map<ProjectionAnnotation, Position> getPositions()
@@ -317,12 +489,76 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 			return;
 		}
 
+		// Participants which overran their budget before are left to the background
+		long budget = getParticipantBudget();
+		List<IBuildParticipant> deferred = new ArrayList<IBuildParticipant>();
+		if (budget > 0 && !fDeferredParticipants.isEmpty())
+		{
+			List<IBuildParticipant> inline = new ArrayList<IBuildParticipant>(participants.size());
+			for (IBuildParticipant participant : participants)
+			{
+				if (fDeferredParticipants.contains(participant.getId()))
+				{
+					deferred.add(participant);
+				}
+				else
+				{
+					inline.add(participant);
+				}
+			}
+			participants = inline;
+		}
+
 		SubMonitor sub = SubMonitor.convert(monitor, (participants.size() * 12) + 10);
 		ReconcileContext context = createContext();
 		if (context == null)
 		{
 			return;
 		}
+		buildParticipants(participants, context, budget, sub.newChild(participants.size() * 12));
+		if (sub.isCanceled())
+		{
+			return;
+		}
+
+		Map<String, Collection<IProblem>> problems = context.getProblems();
+		Map<String, Collection<IProblem>> reported;
+		long stamp = getModificationStamp();
+		synchronized (fProblemsLock)
+		{
+			fReconcileProblems = new HashMap<String, Collection<IProblem>>(problems);
+			// the offsets of problems computed on an older document are stale, the deferred job reports them again
+			if (deferred.isEmpty() || stamp == IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP
+					|| stamp != fDeferredProblemsStamp)
+			{
+				fDeferredProblems = Collections.emptyMap();
+				fDeferredProblemsStamp = IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+			}
+			reported = mergeProblems();
+		}
+		reportProblems(reported, sub.newChild(10));
+		sub.done();
+
+		cancelDeferredParticipants();
+		if (!deferred.isEmpty())
+		{
+			scheduleDeferredParticipants(deferred, stamp);
+		}
+	}
+
+	/**
+	 * Runs participants over a context, and moves those which overrun the budget to the background for the next
+	 * reconciles, or back from it for those which no longer do.
+	 * 
+	 * @param participants
+	 * @param context
+	 * @param budget
+	 * @param monitor
+	 */
+	private void buildParticipants(List<IBuildParticipant> participants, ReconcileContext context, long budget,
+			IProgressMonitor monitor)
+	{
+		SubMonitor sub = SubMonitor.convert(monitor, participants.size() * 12);
 		for (IBuildParticipant participant : participants)
 		{
 			participant.buildStarting(context.getProject(), IncrementalProjectBuilder.INCREMENTAL_BUILD,
@@ -330,14 +566,76 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 		}
 		for (IBuildParticipant participant : participants)
 		{
+			if (sub.isCanceled())
+			{
+				return;
+			}
+			long start = System.nanoTime();
 			participant.buildFile(context, sub.newChild(10));
+			long elapsed = (System.nanoTime() - start) / 1000000;
+			if (budget > 0 && elapsed > budget)
+			{
+				if (fDeferredParticipants.add(participant.getId()))
+				{
+					IdeLog.logInfo(CommonEditorPlugin.getDefault(), MessageFormat.format(
+							"Reconciling with {0} took {1}ms, over the budget of {2}ms; running it in the background", //$NON-NLS-1$
+							participant.getName(), elapsed, budget), IDebugScopes.DEBUG);
+				}
+			}
+			else
+			{
+				fDeferredParticipants.remove(participant.getId());
+			}
 		}
 		for (IBuildParticipant participant : participants)
 		{
 			participant.buildEnding(sub.newChild(1));
 		}
-		reportProblems(context, sub.newChild(10));
-		sub.done();
+	}
+
+	/**
+	 * Adds the problems of the participants run in the background to those of the participants run in the reconcile,
+	 * for the marker types the latter did not report. The caller must hold fProblemsLock.
+	 * 
+	 * @return
+	 */
+	private Map<String, Collection<IProblem>> mergeProblems()
+	{
+		Map<String, Collection<IProblem>> result = new HashMap<String, Collection<IProblem>>(fDeferredProblems);
+		result.putAll(fReconcileProblems);
+		return result;
+	}
+
+	/**
+	 * Runs the participants that overran their budget in the background. Their problems are dropped if the document
+	 * changes in the meantime, as the next reconcile runs them again.
+	 * 
+	 * @param participants
+	 * @param stamp
+	 */
+	private synchronized void scheduleDeferredParticipants(List<IBuildParticipant> participants, long stamp)
+	{
+		fDeferredJob = new DeferredParticipantsJob(participants, stamp);
+		fDeferredJob.schedule();
+	}
+
+	private synchronized void cancelDeferredParticipants()
+	{
+		if (fDeferredJob != null)
+		{
+			fDeferredJob.cancel();
+			fDeferredJob = null;
+		}
+	}
+
+	/**
+	 * Returns the job running the participants deferred by the last reconcile.
+	 * 
+	 * @return the job, or null if there was none
+	 */
+	protected synchronized Job getDeferredParticipantsJob()
+	{
+		return fDeferredJob;
 	}
 
 	protected IBuildParticipantManager getBuildParticipantManager()
@@ -381,10 +679,10 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 	 * Reports problems found in reconcile to the annotation model so we can draw them on the editor without creating
 	 * markers on the underlying resource.
 	 * 
-	 * @param context
+	 * @param problems
 	 * @param monitor
 	 */
-	private void reportProblems(ReconcileContext context, IProgressMonitor monitor)
+	protected void reportProblems(Map<String, Collection<IProblem>> problems, IProgressMonitor monitor)
 	{
 		AbstractThemeableEditor editor = fEditor;
 		if (editor == null)
@@ -412,7 +710,7 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 
 		ICommonAnnotationModel caModel = (ICommonAnnotationModel) model;
 		// Now report them all to the annotation model!
-		caModel.reportProblems(context.getProblems(), monitor);
+		caModel.reportProblems(problems, monitor);
 	}
 
 	protected IFile getFile()
@@ -436,4 +734,53 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 	{
 		reconcile(false);
 	}
+
+	/**
+	 * Runs the participants which overran their budget on their own context of the document.
+	 */
+	private class DeferredParticipantsJob extends Job
+	{
+
+		private final List<IBuildParticipant> participants;
+		private final long stamp;
+
+		DeferredParticipantsJob(List<IBuildParticipant> participants, long stamp)
+		{
+			super("Reconcile in background"); //$NON-NLS-1$
+			this.participants = participants;
+			this.stamp = stamp;
+			setSystem(true);
+			setPriority(DECORATE);
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor)
+		{
+			if (monitor.isCanceled() || stamp != getModificationStamp())
+			{
+				return Status.CANCEL_STATUS;
+			}
+			ReconcileContext context = createContext();
+			if (context == null)
+			{
+				return Status.CANCEL_STATUS;
+			}
+			SubMonitor sub = SubMonitor.convert(monitor, (participants.size() * 12) + 10);
+			buildParticipants(participants, context, getParticipantBudget(), sub.newChild(participants.size() * 12));
+			if (sub.isCanceled() || stamp != getModificationStamp())
+			{
+				return Status.CANCEL_STATUS;
+			}
+
+			Map<String, Collection<IProblem>> reported;
+			synchronized (fProblemsLock)
+			{
+				fDeferredProblems = new HashMap<String, Collection<IProblem>>(context.getProblems());
+				fDeferredProblemsStamp = stamp;
+				reported = mergeProblems();
+			}
+			reportProblems(reported, sub.newChild(10));
+			return Status.OK_STATUS;
+		}
+	}
 }
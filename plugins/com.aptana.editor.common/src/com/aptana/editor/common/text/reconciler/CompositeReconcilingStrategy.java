@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -19,7 +19,7 @@ import org.eclipse.jface.text.reconciler.IReconcilingStrategyExtension;
  * passed on to the contained strategies.
  */
 public class CompositeReconcilingStrategy implements IReconcilingStrategy, IReconcilingStrategyExtension,
-		IBatchReconcilingStrategy, IDisposableReconcilingStrategy
+		IBatchReconcilingStrategy, IDisposableReconcilingStrategy, IChangeAwareReconcilingStrategy
 {
 
 	/** The list of internal reconciling strategies. */
@@ -115,6 +115,21 @@ public class CompositeReconcilingStrategy implements IReconcilingStrategy, IReco
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.common.text.reconciler.IChangeAwareReconcilingStrategy#invalidate()
+	 */
+	public void invalidate()
+	{
+		for (IReconcilingStrategy strategy : fStrategies)
+		{
+			if (strategy instanceof IChangeAwareReconcilingStrategy)
+			{
+				((IChangeAwareReconcilingStrategy) strategy).invalidate();
+			}
+		}
+	}
+
 	public void fullReconcile()
 	{
 		for (IReconcilingStrategy strategy : fStrategies)
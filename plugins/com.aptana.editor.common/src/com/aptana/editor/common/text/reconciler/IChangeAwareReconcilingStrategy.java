@@ -0,0 +1,21 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common.text.reconciler;
+
+/**
+ * A reconciling strategy that skips its work when the document has not changed since its last reconcile.
+ */
+public interface IChangeAwareReconcilingStrategy
+{
+
+	/**
+	 * Forgets the state of the document last reconciled, so that the next reconcile runs in full even if the document
+	 * has not changed, e.g. because the settings it depends on have.
+	 */
+	public void invalidate();
+}
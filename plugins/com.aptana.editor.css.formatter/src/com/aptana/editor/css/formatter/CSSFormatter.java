@@ -17,7 +17,6 @@ import org.eclipse.jface.text.ITypedRegion;
 import org.eclipse.jface.text.formatter.IFormattingContext;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.text.edits.MultiTextEdit;
-import org.eclipse.text.edits.ReplaceEdit;
 import org.eclipse.text.edits.TextEdit;
 
 import com.aptana.core.logging.IdeLog;
@@ -136,7 +135,7 @@ public class CSSFormatter extends AbstractScriptFormatter implements IScriptForm
 					{
 						if (equalsIgnoreWhiteSpaceAndAsterisk(input, output))
 						{
-							return new ReplaceEdit(offset, length, output);
+							return createMinimalEdit(input, offset, output);
 						}
 						else
 						{
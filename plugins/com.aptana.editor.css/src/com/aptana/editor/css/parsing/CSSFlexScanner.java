@@ -17,6 +17,7 @@ import beaver.Scanner;
 import beaver.Symbol;
 
 import com.aptana.editor.css.parsing.lexer.CSSTokenType;
+import com.aptana.parsing.lexer.TokenTextTable;
 
 
 /**
@@ -497,6 +498,9 @@ class CSSFlexScanner extends Scanner {
 	// a flag indicating we're inside of a @media block
 	private boolean _inMedia;
 
+	// shared text of names, numbers and strings, or null when every token gets its own copy
+	private TokenTextTable _tokenText = new TokenTextTable();
+
 	public CSSFlexScanner()
 	{
 		this((Reader) null);
@@ -522,6 +526,11 @@ class CSSFlexScanner extends Scanner {
 		return new Symbol(id, yychar, yychar + yylength() - 1, value);
 	}
 
+	private String internedText()
+	{
+		return (_tokenText != null) ? _tokenText.intern(zzBuffer, zzStartRead, zzMarkedPos - zzStartRead) : yytext();
+	}
+
 	public Symbol nextToken() throws java.io.IOException, Scanner.Exception
 	{
 		try
@@ -546,6 +555,15 @@ class CSSFlexScanner extends Scanner {
 		_collectComments = flag;
 	}
 
+	/**
+	 * Determines if tokens with the same text share a single string until the source changes, which is the default.
+	 * Punctuation always shares constant strings.
+	 */
+	public void setInternText(boolean flag)
+	{
+		_tokenText = (flag) ? new TokenTextTable() : null;
+	}
+
 	public void setSource(String source)
 	{
 		yyreset(new StringReader(source));
@@ -561,6 +579,12 @@ class CSSFlexScanner extends Scanner {
 
 		// reset media flag
 		_inMedia = false;
+
+		// forget the texts of the previous source
+		if (_tokenText != null)
+		{
+			_tokenText.clear();
+		}
 	}
 
 
@@ -868,27 +892,27 @@ class CSSFlexScanner extends Scanner {
           }
         case 46: break;
         case 4: 
-          { return newToken(CSSTokenType.IDENTIFIER, yytext());
+          { return newToken(CSSTokenType.IDENTIFIER, internedText());
           }
         case 47: break;
         case 11: 
-          { return newToken(CSSTokenType.PLUS, yytext());
+          { return newToken(CSSTokenType.PLUS, "+");
           }
         case 48: break;
         case 29: 
-          { return newToken(CSSTokenType.BEGINS_WITH, yytext());
+          { return newToken(CSSTokenType.BEGINS_WITH, "^=");
           }
         case 49: break;
         case 9: 
-          { return newToken(CSSTokenType.MINUS, yytext());
+          { return newToken(CSSTokenType.MINUS, "-");
           }
         case 50: break;
         case 28: 
-          { return newToken(CSSTokenType.DASHMATCH, yytext());
+          { return newToken(CSSTokenType.DASHMATCH, "|=");
           }
         case 51: break;
         case 5: 
-          { return newToken(CSSTokenType.DOUBLE_QUOTED_STRING, yytext());
+          { return newToken(CSSTokenType.DOUBLE_QUOTED_STRING, internedText());
           }
         case 52: break;
         case 25: 
@@ -901,11 +925,9 @@ class CSSFlexScanner extends Scanner {
 									else
 									{
 										boolean numbers = true;
-										String text = yytext();
-
-										for (int i = 1; i < text.length(); i++)
+										for (int i = 1; i < yylength(); i++)
 										{
-											char c = text.charAt(i);
+											char c = yycharat(i);
 
 											if (!('0' <= c && c <= '9' || 'a' <= c && c <= 'f' || 'A' <= c && c <= 'F'))
 											{
@@ -917,39 +939,39 @@ class CSSFlexScanner extends Scanner {
 										type = (numbers) ? CSSTokenType.RGB : CSSTokenType.ID;
 									}
 
-									return newToken(type, yytext());
+									return newToken(type, internedText());
           }
         case 53: break;
         case 2: 
-          { return newToken(CSSTokenType.NUMBER, yytext());
+          { return newToken(CSSTokenType.NUMBER, internedText());
           }
         case 54: break;
         case 41: 
-          { return newToken(CSSTokenType.CHARSET, yytext());
+          { return newToken(CSSTokenType.CHARSET, internedText());
           }
         case 55: break;
         case 13: 
-          { return newToken(CSSTokenType.EQUAL, yytext());
+          { return newToken(CSSTokenType.EQUAL, "=");
           }
         case 56: break;
         case 42: 
-          { return newToken(CSSTokenType.NAMESPACE, yytext());
+          { return newToken(CSSTokenType.NAMESPACE, internedText());
           }
         case 57: break;
         case 37: 
-          { return newToken(CSSTokenType.PAGE, yytext());
+          { return newToken(CSSTokenType.PAGE, internedText());
           }
         case 58: break;
         case 39: 
-          { _inMedia = true; return newToken(CSSTokenType.MEDIA_KEYWORD, yytext());
+          { _inMedia = true; return newToken(CSSTokenType.MEDIA_KEYWORD, internedText());
           }
         case 59: break;
         case 27: 
-          { return newToken(CSSTokenType.INCLUDES, yytext());
+          { return newToken(CSSTokenType.INCLUDES, "~=");
           }
         case 60: break;
         case 45: 
-          { return newToken(CSSTokenType.MOZ_DOCUMENT, yytext());
+          { return newToken(CSSTokenType.MOZ_DOCUMENT, internedText());
           }
         case 61: break;
         case 16: 
@@ -961,49 +983,49 @@ class CSSFlexScanner extends Scanner {
 										_inMedia = false;
 									}
 
-									return newToken(CSSTokenType.RCURLY, yytext());
+									return newToken(CSSTokenType.RCURLY, "}");
           }
         case 62: break;
         case 30: 
-          { return newToken(CSSTokenType.ENDS_WITH, yytext());
+          { return newToken(CSSTokenType.ENDS_WITH, "$=");
           }
         case 63: break;
         case 32: 
-          { return newToken(CSSTokenType.EMS, yytext());
+          { return newToken(CSSTokenType.EMS, internedText());
           }
         case 64: break;
         case 33: 
-          { return newToken(CSSTokenType.EXS, yytext());
+          { return newToken(CSSTokenType.EXS, internedText());
           }
         case 65: break;
         case 23: 
-          { return newToken(CSSTokenType.TIME, yytext());
+          { return newToken(CSSTokenType.TIME, internedText());
           }
         case 66: break;
         case 6: 
-          { return newToken(CSSTokenType.SINGLE_QUOTED_STRING, yytext());
+          { return newToken(CSSTokenType.SINGLE_QUOTED_STRING, internedText());
           }
         case 67: break;
         case 40: 
-          { return newToken(CSSTokenType.IMPORT, yytext());
+          { return newToken(CSSTokenType.IMPORT, internedText());
           }
         case 68: break;
         case 15: 
           { _nestingLevel++;
 
-									return newToken(CSSTokenType.LCURLY, yytext());
+									return newToken(CSSTokenType.LCURLY, "{");
           }
         case 69: break;
         case 12: 
-          { return newToken(CSSTokenType.PERCENTAGE, yytext());
+          { return newToken(CSSTokenType.PERCENTAGE, internedText());
           }
         case 70: break;
         case 18: 
-          { return newToken(CSSTokenType.RPAREN, yytext());
+          { return newToken(CSSTokenType.RPAREN, ")");
           }
         case 71: break;
         case 14: 
-          { return newToken(CSSTokenType.SEMICOLON, yytext());
+          { return newToken(CSSTokenType.SEMICOLON, ";");
           }
         case 72: break;
         case 24: 
@@ -1016,11 +1038,9 @@ class CSSFlexScanner extends Scanner {
 									else
 									{
 										boolean numbers = true;
-										String text = yytext();
-
-										for (int i = 1; i < text.length(); i++)
+										for (int i = 1; i < yylength(); i++)
 										{
-											char c = text.charAt(i);
+											char c = yycharat(i);
 
 											if (c < '0' || '9' < c)
 											{
@@ -1032,19 +1052,19 @@ class CSSFlexScanner extends Scanner {
 										type = (numbers) ? CSSTokenType.NUMBER : CSSTokenType.CLASS;
 									}
 
-									return newToken(type, yytext());
+									return newToken(type, internedText());
           }
         case 73: break;
         case 8: 
-          { return newToken(CSSTokenType.STAR, yytext());
+          { return newToken(CSSTokenType.STAR, "*");
           }
         case 74: break;
         case 34: 
-          { return newToken(CSSTokenType.FREQUENCY, yytext());
+          { return newToken(CSSTokenType.FREQUENCY, internedText());
           }
         case 75: break;
         case 7: 
-          { return newToken(CSSTokenType.SLASH, yytext());
+          { return newToken(CSSTokenType.SLASH, "/");
           }
         case 76: break;
         case 36: 
@@ -1052,55 +1072,55 @@ class CSSFlexScanner extends Scanner {
           }
         case 77: break;
         case 19: 
-          { return newToken(CSSTokenType.LBRACKET, yytext());
+          { return newToken(CSSTokenType.LBRACKET, "[");
           }
         case 78: break;
         case 31: 
-          { return newToken(CSSTokenType.LENGTH, yytext());
+          { return newToken(CSSTokenType.LENGTH, internedText());
           }
         case 79: break;
         case 35: 
-          { return newToken(CSSTokenType.ANGLE, yytext());
+          { return newToken(CSSTokenType.ANGLE, internedText());
           }
         case 80: break;
         case 26: 
-          { return newToken(CSSTokenType.AT_RULE, yytext());
+          { return newToken(CSSTokenType.AT_RULE, internedText());
           }
         case 81: break;
         case 1: 
-          { return newToken(CSSTokenType.ERROR, yytext());
+          { return newToken(CSSTokenType.ERROR, internedText());
           }
         case 82: break;
         case 43: 
-          { return newToken(CSSTokenType.FONTFACE, yytext());
+          { return newToken(CSSTokenType.FONTFACE, internedText());
           }
         case 83: break;
         case 17: 
-          { return newToken(CSSTokenType.LPAREN, yytext());
+          { return newToken(CSSTokenType.LPAREN, "(");
           }
         case 84: break;
         case 44: 
-          { return newToken(CSSTokenType.IMPORTANT, yytext());
+          { return newToken(CSSTokenType.IMPORTANT, internedText());
           }
         case 85: break;
         case 10: 
-          { return newToken(CSSTokenType.COLON, yytext());
+          { return newToken(CSSTokenType.COLON, ":");
           }
         case 86: break;
         case 38: 
-          { return newToken(CSSTokenType.URL, yytext());
+          { return newToken(CSSTokenType.URL, internedText());
           }
         case 87: break;
         case 21: 
-          { return newToken(CSSTokenType.COMMA, yytext());
+          { return newToken(CSSTokenType.COMMA, ",");
           }
         case 88: break;
         case 22: 
-          { return newToken(CSSTokenType.GREATER, yytext());
+          { return newToken(CSSTokenType.GREATER, ">");
           }
         case 89: break;
         case 20: 
-          { return newToken(CSSTokenType.RBRACKET, yytext());
+          { return newToken(CSSTokenType.RBRACKET, "]");
           }
         case 90: break;
         default: 
@@ -7,38 +7,27 @@
  */
 package com.aptana.editor.css.validator;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PrintWriter;
-import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Field;
-import java.net.MalformedURLException;
 import java.net.URI;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
-import org.apache.commons.lang.StringEscapeUtils;
 import org.eclipse.core.runtime.IProgressMonitor;
-import org.w3c.css.css.StyleReport;
-import org.w3c.css.css.StyleReportFactory;
-import org.w3c.css.css.StyleSheet;
-import org.w3c.css.css.StyleSheetParser;
 import org.w3c.css.properties.PropertiesLoader;
-import org.w3c.css.util.ApplContext;
 import org.w3c.css.util.Utf8Properties;
 
 import com.aptana.core.build.AbstractBuildParticipant;
 import com.aptana.core.build.IProblem;
 import com.aptana.core.logging.IdeLog;
-import com.aptana.core.util.IOUtil;
-import com.aptana.core.util.URLEncoder;
+import com.aptana.core.util.StringUtil;
 import com.aptana.editor.css.CSSPlugin;
 import com.aptana.editor.css.ICSSConstants;
 import com.aptana.index.core.build.BuildContext;
@@ -55,23 +44,6 @@ public class CSSValidator extends AbstractBuildParticipant
 	private static final String CONFIG_FILE = "AptanaCSSConfig.properties"; //$NON-NLS-1$
 	private static final String PROFILES_CONFIG_FILE = "AptanaCSSProfiles.properties"; //$NON-NLS-1$
 
-	/**
-	 * error pattern
-	 */
-	private static final Pattern ERROR_PATTERN = Pattern.compile(
-			"<(error)>(.*?)</\\1>", Pattern.MULTILINE | Pattern.DOTALL); //$NON-NLS-1$
-	/**
-	 * warning pattern
-	 */
-	private static final Pattern WARNING_PATTERN = Pattern.compile(
-			"<(warning)>(.*?)</\\1>", Pattern.MULTILINE | Pattern.DOTALL); //$NON-NLS-1$
-
-	/**
-	 * properties pattern
-	 */
-	private static final Pattern PROPERTIES_PATTERN = Pattern.compile(
-			"<([-A-Za-z0-9_:]+)>(.*?)</\\1>", Pattern.MULTILINE | Pattern.DOTALL); //$NON-NLS-1$
-
 	// CSS3 properties that the validator doesn't recognize yet and need to be ignored
 	@SuppressWarnings("nls")
 	private static final String[] CSS3_PROPERTIES = { "behavior", "box-shadow", "box-sizing", "column-count",
@@ -96,94 +68,46 @@ public class CSSValidator extends AbstractBuildParticipant
 			".*writing-mode.*", ".*zoom.*", ".*Parse Error.*", ".*-webkit-.*", ".*rgba.*is not a .* value.*",
 			".*Too many values or values are not recognized.*" };
 
+	/**
+	 * The messages of the errors to drop: the CSS3 properties and at-rules, and the other filtered messages, as one
+	 * pattern
+	 */
+	private static final Pattern BUILT_IN_FILTER;
+
+	/**
+	 * The validator engines, by profile
+	 */
+	private static final Map<String, CSSValidatorEngine> ENGINES = new HashMap<String, CSSValidatorEngine>();
+
 	static
 	{
 		loadAptanaCSSProfile();
-	}
 
-	private void processErrorsInReport(String report, String sourcePath, List<IProblem> items, List<String> filters)
-	{
-		int offset = 0;
-		String elementName = "errorlist"; //$NON-NLS-1$
-		String startTag = MessageFormat.format("<{0}>", elementName); //$NON-NLS-1$
-		String endTag = MessageFormat.format("</{0}>", elementName); //$NON-NLS-1$
-
-		while (offset < report.length())
+		List<String> filtered = new ArrayList<String>();
+		for (String property : CSS3_PROPERTIES)
 		{
-			int errorListStart = report.indexOf(startTag, offset);
-			if (errorListStart == -1)
-			{
-				break;
-			}
-
-			// advances past the start tag
-			errorListStart += startTag.length();
-
-			// gets the URI
-			int uriStart = report.indexOf("<uri>", errorListStart) + "<uri>".length(); //$NON-NLS-1$ //$NON-NLS-2$
-			int uriEnd = report.indexOf("</uri>", uriStart); //$NON-NLS-1$
-			String uri = new String(report.substring(uriStart, uriEnd));
-
-			// finds the end of this list
-			int errorListEnd = report.indexOf(endTag, errorListStart);
-
-			// checks if the uri matches the source
-			if (uri != null && URLEncoder.encode(uri, null, null).equals(sourcePath))
-			{
-				// extracts the error list
-				String listString = new String(report.substring(errorListStart, errorListEnd));
-				// finds the errors
-				String[] errors = getContent(ERROR_PATTERN, listString);
-				// add errors
-				addErrors(errors, sourcePath, items, filters);
-			}
-
-			// advances past the current error list
-			offset = errorListEnd + endTag.length();
+			filtered.add("Property " + property); //$NON-NLS-1$
 		}
-	}
-
-	private void processWarningsInReport(String report, String sourcePath, List<IProblem> items, List<String> filters)
-	{
-		int offset = 0;
-		String elementName = "warninglist"; //$NON-NLS-1$
-		String startTag = MessageFormat.format("<{0}>", elementName); //$NON-NLS-1$
-		String endTag = MessageFormat.format("</{0}>", elementName); //$NON-NLS-1$
-
-		while (offset < report.length())
+		for (String rule : CSS3_AT_RULES)
 		{
-			int warningListStart = report.indexOf(startTag, offset);
-			if (warningListStart == -1)
-			{
-				break;
-			}
-
-			// advances past the start tag
-			warningListStart += startTag.length();
-
-			// gets the URI
-			int uriStart = report.indexOf("<uri>", warningListStart) + "<uri>".length(); //$NON-NLS-1$ //$NON-NLS-2$
-			int uriEnd = report.indexOf("</uri>", uriStart); //$NON-NLS-1$
-			String uri = new String(report.substring(uriStart, uriEnd));
-
-			// finds the end of this list
-			int warningListEnd = report.indexOf(endTag, warningListStart);
-
-			if (uri != null && URLEncoder.encode(uri, null, null).equals(sourcePath))
-			{
-				// extracts the warning list
-				String listString = new String(report.substring(warningListStart, warningListEnd));
-				// finds the warnings
-				String[] warnings = getContent(WARNING_PATTERN, listString);
-				// adds errors
-				addWarnings(warnings, sourcePath, items, filters);
-			}
-
-			// advance past the current warning list
-			offset = warningListEnd + endTag.length();
+			filtered.add(MessageFormat.format("the at-rule {0} is not implemented", rule)); //$NON-NLS-1$
+		}
+		for (String message : FILTERED_MESSAGES)
+		{
+			filtered.add(message);
 		}
+		BUILT_IN_FILTER = Pattern.compile(quote(filtered));
 	}
 
+	/**
+	 * The user filters the patterns were compiled from
+	 */
+	private List<String> fFilters;
+	/**
+	 * The user filters compiled, without the invalid ones
+	 */
+	private List<Pattern> fFilterPatterns = Collections.emptyList();
+
 	/**
 	 * Loads our CSS profile.
 	 * 
@@ -232,190 +156,72 @@ public class CSSValidator extends AbstractBuildParticipant
 	}
 
 	/**
-	 * Adds the CSS errors.
-	 * 
-	 * @param errors
-	 *            the array of errors
-	 * @param sourcePath
-	 *            the source path
-	 * @param manager
-	 *            the validation manager
-	 * @param items
-	 *            the list that stores the added validation items
+	 * @return the validator engine of the given profile
 	 */
-	private void addErrors(String[] errors, String sourcePath, List<IProblem> items, List<String> filters)
+	static CSSValidatorEngine getEngine(String profile)
 	{
-		Map<String, String> map;
-		for (String error : errors)
+		synchronized (ENGINES)
 		{
-			map = getProperties(error);
-
-			int lineNumber = Integer.parseInt(map.get("line")); //$NON-NLS-1$
-			String message = map.get("message"); //$NON-NLS-1$
-			String context = map.get("context"); //$NON-NLS-1$
-			String property = map.get("property"); //$NON-NLS-1$
-			String skippedstring = map.get("skippedstring"); //$NON-NLS-1$
-			String errorsubtype = map.get("errorsubtype"); //$NON-NLS-1$
-
-			// Don't attempt to add errors if there are already errors on this line
-			if (hasErrorOrWarningOnLine(items, lineNumber))
+			CSSValidatorEngine engine = ENGINES.get(profile);
+			if (engine == null)
 			{
-				continue;
+				engine = new CSSValidatorEngine(profile);
+				ENGINES.put(profile, engine);
 			}
-
-			if (message == null)
-			{
-				if (property == null)
-				{
-					property = context;
-				}
-				if (skippedstring.equals("[empty string]")) //$NON-NLS-1$
-				{
-					// alters the text a bit
-					skippedstring = "no properties defined"; //$NON-NLS-1$
-				}
-				message = MessageFormat.format("{0} : {1} for {2}", errorsubtype, skippedstring, property); //$NON-NLS-1$
-			}
-			message = StringEscapeUtils.unescapeHtml(message);
-			message = message.replaceAll("\\s+", " "); //$NON-NLS-1$ //$NON-NLS-2$
-
-			if (!isIgnored(message, filters) && !containsCSS3Property(message) && !containsCSS3AtRule(message)
-					&& !isFiltered(message))
-			{
-				// there is no info on the line offset or the length of the errored text
-				items.add(createError(message, lineNumber, 0, 0, sourcePath));
-			}
-		}
-	}
-
-	/**
-	 * Adds the CSS warnings.
-	 * 
-	 * @param warnings
-	 *            the array of warnings
-	 * @param sourcePath
-	 *            the source path
-	 * @param items
-	 *            the list that stores the added validation items
-	 * @param filters
-	 */
-	private void addWarnings(String[] warnings, String sourcePath, List<IProblem> items, List<String> filters)
-	{
-		Map<String, String> map;
-		String last = ""; //$NON-NLS-1$
-		for (String warning : warnings)
-		{
-			map = getProperties(warning);
-
-			int lineNumber = Integer.parseInt(map.get("line")); //$NON-NLS-1$
-			String level = map.get("level"); //$NON-NLS-1$
-			String message = MessageFormat.format("{0} (level {1})", map.get("message"), level); //$NON-NLS-1$ //$NON-NLS-2$
-			String context = map.get("context"); //$NON-NLS-1$
-
-			// Don't attempt to add warnings if there are already errors on this line
-			if (hasErrorOrWarningOnLine(items, lineNumber))
-			{
-				continue;
-			}
-
-			String hash = MessageFormat.format("{0}:{1}:{2}:{3}", lineNumber, level, message, context); //$NON-NLS-1$
-			// guards against duplicate warnings
-			if (!last.equals(hash) && !isIgnored(message, filters))
-			{
-				items.add(createWarning(message, lineNumber, 0, 0, sourcePath));
-			}
-
-			last = hash;
+			return engine;
 		}
 	}
 
 	/**
-	 * Gets the validation report from the validator.
-	 * 
-	 * @param source
-	 *            the source text
-	 * @param path
-	 *            the source path
-	 * @return the report
+	 * @return the validator profile
 	 */
-	private static String getReport(String source, URI path)
+	protected String getProfile()
 	{
-		StyleSheetParser parser = new StyleSheetParser();
-		ApplContext ac = new ApplContext("en"); //$NON-NLS-1$
-		ac.setProfile(APTANA_PROFILE);
-		try
-		{
-			parser.parseStyleElement(ac, new ByteArrayInputStream(source.getBytes(IOUtil.UTF_8)), null, null,
-					path.toURL(), 0);
-		}
-		catch (MalformedURLException e)
-		{
-			IdeLog.logError(CSSPlugin.getDefault(), MessageFormat.format(Messages.CSSValidator_ERR_InvalidPath, path),
-					e);
-		}
-		catch (UnsupportedEncodingException e)
-		{
-			IdeLog.logError(CSSPlugin.getDefault(), e);
-		}
-
-		StyleSheet stylesheet = parser.getStyleSheet();
-		stylesheet.findConflicts(ac);
-		StyleReport report = StyleReportFactory.getStyleReport(ac, "Title", stylesheet, "soap12", 2); //$NON-NLS-1$ //$NON-NLS-2$
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
-		report.print(new PrintWriter(out));
-		return out.toString().replaceAll("m:", ""); //$NON-NLS-1$ //$NON-NLS-2$
+		return APTANA_PROFILE;
 	}
 
 	/**
-	 * Gets the list of contents in a source text that matches the specific pattern.
-	 * 
-	 * @param pattern
-	 *            the pattern to match
-	 * @param source
-	 *            the source text
-	 * @return the matching contents in an array
+	 * Converts the messages of the validator to problems. An error or warning is dropped if there is already one on
+	 * its line, and a warning if it is the same as the previous one.
 	 */
-	private static String[] getContent(Pattern pattern, String source)
+	private void addProblems(List<CSSValidatorEngine.Message> messages, String sourcePath, List<IProblem> items,
+			List<Pattern> filters)
 	{
-		Matcher matcher = pattern.matcher(source);
-		List<String> result = new ArrayList<String>();
-		while (matcher.find())
+		String last = StringUtil.EMPTY;
+		for (CSSValidatorEngine.Message message : messages)
 		{
-			result.add(matcher.group(2));
-		}
-		return result.toArray(new String[result.size()]);
-	}
+			// Don't attempt to add errors or warnings if there are already errors on this line
+			if (hasErrorOrWarningOnLine(items, message.line))
+			{
+				continue;
+			}
 
-	/**
-	 * Gets the properties map from a source text.
-	 * 
-	 * @param source
-	 *            the source text
-	 * @return the properties map
-	 */
-	private static Map<String, String> getProperties(String source)
-	{
-		Matcher matcher = PROPERTIES_PATTERN.matcher(source);
-		Map<String, String> result = new HashMap<String, String>();
-		String key, value;
-		while (matcher.find())
-		{
-			key = matcher.group(1);
-			value = matcher.group(2);
-			if (value != null)
+			if (message.error)
 			{
-				value = value.trim();
+				if (!isFiltered(message.text, filters) && !BUILT_IN_FILTER.matcher(message.text).find())
+				{
+					// there is no info on the line offset or the length of the errored text
+					items.add(createError(message.text, message.line, 0, 0, sourcePath));
+				}
+			}
+			else
+			{
+				String hash = MessageFormat.format("{0}:{1}:{2}", message.line, message.text, message.context); //$NON-NLS-1$
+				// guards against duplicate warnings
+				if (!last.equals(hash) && !isFiltered(message.text, filters))
+				{
+					items.add(createWarning(message.text, message.line, 0, 0, sourcePath));
+				}
+				last = hash;
 			}
-			result.put(key, value);
 		}
-		return result;
 	}
 
-	private static boolean containsCSS3Property(String message)
+	private static boolean isFiltered(String message, List<Pattern> filters)
 	{
-		for (String property : CSS3_PROPERTIES)
+		for (Pattern filter : filters)
 		{
-			if (message.indexOf("Property " + property) > -1) //$NON-NLS-1$
+			if (filter.matcher(message).matches())
 			{
 				return true;
 			}
@@ -423,28 +229,49 @@ public class CSSValidator extends AbstractBuildParticipant
 		return false;
 	}
 
-	private static boolean containsCSS3AtRule(String message)
+	/**
+	 * @return the user filters, compiled each on its own. Invalid filters are logged and skipped.
+	 */
+	private synchronized List<Pattern> getFilterPatterns()
 	{
-		for (String rule : CSS3_AT_RULES)
+		List<String> filters = getFilters();
+		if (!filters.equals(fFilters))
 		{
-			if (message.indexOf(MessageFormat.format("the at-rule {0} is not implemented", rule)) > -1) //$NON-NLS-1$
+			fFilters = filters;
+			List<Pattern> patterns = new ArrayList<Pattern>(filters.size());
+			for (String filter : filters)
 			{
-				return true;
+				try
+				{
+					patterns.add(Pattern.compile(filter));
+				}
+				catch (PatternSyntaxException e)
+				{
+					IdeLog.logWarning(CSSPlugin.getDefault(),
+							MessageFormat.format("Skipping invalid CSS validation filter ''{0}'': {1}", filter, //$NON-NLS-1$
+									e.getDescription()));
+				}
 			}
+			fFilterPatterns = patterns;
 		}
-		return false;
+		return fFilterPatterns;
 	}
 
-	private static boolean isFiltered(String message)
+	/**
+	 * @return a pattern finding any of the given strings
+	 */
+	private static String quote(List<String> strings)
 	{
-		for (String filtered : FILTERED_MESSAGES)
+		StringBuilder pattern = new StringBuilder();
+		for (String string : strings)
 		{
-			if (message.indexOf(filtered) > -1)
+			if (pattern.length() > 0)
 			{
-				return true;
+				pattern.append('|');
 			}
+			pattern.append(Pattern.quote(string));
 		}
-		return false;
+		return pattern.toString();
 	}
 
 	public void buildFile(BuildContext context, IProgressMonitor monitor)
@@ -458,12 +285,9 @@ public class CSSValidator extends AbstractBuildParticipant
 
 		String source = context.getContents();
 		URI uri = context.getURI();
-		String path = uri.toString();
 
-		String report = getReport(source, uri);
-		List<String> filters = getFilters();
-		processErrorsInReport(report, path, problems, filters);
-		processWarningsInReport(report, path, problems, filters);
+		List<CSSValidatorEngine.Message> messages = getEngine(getProfile()).validate(source, uri);
+		addProblems(messages, uri.toString(), problems, getFilterPatterns());
 
 		context.putProblems(ICSSConstants.W3C_PROBLEM, problems);
 	}
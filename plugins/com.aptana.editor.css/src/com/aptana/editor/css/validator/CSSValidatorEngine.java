@@ -0,0 +1,347 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.css.validator;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.w3c.css.css.StyleSheet;
+import org.w3c.css.css.StyleSheetGenerator;
+import org.w3c.css.css.StyleSheetParser;
+import org.w3c.css.parser.CssError;
+import org.w3c.css.parser.CssErrorToken;
+import org.w3c.css.parser.CssParseException;
+import org.w3c.css.properties.PropertiesLoader;
+import org.w3c.css.util.ApplContext;
+import org.w3c.css.util.InvalidParamException;
+import org.w3c.css.util.Utf8Properties;
+import org.w3c.css.util.Warning;
+import org.w3c.css.util.Warnings;
+
+import com.aptana.core.logging.IdeLog;
+import com.aptana.core.util.IOUtil;
+import com.aptana.core.util.StringUtil;
+import com.aptana.core.util.URLEncoder;
+import com.aptana.editor.css.CSSPlugin;
+
+/**
+ * Runs the W3C CSS validator for one profile. The errors and warnings are read from the validator's objects instead of
+ * from a rendered report, with the messages the report would show. The application contexts are kept in a pool and
+ * reused across files, and the results are cached by the URI and the hash of the source.
+ */
+class CSSValidatorEngine
+{
+
+	/**
+	 * An error or a warning of the validator.
+	 */
+	static class Message
+	{
+		final boolean error;
+		final int line;
+		final String text;
+		/**
+		 * The context of a warning, i.e. its selectors; null for errors
+		 */
+		final String context;
+
+		Message(boolean error, int line, String text, String context)
+		{
+			this.error = error;
+			this.line = line;
+			this.text = text;
+			this.context = context;
+		}
+	}
+
+	/**
+	 * The warnings above this level are not reported.
+	 */
+	private static final int WARNING_LEVEL = 2;
+
+	/**
+	 * The number of results kept in the cache.
+	 */
+	private static final int CACHE_SIZE = 100;
+
+	private static final String URL_BASE_PREFIX = "@url-base_"; //$NON-NLS-1$
+
+	/**
+	 * The links to the specification of the properties, as the report shows them.
+	 */
+	private static Utf8Properties propertyURLs;
+
+	private final String fProfile;
+	private final BlockingQueue<ApplContext> fIdleContexts = new LinkedBlockingQueue<ApplContext>();
+	private final Map<String, List<Message>> fResults;
+
+	/**
+	 * @param profile
+	 *            the validator profile
+	 */
+	CSSValidatorEngine(String profile)
+	{
+		fProfile = profile;
+		fResults = Collections.synchronizedMap(new LinkedHashMap<String, List<Message>>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, List<Message>> eldest)
+			{
+				return size() > CACHE_SIZE;
+			}
+		});
+		// the first file doesn't pay for the initialization of a context
+		fIdleContexts.add(createContext());
+	}
+
+	/**
+	 * Validates the source. Safe to be called concurrently.
+	 *
+	 * @param source
+	 * @param uri
+	 *            the URI of the source
+	 * @return the errors, then the warnings, of the source (the ones of imported stylesheets are left out)
+	 */
+	List<Message> validate(String source, URI uri)
+	{
+		String key = StringUtil.md5(uri.toString()) + StringUtil.md5(source);
+		List<Message> result = fResults.get(key);
+		if (result != null)
+		{
+			return result;
+		}
+
+		ApplContext ac = fIdleContexts.poll();
+		if (ac == null)
+		{
+			ac = createContext();
+		}
+		try
+		{
+			result = Collections.unmodifiableList(runValidator(ac, source, uri));
+		}
+		finally
+		{
+			fIdleContexts.add(ac);
+		}
+		fResults.put(key, result);
+		return result;
+	}
+
+	/**
+	 * Forgets the cached results.
+	 */
+	void clearCache()
+	{
+		fResults.clear();
+	}
+
+	private ApplContext createContext()
+	{
+		ApplContext ac = new ApplContext("en"); //$NON-NLS-1$
+		ac.setProfile(fProfile);
+		// loads the messages now
+		ac.getMsg();
+		return ac;
+	}
+
+	private List<Message> runValidator(ApplContext ac, String source, URI uri)
+	{
+		StyleSheetParser parser = new StyleSheetParser();
+		try
+		{
+			parser.parseStyleElement(ac, new ByteArrayInputStream(source.getBytes(IOUtil.UTF_8)), null, null,
+					uri.toURL(), 0);
+		}
+		catch (MalformedURLException e)
+		{
+			IdeLog.logError(CSSPlugin.getDefault(), MessageFormat.format(Messages.CSSValidator_ERR_InvalidPath, uri), e);
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			IdeLog.logError(CSSPlugin.getDefault(), e);
+		}
+
+		StyleSheet stylesheet = parser.getStyleSheet();
+		stylesheet.findConflicts(ac);
+
+		String path = uri.toString();
+		List<Message> result = new ArrayList<Message>();
+		CssError[] errors = stylesheet.getErrors().getErrors();
+		if (errors != null)
+		{
+			for (CssError error : errors)
+			{
+				if (isSource(error.getSourceFile(), path))
+				{
+					result.add(new Message(true, error.getLine(), getErrorMessage(ac, error), null));
+				}
+			}
+		}
+		Warnings warnings = stylesheet.getWarnings();
+		if (warnings.getWarningCount() > 0)
+		{
+			warnings.sort();
+			for (Warning warning : warnings.getWarnings())
+			{
+				if (warning.getLevel() <= WARNING_LEVEL && isSource(warning.getSourceFile(), path))
+				{
+					String message = MessageFormat.format("{0} (level {1})", warning.getWarningMessage(), //$NON-NLS-1$
+							warning.getLevel());
+					String context = (warning.getContext() == null) ? null : warning.getContext().toString();
+					result.add(new Message(false, warning.getLine(), message, context));
+				}
+			}
+		}
+		return result;
+	}
+
+	private static boolean isSource(String sourceFile, String path)
+	{
+		return sourceFile != null && URLEncoder.encode(sourceFile, null, null).equals(path);
+	}
+
+	/**
+	 * Builds the message the report shows for the error.
+	 */
+	private static String getErrorMessage(ApplContext ac, CssError error)
+	{
+		Throwable exception = error.getException();
+		String message;
+		if (exception instanceof FileNotFoundException)
+		{
+			message = ac.getMsg().getGeneratorString("not-found") + ": " + exception.getMessage(); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		else if (exception instanceof CssParseException)
+		{
+			message = getParseExceptionMessage(ac, (CssParseException) exception);
+		}
+		else if (exception instanceof InvalidParamException || exception instanceof IOException)
+		{
+			message = exception.getMessage();
+		}
+		else if (error instanceof CssErrorToken)
+		{
+			CssErrorToken token = (CssErrorToken) error;
+			message = token.getErrorDescription() + " : " + token.getSkippedString(); //$NON-NLS-1$
+		}
+		else
+		{
+			message = ac.getMsg().getErrorString("unknown") + exception; //$NON-NLS-1$
+		}
+		if (message == null)
+		{
+			return StringUtil.EMPTY;
+		}
+		return message.trim().replaceAll("\\s+", " "); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private static String getParseExceptionMessage(ApplContext ac, CssParseException exception)
+	{
+		StringBuilder message = new StringBuilder();
+
+		// the link to the specification of the property
+		String property = exception.getProperty();
+		if (property != null)
+		{
+			String propertyURL = getPropertyURL(property);
+			Utf8Properties profile = PropertiesLoader.getProfile(ac.getCssVersion());
+			if (propertyURL != null && profile != null && profile.containsKey(property))
+			{
+				String version = ac.getCssVersion();
+				String base;
+				if ("css3".equals(version)) //$NON-NLS-1$
+				{
+					base = getPropertyURL(URL_BASE_PREFIX + "css2.1"); //$NON-NLS-1$
+				}
+				else if ("css1".equals(version)) //$NON-NLS-1$
+				{
+					base = getPropertyURL(URL_BASE_PREFIX + "css2"); //$NON-NLS-1$
+				}
+				else
+				{
+					base = getPropertyURL(URL_BASE_PREFIX + version);
+				}
+				message.append(ac.getMsg().getGeneratorString("property")).append(" :  ").append(property); //$NON-NLS-1$ //$NON-NLS-2$
+				message.append(" (").append(base).append(propertyURL).append(") "); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+
+		if (exception.getException() != null && exception.getMessage() != null)
+		{
+			if (exception.isParseException())
+			{
+				message.append(exception.getMessage());
+			}
+			else if (exception.getException() instanceof NumberFormatException)
+			{
+				message.append(ac.getMsg().getGeneratorString("invalid-number")); //$NON-NLS-1$
+			}
+			else
+			{
+				message.append(exception.getException().getMessage());
+			}
+			if (exception.getSkippedString() == null && exception.getExp() != null)
+			{
+				message.append(" : ").append(exception.getExp().toStringFromStart()); //$NON-NLS-1$
+			}
+		}
+		else
+		{
+			message.append(ac.getMsg().getGeneratorString("unrecognize")); //$NON-NLS-1$
+		}
+		return message.toString();
+	}
+
+	private static synchronized String getPropertyURL(String property)
+	{
+		if (propertyURLs == null)
+		{
+			propertyURLs = new Utf8Properties();
+			InputStream stream = StyleSheetGenerator.class.getResourceAsStream("urls.properties"); //$NON-NLS-1$
+			if (stream != null)
+			{
+				try
+				{
+					propertyURLs.load(stream);
+				}
+				catch (IOException e)
+				{
+					IdeLog.logError(CSSPlugin.getDefault(), e);
+				}
+				finally
+				{
+					try
+					{
+						stream.close();
+					}
+					catch (IOException e)
+					{
+					}
+				}
+			}
+		}
+		return propertyURLs.getProperty(property);
+	}
+
+}
@@ -8,12 +8,17 @@
 package com.aptana.editor.findbar.impl;
 
 import java.lang.reflect.Method;
+import java.net.URI;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IResourceProxyVisitor;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.jface.action.IStatusLineManager;
@@ -31,6 +36,8 @@ import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.part.MultiPageEditorPart;
 
 import com.aptana.editor.findbar.FindBarPlugin;
+import com.aptana.index.core.IndexPlugin;
+import com.aptana.index.core.TrigramIndex;
 
 /**
  * Helper to make a search in the currently opened documents (gotten from Pydev).
@@ -210,7 +217,7 @@ public class FindHelper
 		}
 
 		performFind(searchText, caseSensitive, isRegEx,
-				FileTextSearchScope.newSearchScope(new IResource[] { activeProject }, new String[] { "*" }, true)); //$NON-NLS-1$
+				createSearchScope(new IResource[] { activeProject }, searchText, isRegEx));
 	}
 
 	/**
@@ -224,8 +231,102 @@ public class FindHelper
 			return;
 		}
 
-		performFind(searchText, caseSensitive, isRegEx, FileTextSearchScope.newSearchScope(
-				new IResource[] { ResourcesPlugin.getWorkspace().getRoot() }, new String[] { "*" }, true)); //$NON-NLS-1$
+		performFind(searchText, caseSensitive, isRegEx,
+				createSearchScope(new IResource[] { ResourcesPlugin.getWorkspace().getRoot() }, searchText, isRegEx));
+	}
+
+	/**
+	 * Creates the search scope for the given root resources. When the content index is enabled, the scope is narrowed
+	 * down to the files that may contain the searched text, so the text search only has to scan and verify those. The
+	 * files that are not indexed, the ones modified since they were indexed, and the ones open in an editor (whose
+	 * buffer may not be saved) are always kept in the scope.
+	 * 
+	 * @param roots
+	 * @param searchText
+	 * @param isRegEx
+	 * @return A {@link FileTextSearchScope}
+	 */
+	public static FileTextSearchScope createSearchScope(IResource[] roots, String searchText, boolean isRegEx)
+	{
+		TrigramIndex contentIndex = IndexPlugin.getDefault().getIndexManager().getContentIndex();
+		if (contentIndex != null && contentIndex.size() > 0)
+		{
+			final Set<URI> candidates = contentIndex.getCandidates(searchText, isRegEx);
+			if (candidates != null)
+			{
+				final TrigramIndex index = contentIndex;
+				final Set<URI> openDocuments = getOpenDocuments();
+				final List<IResource> files = new ArrayList<IResource>();
+				try
+				{
+					for (IResource root : roots)
+					{
+						root.accept(new IResourceProxyVisitor()
+						{
+							public boolean visit(IResourceProxy proxy) throws CoreException
+							{
+								if (proxy.getType() == IResource.FILE)
+								{
+									IResource file = proxy.requestResource();
+									URI uri = file.getLocationURI();
+									if (uri == null || candidates.contains(uri) || openDocuments.contains(uri))
+									{
+										files.add(file);
+									}
+									else
+									{
+										long stamp = index.getIndexStamp(uri);
+										// not indexed, or the index does not know about the current content
+										if (stamp == -1 || file.getLocalTimeStamp() > stamp)
+										{
+											files.add(file);
+										}
+									}
+								}
+								return true;
+							}
+						}, IResource.NONE);
+					}
+					return FileTextSearchScope.newSearchScope(files.toArray(new IResource[files.size()]),
+							new String[] { "*" }, true); //$NON-NLS-1$
+				}
+				catch (CoreException e)
+				{
+					// Log it, and fall back to the full search scope.
+					FindBarPlugin.log(e);
+				}
+			}
+		}
+		return FileTextSearchScope.newSearchScope(roots, new String[] { "*" }, true); //$NON-NLS-1$
+	}
+
+	/**
+	 * Returns the location of the workspace files open in an editor. An editor that was not restored yet shows the
+	 * content of its file, so only the restored ones are considered.
+	 */
+	private static Set<URI> getOpenDocuments()
+	{
+		Set<URI> documents = new HashSet<URI>();
+		for (IWorkbenchWindow window : PlatformUI.getWorkbench().getWorkbenchWindows())
+		{
+			for (IWorkbenchPage page : window.getPages())
+			{
+				for (IEditorReference reference : page.getEditorReferences())
+				{
+					IEditorPart editor = reference.getEditor(false);
+					IEditorInput input = (editor == null) ? null : editor.getEditorInput();
+					if (input != null)
+					{
+						IFile file = (IFile) input.getAdapter(IFile.class);
+						if (file != null && file.getLocationURI() != null)
+						{
+							documents.add(file.getLocationURI());
+						}
+					}
+				}
+			}
+		}
+		return documents;
 	}
 
 	private static IWorkbenchPage getActivePage(IStatusLineManager statusLineManager)
@@ -15,7 +15,6 @@ import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.formatter.IFormattingContext;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.text.edits.MultiTextEdit;
-import org.eclipse.text.edits.ReplaceEdit;
 import org.eclipse.text.edits.TextEdit;
 
 import com.aptana.core.logging.IdeLog;
@@ -163,7 +162,7 @@ public class HTMLFormatter extends AbstractScriptFormatter implements IScriptFor
 					{
 						if (equalsIgnoreWhitespaces(input, output))
 						{
-							return new ReplaceEdit(offset, length, output);
+							return createMinimalEdit(input, offset, output);
 						}
 						else
 						{
@@ -11,10 +11,14 @@ import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -66,6 +70,36 @@ public class HTMLParser extends AbstractParser
 
 	private static final String[] JS_VALID_LANG_ATTR = new String[] { "JavaScript" }; //$NON-NLS-1$
 
+	/**
+	 * Script and style blocks of at least that many characters are parsed in background, while the parse of the rest
+	 * of the document goes on.
+	 */
+	private static final int BACKGROUND_PARSE_THRESHOLD = 8192;
+
+	/**
+	 * A script or style block being parsed in background.
+	 */
+	private static class PendingSubParse
+	{
+		private final HTMLSpecialNode node;
+		private final String language;
+		private final String text;
+		private final int start;
+		private final int end;
+		private final Future<ParseResult> result;
+
+		private PendingSubParse(HTMLSpecialNode node, String language, String text, int start, int end,
+				Future<ParseResult> result)
+		{
+			this.node = node;
+			this.language = language;
+			this.text = text;
+			this.start = start;
+			this.end = end;
+			this.result = result;
+		}
+	}
+
 	private HTMLParserScanner fScanner;
 	private HTMLParseState fParseState;
 	private Stack<IParseNode> fElementStack;
@@ -79,6 +113,15 @@ public class HTMLParser extends AbstractParser
 	private List<IParseNode> fCommentNodes;
 	private boolean previousSymbolSkipped;
 	private WorkingParseResult fWorkingParseResult;
+	private List<PendingSubParse> fPendingSubParses;
+
+	/**
+	 * The parse results of the inline styles and event handlers, keyed by language, offset and text. The ones of the
+	 * previous parse are kept, so that reparsing the same document (as it is being edited) only parses the changed
+	 * fragments.
+	 */
+	private Map<String, IParseNode> fInlineParseResults = new HashMap<String, IParseNode>();
+	private Map<String, IParseNode> fPreviousInlineParseResults = new HashMap<String, IParseNode>();
 
 	/**
 	 * parse
@@ -90,6 +133,9 @@ public class HTMLParser extends AbstractParser
 		fElementStack = new Stack<IParseNode>();
 		fCommentNodes = new ArrayList<IParseNode>();
 		fWorkingParseResult = working;
+		fPendingSubParses = new ArrayList<PendingSubParse>();
+		fPreviousInlineParseResults = fInlineParseResults;
+		fInlineParseResults = new HashMap<String, IParseNode>();
 
 		String source = parseState.getSource();
 		if (parseState instanceof HTMLParseState)
@@ -118,6 +164,7 @@ public class HTMLParser extends AbstractParser
 			fCurrentElement = root;
 
 			parseAll(source);
+			joinSubParses();
 			root.setCommentNodes(fCommentNodes.toArray(new IParseNode[fCommentNodes.size()]));
 
 			// trim the tree
@@ -126,6 +173,13 @@ public class HTMLParser extends AbstractParser
 		}
 		finally
 		{
+			// in case the parse did not complete
+			for (PendingSubParse subParse : fPendingSubParses)
+			{
+				subParse.result.cancel(false);
+			}
+			fPendingSubParses = null;
+			fPreviousInlineParseResults = null;
 			// clear for garbage collection
 			fWorkingParseResult = null;
 			fMonitor = null;
@@ -188,14 +242,80 @@ public class HTMLParser extends AbstractParser
 			((HTMLTokenScanner) tokenScanner).setInsideSpecialTag(false);
 		}
 
-		IParseNode[] nested = getParseResult(language, start, end);
 		if (fCurrentElement != null)
 		{
-			HTMLSpecialNode node = new HTMLSpecialNode(startTag, nested, startTag.getStart(), fCurrentSymbol.getEnd());
+			HTMLSpecialNode node = new HTMLSpecialNode(startTag, NO_PARSE_NODES, startTag.getStart(),
+					fCurrentSymbol.getEnd());
+			if (!parseInBackground(node, language, start, end))
+			{
+				node.setChildren(getParseResult(language, start, end));
+			}
 			node.setEndNode(fCurrentSymbol.getStart(), fCurrentSymbol.getEnd());
 			parseAttribute(node, startTag);
 			fCurrentElement.addChild(node);
 		}
+		else
+		{
+			getParseResult(language, start, end);
+		}
+	}
+
+	/**
+	 * Submits the parse of a large script or style block to the background parsers. The children of the node are set
+	 * by {@link #joinSubParses()}.
+	 * 
+	 * @return true if the block is parsed in background
+	 */
+	private boolean parseInBackground(HTMLSpecialNode node, String language, int start, int end)
+	{
+		if (language == null || end - start + 1 < BACKGROUND_PARSE_THRESHOLD)
+		{
+			return false;
+		}
+		try
+		{
+			String text = fScanner.getSource().get(start, end - start + 1);
+			Future<ParseResult> result = ParserPoolFactory.parseInBackground(language, new ParseState(text, start));
+			fPendingSubParses.add(new PendingSubParse(node, language, text, start, end, result));
+			return true;
+		}
+		catch (java.lang.Exception e)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Waits for the blocks parsed in background and adds their results to the tree.
+	 */
+	private void joinSubParses()
+	{
+		for (PendingSubParse subParse : fPendingSubParses)
+		{
+			IParseNode[] nested = NO_PARSE_NODES;
+			try
+			{
+				if (fMonitor.isCanceled())
+				{
+					subParse.result.cancel(false);
+				}
+				else
+				{
+					nested = toParseNodes(subParse.language, subParse.text, subParse.start, subParse.end,
+							subParse.result.get());
+				}
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			catch (ExecutionException e)
+			{
+				// same as a failed parse in the current thread
+			}
+			subParse.node.setChildren(nested);
+		}
+		fPendingSubParses.clear();
 	}
 
 	protected HTMLElementNode processCurrentTag()
@@ -286,19 +406,9 @@ public class HTMLParser extends AbstractParser
 				String text = fScanner.getSource().get(start, end - start + 1);
 				ParseState subParseState = new ParseState(text, start);
 				// FIXME We need to propagate options down to sub-languages, i.e. JS's attach/collect comments
-				ParseResult subParseResult = ParserPoolFactory.parse(language, subParseState);
-				IParseNode node = subParseResult.getRootNode();
-				for (IParseError subError : subParseResult.getErrors())
-				{
-					// Shift the line/offsets based on the starting offset/line of the sub-language!
-					fWorkingParseResult.addError(new ParseError(language, start + subError.getOffset(), subError
-							.getLength(), subError.getMessage(), subError.getSeverity()));
-				}
-				if (node == null)
-				{
-					node = new HTMLTextNode(text, start, end);
-				}
-				return new IParseNode[] { node };
+				// The parse result of the whole document is cached, don't let the sub-languages evict other entries
+				ParseResult subParseResult = ParserPoolFactory.parseWithoutCache(language, subParseState);
+				return toParseNodes(language, text, start, end, subParseResult);
 			}
 			catch (java.lang.Exception e)
 			{
@@ -307,6 +417,51 @@ public class HTMLParser extends AbstractParser
 		return NO_PARSE_NODES;
 	}
 
+	private IParseNode[] toParseNodes(String language, String text, int start, int end, ParseResult subParseResult)
+	{
+		IParseNode node = subParseResult.getRootNode();
+		for (IParseError subError : subParseResult.getErrors())
+		{
+			// Shift the line/offsets based on the starting offset/line of the sub-language!
+			fWorkingParseResult.addError(new ParseError(language, start + subError.getOffset(), subError.getLength(),
+					subError.getMessage(), subError.getSeverity()));
+		}
+		if (node == null)
+		{
+			node = new HTMLTextNode(text, start, end);
+		}
+		return new IParseNode[] { node };
+	}
+
+	/**
+	 * Parses the value of an inline style or event handler attribute. Since those are many and small, the results are
+	 * kept from one parse to the next, instead of going through the parse cache.
+	 * 
+	 * @param language
+	 * @param text
+	 * @param startingOffset
+	 * @return the root node of the parse result
+	 */
+	private IParseNode parseInline(String language, String text, int startingOffset) throws java.lang.Exception
+	{
+		String key = language + ':' + startingOffset + ':' + text;
+		IParseNode node = fInlineParseResults.get(key);
+		if (node == null)
+		{
+			node = fPreviousInlineParseResults.get(key);
+			if (node == null)
+			{
+				node = ParserPoolFactory.parseWithoutCache(language, new ParseState(text, startingOffset))
+						.getRootNode();
+			}
+			if (node != null)
+			{
+				fInlineParseResults.put(key, node);
+			}
+		}
+		return node;
+	}
+
 	private void processComment()
 	{
 		HTMLCommentNode comment = new HTMLCommentNode(fCurrentSymbol.value.toString(), fCurrentSymbol.getStart(),
@@ -505,8 +660,7 @@ public class HTMLParser extends AbstractParser
 					{
 
 						int startingOffset = absoluteOffset - (tagName.length() + 1);
-						IParseNode node = ParserPoolFactory.parse(ICSSConstants.CONTENT_TYPE_CSS, text, startingOffset)
-								.getRootNode();
+						IParseNode node = parseInline(ICSSConstants.CONTENT_TYPE_CSS, text, startingOffset);
 
 						// should always have a rule node
 						if (node.hasChildren())
@@ -532,8 +686,7 @@ public class HTMLParser extends AbstractParser
 					try
 					{
 						int startingOffset = absoluteOffset + 1;
-						IParseNode node = ParserPoolFactory.parse(IJSConstants.CONTENT_TYPE_JS, value, startingOffset)
-								.getRootNode();
+						IParseNode node = parseInline(IJSConstants.CONTENT_TYPE_JS, value, startingOffset);
 
 						for (IParseNode child : node)
 						{
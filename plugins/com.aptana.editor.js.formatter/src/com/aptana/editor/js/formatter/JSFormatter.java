@@ -89,7 +89,6 @@ import org.eclipse.jface.text.ITypedRegion;
 import org.eclipse.jface.text.formatter.IFormattingContext;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.text.edits.MultiTextEdit;
-import org.eclipse.text.edits.ReplaceEdit;
 import org.eclipse.text.edits.TextEdit;
 
 import com.aptana.core.logging.IdeLog;
@@ -198,7 +197,9 @@ public class JSFormatter extends AbstractScriptFormatter implements IScriptForma
 			{
 				final JSFormatterNodeBuilder builder = new JSFormatterNodeBuilder();
 				final FormatterDocument formatterDocument = createFormatterDocument(source, offset);
-				IFormatterContainerNode root = builder.build(parseResult, formatterDocument);
+				// Only the top-level statements that surround the offset affect its indentation, so there is no need
+				// to build the formatter nodes for the entire document.
+				IFormatterContainerNode root = builder.build(parseResult, formatterDocument, offset, offset);
 				new JSFormatterNodeRewriter(parseResult, formatterDocument).rewrite(root);
 				IFormatterContext context = new JSFormatterContext(0);
 				FormatterIndentDetector detector = new FormatterIndentDetector(offset);
@@ -266,7 +267,7 @@ public class JSFormatter extends AbstractScriptFormatter implements IScriptForma
 					{
 						if (equalContent(parseResult, output))
 						{
-							return new ReplaceEdit(offset, length, output);
+							return createMinimalEdit(originalText, offset, output);
 						}
 						else
 						{
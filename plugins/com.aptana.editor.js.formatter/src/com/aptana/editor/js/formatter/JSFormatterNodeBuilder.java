@@ -136,6 +136,45 @@ public class JSFormatterNodeBuilder extends AbstractFormatterNodeBuilder
 		return rootNode;
 	}
 
+	/**
+	 * Build the formatter nodes only for the top-level statements that intersect the given range. The statements that
+	 * are outside the range are not visited, and will be added to the formatter tree as plain text nodes.<br>
+	 * This is mainly useful when we only need the indentation context of a region (for example, when formatting a
+	 * selection in a large file), since the nesting of every node in the range is determined by the top-level
+	 * statements that contain it.
+	 * 
+	 * @param parseResult
+	 * @param document
+	 * @param startOffset
+	 *            The range start offset
+	 * @param endOffset
+	 *            The range end offset (inclusive)
+	 * @return The formatter root node
+	 */
+	public IFormatterContainerNode build(IParseNode parseResult, FormatterDocument document, int startOffset,
+			int endOffset)
+	{
+		this.document = document;
+		final IFormatterContainerNode rootNode = new FormatterJSRootNode(document);
+		start(rootNode);
+		JSParseRootNode jsRootNode = (JSParseRootNode) parseResult;
+		generateCommentEndOffsets(jsRootNode.getCommentNodes());
+		JSFormatterTreeWalker walker = new JSFormatterTreeWalker();
+		for (IParseNode child : jsRootNode)
+		{
+			if (child.getStartingOffset() > endOffset)
+			{
+				break;
+			}
+			if (child instanceof JSNode && child.getEndingOffset() >= startOffset)
+			{
+				((JSNode) child).accept(walker);
+			}
+		}
+		checkedPop(rootNode, document.getLength());
+		return rootNode;
+	}
+
 	/**
 	 * Returns true in case the node building stumble into a JS error node.
 	 * 
@@ -7,13 +7,52 @@
  */
 package com.aptana.editor.js;
 
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.rules.IPartitionTokenScanner;
 
 import com.aptana.editor.common.IPartitioningConfiguration;
 import com.aptana.editor.common.SimpleDocumentProvider;
+import com.aptana.editor.js.parsing.JSFlexLexemeStore;
 
 public class JSDocumentProvider extends SimpleDocumentProvider
 {
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.common.SimpleDocumentProvider#connect(java.lang.Object)
+	 */
+	@Override
+	public void connect(Object element) throws CoreException
+	{
+		super.connect(element);
+
+		IDocument document = getDocument(element);
+		if (document != null)
+		{
+			JSFlexLexemeStore.connect(document);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.common.CommonDocumentProvider#disconnect(java.lang.Object)
+	 */
+	@Override
+	public void disconnect(Object element)
+	{
+		FileInfo fileInfo = getFileInfo(element);
+		if (fileInfo != null && fileInfo.fCount == 1)
+		{
+			IDocument document = getDocument(element);
+			if (document != null)
+			{
+				JSFlexLexemeStore.disconnect(document);
+			}
+		}
+
+		super.disconnect(element);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.editor.common.SimpleDocumentProvider#getPartitionScanner()
@@ -27,8 +27,6 @@ import org.eclipse.jface.text.contentassist.IContextInformation;
 import org.eclipse.jface.text.contentassist.IContextInformationValidator;
 import org.eclipse.swt.graphics.Image;
 
-import beaver.Scanner;
-
 import com.aptana.core.IFilter;
 import com.aptana.core.util.ArrayUtil;
 import com.aptana.core.util.ChainedFilter;
@@ -52,8 +50,7 @@ import com.aptana.editor.js.contentassist.model.PropertyElement;
 import com.aptana.editor.js.inferencing.JSNodeTypeInferrer;
 import com.aptana.editor.js.inferencing.JSPropertyCollection;
 import com.aptana.editor.js.inferencing.JSScope;
-import com.aptana.editor.js.parsing.JSFlexLexemeProvider;
-import com.aptana.editor.js.parsing.JSFlexScanner;
+import com.aptana.editor.js.parsing.JSFlexLexemeStore;
 import com.aptana.editor.js.parsing.JSParseState;
 import com.aptana.editor.js.parsing.ast.IJSNodeTypes;
 import com.aptana.editor.js.parsing.ast.JSArgumentsNode;
@@ -562,8 +559,7 @@ public class JSContentAssistProcessor extends CommonContentAssistProcessor
 						String name = lhs.getLastChild().getText();
 
 						JSNodeTypeInferrer nodeInferrer = new JSNodeTypeInferrer(localScope, index, location);
-						((JSNode) rhs).accept(nodeInferrer);
-						List<String> types = nodeInferrer.getTypes();
+						List<String> types = nodeInferrer.inferTypes((JSNode) rhs);
 
 						PropertyElement property = new PropertyElement();
 						property.setName(name);
@@ -712,21 +708,20 @@ public class JSContentAssistProcessor extends CommonContentAssistProcessor
 	 */
 	ILexemeProvider<JSTokenType> createLexemeProvider(IDocument document, int offset)
 	{
-		Scanner scanner = new JSFlexScanner();
 		ILexemeProvider<JSTokenType> result;
 
 		// NOTE: use active range temporarily until we get proper partitions for JS inside of HTML
 		if (activeRange != null)
 		{
-			result = new JSFlexLexemeProvider(document, activeRange, scanner);
+			result = JSFlexLexemeStore.getLexemeProvider(document, activeRange);
 		}
 		else if (statementNode != null)
 		{
-			result = new JSFlexLexemeProvider(document, statementNode, scanner);
+			result = JSFlexLexemeStore.getLexemeProvider(document, statementNode);
 		}
 		else
 		{
-			result = new JSFlexLexemeProvider(document, offset, scanner);
+			result = JSFlexLexemeStore.getLexemeProvider(document, offset, offset);
 		}
 
 		return result;
@@ -19,8 +19,7 @@ import org.eclipse.swt.custom.StyleRange;
 import org.eclipse.swt.graphics.Color;
 
 import com.aptana.editor.common.contentassist.ILexemeProvider;
-import com.aptana.editor.js.parsing.JSFlexLexemeProvider;
-import com.aptana.editor.js.parsing.JSFlexScanner;
+import com.aptana.editor.js.parsing.JSFlexLexemeStore;
 import com.aptana.editor.js.parsing.lexer.JSTokenType;
 import com.aptana.parsing.lexer.Lexeme;
 import com.aptana.theme.ColorManager;
@@ -44,8 +43,8 @@ public class JSContextInformationValidator implements IContextInformationValidat
 
 			// grab lexemes
 			IDocument document = _viewer.getDocument();
-			ILexemeProvider<JSTokenType> lexemeProvider = new JSFlexLexemeProvider(document, offset, _startingOffset,
-					new JSFlexScanner());
+			ILexemeProvider<JSTokenType> lexemeProvider = JSFlexLexemeStore.getLexemeProvider(document, offset,
+					_startingOffset);
 
 			// get starting index based on the initial offset provided to this validator
 			int index = lexemeProvider.getLexemeFloorIndex(_startingOffset);
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -17,6 +17,7 @@ import org.eclipse.jface.text.IDocument;
 
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.StringUtil;
+import com.aptana.editor.common.contentassist.ILexemeProvider;
 import com.aptana.editor.js.IDebugScopes;
 import com.aptana.editor.js.JSPlugin;
 import com.aptana.editor.js.JSTypeConstants;
@@ -24,8 +25,7 @@ import com.aptana.editor.js.inferencing.JSNodeTypeInferrer;
 import com.aptana.editor.js.inferencing.JSScope;
 import com.aptana.editor.js.inferencing.JSTypeMapper;
 import com.aptana.editor.js.inferencing.JSTypeUtil;
-import com.aptana.editor.js.parsing.JSFlexLexemeProvider;
-import com.aptana.editor.js.parsing.JSFlexScanner;
+import com.aptana.editor.js.parsing.JSFlexLexemeStore;
 import com.aptana.editor.js.parsing.ast.IJSNodeTypes;
 import com.aptana.editor.js.parsing.ast.JSGetPropertyNode;
 import com.aptana.editor.js.parsing.ast.JSIdentifierNode;
@@ -49,7 +49,7 @@ public class ParseUtil
 		 * We use ArrayList so we can trim the size down explicitly
 		 */
 		private ArrayList<String> parameters;
-		private JSFlexLexemeProvider lexemeProvider;
+		private ILexemeProvider<JSTokenType> lexemeProvider;
 		private Lexeme<JSTokenType> currentLexeme;
 		private int lexemeIndex;
 
@@ -150,7 +150,7 @@ public class ParseUtil
 			parameters = new ArrayList<String>();
 
 			// setup lexeme source
-			lexemeProvider = new JSFlexLexemeProvider(document, offset, new JSFlexScanner());
+			lexemeProvider = JSFlexLexemeStore.getLexemeProvider(document, offset, offset);
 
 			// prime lexeme provider
 			lexemeIndex = lexemeProvider.getLexemeCeilingIndex(offset);
@@ -447,9 +447,7 @@ public class ParseUtil
 				{
 					JSNodeTypeInferrer typeWalker = new JSNodeTypeInferrer(localScope, projectIndex, fileURI);
 
-					typeWalker.visit((JSNode) lhs);
-
-					typeList = typeWalker.getTypes();
+					typeList = typeWalker.inferTypes((JSNode) lhs);
 				}
 
 				IdeLog.logInfo(JSPlugin.getDefault(),
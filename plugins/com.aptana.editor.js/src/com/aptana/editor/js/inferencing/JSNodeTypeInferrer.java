@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -38,6 +38,7 @@ import com.aptana.editor.js.parsing.ast.JSInvokeNode;
 import com.aptana.editor.js.parsing.ast.JSNode;
 import com.aptana.editor.js.parsing.ast.JSNumberNode;
 import com.aptana.editor.js.parsing.ast.JSObjectNode;
+import com.aptana.editor.js.parsing.ast.JSParseRootNode;
 import com.aptana.editor.js.parsing.ast.JSPostUnaryOperatorNode;
 import com.aptana.editor.js.parsing.ast.JSPreUnaryOperatorNode;
 import com.aptana.editor.js.parsing.ast.JSRegexNode;
@@ -270,6 +271,34 @@ public class JSNodeTypeInferrer extends JSTreeWalker
 		return result;
 	}
 
+	/**
+	 * Returns the types of a node like a visit of the node by this inferrer, but remembers them in the type inference
+	 * cache of the parse result containing the node. This inferrer is left without types.
+	 * 
+	 * @param node
+	 * @return
+	 */
+	public List<String> inferTypes(JSNode node)
+	{
+		IParseNode root = node;
+
+		while (root != null && !(root instanceof JSParseRootNode))
+		{
+			root = root.getParent();
+		}
+
+		JSNodeTypeInferrer inferrer = new JSNodeTypeInferrer(this._scope, this._index, this._location);
+
+		if (root == null)
+		{
+			inferrer.visit(node);
+
+			return inferrer.getTypes();
+		}
+
+		return ((JSParseRootNode) root).getTypeInferenceCache().getTypes(node, this._scope, this._index, inferrer);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.editor.js.parsing.ast.JSTreeWalker#visit(com.aptana.editor.js.parsing.ast.JSArrayNode)
@@ -439,6 +468,8 @@ public class JSNodeTypeInferrer extends JSTreeWalker
 				}
 			}
 
+			JSTypeInferenceCache.dependOnIndex();
+
 			for (String typeName : returnTypes)
 			{
 				List<PropertyElement> properties = this._queryHelper.getTypeMembers(this._index, typeName,
@@ -559,6 +590,8 @@ public class JSNodeTypeInferrer extends JSTreeWalker
 			IParseNode rhs = node.getRightHandSide();
 			String memberName = rhs.getText();
 
+			JSTypeInferenceCache.dependOnIndex();
+
 			for (String typeName : this.getTypes(lhs))
 			{
 				// Fix up type names as might be necessary
@@ -638,6 +671,7 @@ public class JSNodeTypeInferrer extends JSTreeWalker
 			}
 			else
 			{
+				JSTypeInferenceCache.dependOnIndex();
 				properties = this._queryHelper.getGlobals(this._index, name);
 
 				if (CollectionsUtil.isEmpty(properties))
@@ -656,6 +690,7 @@ public class JSNodeTypeInferrer extends JSTreeWalker
 		}
 		else
 		{
+			JSTypeInferenceCache.dependOnIndex();
 			properties = this._queryHelper.getGlobals(this._index, name);
 		}
 
@@ -765,6 +800,7 @@ public class JSNodeTypeInferrer extends JSTreeWalker
 			symbol.addValue(node);
 
 			// infer type
+			JSTypeInferenceCache.dependOnIndex();
 			JSSymbolTypeInferrer inferrer = new JSSymbolTypeInferrer(this._scope, this._index, this._location);
 			Set<String> types = new LinkedHashSet<String>();
 
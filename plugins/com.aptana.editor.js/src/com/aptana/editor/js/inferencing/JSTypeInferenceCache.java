@@ -0,0 +1,292 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.js.inferencing;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.aptana.editor.js.contentassist.JSIndexQueryHelper;
+import com.aptana.editor.js.parsing.ast.JSNode;
+import com.aptana.index.core.Index;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.lexer.IRange;
+
+/**
+ * Remembers the types inferred for the nodes of one parse result, so that repeated requests on an unchanged file do not
+ * walk the tree and query the indexes again. The cache is filled by {@link JSNodeTypeInferrer#inferTypes(JSNode)}. It
+ * infers the types of "this" in content assist, and of property receivers in
+ * {@link com.aptana.editor.js.contentassist.ParseUtil#getParentObjectTypes}, which content assist, hovers and
+ * hyperlinks share. A new parse result comes with a new cache, so edits drop everything inferred for the previous
+ * version of the file.
+ * <p>
+ * Types are kept by node and by the range of the scope they were inferred in. Types which were inferred from index
+ * entries also keep the modification stamps of the project index and of the JS metadata index; they are inferred again
+ * once either index has changed. Types inferred from the file alone, such as the types of literals and of documented
+ * parameters, are kept for as long as the parse result.
+ */
+public class JSTypeInferenceCache
+{
+	/**
+	 * The maximum number of nodes whose types are kept
+	 */
+	private static final int MAX_ENTRIES = 4096;
+
+	/**
+	 * The inferences in progress on the current thread, innermost first
+	 */
+	private static final ThreadLocal<Frame> CURRENT_FRAME = new ThreadLocal<Frame>();
+
+	private final Map<Key, Entry> _entries;
+	private long _hits;
+	private long _misses;
+
+	/**
+	 * JSTypeInferenceCache
+	 */
+	public JSTypeInferenceCache()
+	{
+		this._entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest)
+			{
+				return size() > MAX_ENTRIES;
+			}
+		};
+	}
+
+	/**
+	 * Records that the inference in progress on the current thread read index entries, so that its result depends on the
+	 * indexes
+	 */
+	static void dependOnIndex()
+	{
+		Frame frame = CURRENT_FRAME.get();
+
+		if (frame != null)
+		{
+			frame.dependsOnIndex = true;
+		}
+	}
+
+	/**
+	 * getModificationStamp
+	 * 
+	 * @param index
+	 * @return
+	 */
+	private static long getModificationStamp(Index index)
+	{
+		return (index != null) ? index.getModificationStamp() : -1;
+	}
+
+	/**
+	 * Forgets all types
+	 */
+	public synchronized void clear()
+	{
+		this._entries.clear();
+	}
+
+	/**
+	 * The number of requests answered from the cache
+	 * 
+	 * @return
+	 */
+	public synchronized long getHits()
+	{
+		return this._hits;
+	}
+
+	/**
+	 * The number of requests which had to infer the types
+	 * 
+	 * @return
+	 */
+	public synchronized long getMisses()
+	{
+		return this._misses;
+	}
+
+	/**
+	 * Returns the types of a node inferred in the given scope, inferring them with the given inferrer unless they are
+	 * known and still valid
+	 * 
+	 * @param node
+	 * @param scope
+	 * @param index
+	 *            the project index the types are inferred from
+	 * @param inferrer
+	 *            an inferrer without types yet, which visits the node on a miss
+	 * @return the types
+	 */
+	public List<String> getTypes(JSNode node, JSScope scope, Index index, JSNodeTypeInferrer inferrer)
+	{
+		Key key = new Key(node, scope);
+		Index metadataIndex = JSIndexQueryHelper.getIndex();
+
+		synchronized (this)
+		{
+			Entry entry = this._entries.get(key);
+
+			if (entry != null && entry.isValid(index, metadataIndex))
+			{
+				this._hits++;
+
+				return entry.types;
+			}
+
+			this._misses++;
+		}
+
+		Frame frame = new Frame(CURRENT_FRAME.get());
+
+		CURRENT_FRAME.set(frame);
+
+		try
+		{
+			inferrer.visit(node);
+		}
+		finally
+		{
+			CURRENT_FRAME.set(frame.parent);
+
+			if (frame.parent != null && frame.dependsOnIndex)
+			{
+				frame.parent.dependsOnIndex = true;
+			}
+		}
+
+		List<String> types = Collections.unmodifiableList(inferrer.getTypes());
+
+		// NOTE: the stamps are read after the inference, which may generate types for object literals into the
+		// project index
+		Entry entry = new Entry(types, frame.dependsOnIndex, index, getModificationStamp(index), metadataIndex,
+				getModificationStamp(metadataIndex));
+
+		synchronized (this)
+		{
+			this._entries.put(key, entry);
+		}
+
+		return types;
+	}
+
+	/**
+	 * The number of nodes whose types are kept
+	 * 
+	 * @return
+	 */
+	public synchronized int size()
+	{
+		return this._entries.size();
+	}
+
+	/**
+	 * An inference in progress
+	 */
+	private static class Frame
+	{
+		final Frame parent;
+		boolean dependsOnIndex;
+
+		Frame(Frame parent)
+		{
+			this.parent = parent;
+		}
+	}
+
+	/**
+	 * A node, compared by identity, with the range of the scope its types are inferred in. Each request creates its own
+	 * scopes, which are equivalent as long as they cover the same range of the same parse result.
+	 */
+	private static class Key
+	{
+		final IParseNode node;
+		final int scopeStart;
+		final int scopeEnd;
+
+		Key(IParseNode node, JSScope scope)
+		{
+			IRange range = (scope != null) ? scope.getRange() : null;
+
+			this.node = node;
+
+			if (range != null)
+			{
+				this.scopeStart = range.getStartingOffset();
+				this.scopeEnd = range.getEndingOffset();
+			}
+			else
+			{
+				this.scopeStart = -1;
+				this.scopeEnd = -1;
+			}
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Key))
+			{
+				return false;
+			}
+
+			Key other = (Key) obj;
+
+			return this.node == other.node && this.scopeStart == other.scopeStart && this.scopeEnd == other.scopeEnd;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return (System.identityHashCode(this.node) * 31 + this.scopeStart) * 31 + this.scopeEnd;
+		}
+	}
+
+	/**
+	 * The types of a node, with the state of the indexes they were inferred from, if any
+	 */
+	private static class Entry
+	{
+		final List<String> types;
+		final boolean dependsOnIndex;
+		final Index index;
+		final long indexStamp;
+		final Index metadataIndex;
+		final long metadataStamp;
+
+		Entry(List<String> types, boolean dependsOnIndex, Index index, long indexStamp, Index metadataIndex,
+				long metadataStamp)
+		{
+			this.types = types;
+			this.dependsOnIndex = dependsOnIndex;
+			this.index = index;
+			this.indexStamp = indexStamp;
+			this.metadataIndex = metadataIndex;
+			this.metadataStamp = metadataStamp;
+		}
+
+		boolean isValid(Index currentIndex, Index currentMetadataIndex)
+		{
+			if (!this.dependsOnIndex)
+			{
+				// inferred from the file alone
+				return true;
+			}
+
+			return this.index == currentIndex && this.indexStamp == getModificationStamp(currentIndex)
+					&& this.metadataIndex == currentMetadataIndex
+					&& this.metadataStamp == getModificationStamp(currentMetadataIndex);
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.js.parsing;
+
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jface.text.IDocument;
+
+import beaver.Scanner;
+
+import com.aptana.editor.common.contentassist.ILexemeProvider;
+import com.aptana.editor.common.contentassist.LexemeStore;
+import com.aptana.editor.js.parsing.lexer.JSTokenType;
+import com.aptana.parsing.lexer.IRange;
+
+/**
+ * The JavaScript tokens of a JavaScript document. The stores are connected to the documents of the JavaScript editor
+ * (see {@link #connect(IDocument)}); JavaScript embedded in other languages is still scanned by
+ * {@link JSFlexLexemeProvider}.
+ */
+public class JSFlexLexemeStore extends LexemeStore<JSTokenType>
+{
+
+	private static final Map<IDocument, JSFlexLexemeStore> STORES = new HashMap<IDocument, JSFlexLexemeStore>();
+
+	/**
+	 * Keeps the tokens of the given JavaScript document, until {@link #disconnect(IDocument)}.
+	 *
+	 * @param document
+	 */
+	public static void connect(IDocument document)
+	{
+		synchronized (STORES)
+		{
+			if (!STORES.containsKey(document))
+			{
+				STORES.put(document, new JSFlexLexemeStore(document));
+			}
+		}
+	}
+
+	/**
+	 * Forgets the tokens of the given document.
+	 *
+	 * @param document
+	 */
+	public static void disconnect(IDocument document)
+	{
+		JSFlexLexemeStore store;
+		synchronized (STORES)
+		{
+			store = STORES.remove(document);
+		}
+		if (store != null)
+		{
+			store.dispose();
+		}
+	}
+
+	/**
+	 * @param document
+	 * @return the store of the given document, or null if the document is not connected
+	 */
+	public static JSFlexLexemeStore getStore(IDocument document)
+	{
+		synchronized (STORES)
+		{
+			return STORES.get(document);
+		}
+	}
+
+	/**
+	 * Returns the lexemes of the partition containing the offset, from the store of the document if any, or by
+	 * scanning the partition.
+	 *
+	 * @param document
+	 * @param offset
+	 * @param includeOffset
+	 * @return the lexemes
+	 */
+	public static ILexemeProvider<JSTokenType> getLexemeProvider(IDocument document, int offset, int includeOffset)
+	{
+		JSFlexLexemeStore store = getStore(document);
+		if (store != null)
+		{
+			return store.getLexemeProvider(offset, includeOffset);
+		}
+		return new JSFlexLexemeProvider(document, offset, includeOffset, new JSFlexScanner());
+	}
+
+	/**
+	 * Returns the lexemes of the given range, from the store of the document if any, or by scanning the range.
+	 *
+	 * @param document
+	 * @param range
+	 * @return the lexemes
+	 */
+	public static ILexemeProvider<JSTokenType> getLexemeProvider(IDocument document, IRange range)
+	{
+		JSFlexLexemeStore store = getStore(document);
+		if (store != null)
+		{
+			return store.getLexemeProvider(range);
+		}
+		return new JSFlexLexemeProvider(document, range, new JSFlexScanner());
+	}
+
+	private JSFlexLexemeStore(IDocument document)
+	{
+		super(document);
+	}
+
+	@Override
+	protected Scanner createScanner()
+	{
+		JSFlexScanner scanner = new JSFlexScanner();
+		scanner.setCollectComments(false);
+		return scanner;
+	}
+
+	@Override
+	protected void setSource(Scanner scanner, Reader source)
+	{
+		((JSFlexScanner) scanner).setSource(source);
+	}
+
+	@Override
+	protected JSTokenType getTypeFromId(short id)
+	{
+		return JSTokenType.get(id);
+	}
+
+	/**
+	 * A '/' is a division or the start of a regular expression depending on the previous token, which the scanner
+	 * doesn't know when it restarts.
+	 */
+	@Override
+	protected boolean isRestartable(short id)
+	{
+		switch (id)
+		{
+			case Terminals.REGEX:
+			case Terminals.FORWARD_SLASH:
+			case Terminals.FORWARD_SLASH_EQUAL:
+				return false;
+
+			default:
+				return true;
+		}
+	}
+}
@@ -17,6 +17,7 @@ import beaver.Scanner;
 import beaver.Symbol;
 
 import com.aptana.editor.js.parsing.lexer.JSTokenType;
+import com.aptana.parsing.lexer.TokenTextTable;
 
 /**
  * This class is a scanner generated by <a href="http://www.jflex.de/">JFlex</a> 1.4.3 on 4/27/12 10:55 AM from the
@@ -413,6 +414,9 @@ public class JSFlexScanner extends Scanner
 	private List<Symbol> _singleLineComments = new ArrayList<Symbol>();
 	private List<Symbol> _multiLineComments = new ArrayList<Symbol>();
 
+	// shared text of identifiers and literals, or null when every token gets its own copy
+	private TokenTextTable _tokenText = new TokenTextTable();
+
 	public JSFlexScanner()
 	{
 		this((Reader) null);
@@ -453,6 +457,11 @@ public class JSFlexScanner extends Scanner
 		return new Symbol(id, yychar, yychar + yylength() - 1, value);
 	}
 
+	private String internedText()
+	{
+		return (_tokenText != null) ? _tokenText.intern(zzBuffer, zzStartRead, zzMarkedPos - zzStartRead) : yytext();
+	}
+
 	public Symbol nextToken() throws java.io.IOException, Scanner.Exception
 	{
 		// clear accumulators
@@ -516,9 +525,23 @@ public class JSFlexScanner extends Scanner
 		_collectComments = flag;
 	}
 
+	/**
+	 * Determines if tokens with the same text share a single string until the source changes, which is the default.
+	 * Keywords and operators always share constant strings.
+	 */
+	public void setInternText(boolean flag)
+	{
+		_tokenText = (flag) ? new TokenTextTable() : null;
+	}
+
 	public void setSource(String source)
 	{
-		yyreset(new StringReader(source));
+		setSource(new StringReader(source));
+	}
+
+	public void setSource(Reader source)
+	{
+		yyreset(source);
 
 		// clear last token
 		_lastToken = null;
@@ -528,6 +551,12 @@ public class JSFlexScanner extends Scanner
 		_multiLineComments.clear();
 		_sdocComments.clear();
 		_vsdocComments.clear();
+
+		// forget the texts of the previous source
+		if (_tokenText != null)
+		{
+			_tokenText.clear();
+		}
 	}
 
 	/**
@@ -868,158 +897,158 @@ public class JSFlexScanner extends Scanner
 					break;
 				case 81:
 				{
-					return newToken(Terminals.TYPEOF, yytext());
+					return newToken(Terminals.TYPEOF, "typeof");
 				}
 				case 90:
 					break;
 				case 37:
 				{
-					return newToken(Terminals.STRING, yytext());
+					return newToken(Terminals.STRING, internedText());
 				}
 				case 91:
 					break;
 				case 16:
 				{
-					return newToken(Terminals.RBRACKET, yytext());
+					return newToken(Terminals.RBRACKET, "]");
 				}
 				case 92:
 					break;
 				case 12:
 				{
-					return newToken(Terminals.PLUS, yytext());
+					return newToken(Terminals.PLUS, "+");
 				}
 				case 93:
 					break;
 				case 78:
 				{
-					return newToken(Terminals.WHILE, yytext());
+					return newToken(Terminals.WHILE, "while");
 				}
 				case 94:
 					break;
 				case 77:
 				{
-					return newToken(Terminals.THROW, yytext());
+					return newToken(Terminals.THROW, "throw");
 				}
 				case 95:
 					break;
 				case 33:
 				{
-					return newToken(Terminals.GREATER_GREATER, yytext());
+					return newToken(Terminals.GREATER_GREATER, ">>");
 				}
 				case 96:
 					break;
 				case 15:
 				{
-					return newToken(Terminals.LBRACKET, yytext());
+					return newToken(Terminals.LBRACKET, "[");
 				}
 				case 97:
 					break;
 				case 75:
 				{
-					return newToken(Terminals.BREAK, yytext());
+					return newToken(Terminals.BREAK, "break");
 				}
 				case 98:
 					break;
 				case 82:
 				{
-					return newToken(Terminals.DELETE, yytext());
+					return newToken(Terminals.DELETE, "delete");
 				}
 				case 99:
 					break;
 				case 36:
 				{
-					return newToken(Terminals.PLUS_EQUAL, yytext());
+					return newToken(Terminals.PLUS_EQUAL, "+=");
 				}
 				case 100:
 					break;
 				case 67:
 				{
-					return newToken(Terminals.CASE, yytext());
+					return newToken(Terminals.CASE, "case");
 				}
 				case 101:
 					break;
 				case 42:
 				{
-					return newToken(Terminals.DO, yytext());
+					return newToken(Terminals.DO, "do");
 				}
 				case 102:
 					break;
 				case 48:
 				{
-					return newToken(Terminals.PIPE_PIPE, yytext());
+					return newToken(Terminals.PIPE_PIPE, "||");
 				}
 				case 103:
 					break;
 				case 62:
 				{
-					return newToken(Terminals.EXCLAMATION_EQUAL_EQUAL, yytext());
+					return newToken(Terminals.EXCLAMATION_EQUAL_EQUAL, "!==");
 				}
 				case 104:
 					break;
 				case 58:
 				{
-					return newToken(Terminals.TRY, yytext());
+					return newToken(Terminals.TRY, "try");
 				}
 				case 105:
 					break;
 				case 29:
 				{
 					yybegin(YYINITIAL);
-					return newToken(Terminals.FORWARD_SLASH, yytext());
+					return newToken(Terminals.FORWARD_SLASH, "/");
 				}
 				case 106:
 					break;
 				case 79:
 				{
-					return newToken(Terminals.RETURN, yytext());
+					return newToken(Terminals.RETURN, "return");
 				}
 				case 107:
 					break;
 				case 85:
 				{
-					return newToken(Terminals.FUNCTION, yytext());
+					return newToken(Terminals.FUNCTION, "function");
 				}
 				case 108:
 					break;
 				case 34:
 				{
-					return newToken(Terminals.GREATER_EQUAL, yytext());
+					return newToken(Terminals.GREATER_EQUAL, ">=");
 				}
 				case 109:
 					break;
 				case 32:
 				{
-					return newToken(Terminals.PERCENT_EQUAL, yytext());
+					return newToken(Terminals.PERCENT_EQUAL, "%=");
 				}
 				case 110:
 					break;
 				case 21:
 				{
-					return newToken(Terminals.MINUS, yytext());
+					return newToken(Terminals.MINUS, "-");
 				}
 				case 111:
 					break;
 				case 27:
 				{
-					return newToken(Terminals.COMMA, yytext());
+					return newToken(Terminals.COMMA, ",");
 				}
 				case 112:
 					break;
 				case 74:
 				{
-					return newToken(Terminals.FALSE, yytext());
+					return newToken(Terminals.FALSE, "false");
 				}
 				case 113:
 					break;
 				case 6:
 				{
-					return newToken(Terminals.QUESTION, yytext());
+					return newToken(Terminals.QUESTION, "?");
 				}
 				case 114:
 					break;
 				case 44:
 				{
-					return newToken(Terminals.EXCLAMATION_EQUAL, yytext());
+					return newToken(Terminals.EXCLAMATION_EQUAL, "!=");
 				}
 				case 115:
 					break;
@@ -1034,13 +1063,13 @@ public class JSFlexScanner extends Scanner
 					break;
 				case 23:
 				{
-					return newToken(Terminals.TILDE, yytext());
+					return newToken(Terminals.TILDE, "~");
 				}
 				case 117:
 					break;
 				case 87:
 				{
-					return newToken(Terminals.INSTANCEOF, yytext());
+					return newToken(Terminals.INSTANCEOF, "instanceof");
 				}
 				case 118:
 					break;
@@ -1053,158 +1082,158 @@ public class JSFlexScanner extends Scanner
 					break;
 				case 51:
 				{
-					return newToken(Terminals.CARET_EQUAL, yytext());
+					return newToken(Terminals.CARET_EQUAL, "^=");
 				}
 				case 120:
 					break;
 				case 26:
 				{
-					return newToken(Terminals.RPAREN, yytext());
+					return newToken(Terminals.RPAREN, ")");
 				}
 				case 121:
 					break;
 				case 8:
 				{
-					return newToken(Terminals.RCURLY, yytext());
+					return newToken(Terminals.RCURLY, "}");
 				}
 				case 122:
 					break;
 				case 18:
 				{
-					return newToken(Terminals.EXCLAMATION, yytext());
+					return newToken(Terminals.EXCLAMATION, "!");
 				}
 				case 123:
 					break;
 				case 60:
 				{
-					return newToken(Terminals.VAR, yytext());
+					return newToken(Terminals.VAR, internedText());
 				}
 				case 124:
 					break;
 				case 45:
 				{
-					return newToken(Terminals.AMPERSAND_EQUAL, yytext());
+					return newToken(Terminals.AMPERSAND_EQUAL, "&=");
 				}
 				case 125:
 					break;
 				case 25:
 				{
-					return newToken(Terminals.LPAREN, yytext());
+					return newToken(Terminals.LPAREN, "(");
 				}
 				case 126:
 					break;
 				case 22:
 				{
-					return newToken(Terminals.CARET, yytext());
+					return newToken(Terminals.CARET, "^");
 				}
 				case 127:
 					break;
 				case 35:
 				{
-					return newToken(Terminals.PLUS_PLUS, yytext());
+					return newToken(Terminals.PLUS_PLUS, "++");
 				}
 				case 128:
 					break;
 				case 84:
 				{
-					return newToken(Terminals.DEFAULT, yytext());
+					return newToken(Terminals.DEFAULT, "default");
 				}
 				case 129:
 					break;
 				case 17:
 				{
-					return newToken(Terminals.EQUAL, yytext());
+					return newToken(Terminals.EQUAL, "=");
 				}
 				case 130:
 					break;
 				case 66:
 				{
-					return newToken(Terminals.ELSE, yytext());
+					return newToken(Terminals.ELSE, "else");
 				}
 				case 131:
 					break;
 				case 72:
 				{
-					return newToken(Terminals.VOID, yytext());
+					return newToken(Terminals.VOID, "void");
 				}
 				case 132:
 					break;
 				case 10:
 				{
-					return newToken(Terminals.NUMBER, yytext());
+					return newToken(Terminals.NUMBER, internedText());
 				}
 				case 133:
 					break;
 				case 69:
 				{
-					return newToken(Terminals.THIS, yytext());
+					return newToken(Terminals.THIS, "this");
 				}
 				case 134:
 					break;
 				case 64:
 				{
-					return newToken(Terminals.GREATER_GREATER_GREATER_EQUAL, yytext());
+					return newToken(Terminals.GREATER_GREATER_GREATER_EQUAL, ">>>=");
 				}
 				case 135:
 					break;
 				case 52:
 				{
 					yybegin(YYINITIAL);
-					return newToken(Terminals.FORWARD_SLASH_EQUAL, yytext());
+					return newToken(Terminals.FORWARD_SLASH_EQUAL, "/=");
 				}
 				case 136:
 					break;
 				case 11:
 				{
-					return newToken(Terminals.DOT, yytext());
+					return newToken(Terminals.DOT, ".");
 				}
 				case 137:
 					break;
 				case 7:
 				{
-					return newToken(Terminals.LCURLY, yytext());
+					return newToken(Terminals.LCURLY, "{");
 				}
 				case 138:
 					break;
 				case 30:
 				{
-					return newToken(Terminals.LESS_LESS, yytext());
+					return newToken(Terminals.LESS_LESS, "<<");
 				}
 				case 139:
 					break;
 				case 43:
 				{
-					return newToken(Terminals.EQUAL_EQUAL, yytext());
+					return newToken(Terminals.EQUAL_EQUAL, "==");
 				}
 				case 140:
 					break;
 				case 40:
 				{
-					return newToken(Terminals.IF, yytext());
+					return newToken(Terminals.IF, "if");
 				}
 				case 141:
 					break;
 				case 3:
 				{
-					return newToken(Terminals.LESS, yytext());
+					return newToken(Terminals.LESS, "<");
 				}
 				case 142:
 					break;
 				case 4:
 				{
-					return newToken(Terminals.PERCENT, yytext());
+					return newToken(Terminals.PERCENT, "%");
 				}
 				case 143:
 					break;
 				case 55:
 				{
-					return newToken(Terminals.GREATER_GREATER_EQUAL, yytext());
+					return newToken(Terminals.GREATER_GREATER_EQUAL, ">>=");
 				}
 				case 144:
 					break;
 				case 54:
 				{
-					return newToken(Terminals.GREATER_GREATER_GREATER, yytext());
+					return newToken(Terminals.GREATER_GREATER_GREATER, ">>>");
 				}
 				case 145:
 					break;
@@ -1219,109 +1248,109 @@ public class JSFlexScanner extends Scanner
 					break;
 				case 59:
 				{
-					return newToken(Terminals.NEW, yytext());
+					return newToken(Terminals.NEW, "new");
 				}
 				case 147:
 					break;
 				case 20:
 				{
-					return newToken(Terminals.PIPE, yytext());
+					return newToken(Terminals.PIPE, "|");
 				}
 				case 148:
 					break;
 				case 5:
 				{
-					return newToken(Terminals.GREATER, yytext());
+					return newToken(Terminals.GREATER, ">");
 				}
 				case 149:
 					break;
 				case 57:
 				{
-					return newToken(Terminals.FOR, yytext());
+					return newToken(Terminals.FOR, "for");
 				}
 				case 150:
 					break;
 				case 70:
 				{
-					return newToken(Terminals.NULL, yytext());
+					return newToken(Terminals.NULL, "null");
 				}
 				case 151:
 					break;
 				case 83:
 				{
-					return newToken(Terminals.FINALLY, yytext());
+					return newToken(Terminals.FINALLY, "finally");
 				}
 				case 152:
 					break;
 				case 68:
 				{
-					return newToken(Terminals.TRUE, yytext());
+					return newToken(Terminals.TRUE, "true");
 				}
 				case 153:
 					break;
 				case 24:
 				{
-					return newToken(Terminals.SEMICOLON, yytext());
+					return newToken(Terminals.SEMICOLON, ";");
 				}
 				case 154:
 					break;
 				case 47:
 				{
-					return newToken(Terminals.PIPE_EQUAL, yytext());
+					return newToken(Terminals.PIPE_EQUAL, "|=");
 				}
 				case 155:
 					break;
 				case 50:
 				{
-					return newToken(Terminals.MINUS_MINUS, yytext());
+					return newToken(Terminals.MINUS_MINUS, "--");
 				}
 				case 156:
 					break;
 				case 31:
 				{
-					return newToken(Terminals.LESS_EQUAL, yytext());
+					return newToken(Terminals.LESS_EQUAL, "<=");
 				}
 				case 157:
 					break;
 				case 53:
 				{
-					return newToken(Terminals.LESS_LESS_EQUAL, yytext());
+					return newToken(Terminals.LESS_LESS_EQUAL, "<<=");
 				}
 				case 158:
 					break;
 				case 14:
 				{
-					return newToken(Terminals.STAR, yytext());
+					return newToken(Terminals.STAR, "*");
 				}
 				case 159:
 					break;
 				case 28:
 				{
-					return newToken(Terminals.COLON, yytext());
+					return newToken(Terminals.COLON, ":");
 				}
 				case 160:
 					break;
 				case 61:
 				{
-					return newToken(Terminals.EQUAL_EQUAL_EQUAL, yytext());
+					return newToken(Terminals.EQUAL_EQUAL_EQUAL, "===");
 				}
 				case 161:
 					break;
 				case 46:
 				{
-					return newToken(Terminals.AMPERSAND_AMPERSAND, yytext());
+					return newToken(Terminals.AMPERSAND_AMPERSAND, "&&");
 				}
 				case 162:
 					break;
 				case 86:
 				{
-					return newToken(Terminals.CONTINUE, yytext());
+					return newToken(Terminals.CONTINUE, "continue");
 				}
 				case 163:
 					break;
 				case 49:
 				{
-					return newToken(Terminals.MINUS_EQUAL, yytext());
+					return newToken(Terminals.MINUS_EQUAL, "-=");
 				}
 				case 164:
 					break;
@@ -1341,31 +1370,31 @@ public class JSFlexScanner extends Scanner
 					break;
 				case 41:
 				{
-					return newToken(Terminals.IN, yytext());
+					return newToken(Terminals.IN, "in");
 				}
 				case 167:
 					break;
 				case 76:
 				{
-					return newToken(Terminals.CATCH, yytext());
+					return newToken(Terminals.CATCH, "catch");
 				}
 				case 168:
 					break;
 				case 39:
 				{
-					return newToken(Terminals.STAR_EQUAL, yytext());
+					return newToken(Terminals.STAR_EQUAL, "*=");
 				}
 				case 169:
 					break;
 				case 9:
 				{
-					return newToken(Terminals.IDENTIFIER, yytext());
+					return newToken(Terminals.IDENTIFIER, internedText());
 				}
 				case 170:
 					break;
 				case 19:
 				{
-					return newToken(Terminals.AMPERSAND, yytext());
+					return newToken(Terminals.AMPERSAND, "&");
 				}
 				case 171:
 					break;
@@ -1378,13 +1407,13 @@ public class JSFlexScanner extends Scanner
 					break;
 				case 80:
 				{
-					return newToken(Terminals.SWITCH, yytext());
+					return newToken(Terminals.SWITCH, "switch");
 				}
 				case 173:
 					break;
 				case 71:
 				{
-					return newToken(Terminals.WITH, yytext());
+					return newToken(Terminals.WITH, "with");
 				}
 				case 174:
 					break;
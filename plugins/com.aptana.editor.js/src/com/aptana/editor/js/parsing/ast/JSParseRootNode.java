@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -12,12 +12,15 @@ import beaver.Symbol;
 import com.aptana.editor.js.IJSConstants;
 import com.aptana.editor.js.inferencing.JSScope;
 import com.aptana.editor.js.inferencing.JSSymbolCollector;
+import com.aptana.editor.js.inferencing.JSTypeInferenceCache;
 import com.aptana.parsing.ast.ParseRootNode;
 
 public class JSParseRootNode extends ParseRootNode
 {
 	private static final Symbol[] NO_SYMBOLS = new Symbol[0];
 
+	private JSTypeInferenceCache _typeInferenceCache;
+
 	/**
 	 * JSParseRootNode
 	 */
@@ -68,6 +71,21 @@ public class JSParseRootNode extends ParseRootNode
 		return s.getScope();
 	}
 
+	/**
+	 * getTypeInferenceCache
+	 * 
+	 * @return the cache of the types inferred for the nodes of this tree
+	 */
+	public synchronized JSTypeInferenceCache getTypeInferenceCache()
+	{
+		if (this._typeInferenceCache == null)
+		{
+			this._typeInferenceCache = new JSTypeInferenceCache();
+		}
+
+		return this._typeInferenceCache;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.parsing.ast.ParseNode#toString()
@@ -10,6 +10,7 @@ import beaver.Symbol;
 
 import com.aptana.editor.js.parsing.Terminals;
 import com.aptana.editor.js.sdoc.lexer.SDocTokenType;
+import com.aptana.parsing.lexer.TokenTextTable;
 
 /**
  * This class is a scanner generated by <a href="http://www.jflex.de/">JFlex</a> 1.4.3 on 10/20/11 5:04 PM from the
@@ -399,6 +400,9 @@ class SDocFlexScanner extends Scanner
 	/* user code: */
 	private int _offset;
 
+	// shared text of words and type names
+	private TokenTextTable _tokenText = new TokenTextTable();
+
 	public SDocFlexScanner()
 	{
 		this((Reader) null);
@@ -418,6 +422,11 @@ class SDocFlexScanner extends Scanner
 		return new Symbol(id, start, end, value);
 	}
 
+	private String internedText()
+	{
+		return _tokenText.intern(zzBuffer, zzStartRead, zzMarkedPos - zzStartRead);
+	}
+
 	public Symbol nextToken() throws java.io.IOException, Scanner.Exception
 	{
 		Symbol result;
@@ -447,6 +456,9 @@ class SDocFlexScanner extends Scanner
 	public void setSource(String source)
 	{
 		yyreset(new StringReader(source));
+
+		// forget the texts of the previous source
+		_tokenText.clear();
 	}
 
 	/**
@@ -812,261 +824,261 @@ class SDocFlexScanner extends Scanner
 					break;
 				case 1:
 				{
-					return newToken(SDocTokenType.TEXT, yytext());
+					return newToken(SDocTokenType.TEXT, internedText());
 				}
 				case 48:
 					break;
 				case 22:
 				{
-					return newToken(SDocTokenType.ARROW, yytext());
+					return newToken(SDocTokenType.ARROW, "->");
 				}
 				case 49:
 					break;
 				case 24:
 				{
-					return newToken(SDocTokenType.ELLIPSIS, yytext());
+					return newToken(SDocTokenType.ELLIPSIS, "...");
 				}
 				case 50:
 					break;
 				case 13:
 				{
-					return newToken(SDocTokenType.LPAREN, yytext());
+					return newToken(SDocTokenType.LPAREN, "(");
 				}
 				case 51:
 					break;
 				case 34:
 				{
-					return newToken(SDocTokenType.EXAMPLE, yytext());
+					return newToken(SDocTokenType.EXAMPLE, "@example");
 				}
 				case 52:
 					break;
 				case 41:
 				{
-					return newToken(SDocTokenType.PROPERTY, yytext());
+					return newToken(SDocTokenType.PROPERTY, "@property");
 				}
 				case 53:
 					break;
 				case 25:
 				{
-					return newToken(SDocTokenType.SEE, yytext());
+					return newToken(SDocTokenType.SEE, "@see");
 				}
 				case 54:
 					break;
 				case 12:
 				{
 					yybegin(YYINITIAL);
-					return newToken(SDocTokenType.RCURLY, yytext());
+					return newToken(SDocTokenType.RCURLY, "}");
 				}
 				case 55:
 					break;
 				case 35:
 				{
-					return newToken(SDocTokenType.EXTENDS, yytext());
+					return newToken(SDocTokenType.EXTENDS, "@extends");
 				}
 				case 56:
 					break;
 				case 5:
 				{
-					return newToken(SDocTokenType.LBRACKET, yytext());
+					return newToken(SDocTokenType.LBRACKET, "[");
 				}
 				case 57:
 					break;
 				case 39:
 				{
-					return newToken(SDocTokenType.INTERNAL, yytext());
+					return newToken(SDocTokenType.INTERNAL, "@internal");
 				}
 				case 58:
 					break;
 				case 27:
 				{
-					return newToken(SDocTokenType.ARRAY, yytext());
+					return newToken(SDocTokenType.ARRAY, "Array");
 				}
 				case 59:
 					break;
 				case 33:
 				{
-					return newToken(SDocTokenType.METHOD, yytext());
+					return newToken(SDocTokenType.METHOD, "@method");
 				}
 				case 60:
 					break;
 				case 20:
 				{
-					return newToken(SDocTokenType.END_DOCUMENTATION, yytext());
+					return newToken(SDocTokenType.END_DOCUMENTATION, "*/");
 				}
 				case 61:
 					break;
 				case 40:
 				{
-					return newToken(SDocTokenType.OVERVIEW, yytext());
+					return newToken(SDocTokenType.OVERVIEW, "@overview");
 				}
 				case 62:
 					break;
 				case 19:
 				{
-					return newToken(SDocTokenType.PIPE, yytext());
+					return newToken(SDocTokenType.PIPE, "|");
 				}
 				case 63:
 					break;
 				case 30:
 				{
-					return newToken(SDocTokenType.PARAM, yytext());
+					return newToken(SDocTokenType.PARAM, "@param");
 				}
 				case 64:
 					break;
 				case 42:
 				{
-					return newToken(SDocTokenType.NAMESPACE, yytext());
+					return newToken(SDocTokenType.NAMESPACE, "@namespace");
 				}
 				case 65:
 					break;
 				case 31:
 				{
-					return newToken(SDocTokenType.AUTHOR, yytext());
+					return newToken(SDocTokenType.AUTHOR, "@author");
 				}
 				case 66:
 					break;
 				case 36:
 				{
-					return newToken(SDocTokenType.PRIVATE, yytext());
+					return newToken(SDocTokenType.PRIVATE, "@private");
 				}
 				case 67:
 					break;
 				case 8:
 				{
-					return newToken(SDocTokenType.RCURLY, yytext());
+					return newToken(SDocTokenType.RCURLY, "}");
 				}
 				case 68:
 					break;
 				case 6:
 				{
-					return newToken(SDocTokenType.RBRACKET, yytext());
+					return newToken(SDocTokenType.RBRACKET, "]");
 				}
 				case 69:
 					break;
 				case 43:
 				{
-					return newToken(SDocTokenType.EXCEPTION, yytext());
+					return newToken(SDocTokenType.EXCEPTION, "@exception");
 				}
 				case 70:
 					break;
 				case 3:
 				{
-					return newToken(SDocTokenType.UNKNOWN, yytext());
+					return newToken(SDocTokenType.UNKNOWN, internedText());
 				}
 				case 71:
 					break;
 				case 32:
 				{
-					return newToken(SDocTokenType.RETURN, yytext());
+					return newToken(SDocTokenType.RETURN, "@return");
 				}
 				case 72:
 					break;
 				case 7:
 				{
 					yybegin(TYPES);
-					return newToken(SDocTokenType.LCURLY, yytext());
+					return newToken(SDocTokenType.LCURLY, "{");
 				}
 				case 73:
 					break;
 				case 28:
 				{
-					return newToken(SDocTokenType.CLASS, yytext());
+					return newToken(SDocTokenType.CLASS, "Class");
 				}
 				case 74:
 					break;
 				case 44:
 				{
-					return newToken(SDocTokenType.CONSTRUCTOR, yytext());
+					return newToken(SDocTokenType.CONSTRUCTOR, "@constructor");
 				}
 				case 75:
 					break;
 				case 9:
 				{
-					return newToken(SDocTokenType.ERROR, yytext());
+					return newToken(SDocTokenType.ERROR, internedText());
 				}
 				case 76:
 					break;
 				case 14:
 				{
-					return newToken(SDocTokenType.RPAREN, yytext());
+					return newToken(SDocTokenType.RPAREN, ")");
 				}
 				case 77:
 					break;
 				case 10:
 				{
-					return newToken(SDocTokenType.IDENTIFIER, yytext());
+					return newToken(SDocTokenType.IDENTIFIER, internedText());
 				}
 				case 78:
 					break;
 				case 17:
 				{
-					return newToken(SDocTokenType.COLON, yytext());
+					return newToken(SDocTokenType.COLON, ":");
 				}
 				case 79:
 					break;
 				case 29:
 				{
-					return newToken(SDocTokenType.ALIAS, yytext());
+					return newToken(SDocTokenType.ALIAS, "@alias");
 				}
 				case 80:
 					break;
 				case 4:
 				{
-					return newToken(SDocTokenType.POUND, yytext());
+					return newToken(SDocTokenType.POUND, "#");
 				}
 				case 81:
 					break;
 				case 38:
 				{
-					return newToken(SDocTokenType.ADVANCED, yytext());
+					return newToken(SDocTokenType.ADVANCED, "@advanced");
 				}
 				case 82:
 					break;
 				case 18:
 				{
-					return newToken(SDocTokenType.COMMA, yytext());
+					return newToken(SDocTokenType.COMMA, ",");
 				}
 				case 83:
 					break;
 				case 45:
 				{
-					return newToken(SDocTokenType.CLASS_DESCRIPTION, yytext());
+					return newToken(SDocTokenType.CLASS_DESCRIPTION, "@classDescription");
 				}
 				case 84:
 					break;
 				case 37:
 				{
-					return newToken(SDocTokenType.FUNCTION, yytext());
+					return newToken(SDocTokenType.FUNCTION, "Function");
 				}
 				case 85:
 					break;
 				case 16:
 				{
-					return newToken(SDocTokenType.GREATER_THAN, yytext());
+					return newToken(SDocTokenType.GREATER_THAN, ">");
 				}
 				case 86:
 					break;
 				case 11:
 				{
-					return newToken(SDocTokenType.LCURLY, yytext());
+					return newToken(SDocTokenType.LCURLY, "{");
 				}
 				case 87:
 					break;
 				case 15:
 				{
-					return newToken(SDocTokenType.LESS_THAN, yytext());
+					return newToken(SDocTokenType.LESS_THAN, "<");
 				}
 				case 88:
 					break;
 				case 26:
 				{
-					return newToken(SDocTokenType.TYPE, yytext());
+					return newToken(SDocTokenType.TYPE, "@type");
 				}
 				case 89:
 					break;
 				case 23:
 				{
-					return newToken(SDocTokenType.START_DOCUMENTATION, yytext());
+					return newToken(SDocTokenType.START_DOCUMENTATION, "/**");
 				}
 				case 90:
 					break;
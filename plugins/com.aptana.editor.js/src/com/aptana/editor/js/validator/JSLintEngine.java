@@ -0,0 +1,359 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.js.validator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextAction;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.NativeArray;
+import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+import com.aptana.core.logging.IdeLog;
+import com.aptana.core.util.ArrayUtil;
+import com.aptana.core.util.StringUtil;
+import com.aptana.editor.js.JSPlugin;
+import com.aptana.jetty.util.epl.ajax.JSON;
+
+/**
+ * Runs JSLint in Rhino. The lint script is compiled once to Java bytecode and executed into a pool of independent
+ * scopes, one per linting thread, so that files can be linted in parallel. The results are cached by the hashes of the
+ * source and of the options.
+ */
+class JSLintEngine
+{
+
+	/**
+	 * A problem reported by JSLint. Doesn't depend on the path of the file, so that it can be cached by content.
+	 */
+	static class Lint
+	{
+		final String reason;
+		final int line;
+		final int offset;
+		final boolean error;
+
+		Lint(String reason, int line, int offset, boolean error)
+		{
+			this.reason = reason;
+			this.line = line;
+			this.offset = offset;
+			this.error = error;
+		}
+	}
+
+	/**
+	 * The maximum number of scopes, i.e. of files linted in parallel.
+	 */
+	private static final int MAX_SCOPES = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * The number of results kept in the cache.
+	 */
+	private static final int CACHE_SIZE = 100;
+
+	private final ContextFactory fContextFactory = new ContextFactory();
+	private final Script fScript;
+	private final BlockingQueue<ScriptableObject> fIdleScopes = new LinkedBlockingQueue<ScriptableObject>();
+	private final AtomicInteger fScopes = new AtomicInteger();
+	private final Map<String, List<Lint>> fResults;
+
+	/**
+	 * Compiles the lint script.
+	 *
+	 * @param source
+	 *            the source of JSLint
+	 * @param filename
+	 *            the name of the script, for the error messages
+	 */
+	JSLintEngine(final String source, final String filename)
+	{
+		fScript = (Script) fContextFactory.call(new ContextAction()
+		{
+			public Object run(Context cx)
+			{
+				cx.setOptimizationLevel(9);
+				try
+				{
+					return cx.compileString(source, filename, 1, null);
+				}
+				catch (RuntimeException e)
+				{
+					// i.e. a method exceeding the 64K limit of the class files
+					IdeLog.logWarning(JSPlugin.getDefault(), "Failed to compile JSLint, falling back to interpreting it", //$NON-NLS-1$
+							e);
+					cx.setOptimizationLevel(-1);
+					return cx.compileString(source, filename, 1, null);
+				}
+			}
+		});
+		fResults = Collections.synchronizedMap(new LinkedHashMap<String, List<Lint>>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, List<Lint>> eldest)
+			{
+				return size() > CACHE_SIZE;
+			}
+		});
+	}
+
+	/**
+	 * Lints the source. Safe to be called concurrently.
+	 *
+	 * @param source
+	 * @param options
+	 *            the JSLint options as JSON
+	 * @return the problems found
+	 */
+	List<Lint> lint(String source, String options)
+	{
+		String key = StringUtil.md5(source) + StringUtil.md5(options);
+		List<Lint> result = fResults.get(key);
+		if (result != null)
+		{
+			return result;
+		}
+
+		ScriptableObject scope = checkOut();
+		if (scope == null)
+		{
+			return Collections.emptyList();
+		}
+		try
+		{
+			result = Collections.unmodifiableList(runLint(scope, source, options));
+		}
+		finally
+		{
+			fIdleScopes.add(scope);
+		}
+		fResults.put(key, result);
+		return result;
+	}
+
+	/**
+	 * Forgets the cached results.
+	 */
+	void clearCache()
+	{
+		fResults.clear();
+	}
+
+	/**
+	 * @return an idle scope, a new one if there is none and the pool is not full, or null if interrupted while waiting
+	 *         for one.
+	 */
+	private ScriptableObject checkOut()
+	{
+		ScriptableObject scope = fIdleScopes.poll();
+		if (scope != null)
+		{
+			return scope;
+		}
+		if (fScopes.incrementAndGet() <= MAX_SCOPES)
+		{
+			boolean created = false;
+			try
+			{
+				scope = createScope();
+				created = true;
+				return scope;
+			}
+			finally
+			{
+				if (!created)
+				{
+					// give the slot back, so that a failure does not shrink the pool
+					fScopes.decrementAndGet();
+				}
+			}
+		}
+		fScopes.decrementAndGet();
+		try
+		{
+			return fIdleScopes.take();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	private ScriptableObject createScope()
+	{
+		return (ScriptableObject) fContextFactory.call(new ContextAction()
+		{
+			public Object run(Context cx)
+			{
+				// JSLint adds to the standard prototypes, so they can't be sealed
+				ScriptableObject scope = cx.initStandardObjects();
+				fScript.exec(cx, scope);
+				scope.sealObject();
+				return scope;
+			}
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<Lint> runLint(final ScriptableObject scope, final String source, final String options)
+	{
+		return (List<Lint>) fContextFactory.call(new ContextAction()
+		{
+			public Object run(Context cx)
+			{
+				Function lintFunc = (Function) scope.get("JSLINT", scope); //$NON-NLS-1$
+				Object[] args = new Object[] { source, optionsAsJavaScriptObject(cx, scope, options) };
+				// PC: we ignore the result, because i have found that with some versions, there might
+				// be errors but this function returned true (false == errors)
+				lintFunc.call(cx, scope, scope, args);
+				return getProblems(scope, lintFunc, source);
+			}
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	private Scriptable optionsAsJavaScriptObject(Context cx, Scriptable scope, String options)
+	{
+		Scriptable opts = cx.newObject(scope);
+		Object parsed = StringUtil.isEmpty(options) ? null : JSON.parse(options);
+		if (parsed instanceof Map)
+		{
+			for (Map.Entry<String, Object> entry : ((Map<String, Object>) parsed).entrySet())
+			{
+				Object value = entry.getValue();
+				if (value != null && value.getClass().isArray())
+				{
+					value = cx.newArray(scope, (Object[]) value);
+				}
+				else
+				{
+					value = Context.javaToJS(value, opts);
+				}
+				opts.put(entry.getKey(), opts, value);
+			}
+		}
+		return opts;
+	}
+
+	private List<Lint> getProblems(Scriptable scope, Function lintFunc, String source)
+	{
+		List<Lint> items = new ArrayList<Lint>();
+		Object errorObject = lintFunc.get("errors", scope); //$NON-NLS-1$
+		if (!(errorObject instanceof NativeArray))
+		{
+			return items;
+		}
+
+		NativeArray errorArray = (NativeArray) errorObject;
+		Object[] ids = errorArray.getIds();
+		if (ArrayUtil.isEmpty(ids))
+		{
+			return items;
+		}
+
+		boolean lastIsError = false;
+		NativeObject last = (NativeObject) errorArray.get(Integer.parseInt(ids[ids.length - 1].toString()), scope);
+		if (last == null)
+		{
+			lastIsError = true;
+		}
+
+		IDocument doc = null; // Lazily init document object to query about lines/offsets
+		for (int i = 0; i < ids.length; ++i)
+		{
+			// Grab the warning/error
+			NativeObject object = (NativeObject) errorArray.get(Integer.parseInt(ids[i].toString()), scope);
+			if (object == null)
+			{
+				continue;
+			}
+
+			// Grab the line of the error
+			int line = (int) Double.parseDouble(object.get("line", scope).toString()); //$NON-NLS-1$
+
+			// Grab the details of the error
+			String reason = object.get("reason", scope).toString().trim(); //$NON-NLS-1$
+
+			// lazy init of document to query for offsets/line info
+			if (doc == null)
+			{
+				doc = new Document(source);
+			}
+
+			// Translate the column reported into the absolute offset from start of doc
+			int character = (int) Double.parseDouble(object.get("character", scope).toString()); //$NON-NLS-1$
+			try
+			{
+				// JSLint reports the offset as column on the given line, and counts tab characters as 4 columns
+				// We account for that by adding the offset of the line start, and reducing the column count on tabs
+				IRegion lineInfo = doc.getLineInformation(line - 1);
+				int realOffset = lineInfo.getOffset();
+				String rawLine = doc.get(realOffset, lineInfo.getLength());
+				int lineLength = rawLine.length();
+				int actual = character - 1;
+				for (int x = 0; x < actual; x++)
+				{
+					if (lineLength <= x)
+					{
+						break;
+					}
+					char c = rawLine.charAt(x);
+					if (c == '\t')
+					{
+						actual -= 3;
+					}
+					realOffset++;
+				}
+				character = realOffset;
+			}
+			catch (BadLocationException e)
+			{
+				// ignore
+			}
+
+			// Now record the error
+			if (i == ids.length - 2 && lastIsError)
+			{
+				// If this starts with "Stopping", convert the last warning to an error and skip this.
+				if (reason.startsWith("Stopping")) //$NON-NLS-1$
+				{
+					Lint lastWarning = items.remove(items.size() - 1);
+					items.add(new Lint(lastWarning.reason, lastWarning.line, lastWarning.offset, true));
+				}
+				else
+				{
+					items.add(new Lint(reason, line, character, true));
+				}
+			}
+			else
+			{
+				items.add(new Lint(reason, line, character, false));
+			}
+		}
+		return items;
+	}
+}
@@ -9,6 +9,7 @@ package com.aptana.explorer;
 
 import org.eclipse.core.commands.Command;
 import org.eclipse.core.commands.State;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -29,6 +30,7 @@ import org.eclipse.ui.progress.UIJob;
 import org.osgi.framework.BundleContext;
 
 import com.aptana.core.util.EclipseUtil;
+import com.aptana.explorer.internal.ui.FilenameIndex;
 
 /**
  * The activator class controls the plug-in life cycle
@@ -45,6 +47,8 @@ public class ExplorerPlugin extends AbstractUIPlugin
 	// The shared instance
 	private static ExplorerPlugin plugin;
 
+	private FilenameIndex fFilenameIndex;
+
 	private final IPerspectiveListener fPerspectiveListener = new IPerspectiveListener()
 	{
 
@@ -160,6 +164,14 @@ public class ExplorerPlugin extends AbstractUIPlugin
 		try
 		{
 			removePartListener();
+			synchronized (this)
+			{
+				if (fFilenameIndex != null)
+				{
+					fFilenameIndex.dispose();
+					fFilenameIndex = null;
+				}
+			}
 		}
 		finally
 		{
@@ -178,6 +190,20 @@ public class ExplorerPlugin extends AbstractUIPlugin
 		return plugin;
 	}
 
+	/**
+	 * Returns the workspace filename index that is used by the explorer filters.
+	 * 
+	 * @return A {@link FilenameIndex}
+	 */
+	public synchronized FilenameIndex getFilenameIndex()
+	{
+		if (fFilenameIndex == null)
+		{
+			fFilenameIndex = new FilenameIndex(ResourcesPlugin.getWorkspace());
+		}
+		return fFilenameIndex;
+	}
+
 	public static Image getImage(String string)
 	{
 		if (getDefault().getImageRegistry().get(string) == null)
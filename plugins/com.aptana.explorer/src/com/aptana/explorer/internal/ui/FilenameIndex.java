@@ -0,0 +1,423 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.explorer.internal.ui;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IResourceProxyVisitor;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import com.aptana.core.util.EclipseUtil;
+import com.aptana.explorer.ExplorerPlugin;
+
+/**
+ * An in-memory index of the names of all the resources in the workspace. The index is built once, either in a
+ * background job (see {@link #initializeInBackground()}) or on the first access, and is then kept up to date from the
+ * workspace resource deltas. It allows the explorer filters to find the matching resources without walking the
+ * resource tree through the viewer's content provider.
+ */
+public class FilenameIndex implements IResourceChangeListener
+{
+
+	/**
+	 * Match the beginning of the resource name (case insensitive).
+	 */
+	public static final int PREFIX_MATCH = 0;
+
+	/**
+	 * Match any part of the resource name (case insensitive).
+	 */
+	public static final int SUBSTRING_MATCH = 1;
+
+	/**
+	 * Match the upper-case characters of a camel-case resource name (e.g. 'FPV' matches 'FilteringProjectView.java').
+	 */
+	public static final int CAMEL_CASE_MATCH = 2;
+
+	private final IWorkspace workspace;
+
+	/**
+	 * The full paths of all the resources (files and folders, but not the projects), keyed by their portable string.
+	 * Since they are sorted, the resources under a container are a contiguous range.
+	 */
+	private TreeMap<String, IPath> paths;
+
+	/**
+	 * Lower-cased resource names, mapped to the full paths of the resources with that name.
+	 */
+	private TreeMap<String, Set<IPath>> names;
+
+	/**
+	 * Incremented whenever resources are added to or removed from the index.
+	 */
+	private volatile int modificationCount;
+
+	/**
+	 * Set once the index is built. It's read without holding the lock, which is held for the whole build.
+	 */
+	private volatile boolean initialized;
+
+	private Job initializeJob;
+
+	public FilenameIndex(IWorkspace workspace)
+	{
+		this.workspace = workspace;
+	}
+
+	/**
+	 * Returns true once the index is built, so it can be queried without walking the workspace first.
+	 */
+	public boolean isInitialized()
+	{
+		return initialized;
+	}
+
+	/**
+	 * Builds the index in a background job, unless it's already built (or being built).
+	 */
+	public synchronized void initializeInBackground()
+	{
+		if (paths != null || initializeJob != null)
+		{
+			return;
+		}
+		initializeJob = new Job("Indexing workspace file names") //$NON-NLS-1$
+		{
+			@Override
+			protected IStatus run(IProgressMonitor monitor)
+			{
+				synchronized (FilenameIndex.this)
+				{
+					// the index may have been disposed in the meantime
+					if (initializeJob == this)
+					{
+						ensureInitialized();
+					}
+				}
+				return Status.OK_STATUS;
+			}
+		};
+		initializeJob.setSystem(!EclipseUtil.showSystemJobs());
+		initializeJob.setPriority(Job.DECORATE);
+		initializeJob.schedule();
+	}
+
+	/**
+	 * Builds the index (in case it's not built yet) and start listening to the workspace changes.
+	 */
+	private synchronized void ensureInitialized()
+	{
+		if (paths != null)
+		{
+			return;
+		}
+		paths = new TreeMap<String, IPath>();
+		names = new TreeMap<String, Set<IPath>>();
+		// the changes made while the projects are walked wait for the lock, and are applied once they're indexed
+		workspace.addResourceChangeListener(this, IResourceChangeEvent.POST_CHANGE);
+		for (IProject project : workspace.getRoot().getProjects())
+		{
+			addProject(project);
+		}
+		initialized = true;
+	}
+
+	/**
+	 * Stops listening to the workspace changes and drops the index content.
+	 */
+	public synchronized void dispose()
+	{
+		if (initializeJob != null)
+		{
+			initializeJob.cancel();
+			initializeJob = null;
+		}
+		if (paths != null)
+		{
+			workspace.removeResourceChangeListener(this);
+			initialized = false;
+			paths = null;
+			names = null;
+		}
+	}
+
+	/**
+	 * Returns the full paths of all the resources (files and folders) under the given container. The container itself
+	 * is not included.
+	 * 
+	 * @param container
+	 *            The full path of a project or a folder
+	 * @return A snapshot array of {@link IPath}s.
+	 */
+	public synchronized IPath[] getPaths(IPath container)
+	{
+		ensureInitialized();
+		Collection<IPath> members = getMembers(container).values();
+		return members.toArray(new IPath[members.size()]);
+	}
+
+	/**
+	 * Returns a number that changes whenever resources are added to or removed from the index, so the results computed
+	 * from it can tell when they are outdated.
+	 */
+	public int getModificationCount()
+	{
+		return modificationCount;
+	}
+
+	/**
+	 * Returns the full paths of the resources whose name matches the given text.
+	 * 
+	 * @param text
+	 * @param matchRule
+	 *            One of {@link #PREFIX_MATCH}, {@link #SUBSTRING_MATCH} or {@link #CAMEL_CASE_MATCH}
+	 * @return A list of matching {@link IPath}s.
+	 */
+	public synchronized List<IPath> find(String text, int matchRule)
+	{
+		ensureInitialized();
+		List<IPath> result = new ArrayList<IPath>();
+		String lowerCaseText = text.toLowerCase();
+		if (matchRule == PREFIX_MATCH)
+		{
+			SortedMap<String, Set<IPath>> prefixed = names.subMap(lowerCaseText, lowerCaseText + Character.MAX_VALUE);
+			for (Set<IPath> paths : prefixed.values())
+			{
+				result.addAll(paths);
+			}
+			return result;
+		}
+		for (Set<IPath> paths : names.values())
+		{
+			for (IPath path : paths)
+			{
+				String name = path.lastSegment();
+				boolean matches = (matchRule == CAMEL_CASE_MATCH) ? camelCaseMatch(text, name) : name.toLowerCase()
+						.indexOf(lowerCaseText) > -1;
+				if (matches)
+				{
+					result.add(path);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns true if the upper-case characters (and the ones that follow them) in the given pattern match the
+	 * camel-case humps of the given name.
+	 * 
+	 * @param pattern
+	 * @param name
+	 * @return True, if the name matches the camel-case pattern.
+	 */
+	public static boolean camelCaseMatch(String pattern, String name)
+	{
+		int patternLength = pattern.length();
+		int nameLength = name.length();
+		int p = 0;
+		int n = 0;
+		while (p < patternLength)
+		{
+			if (n >= nameLength)
+			{
+				return false;
+			}
+			char patternChar = pattern.charAt(p);
+			char nameChar = name.charAt(n);
+			if (patternChar == nameChar)
+			{
+				p++;
+				n++;
+				continue;
+			}
+			if (!Character.isUpperCase(patternChar))
+			{
+				return false;
+			}
+			// skip to the next hump in the name
+			n++;
+			while (n < nameLength && !Character.isUpperCase(name.charAt(n)))
+			{
+				n++;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.core.resources.IResourceChangeListener#resourceChanged(org.eclipse.core.resources.
+	 * IResourceChangeEvent)
+	 */
+	public void resourceChanged(IResourceChangeEvent event)
+	{
+		IResourceDelta delta = event.getDelta();
+		if (delta == null)
+		{
+			return;
+		}
+		synchronized (this)
+		{
+			if (paths == null)
+			{
+				return;
+			}
+			try
+			{
+				delta.accept(new IResourceDeltaVisitor()
+				{
+					public boolean visit(IResourceDelta resourceDelta) throws CoreException
+					{
+						IResource resource = resourceDelta.getResource();
+						if (resource.getType() == IResource.ROOT)
+						{
+							return true;
+						}
+						if (resource.getType() == IResource.PROJECT)
+						{
+							IProject project = (IProject) resource;
+							if (resourceDelta.getKind() == IResourceDelta.REMOVED || !project.isOpen())
+							{
+								removeMembers(project.getFullPath());
+								modificationCount++;
+								return false;
+							}
+							if (resourceDelta.getKind() == IResourceDelta.ADDED
+									|| (resourceDelta.getFlags() & IResourceDelta.OPEN) != 0)
+							{
+								removeMembers(project.getFullPath());
+								addProject(project);
+								modificationCount++;
+								return false;
+							}
+							return true;
+						}
+						switch (resourceDelta.getKind())
+						{
+							case IResourceDelta.ADDED:
+								add(resource.getFullPath());
+								modificationCount++;
+								return true;
+							case IResourceDelta.REMOVED:
+								remove(resource.getFullPath());
+								removeMembers(resource.getFullPath());
+								modificationCount++;
+								return false;
+							default:
+								return true;
+						}
+					}
+				});
+			}
+			catch (CoreException e)
+			{
+				ExplorerPlugin.logError(e);
+			}
+		}
+	}
+
+	private void addProject(IProject project)
+	{
+		if (!project.isAccessible())
+		{
+			return;
+		}
+		try
+		{
+			project.accept(new IResourceProxyVisitor()
+			{
+				public boolean visit(IResourceProxy proxy) throws CoreException
+				{
+					if (proxy.getType() != IResource.PROJECT)
+					{
+						add(proxy.requestFullPath());
+					}
+					return true;
+				}
+			}, IResource.NONE);
+		}
+		catch (CoreException e)
+		{
+			ExplorerPlugin.logError(e);
+		}
+	}
+
+	private SortedMap<String, IPath> getMembers(IPath container)
+	{
+		String prefix = container.addTrailingSeparator().toPortableString();
+		return paths.subMap(prefix, prefix + Character.MAX_VALUE);
+	}
+
+	private void removeMembers(IPath container)
+	{
+		SortedMap<String, IPath> members = getMembers(container);
+		for (IPath path : members.values())
+		{
+			removeName(path);
+		}
+		members.clear();
+	}
+
+	private void add(IPath path)
+	{
+		if (paths.put(path.toPortableString(), path) != null)
+		{
+			return;
+		}
+		String name = path.lastSegment().toLowerCase();
+		Set<IPath> named = names.get(name);
+		if (named == null)
+		{
+			named = new HashSet<IPath>(2);
+			names.put(name, named);
+		}
+		named.add(path);
+	}
+
+	private void remove(IPath path)
+	{
+		if (paths.remove(path.toPortableString()) != null)
+		{
+			removeName(path);
+		}
+	}
+
+	private void removeName(IPath path)
+	{
+		String name = path.lastSegment().toLowerCase();
+		Set<IPath> named = names.get(name);
+		if (named != null)
+		{
+			named.remove(path);
+			if (named.isEmpty())
+			{
+				names.remove(name);
+			}
+		}
+	}
+}
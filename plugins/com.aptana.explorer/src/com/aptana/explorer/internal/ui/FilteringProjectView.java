@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -1191,6 +1191,16 @@ public class FilteringProjectView extends GitProjectView
 						return pattern.matcher(string).find();
 					}
 
+					@Override
+					protected String getIndexQuery()
+					{
+						if (pattern == null)
+						{
+							return null;
+						}
+						return getLongestLiteral(pattern.pattern());
+					}
+
 					public String getPattern()
 					{
 						// This is what we display in the "filtering for ..." label
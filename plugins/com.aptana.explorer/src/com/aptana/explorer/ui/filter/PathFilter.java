@@ -1,20 +1,27 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
  */
 package com.aptana.explorer.ui.filter;
 
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.runtime.IAdaptable;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.jface.viewers.AbstractTreeViewer;
@@ -23,10 +30,13 @@ import org.eclipse.jface.viewers.Viewer;
 
 import com.aptana.core.util.URLEncoder;
 import com.aptana.editor.html.contentassist.index.IHTMLIndexConstants;
+import com.aptana.explorer.ExplorerPlugin;
+import com.aptana.explorer.internal.ui.FilenameIndex;
 import com.aptana.index.core.Index;
 import com.aptana.index.core.IndexManager;
 import com.aptana.index.core.IndexPlugin;
 import com.aptana.index.core.QueryResult;
+import com.aptana.index.core.TrigramIndex;
 
 public class PathFilter extends AbstractResourceBasedViewerFilter
 {
@@ -45,6 +55,18 @@ public class PathFilter extends AbstractResourceBasedViewerFilter
 
 	private Map<Object, Boolean> leafCache = new HashMap<Object, Boolean>();
 
+	/*
+	 * The full paths of the visible resources in the filtered project (the matching resources and their ancestors).
+	 * Computed from the workspace filename index, whenever the pattern changes.
+	 */
+	private Set<IPath> visiblePaths;
+
+	/*
+	 * The modification count of the filename index when the caches were filled. The caches are cleared once resources
+	 * are added or removed.
+	 */
+	private int indexModificationCount;
+
 	private List<QueryResult> queryResults;
 	private IResource filterResource;
 	protected Pattern regexp;
@@ -67,9 +89,174 @@ public class PathFilter extends AbstractResourceBasedViewerFilter
 	 */
 	protected boolean isElementVisible(Viewer viewer, Object element)
 	{
+		IResource resource = getResourceFromObject(element);
+		if (resource != null && filterResource != null && resource.getProject().equals(filterResource.getProject()))
+		{
+			Set<IPath> visible = getVisiblePaths();
+			if (visible != null)
+			{
+				return visible.contains(resource.getFullPath());
+			}
+		}
 		return isParentMatch(viewer, element) || isLeafMatch(viewer, element);
 	}
 
+	/**
+	 * Computes the set of visible paths in the filtered project from the workspace filename index. Every match of the
+	 * pattern contains the query text (see {@link #getIndexQuery()}), which therefore lies in the name of the matching
+	 * resource or of one of its ancestors. So only the resources with such a name and their members are matched, and
+	 * the matches are added with their ancestors. Until the index is built in the background, the viewer elements are
+	 * matched one by one.
+	 * 
+	 * @return The set of visible paths, or <code>null</code> when the filename index can't be used.
+	 */
+	private Set<IPath> getVisiblePaths()
+	{
+		if (visiblePaths == null && regexp != null)
+		{
+			ExplorerPlugin plugin = ExplorerPlugin.getDefault();
+			String query = getIndexQuery();
+			if (plugin == null || query == null)
+			{
+				return null;
+			}
+			FilenameIndex index = plugin.getFilenameIndex();
+			if (!index.isInitialized())
+			{
+				// don't walk the workspace on the UI thread
+				index.initializeInBackground();
+				return null;
+			}
+			IProject project = filterResource.getProject();
+			IPath projectPath = project.getFullPath();
+			Set<IPath> checked = new HashSet<IPath>();
+			Set<IPath> visible = new HashSet<IPath>();
+			visible.add(projectPath);
+			for (IPath path : index.find(query, FilenameIndex.SUBSTRING_MATCH))
+			{
+				if (!projectPath.isPrefixOf(path) || !checked.add(path))
+				{
+					continue;
+				}
+				if (isPathMatch(path))
+				{
+					addWithAncestors(visible, path);
+				}
+				for (IPath member : index.getPaths(path))
+				{
+					if (checked.add(member) && isPathMatch(member))
+					{
+						addWithAncestors(visible, member);
+					}
+				}
+			}
+			addWithAncestors(visible, filterResource.getFullPath());
+			for (IResource required : getRequiredResources(project))
+			{
+				addWithAncestors(visible, required.getFullPath());
+			}
+			visiblePaths = visible;
+		}
+		return visiblePaths;
+	}
+
+	/**
+	 * Returns true if the resource at the given path matches the pattern. This is equivalent to the leaf matching on
+	 * the project relative path.
+	 * 
+	 * @param path
+	 * @return True, if the resource matches the filter.
+	 */
+	private boolean isPathMatch(IPath path)
+	{
+		return wordMatches(path.removeFirstSegments(1).toPortableString());
+	}
+
+	private void addWithAncestors(Set<IPath> visible, IPath path)
+	{
+		// stop once we hit an ancestor that was already added
+		for (IPath current = path; visible.add(current); current = current.removeLastSegments(1))
+		{
+			// nothing else to do
+		}
+	}
+
+	/**
+	 * Returns the resources of the given project that include the filtered resource, or are included by it.
+	 * 
+	 * @param project
+	 * @return A list of {@link IResource}s.
+	 */
+	private List<IResource> getRequiredResources(IProject project)
+	{
+		List<IResource> required = new ArrayList<IResource>();
+		List<QueryResult> results = getQueryResults(project);
+		if (results == null)
+		{
+			return required;
+		}
+		IWorkspaceRoot root = project.getWorkspace().getRoot();
+		Set<String> uris = new HashSet<String>();
+		for (QueryResult result : results)
+		{
+			uris.add(result.getWord());
+			uris.addAll(result.getDocuments());
+		}
+		for (String uri : uris)
+		{
+			try
+			{
+				for (IFile file : root.findFilesForLocationURI(new URI(uri)))
+				{
+					if (project.equals(file.getProject()) && isRequired(file))
+					{
+						required.add(file);
+					}
+				}
+			}
+			catch (URISyntaxException e)
+			{
+				// not the location of a resource
+			}
+		}
+		return required;
+	}
+
+	/**
+	 * Returns the literal text that is part of every match of the pattern, within the name of the matching resource
+	 * or of one of its ancestors. It's used to look up the matches in the workspace filename index. Subclasses that
+	 * override {@link #match(String)} should override this method as well.
+	 * 
+	 * @return The text to look up, or <code>null</code> to match the viewer elements one by one.
+	 */
+	protected String getIndexQuery()
+	{
+		return getLongestLiteral(patternString);
+	}
+
+	/**
+	 * Returns the longest literal text, without path separators, that every match of the given regular expression
+	 * contains.
+	 * 
+	 * @param regex
+	 * @return The literal text, or <code>null</code> if the expression doesn't require any.
+	 */
+	protected static String getLongestLiteral(String regex)
+	{
+		String longest = null;
+		for (String fragment : TrigramIndex.getLiteralFragments(regex))
+		{
+			for (String segment : fragment.split("/")) //$NON-NLS-1$
+			{
+				if (segment.length() > 0 && (longest == null || segment.length() > longest.length()))
+				{
+					longest = segment;
+				}
+			}
+		}
+		return longest;
+	}
+
 	/**
 	 * Returns true if any of the elements makes it through the filter. This method uses caching if enabled; the
 	 * computation is done in computeAnyVisible.
@@ -179,6 +366,7 @@ public class PathFilter extends AbstractResourceBasedViewerFilter
 	 */
 	public final boolean select(Viewer viewer, Object parentElement, Object element)
 	{
+		clearStaleCaches();
 		return isElementVisible(viewer, element);
 	}
 
@@ -231,20 +419,14 @@ public class PathFilter extends AbstractResourceBasedViewerFilter
 	private boolean isRequired(IResource resource)
 	{
 		// check if the resource is included by the filtered file or vise versa
-		if (queryResults == null)
-		{
-			// FIXME We should have a search API layer over the top of this and shouldn't be hitting indices directly.
-			// Pass a scope object to the search API and it calculates what indices to search within!
-			Index index = getIndexManager().getIndex(resource.getProject().getLocationURI());
-			queryResults = index.query(indexCategories(), null, 0);
-		}
-		if (queryResults != null)
+		List<QueryResult> results = getQueryResults(resource.getProject());
+		if (results != null)
 		{
 			// Memoize the location/location URI because it's expensive to grab
 			String resourceURI = null;
 			String filterResourceLocation = filterResource.getLocation().toPortableString();
 			String resourceLocation = resource.getLocation().toPortableString();
-			for (QueryResult result : queryResults)
+			for (QueryResult result : results)
 			{
 				String includedFile = result.getWord();
 				// check if the 'resource' includes 'filteredResource'
@@ -285,6 +467,18 @@ public class PathFilter extends AbstractResourceBasedViewerFilter
 		return false;
 	}
 
+	private List<QueryResult> getQueryResults(IProject project)
+	{
+		if (queryResults == null)
+		{
+			// FIXME We should have a search API layer over the top of this and shouldn't be hitting indices directly.
+			// Pass a scope object to the search API and it calculates what indices to search within!
+			Index index = getIndexManager().getIndex(project.getLocationURI());
+			queryResults = index.query(indexCategories(), null, 0);
+		}
+		return queryResults;
+	}
+
 	protected IndexManager getIndexManager()
 	{
 		return IndexPlugin.getDefault().getIndexManager();
@@ -394,6 +588,7 @@ public class PathFilter extends AbstractResourceBasedViewerFilter
 			return elements;
 		}
 
+		clearStaleCaches();
 		Object[] filtered = cache.get(parent);
 		if (filtered == null)
 		{
@@ -443,6 +638,24 @@ public class PathFilter extends AbstractResourceBasedViewerFilter
 		cache.clear();
 		foundAnyCache.clear();
 		leafCache.clear();
+		visiblePaths = null;
+	}
+
+	/**
+	 * Clears the caches when resources were added or removed since they were filled.
+	 */
+	private void clearStaleCaches()
+	{
+		ExplorerPlugin plugin = ExplorerPlugin.getDefault();
+		if (plugin != null)
+		{
+			int modificationCount = plugin.getFilenameIndex().getModificationCount();
+			if (modificationCount != indexModificationCount)
+			{
+				clearCaches();
+				indexModificationCount = modificationCount;
+			}
+		}
 	}
 
 	public String getPattern()
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -14,7 +14,11 @@ import java.util.Map;
 import java.util.WeakHashMap;
 
 import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.filesystem.IFileTree;
 import org.eclipse.core.filesystem.provider.FileSystem;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Platform;
 
@@ -76,6 +80,32 @@ public class FTPFileSystem extends FileSystem
 		return new VirtualFile(connectionFileManager, uri, Path.fromPortableString(path));
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.core.filesystem.provider.FileSystem#fetchFileTree(org.eclipse.core.filesystem.IFileStore,
+	 * org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	@Override
+	public IFileTree fetchFileTree(IFileStore root, IProgressMonitor monitor)
+	{
+		if (root instanceof VirtualFile)
+		{
+			try
+			{
+				return ((VirtualFile) root).fetchFileTree(null, monitor);
+			}
+			catch (OperationCanceledException e)
+			{
+				return null;
+			}
+			catch (CoreException e)
+			{
+				FTPPlugin.log(e.getStatus());
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * @param host
 	 * @param port
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -39,6 +39,12 @@ public abstract class BaseFTPConnectionFileManager extends BaseConnectionFileMan
 	protected static final String TMP_UPLOAD_SUFFIX = "._tmp_upload"; //$NON-NLS-1$
 	protected static final Pattern PASS_COMMAND_PATTERN = Pattern.compile("^(.*PASS ).+$"); //$NON-NLS-1$
 
+	/**
+	 * The system property setting how many connections, besides the main one, list a directory tree
+	 */
+	public static final String LISTING_THREADS_PROPERTY = "studio.ftp.listingThreads"; //$NON-NLS-1$
+	private static final int DEFAULT_LISTING_THREADS = 3;
+
 	protected String host;
 	protected int port;
 
@@ -103,6 +109,13 @@ public abstract class BaseFTPConnectionFileManager extends BaseConnectionFileMan
 		return getRootCanonicalURI().resolve(URLEncoder.encode(basePath.append(path).toPortableString(), null, null));
 	}
 
+	/**
+	 * @return the number of connections opened, besides the main one, to list a directory tree
+	 */
+	protected static int getListingThreads() {
+		return Math.max(0, Integer.getInteger(LISTING_THREADS_PROPERTY, DEFAULT_LISTING_THREADS));
+	}
+
 	protected abstract void checkConnected() throws Exception; // $codepro.audit.disable declaredExceptions
 
 	protected abstract URI getRootCanonicalURI();
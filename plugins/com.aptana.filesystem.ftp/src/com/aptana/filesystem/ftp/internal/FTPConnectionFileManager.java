@@ -28,8 +28,11 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TimeZone;
 import java.util.regex.Matcher;
 
@@ -40,11 +43,13 @@ import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.PerformanceStats;
 import org.eclipse.core.runtime.Status;
 
+import com.aptana.core.IFilter;
 import com.aptana.core.io.vfs.ExtendedFileInfo;
 import com.aptana.core.io.vfs.IExtendedFileStore;
 import com.aptana.core.util.ExpiringMap;
@@ -96,6 +101,7 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 	private FTPFileFactory fileFactory;
 	private Boolean statSupported = null;
 	private Boolean listASupported = null;
+	private Boolean listRSupported = null;
 	private int utimeFormat = -1;
 	private Map<IPath, FTPFile> ftpFileCache = new ExpiringMap<IPath, FTPFile>(CACHE_TTL);
 	private long serverToLocalTimeZoneShift = Integer.MIN_VALUE;
@@ -819,12 +825,7 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 				FTPFile[] ftpFiles = listFiles(dirPath, monitor);
 				for (FTPFile ftpFile : ftpFiles)
 				{
-					Date lastModifiedServerInLocalTZ = ftpFile.lastModified();
-					if (serverToLocalTimeZoneShift != 0 && lastModifiedServerInLocalTZ != null)
-					{
-						ftpFile.setLastModified(new Date(lastModifiedServerInLocalTZ.getTime()
-								+ serverToLocalTimeZoneShift));
-					}
+					shiftLastModified(ftpFile);
 					String fileName = ftpFile.getName();
 					if (fileName == null || ".".equals(fileName) || "..".equals(fileName)) { //$NON-NLS-1$ //$NON-NLS-2$
 						if (Path.ROOT.equals(path) && ".".equals(fileName)) { //$NON-NLS-1$
@@ -894,7 +895,6 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 	 * @see com.aptana.ide.core.ftp.BaseFTPConnectionFileManager#fetchFiles(org.eclipse.core.runtime.IPath, int,
 	 * org.eclipse.core.runtime.IProgressMonitor)
 	 */
-	@SuppressWarnings("deprecation")
 	@Override
 	protected ExtendedFileInfo[] fetchFiles(IPath path, int options, IProgressMonitor monitor) throws CoreException,
 			FileNotFoundException
@@ -904,7 +904,6 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 		{
 			FTPFile[] ftpFiles = listFiles(path, monitor);
 			monitor.beginTask(Messages.FTPConnectionFileManager_gethering_file_details, ftpFiles.length);
-			List<ExtendedFileInfo> list = new ArrayList<ExtendedFileInfo>();
 			for (FTPFile ftpFile : ftpFiles)
 			{
 				String fileName = ftpFile.getName();
@@ -912,40 +911,173 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 					monitor.worked(1);
 					continue;
 				}
-				Date lastModifiedServerInLocalTZ = ftpFile.lastModified();
-				if (serverToLocalTimeZoneShift != 0 && lastModifiedServerInLocalTZ != null)
+				shiftLastModified(ftpFile);
+				if (needsModificationTime(ftpFile, options))
 				{
-					ftpFile.setLastModified(new Date(lastModifiedServerInLocalTZ.getTime() + serverToLocalTimeZoneShift));
+					changeCurrentDir(path);
+					Policy.checkCanceled(monitor);
+					fetchModificationTime(ftpClient, ftpFile);
 				}
-				if ((options & IExtendedFileStore.DETAILED) != 0)
+				monitor.worked(1);
+			}
+			return toFileInfos(path, ftpFiles);
+		}
+		catch (FileNotFoundException e)
+		{
+			throw e;
+		}
+		catch (OperationCanceledException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new CoreException(new Status(Status.ERROR, FTPPlugin.PLUGIN_ID,
+					Messages.FTPConnectionFileManager_fetching_directory_failed, e));
+		}
+		finally
+		{
+			monitor.done();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.BaseConnectionFileManager#fetchFileTree(org.eclipse.core.runtime.IPath, int,
+	 * com.aptana.core.IFilter, org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	@Override
+	protected Map<IPath, ExtendedFileInfo[]> fetchFileTree(IPath path, final int options, IFilter<IPath> filter,
+			final IProgressMonitor monitor) throws CoreException, FileNotFoundException, PermissionDeniedException
+	{
+		// a recursive listing has everything below the directory, and would need a MDTM per file of it for details
+		if (filter == null && !Boolean.FALSE.equals(listRSupported)
+				&& ((options & IExtendedFileStore.DETAILED) == 0 || !serverSupportsFeature("MDTM"))) //$NON-NLS-1$
+		{
+			Map<IPath, ExtendedFileInfo[]> result = fetchRecursiveListing(path, monitor);
+			if (result != null)
+			{
+				return result;
+			}
+		}
+		return new ParallelTreeFetcher<ListingClient>()
+		{
+			@Override
+			protected ListingClient openConnection() throws Exception
+			{
+				FTPClient listingFtpClient = (FTPClient) pool.checkOut();
+				try
 				{
-					if (!ftpFile.isDir() && ftpFile.lastModified().getSeconds() == 0)
+					initAndAuthFTPClient(listingFtpClient, new NullProgressMonitor());
+					setMessageLogger(listingFtpClient, messageLogWriter);
+					// the parsers are not thread-safe
+					FTPFileFactory listingFileFactory = new FTPFileFactory(fileFactory.getSystem());
+					listingFileFactory.setLocales(FTPClient.DEFAULT_LISTING_LOCALES);
+					return new ListingClient(listingFtpClient, listingFileFactory);
+				}
+				catch (Exception e)
+				{
+					setMessageLogger(listingFtpClient, null);
+					pool.checkIn(listingFtpClient);
+					throw e;
+				}
+			}
+
+			@Override
+			protected void closeConnection(ListingClient connection)
+			{
+				setMessageLogger(connection.ftpClient, null);
+				pool.checkIn(connection.ftpClient);
+			}
+
+			@Override
+			protected FTPFile[] listFiles(ListingClient connection, IPath dirPath) throws Exception
+			{
+				try
+				{
+					connection.ftpClient.chdir(dirPath.toPortableString());
+				}
+				catch (FTPException e)
+				{
+					throwFileNotFound(e, dirPath);
+				}
+				FTPFile[] ftpFiles = connection.fileFactory.parse(connection.ftpClient.dir(
+						Boolean.TRUE.equals(listASupported) ? "-a" : ".", true)); //$NON-NLS-1$ //$NON-NLS-2$
+				setDefaultPermissions(connection.fileFactory, ftpFiles);
+				for (FTPFile ftpFile : ftpFiles)
+				{
+					shiftLastModified(ftpFile);
+					if (needsModificationTime(ftpFile, options))
 					{
-						if (serverSupportsFeature("MDTM")) { //$NON-NLS-1$
-							changeCurrentDir(path);
-							Policy.checkCanceled(monitor);
-							try
-							{
-								Date lastModifiedLocalTZ = ftpClient.modtime(fileName);
-								if (lastModifiedLocalTZ != null)
-								{
-									ftpFile.setLastModified(lastModifiedLocalTZ);
-								}
-							}
-							catch (FTPException e)
-							{
-							}
-						}
+						fetchModificationTime(connection.ftpClient, ftpFile);
 					}
 				}
-				IPath filePath = path.append(fileName);
-				ftpFileCache.put(filePath, ftpFile);
+				return ftpFiles;
+			}
 
-				ExtendedFileInfo fileInfo = createFileInfo(ftpFile);
-				list.add(fileInfo);
-				monitor.worked(1);
+			@Override
+			protected ExtendedFileInfo[] fetchFiles(IPath dirPath) throws CoreException, FileNotFoundException,
+					PermissionDeniedException
+			{
+				return fetchFilesInternal(dirPath, options, monitor);
+			}
+
+			@Override
+			protected ExtendedFileInfo[] toFileInfos(IPath dirPath, FTPFile[] ftpFiles)
+			{
+				return FTPConnectionFileManager.this.toFileInfos(dirPath, ftpFiles);
+			}
+		}.fetch(path, filter, getListingThreads(), monitor);
+	}
+
+	/**
+	 * Lists the whole tree with a single LIST -R.
+	 *
+	 * @return the file infos of each directory, or null if the server does not list recursively
+	 */
+	private Map<IPath, ExtendedFileInfo[]> fetchRecursiveListing(IPath path, IProgressMonitor monitor)
+			throws CoreException, FileNotFoundException
+	{
+		try
+		{
+			setupFileFactory();
+			changeCurrentDir(path);
+			Policy.checkCanceled(monitor);
+			String[] lines;
+			try
+			{
+				lines = ftpClient.dir(Boolean.TRUE.equals(listASupported) ? "-aR" : "-R", true); //$NON-NLS-1$ //$NON-NLS-2$
 			}
-			return list.toArray(new ExtendedFileInfo[list.size()]);
+			catch (FTPException e)
+			{
+				if (listRSupported == null)
+				{
+					listRSupported = Boolean.FALSE;
+					return null;
+				}
+				throwFileNotFound(e, path);
+				return null;
+			}
+			Map<IPath, FTPFile[]> sections = parseRecursiveListing(path, lines);
+			if (sections == null)
+			{
+				listRSupported = Boolean.FALSE;
+				return null;
+			}
+			if (sections.size() > 1)
+			{
+				listRSupported = Boolean.TRUE;
+			}
+			Map<IPath, ExtendedFileInfo[]> result = new LinkedHashMap<IPath, ExtendedFileInfo[]>();
+			for (Map.Entry<IPath, FTPFile[]> entry : sections.entrySet())
+			{
+				for (FTPFile ftpFile : entry.getValue())
+				{
+					shiftLastModified(ftpFile);
+				}
+				result.put(entry.getKey(), toFileInfos(entry.getKey(), entry.getValue()));
+			}
+			return result;
 		}
 		catch (FileNotFoundException e)
 		{
@@ -960,9 +1092,145 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 			throw new CoreException(new Status(Status.ERROR, FTPPlugin.PLUGIN_ID,
 					Messages.FTPConnectionFileManager_fetching_directory_failed, e));
 		}
-		finally
+	}
+
+	/**
+	 * Splits a recursive listing into the listings of each directory. The listing is only trusted if it has one for
+	 * each of the sub-directories it names, and none for others.
+	 *
+	 * @return the listing of each directory, or null if it is not a recursive listing
+	 */
+	private Map<IPath, FTPFile[]> parseRecursiveListing(IPath path, String[] lines) throws ParseException
+	{
+		Map<IPath, List<String>> sectionLines = new LinkedHashMap<IPath, List<String>>();
+		List<String> currentLines = new ArrayList<String>();
+		sectionLines.put(path, currentLines);
+		boolean sectionStart = true;
+		for (String line : lines)
+		{
+			if (line.trim().length() == 0)
+			{
+				sectionStart = true;
+				continue;
+			}
+			// a directory header, like "./dir/sub:"
+			if (sectionStart && line.endsWith(":")) //$NON-NLS-1$
+			{
+				IPath dirPath = getSectionPath(path, line.substring(0, line.length() - 1));
+				if (dirPath == null)
+				{
+					return null;
+				}
+				currentLines = sectionLines.get(dirPath);
+				if (currentLines == null)
+				{
+					currentLines = new ArrayList<String>();
+					sectionLines.put(dirPath, currentLines);
+				}
+				sectionStart = false;
+				continue;
+			}
+			sectionStart = false;
+			currentLines.add(line);
+		}
+
+		Map<IPath, FTPFile[]> sections = new LinkedHashMap<IPath, FTPFile[]>();
+		Set<IPath> dirPaths = new HashSet<IPath>();
+		for (Map.Entry<IPath, List<String>> entry : sectionLines.entrySet())
+		{
+			List<String> list = entry.getValue();
+			FTPFile[] ftpFiles = fileFactory.parse(list.toArray(new String[list.size()]));
+			setDefaultPermissions(fileFactory, ftpFiles);
+			sections.put(entry.getKey(), ftpFiles);
+			for (FTPFile ftpFile : ftpFiles)
+			{
+				String name = ftpFile.getName();
+				if (ftpFile.isDir() && !ftpFile.isLink() && name != null && !".".equals(name) && !"..".equals(name)) //$NON-NLS-1$ //$NON-NLS-2$
+				{
+					dirPaths.add(entry.getKey().append(name));
+				}
+			}
+		}
+		dirPaths.add(path);
+		if (!dirPaths.equals(sections.keySet()))
+		{
+			return null;
+		}
+		return sections;
+	}
+
+	/**
+	 * @return the path of a directory header of a recursive listing, or null if it is not below the listed directory
+	 */
+	private static IPath getSectionPath(IPath path, String name)
+	{
+		if (".".equals(name)) //$NON-NLS-1$
+		{
+			return path;
+		}
+		if (name.startsWith("./")) //$NON-NLS-1$
+		{
+			return path.append(name.substring(2));
+		}
+		IPath sectionPath = Path.fromPortableString(name);
+		if (sectionPath.isAbsolute())
+		{
+			return path.isPrefixOf(sectionPath) ? sectionPath : null;
+		}
+		return path.append(sectionPath);
+	}
+
+	private ExtendedFileInfo[] toFileInfos(IPath path, FTPFile[] ftpFiles)
+	{
+		List<ExtendedFileInfo> list = new ArrayList<ExtendedFileInfo>();
+		for (FTPFile ftpFile : ftpFiles)
+		{
+			String fileName = ftpFile.getName();
+			if (fileName == null || ".".equals(fileName) || "..".equals(fileName)) { //$NON-NLS-1$ //$NON-NLS-2$
+				continue;
+			}
+			ftpFileCache.put(path.append(fileName), ftpFile);
+			list.add(createFileInfo(ftpFile));
+		}
+		return list.toArray(new ExtendedFileInfo[list.size()]);
+	}
+
+	private void shiftLastModified(FTPFile ftpFile)
+	{
+		Date lastModifiedServerInLocalTZ = ftpFile.lastModified();
+		if (serverToLocalTimeZoneShift != 0 && lastModifiedServerInLocalTZ != null)
+		{
+			ftpFile.setLastModified(new Date(lastModifiedServerInLocalTZ.getTime() + serverToLocalTimeZoneShift));
+		}
+	}
+
+	/**
+	 * Listings may not have the seconds of the modification time.
+	 */
+	@SuppressWarnings("deprecation")
+	private boolean needsModificationTime(FTPFile ftpFile, int options)
+	{
+		String fileName = ftpFile.getName();
+		return (options & IExtendedFileStore.DETAILED) != 0 && fileName != null && !".".equals(fileName) //$NON-NLS-1$
+				&& !"..".equals(fileName) && !ftpFile.isDir() && ftpFile.lastModified() != null //$NON-NLS-1$
+				&& ftpFile.lastModified().getSeconds() == 0 && serverSupportsFeature("MDTM"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Fetches the modification time of a file of the current directory of the client.
+	 */
+	private static void fetchModificationTime(FTPClient client, FTPFile ftpFile) throws IOException
+	{
+		try
+		{
+			Date lastModifiedLocalTZ = client.modtime(ftpFile.getName());
+			if (lastModifiedLocalTZ != null)
+			{
+				ftpFile.setLastModified(lastModifiedLocalTZ);
+			}
+		}
+		catch (FTPException e)
 		{
-			monitor.done();
 		}
 	}
 
@@ -1629,6 +1897,12 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 		{
 			ftpFiles = ftpLIST(dirPath, monitor);
 		}
+		setDefaultPermissions(fileFactory, ftpFiles);
+		return ftpFiles;
+	}
+
+	private static void setDefaultPermissions(FTPFileFactory fileFactory, FTPFile[] ftpFiles)
+	{
 		if (fileFactory.getSystem().toUpperCase().startsWith(WINDOWS_STR) && ftpFiles != null)
 		{
 			for (FTPFile ftpFile : ftpFiles)
@@ -1639,7 +1913,6 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 				}
 			}
 		}
-		return ftpFiles;
 	}
 
 	private void recursiveDeleteTree(IPath path, IProgressMonitor monitor, MultiStatus status) throws IOException,
@@ -1696,6 +1969,22 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 		}
 	}
 
+	/**
+	 * A connection listing directories along with the main one.
+	 */
+	private static class ListingClient
+	{
+
+		final FTPClient ftpClient;
+		final FTPFileFactory fileFactory;
+
+		ListingClient(FTPClient ftpClient, FTPFileFactory fileFactory)
+		{
+			this.ftpClient = ftpClient;
+			this.fileFactory = fileFactory;
+		}
+	}
+
 	private static String generateTempFileName(String base)
 	{
 		StringBuffer sb = new StringBuffer();
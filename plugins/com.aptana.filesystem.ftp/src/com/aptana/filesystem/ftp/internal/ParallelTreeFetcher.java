@@ -0,0 +1,262 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.filesystem.ftp.internal;
+
+import java.io.FileNotFoundException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import com.aptana.core.IFilter;
+import com.aptana.core.io.vfs.ExtendedFileInfo;
+import com.aptana.filesystem.ftp.Policy;
+import com.aptana.ide.core.io.PermissionDeniedException;
+import com.enterprisedt.net.ftp.FTPFile;
+
+/**
+ * Lists a directory tree breadth first. The calling thread lists over the main connection, while worker threads list
+ * over connections of their own, each taking the next directory waiting to be listed. Workers are only started while
+ * there are more directories waiting than workers. The listings are handled by the calling thread alone, so that the
+ * filter, the caches and the monitor are never used concurrently. A worker which cannot connect, or fails to list a
+ * directory, leaves it to the others and stops; the main connection then reports the error, if any.
+ *
+ * @param <C>
+ *            the type of the connections of the workers
+ */
+public abstract class ParallelTreeFetcher<C>
+{
+
+	private static final long POLL_INTERVAL = 50;
+
+	private final BlockingQueue<IPath> waiting = new LinkedBlockingQueue<IPath>();
+	private final BlockingQueue<Listing> listed = new LinkedBlockingQueue<Listing>();
+	private volatile boolean done;
+
+	/**
+	 * Opens a connection for a worker.
+	 *
+	 * @return the connection, or null if no other connection is available
+	 */
+	protected abstract C openConnection() throws Exception; // $codepro.audit.disable declaredExceptions
+
+	protected abstract void closeConnection(C connection);
+
+	/**
+	 * Lists a directory over the connection of a worker.
+	 *
+	 * @throws FileNotFoundException
+	 *             if the directory no longer exists
+	 */
+	protected abstract FTPFile[] listFiles(C connection, IPath path) throws Exception; // $codepro.audit.disable declaredExceptions
+
+	/**
+	 * Lists a directory over the main connection.
+	 */
+	protected abstract ExtendedFileInfo[] fetchFiles(IPath path) throws CoreException, FileNotFoundException,
+			PermissionDeniedException;
+
+	/**
+	 * Makes the file infos of a listing of a worker, on the calling thread.
+	 */
+	protected abstract ExtendedFileInfo[] toFileInfos(IPath path, FTPFile[] ftpFiles) throws CoreException;
+
+	/**
+	 * @param path
+	 *            the absolute path of the directory
+	 * @param filter
+	 *            decides which of the sub-directories are listed, or null for all of them
+	 * @param threads
+	 *            the maximum number of workers
+	 * @param monitor
+	 * @return the file infos of each listed directory, by absolute path
+	 */
+	public Map<IPath, ExtendedFileInfo[]> fetch(IPath path, IFilter<IPath> filter, int threads,
+			IProgressMonitor monitor) throws CoreException, FileNotFoundException, PermissionDeniedException
+	{
+		Map<IPath, ExtendedFileInfo[]> result = new LinkedHashMap<IPath, ExtendedFileInfo[]>();
+		int pending = add(result, path, fetchFiles(path), filter);
+		if (pending == 0)
+		{
+			return result;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory()
+		{
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "Directory Listing Worker"); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		int workers = 0;
+		try
+		{
+			while (pending > 0)
+			{
+				Policy.checkCanceled(monitor);
+				while (workers < threads && waiting.size() > workers)
+				{
+					executor.execute(new Worker());
+					++workers;
+				}
+				Listing listing = listed.poll();
+				if (listing == null)
+				{
+					IPath dirPath = waiting.poll();
+					if (dirPath != null)
+					{
+						ExtendedFileInfo[] fileInfos = null;
+						try
+						{
+							fileInfos = fetchFiles(dirPath);
+						}
+						catch (FileNotFoundException e)
+						{
+							// removed in the meantime
+						}
+						pending += add(result, dirPath, fileInfos, filter) - 1;
+						continue;
+					}
+					listing = listed.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+					if (listing == null)
+					{
+						continue;
+					}
+				}
+				if (listing.failed)
+				{
+					// not replaced
+					--workers;
+					--threads;
+					if (listing.path != null)
+					{
+						waiting.add(listing.path);
+					}
+					continue;
+				}
+				pending += add(result, listing.path,
+						(listing.ftpFiles != null) ? toFileInfos(listing.path, listing.ftpFiles) : null, filter) - 1;
+			}
+			return result;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		}
+		finally
+		{
+			done = true;
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return the number of sub-directories to list
+	 */
+	private int add(Map<IPath, ExtendedFileInfo[]> result, IPath path, ExtendedFileInfo[] fileInfos,
+			IFilter<IPath> filter)
+	{
+		if (fileInfos == null)
+		{
+			return 0;
+		}
+		result.put(path, fileInfos);
+		int count = 0;
+		for (ExtendedFileInfo fileInfo : fileInfos)
+		{
+			IPath childPath = path.append(fileInfo.getName());
+			if (fileInfo.isDirectory() && (filter == null || filter.include(childPath)))
+			{
+				waiting.add(childPath);
+				++count;
+			}
+		}
+		return count;
+	}
+
+	private static class Listing
+	{
+
+		final IPath path;
+		final FTPFile[] ftpFiles;
+		final boolean failed;
+
+		Listing(IPath path, FTPFile[] ftpFiles, boolean failed)
+		{
+			this.path = path;
+			this.ftpFiles = ftpFiles;
+			this.failed = failed;
+		}
+	}
+
+	private class Worker implements Runnable
+	{
+
+		public void run()
+		{
+			C connection;
+			try
+			{
+				connection = openConnection();
+			}
+			catch (Exception e)
+			{
+				connection = null;
+			}
+			if (connection == null)
+			{
+				// the server may limit the number of connections; the others list without this one
+				listed.add(new Listing(null, null, true));
+				return;
+			}
+			try
+			{
+				while (!done)
+				{
+					IPath path = waiting.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+					if (path == null)
+					{
+						continue;
+					}
+					try
+					{
+						listed.add(new Listing(path, listFiles(connection, path), false));
+					}
+					catch (FileNotFoundException e)
+					{
+						listed.add(new Listing(path, null, false));
+					}
+					catch (Exception e)
+					{
+						listed.add(new Listing(path, null, true));
+						return;
+					}
+				}
+			}
+			catch (InterruptedException e)
+			{
+				// shut down
+			}
+			finally
+			{
+				closeConnection(connection);
+			}
+		}
+	}
+}
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -12,13 +12,18 @@ import java.util.Map;
 import java.util.WeakHashMap;
 
 import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.filesystem.IFileTree;
 import org.eclipse.core.filesystem.provider.FileSystem;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Platform;
 
 import com.aptana.core.io.efs.VirtualFile;
 import com.aptana.core.util.StringUtil;
 import com.aptana.filesystem.secureftp.internal.SFTPConnectionFileManager;
+import com.aptana.filesystem.secureftp.internal.SecureFTPPlugin;
 import com.aptana.ide.core.io.ConnectionContext;
 import com.aptana.ide.core.io.CoreIOPlugin;
 
@@ -70,6 +75,32 @@ public class SFTPFileSystem extends FileSystem
 		return new VirtualFile(connectionFileManager, uri, Path.fromPortableString(path));
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.core.filesystem.provider.FileSystem#fetchFileTree(org.eclipse.core.filesystem.IFileStore,
+	 * org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	@Override
+	public IFileTree fetchFileTree(IFileStore root, IProgressMonitor monitor)
+	{
+		if (root instanceof VirtualFile)
+		{
+			try
+			{
+				return ((VirtualFile) root).fetchFileTree(null, monitor);
+			}
+			catch (OperationCanceledException e)
+			{
+				return null;
+			}
+			catch (CoreException e)
+			{
+				SecureFTPPlugin.log(e.getStatus());
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * @param host
 	 * @param port
@@ -0,0 +1,108 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.aptana.filesystem.secureftp.internal;
+
+import java.util.concurrent.Semaphore;
+
+import org.eclipse.core.runtime.Platform;
+
+import com.aptana.core.util.KeepAliveObjectPool;
+import com.aptana.filesystem.ftp.FTPPlugin;
+import com.aptana.filesystem.ftp.preferences.FTPPreferenceInitializer;
+import com.aptana.filesystem.ftp.preferences.IFTPPreferenceConstants;
+import com.enterprisedt.net.ftp.ssh.SSHFTPClient;
+
+/**
+ * Keeps the additional SSH sessions of an SFTP connection, on which files are transferred and directories listed while
+ * the main session serves the other requests. Idle sessions are kept alive until they expire. At most
+ * {@link #MAX_CONNECTIONS_PROPERTY} sessions are checked out at once; beyond that {@link #checkOut()} returns null and
+ * the caller goes on with the main session. The clients are created unconnected, and connected by the caller.
+ */
+public final class SFTPClientPool extends KeepAliveObjectPool<SSHFTPClient> {
+
+	/**
+	 * The system property setting the maximum number of sessions checked out at once.
+	 */
+	public static final String MAX_CONNECTIONS_PROPERTY = "studio.sftp.maxConnections"; //$NON-NLS-1$
+
+	private static final int DEFAULT_MAX_CONNECTIONS = 4;
+
+	private final Semaphore connections;
+	private volatile boolean disposed;
+
+	public SFTPClientPool() {
+		super(Platform.getPreferencesService().getInt(FTPPlugin.PLUGIN_ID, IFTPPreferenceConstants.KEEP_ALIVE_TIME,
+				FTPPreferenceInitializer.DEFAULT_KEEP_ALIVE_MINUTES, null) * 60 * 1000);
+		connections = new Semaphore(Math.max(0, Integer.getInteger(MAX_CONNECTIONS_PROPERTY, DEFAULT_MAX_CONNECTIONS)));
+		start();
+	}
+
+	public SSHFTPClient create() {
+		return new SSHFTPClient();
+	}
+
+	public void expire(SSHFTPClient ftpClient) {
+		if (ftpClient == null) {
+			return;
+		}
+		try {
+			ftpClient.quit();
+		} catch (Exception e) {
+			try {
+				ftpClient.quitImmediately();
+			} catch (Exception ignore) {
+				ignore.getCause();
+			}
+		}
+	}
+
+	public boolean validate(SSHFTPClient ftpClient) {
+		if (!ftpClient.connected()) {
+			return false;
+		}
+		try {
+			ftpClient.keepAlive();
+		} catch (Exception e) {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return an idle or a new client, or null if the maximum number of clients are checked out
+	 */
+	@Override
+	public SSHFTPClient checkOut() {
+		if (disposed || !connections.tryAcquire()) {
+			return null;
+		}
+		try {
+			return super.checkOut();
+		} catch (RuntimeException e) {
+			connections.release();
+			throw e;
+		}
+	}
+
+	@Override
+	public void checkIn(SSHFTPClient ftpClient) {
+		connections.release();
+		if (disposed) {
+			expire(ftpClient);
+			return;
+		}
+		super.checkIn(ftpClient);
+	}
+
+	@Override
+	public void dispose() {
+		disposed = true;
+		super.dispose();
+	}
+}
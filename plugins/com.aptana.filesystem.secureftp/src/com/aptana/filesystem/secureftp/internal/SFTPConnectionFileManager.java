@@ -43,11 +43,13 @@ import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
 
+import com.aptana.core.IFilter;
 import com.aptana.core.io.vfs.ExtendedFileInfo;
 import com.aptana.core.io.vfs.IExtendedFileStore;
 import com.aptana.core.util.ExpiringMap;
 import com.aptana.filesystem.ftp.Policy;
 import com.aptana.filesystem.ftp.internal.BaseFTPConnectionFileManager;
+import com.aptana.filesystem.ftp.internal.ParallelTreeFetcher;
 import com.aptana.filesystem.secureftp.ISFTPConnectionFileManager;
 import com.aptana.filesystem.secureftp.ISFTPConstants;
 import com.aptana.ide.core.io.ConnectionContext;
@@ -77,8 +79,12 @@ public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager impl
 	private SSHFTPClient ftpClient;
 	private IPath keyFilePath;
 	private String transferType;
+	private String encoding;
+	private String compression;
 	private IPath cwd;
 	private Map<IPath, FTPFile> ftpFileCache = new ExpiringMap<IPath, FTPFile>(CACHE_TTL);
+	private volatile SFTPClientPool pool;
+	private volatile boolean poolExhausted;
 
 	private Thread keepaliveThread;
 
@@ -110,6 +116,8 @@ public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager impl
 				this.authId = Policy.generateAuthId("SFTP", login, host, port); //$NON-NLS-1$
 			}
 			this.transferType = transferType;
+			this.encoding = encoding;
+			this.compression = compression;
 			initFTPClient(ftpClient, encoding, compression);
 		}
 		catch (Exception e)
@@ -285,6 +293,9 @@ public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager impl
 			ftpClient.setType(ISFTPConstants.TRANSFER_TYPE_ASCII.equals(transferType) ? FTPTransferType.ASCII
 					: FTPTransferType.BINARY);
 			initKeepAlive();
+			disposePool();
+			poolExhausted = false;
+			pool = new SFTPClientPool();
 		}
 		catch (OperationCanceledException e)
 		{
@@ -443,11 +454,67 @@ public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager impl
 		finally
 		{
 			cwd = null;
+			disposePool();
 			cleanup();
 			monitor.done();
 		}
 	}
 
+	private void disposePool()
+	{
+		SFTPClientPool oldPool = pool;
+		pool = null;
+		if (oldPool != null)
+		{
+			oldPool.dispose();
+		}
+	}
+
+	/**
+	 * Checks out a pooled session, connecting it with the credentials of the main one if needed.
+	 *
+	 * @param clientPool
+	 *            the pool of the current connection, or null
+	 * @return the client, or null if no other session is available, in which case the main one is to be used
+	 */
+	private SSHFTPClient checkOutClient(SFTPClientPool clientPool)
+	{
+		if (clientPool == null || poolExhausted)
+		{
+			return null;
+		}
+		SSHFTPClient client = clientPool.checkOut();
+		if (client == null || client.connected())
+		{
+			return client;
+		}
+		try
+		{
+			initFTPClient(client, encoding, compression);
+			client.setRemoteHost(host);
+			client.setRemotePort(port);
+			if (keyFilePath != null)
+			{
+				client.setAuthentication(keyFilePath.toOSString(), login, String.copyValueOf(password));
+			}
+			else
+			{
+				client.setAuthentication(login, String.copyValueOf(password));
+			}
+			client.connect();
+			client.setType(ISFTPConstants.TRANSFER_TYPE_ASCII.equals(transferType) ? FTPTransferType.ASCII
+					: FTPTransferType.BINARY);
+			return client;
+		}
+		catch (Exception e)
+		{
+			// the server may limit the number of sessions; use the main one until reconnected
+			poolExhausted = true;
+			clientPool.checkIn(client);
+			return null;
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.core.io.vfs.IConnectionFileManager#isConnected()
@@ -696,23 +763,8 @@ public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager impl
 		try
 		{
 			FTPFile[] ftpFiles = listFiles(path, monitor);
-			monitor.beginTask(Messages.SFTPConnectionFileManager_GatheringFileDetails, ftpFiles.length);
-			List<ExtendedFileInfo> list = new ArrayList<ExtendedFileInfo>();
-			for (FTPFile ftpFile : ftpFiles)
-			{
-				String fileName = ftpFile.getName();
-				if (fileName != null && ".".equals(fileName) || "..".equals(fileName)) { //$NON-NLS-1$ //$NON-NLS-2$
-					monitor.worked(1);
-					continue;
-				}
-				IPath filePath = path.append(fileName);
-				ftpFileCache.put(filePath, ftpFile);
-
-				ExtendedFileInfo fileInfo = createFileInfo(ftpFile);
-				list.add(fileInfo);
-				monitor.worked(1);
-			}
-			return list.toArray(new ExtendedFileInfo[list.size()]);
+			monitor.beginTask(Messages.SFTPConnectionFileManager_GatheringFileDetails, 1);
+			return toFileInfos(path, ftpFiles);
 		}
 		catch (FileNotFoundException e)
 		{
@@ -737,6 +789,78 @@ public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager impl
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.BaseConnectionFileManager#fetchFileTree(org.eclipse.core.runtime.IPath, int,
+	 * com.aptana.core.IFilter, org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	@Override
+	protected Map<IPath, ExtendedFileInfo[]> fetchFileTree(IPath path, final int options, IFilter<IPath> filter,
+			final IProgressMonitor monitor) throws CoreException, FileNotFoundException, PermissionDeniedException
+	{
+		final SFTPClientPool clientPool = pool;
+		if (clientPool == null)
+		{
+			return super.fetchFileTree(path, options, filter, monitor);
+		}
+		return new ParallelTreeFetcher<SSHFTPClient>()
+		{
+			@Override
+			protected SSHFTPClient openConnection() throws Exception
+			{
+				return checkOutClient(clientPool);
+			}
+
+			@Override
+			protected void closeConnection(SSHFTPClient connection)
+			{
+				clientPool.checkIn(connection);
+			}
+
+			@Override
+			protected FTPFile[] listFiles(SSHFTPClient connection, IPath dirPath) throws Exception
+			{
+				try
+				{
+					return connection.dirDetails(dirPath.toPortableString());
+				}
+				catch (FTPException e)
+				{
+					throwWrappedException(e, dirPath);
+					return null; // never runs
+				}
+			}
+
+			@Override
+			protected ExtendedFileInfo[] fetchFiles(IPath dirPath) throws CoreException, FileNotFoundException,
+					PermissionDeniedException
+			{
+				return fetchFilesInternal(dirPath, options, monitor);
+			}
+
+			@Override
+			protected ExtendedFileInfo[] toFileInfos(IPath dirPath, FTPFile[] ftpFiles)
+			{
+				return SFTPConnectionFileManager.this.toFileInfos(dirPath, ftpFiles);
+			}
+		}.fetch(path, filter, getListingThreads(), monitor);
+	}
+
+	private ExtendedFileInfo[] toFileInfos(IPath path, FTPFile[] ftpFiles)
+	{
+		List<ExtendedFileInfo> list = new ArrayList<ExtendedFileInfo>();
+		for (FTPFile ftpFile : ftpFiles)
+		{
+			String fileName = ftpFile.getName();
+			if (fileName == null || ".".equals(fileName) || "..".equals(fileName)) { //$NON-NLS-1$ //$NON-NLS-2$
+				continue;
+			}
+			ftpFileCache.put(path.append(fileName), ftpFile);
+			list.add(createFileInfo(ftpFile));
+		}
+		return list.toArray(new ExtendedFileInfo[list.size()]);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.filesystem.ftp.BaseFTPConnectionFileManager#createDirectory(org.eclipse.core.runtime.IPath,
@@ -1081,14 +1205,24 @@ public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager impl
 	protected InputStream readFile(IPath path, IProgressMonitor monitor) throws CoreException, FileNotFoundException
 	{
 		monitor.beginTask(Messages.SFTPConnectionFileManager_InitiatingFileDownload, 4);
+		SFTPClientPool clientPool = pool;
+		SSHFTPClient downloadFtpClient = checkOutClient(clientPool);
 		try
 		{
 			Policy.checkCanceled(monitor);
-			changeCurrentDir(path.removeLastSegments(1));
+			if (downloadFtpClient == null)
+			{
+				changeCurrentDir(path.removeLastSegments(1));
+			}
 			monitor.worked(1);
 			Policy.checkCanceled(monitor);
 			try
 			{
+				if (downloadFtpClient != null)
+				{
+					return new SFTPFileDownloadInputStream(clientPool, downloadFtpClient, new SSHFTPInputStream(
+							downloadFtpClient, path.toPortableString()));
+				}
 				return new SFTPFileDownloadInputStream(new SSHFTPInputStream(ftpClient, path.toPortableString()));
 			}
 			catch (FTPException e)
@@ -1099,6 +1233,10 @@ public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager impl
 		}
 		catch (Exception e)
 		{
+			if (downloadFtpClient != null)
+			{
+				clientPool.checkIn(downloadFtpClient);
+			}
 			if (e instanceof OperationCanceledException)
 			{
 				throw (OperationCanceledException) e;
@@ -1126,16 +1264,34 @@ public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager impl
 			throws CoreException, FileNotFoundException
 	{
 		monitor.beginTask(Messages.SFTPConnectionFileManager_FailedInitiatingFile, 4);
+		SFTPClientPool clientPool = pool;
+		SSHFTPClient uploadFtpClient = checkOutClient(clientPool);
 		try
 		{
 			Policy.checkCanceled(monitor);
-			changeCurrentDir(path.removeLastSegments(1));
+			IPath dirPath = path.removeLastSegments(1);
+			if (uploadFtpClient == null)
+			{
+				changeCurrentDir(dirPath);
+			}
+			else
+			{
+				try
+				{
+					uploadFtpClient.chdir(dirPath.toPortableString());
+				}
+				catch (FTPException e)
+				{
+					throwWrappedException(e, dirPath, SshFxpStatus.STATUS_FX_FAILURE);
+				}
+			}
 			monitor.worked(1);
 			Policy.checkCanceled(monitor);
-			return new SFTPFileUploadOutputStream(ftpClient, new SSHFTPOutputStream(ftpClient, useTemporary ? path
-					.removeLastSegments(1).append(generateTempFileName(path.lastSegment())).toPortableString()
-					: path.toPortableString()), useTemporary ? path.toPortableString() : null, new Date(), permissions,
-					new Runnable()
+			SSHFTPClient client = (uploadFtpClient != null) ? uploadFtpClient : ftpClient;
+			return new SFTPFileUploadOutputStream((uploadFtpClient != null) ? clientPool : null, client,
+					new SSHFTPOutputStream(client, useTemporary ? path.removeLastSegments(1).append(
+							generateTempFileName(path.lastSegment())).toPortableString() : path.toPortableString()),
+					useTemporary ? path.toPortableString() : null, new Date(), permissions, new Runnable()
 					{
 						public void run()
 						{
@@ -1145,6 +1301,10 @@ public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager impl
 		}
 		catch (Exception e)
 		{
+			if (uploadFtpClient != null)
+			{
+				clientPool.checkIn(uploadFtpClient);
+			}
 			if (e instanceof OperationCanceledException)
 			{
 				throw (OperationCanceledException) e;
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -15,6 +15,7 @@ import java.io.InputStream;
 import org.eclipse.core.runtime.Status;
 
 import com.enterprisedt.net.ftp.FileTransferInputStream;
+import com.enterprisedt.net.ftp.ssh.SSHFTPClient;
 
 /**
  * @author Max Stepanov
@@ -23,11 +24,25 @@ import com.enterprisedt.net.ftp.FileTransferInputStream;
 public class SFTPFileDownloadInputStream extends InputStream {
 
 	private FileTransferInputStream ftpInputStream;
+	private SFTPClientPool pool;
+	private SSHFTPClient ftpClient;
 	
 	/**
 	 * 
 	 */
 	public SFTPFileDownloadInputStream(FileTransferInputStream ftpInputStream) {
+		this(null, null, ftpInputStream);
+	}
+
+	/**
+	 * @param pool
+	 *            the pool to return the client to once closed, or null if the client is not pooled
+	 * @param ftpClient
+	 * @param ftpInputStream
+	 */
+	public SFTPFileDownloadInputStream(SFTPClientPool pool, SSHFTPClient ftpClient, FileTransferInputStream ftpInputStream) {
+		this.pool = pool;
+		this.ftpClient = ftpClient;
 		this.ftpInputStream = ftpInputStream;
 	}
 	
@@ -36,6 +51,11 @@ public class SFTPFileDownloadInputStream extends InputStream {
 			ftpInputStream.close();
 		} catch (IOException e) {
 			SecureFTPPlugin.log(new Status(Status.ERROR, SecureFTPPlugin.PLUGIN_ID, Messages.SFTPFileDownloadInputStream_ErrorDownload, e));
+		} finally {
+			if (pool != null) {
+				pool.checkIn(ftpClient);
+				pool = null;
+			}
 		}
 	}
 
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -33,11 +33,21 @@ public class SFTPFileUploadOutputStream extends OutputStream {
 	private Date modificationTime;
 	private long permissions;
 	private Runnable completeRunnable;
+	private SFTPClientPool pool;
 	
 	/**
 	 * 
 	 */
 	public SFTPFileUploadOutputStream(SSHFTPClient ftpClient, FileTransferOutputStream ftpOutputStream, String filename, Date modificationTime, long permissions, Runnable completeRunnable) {
+		this(null, ftpClient, ftpOutputStream, filename, modificationTime, permissions, completeRunnable);
+	}
+
+	/**
+	 * @param pool
+	 *            the pool to return the client to once closed, or null if the client is not pooled
+	 */
+	public SFTPFileUploadOutputStream(SFTPClientPool pool, SSHFTPClient ftpClient, FileTransferOutputStream ftpOutputStream, String filename, Date modificationTime, long permissions, Runnable completeRunnable) {
+		this.pool = pool;
 		this.ftpClient = ftpClient;
 		this.ftpOutputStream = ftpOutputStream;
 		this.filename = filename;
@@ -118,6 +128,11 @@ public class SFTPFileUploadOutputStream extends OutputStream {
 			}
 		} finally {
 			safeClose(false);
+			// only once closed, since closing still uses the client
+			if (pool != null) {
+				pool.checkIn(ftpClient);
+				pool = null;
+			}
 		}
 	}
 
@@ -19,6 +19,7 @@ public class Messages extends NLS
 	public static String S3FileStore_Authentication;
 	public static String S3FileStore_DestinationExists;
 	public static String S3FileStore_EnterAccessKey;
+	public static String S3FileStore_ObjectChanged;
 	public static String S3FileStore_ParentNotADirectory;
 	public static String S3FileStore_ParentNotExist;
 
@@ -1,12 +1,13 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
  */
 package com.aptana.ide.filesystem.s3;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -22,10 +23,14 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileInfo;
 import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.filesystem.IFileTree;
 import org.eclipse.core.filesystem.provider.FileInfo;
 import org.eclipse.core.filesystem.provider.FileStore;
 import org.eclipse.core.runtime.CoreException;
@@ -42,17 +47,45 @@ import com.amazon.s3.ListAllMyBucketsResponse;
 import com.amazon.s3.ListBucketResponse;
 import com.amazon.s3.ListEntry;
 import com.amazon.s3.Response;
+import com.amazon.s3.Utils;
+import com.aptana.core.io.vfs.IExtendedFileStore;
+import com.aptana.core.io.vfs.IFileTreeVisitor;
 import com.aptana.core.util.IOUtil;
 import com.aptana.ide.core.io.CoreIOPlugin;
 
-class S3FileStore extends FileStore
+class S3FileStore extends FileStore implements IExtendedFileStore
 {
 
+	/**
+	 * The system property setting the size of the parts of the transfers, in bytes. Objects larger than a part are
+	 * uploaded as multipart uploads and downloaded by ranges. S3 requires parts of 5MB at least (but the last one), so
+	 * smaller sizes are raised to 5MB unless {@link #SMALL_PARTS_PROPERTY} is set.
+	 */
+	static final String PART_SIZE_PROPERTY = "studio.s3.partSize"; //$NON-NLS-1$
+
+	/**
+	 * The system property allowing parts smaller than 5MB, for servers that accept them (like a local test server).
+	 */
+	static final String SMALL_PARTS_PROPERTY = "studio.s3.allowSmallParts"; //$NON-NLS-1$
+
+	/**
+	 * The system property setting the number of parts of one object transferred at the same time.
+	 */
+	static final String TRANSFER_THREADS_PROPERTY = "studio.s3.transferThreads"; //$NON-NLS-1$
+
+	private static final int DEFAULT_PART_SIZE = 8 * 1024 * 1024;
+	private static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+	private static final int DEFAULT_TRANSFER_THREADS = 4;
+
 	private static final String DATE_FORMAT = "EEE, d MMM yyyy HH:mm:ss z"; //$NON-NLS-1$
 	private static final String LAST_MODIFIED = "Last-Modified"; //$NON-NLS-1$
 	private static final String CONTENT_LENGTH = "Content-Length"; //$NON-NLS-1$
+	private static final String CONTENT_RANGE = "Content-Range"; //$NON-NLS-1$
+	private static final String ETAG = "ETag"; //$NON-NLS-1$
 	private static final String SEPARATOR = "/"; //$NON-NLS-1$
-	private static final String FOLDER_SUFFIX = "_$folder$"; //$NON-NLS-1$
+	static final String FOLDER_SUFFIX = "_$folder$"; //$NON-NLS-1$
+
+	private static ExecutorService transferExecutor;
 
 	private URI uri;
 	private Path path;
@@ -81,7 +114,7 @@ class S3FileStore extends FileStore
 			}
 			// Inside a bucket
 			String prefix = getPrefix();
-			List<ListEntry> entries = listEntries();
+			List<ListEntry> entries = listEntries(monitor);
 			List<String> keys = new ArrayList<String>();
 			if (entries == null)
 				return keys.toArray(new String[0]);
@@ -305,7 +338,10 @@ class S3FileStore extends FileStore
 	{
 		try
 		{
-			HttpURLConnection connection = getAWSConnection().getRaw(getBucket(), getKey(), null);
+			// the first part tells the length of the object, the next ones are fetched in parallel
+			int partSize = getPartSize();
+			HttpURLConnection connection = getAWSConnection().getRaw(getBucket(), getKey(),
+					S3ParallelInputStream.rangeHeaders(0, partSize, null));
 			int responseCode = connection.getResponseCode();
 			// Throw a CoreException wrapping a FileNotFoundException when we're trying to read an S3Object that doesn't
 			// exist
@@ -315,8 +351,19 @@ class S3FileStore extends FileStore
 				throw S3FileSystemPlugin.coreException(EFS.ERROR_NOT_EXISTS,
 						new FileNotFoundException(path.toPortableString()));
 			}
+			if (responseCode == 416)
+			{
+				// no range is satisfiable in an empty object
+				return new ByteArrayInputStream(new byte[0]);
+			}
 			if (responseCode < 400)
 			{
+				long length = getObjectLength(connection);
+				if (responseCode == 206 && length > partSize)
+				{
+					return new S3ParallelInputStream(this, connection.getInputStream(),
+							connection.getHeaderField(ETAG), length, partSize, getTransferThreads());
+				}
 				return connection.getInputStream();
 			}
 			throw S3FileSystemPlugin.coreException(EFS.ERROR_INTERNAL,
@@ -332,8 +379,69 @@ class S3FileStore extends FileStore
 		}
 	}
 
+	/**
+	 * @return the length of the object from the Content-Range header of a response to a range request, or -1
+	 */
+	private static long getObjectLength(HttpURLConnection connection)
+	{
+		String range = connection.getHeaderField(CONTENT_RANGE);
+		if (range != null)
+		{
+			int index = range.lastIndexOf('/');
+			if (index != -1)
+			{
+				try
+				{
+					return Long.parseLong(range.substring(index + 1).trim());
+				}
+				catch (NumberFormatException e)
+				{
+					// unknown length
+				}
+			}
+		}
+		return -1;
+	}
+
+	static int getPartSize()
+	{
+		int minimum = Boolean.getBoolean(SMALL_PARTS_PROPERTY) ? 1 : MIN_PART_SIZE;
+		return Math.max(minimum, Integer.getInteger(PART_SIZE_PROPERTY, DEFAULT_PART_SIZE));
+	}
+
+	static int getTransferThreads()
+	{
+		return Math.max(1, Integer.getInteger(TRANSFER_THREADS_PROPERTY, DEFAULT_TRANSFER_THREADS));
+	}
+
+	/**
+	 * @return the threads transferring the parts of the objects
+	 */
+	static synchronized ExecutorService getTransferExecutor()
+	{
+		if (transferExecutor == null)
+		{
+			transferExecutor = Executors.newCachedThreadPool(new ThreadFactory()
+			{
+				public Thread newThread(Runnable r)
+				{
+					Thread thread = new Thread(r, "S3 Transfer"); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return transferExecutor;
+	}
+
 	AWSAuthConnection getAWSConnection()
 	{
+		if (uri.getPort() != -1)
+		{
+			// an S3-compatible service at a given port, by HTTP unless the port is the HTTPS one
+			return new AWSAuthConnection(getAccessKey(), getSecretAccessKey(), uri.getPort() == Utils.SECURE_PORT,
+					uri.getHost(), uri.getPort(), CallingFormat.getPathCallingFormat());
+		}
 		boolean secure = true;
 		if (getBucket() != null && getBucket().indexOf(".") != -1) //$NON-NLS-1$
 		{
@@ -407,7 +515,7 @@ class S3FileStore extends FileStore
 		return key;
 	}
 
-	private String getBucket()
+	String getBucket()
 	{
 		if (path.segmentCount() == 0)
 			return null;
@@ -420,6 +528,102 @@ class S3FileStore extends FileStore
 		return uri;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.IExtendedFileStore#toCanonicalURI()
+	 */
+	public URI toCanonicalURI()
+	{
+		// leaves the secret access key out
+		try
+		{
+			return new URI(uri.getScheme(), getAccessKey(), uri.getHost(), uri.getPort(), path.toPortableString(),
+					null, null);
+		}
+		catch (URISyntaxException e)
+		{
+			S3FileSystemPlugin.log(e);
+		}
+		return uri;
+	}
+
+	/**
+	 * Builds the tree from the listing of the keys below this store, without querying them one by one. The listing is
+	 * fetched by pages, as S3 returns at most 1000 keys at a time.
+	 *
+	 * @see com.aptana.core.io.vfs.IExtendedFileStore#fetchFileTree(com.aptana.core.io.vfs.IFileTreeVisitor,
+	 *      org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	public IFileTree fetchFileTree(IFileTreeVisitor visitor, IProgressMonitor monitor) throws CoreException
+	{
+		SubMonitor sub = SubMonitor.convert(monitor, 100);
+		try
+		{
+			S3FileTree tree = new S3FileTree(this);
+			if (isRoot())
+			{
+				// each bucket is listed separately
+				List<IFileStore> stores = new ArrayList<IFileStore>();
+				List<IFileInfo> infos = new ArrayList<IFileInfo>();
+				for (String bucket : getBuckets())
+				{
+					IFileStore store = getChild(bucket);
+					if (visitor != null && !visitor.include(store))
+					{
+						continue;
+					}
+					FileInfo info = new FileInfo(bucket);
+					info.setExists(true);
+					info.setDirectory(true);
+					info.setAttribute(EFS.ATTRIBUTE_OWNER_EXECUTE, true);
+					stores.add(store);
+					infos.add(info);
+				}
+				tree.addChildren(this, stores.toArray(new IFileStore[stores.size()]),
+						infos.toArray(new IFileInfo[infos.size()]));
+				sub.setWorkRemaining(stores.size());
+				for (IFileStore store : stores)
+				{
+					S3FileStore bucket = (S3FileStore) store;
+					tree.addEntries(bucket, bucket.listEntries(sub.newChild(1)), visitor);
+				}
+			}
+			else
+			{
+				tree.addEntries(this, listEntries(sub), visitor);
+			}
+			return tree;
+		}
+		catch (IOException e)
+		{
+			throw S3FileSystemPlugin.coreException(e);
+		}
+		finally
+		{
+			sub.done();
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+		{
+			return true;
+		}
+		if (!(obj instanceof S3FileStore))
+		{
+			return false;
+		}
+		return uri.equals(((S3FileStore) obj).uri);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return uri.hashCode();
+	}
+
 	@Override
 	public void delete(int options, IProgressMonitor monitor) throws CoreException
 	{
@@ -472,32 +676,20 @@ class S3FileStore extends FileStore
 	@Override
 	public OutputStream openOutputStream(int options, IProgressMonitor monitor) throws CoreException
 	{
-		try
-		{
-			// If we know this is a bucket, just fail right away because you can't write to the bucket itself!
-			if (isBucket())
-			{
-				throw S3FileSystemPlugin.coreException(EFS.ERROR_READ_ONLY, new Exception("Can't write to a bucket!")); //$NON-NLS-1$
-			}
-			// if "parent" doesn't exist, need to fail
-			IFileStore parent = getParent();
-			IFileInfo info = parent.fetchInfo();
-			if (!info.exists())
-			{
-				throw S3FileSystemPlugin.coreException(EFS.ERROR_WRITE,
-						new FileNotFoundException(path.toPortableString()));
-			}
-			HttpURLConnection connection = getAWSConnection().putRaw(getBucket(), getKey(), null);
-			return new HttpForcingOutputStream(connection.getOutputStream(), connection);
-		}
-		catch (MalformedURLException e)
+		// If we know this is a bucket, just fail right away because you can't write to the bucket itself!
+		if (isBucket())
 		{
-			throw S3FileSystemPlugin.coreException(e);
+			throw S3FileSystemPlugin.coreException(EFS.ERROR_READ_ONLY, new Exception("Can't write to a bucket!")); //$NON-NLS-1$
 		}
-		catch (IOException e)
+		// if "parent" doesn't exist, need to fail
+		IFileStore parent = getParent();
+		IFileInfo info = parent.fetchInfo();
+		if (!info.exists())
 		{
-			throw S3FileSystemPlugin.coreException(e);
+			throw S3FileSystemPlugin.coreException(EFS.ERROR_WRITE, new FileNotFoundException(path.toPortableString()));
 		}
+		// small objects are sent on close with a single request, large ones as multipart uploads
+		return new S3MultipartOutputStream(this, getPartSize(), getTransferThreads());
 	}
 
 	@Override
@@ -553,7 +745,7 @@ class S3FileStore extends FileStore
 		return this;
 	}
 
-	private String errorMessage(int responseCode, HttpURLConnection connection) throws CoreException
+	String errorMessage(int responseCode, HttpURLConnection connection)
 	{
 		String msg = ""; //$NON-NLS-1$
 		try
@@ -696,16 +888,49 @@ class S3FileStore extends FileStore
 		}
 	}
 
+	/**
+	 * @return all the entries starting with the key of this store, fetched page by page; null if the listing fails
+	 */
 	@SuppressWarnings("unchecked")
-	List<ListEntry> listEntries() throws MalformedURLException, IOException
+	List<ListEntry> listEntries(IProgressMonitor monitor) throws MalformedURLException, IOException
 	{
 		String prefix = getPrefix();
 		if (prefix != null && prefix.trim().length() == 0)
 			prefix = null;
-		// FIXME If the list is truncated we need to grab the last entry as a marker and continually iterate and combine
-		// responses!
-		ListBucketResponse resp = getAWSConnection().listBucket(getBucket(), prefix, null, null, null);
-		return resp.entries;
+		AWSAuthConnection connection = getAWSConnection();
+		List<ListEntry> entries = null;
+		String marker = null;
+		while (true)
+		{
+			if (monitor != null && monitor.isCanceled())
+			{
+				throw new OperationCanceledException();
+			}
+			ListBucketResponse resp = connection.listBucket(getBucket(), prefix, marker, null, null);
+			if (resp.entries == null)
+			{
+				if (entries == null)
+				{
+					return null;
+				}
+				throw new IOException(errorMessage(resp.connection.getResponseCode(), resp.connection));
+			}
+			if (entries == null)
+			{
+				entries = resp.entries;
+			}
+			else
+			{
+				entries.addAll(resp.entries);
+			}
+			if (!resp.isTruncated || resp.entries.isEmpty())
+			{
+				return entries;
+			}
+			// the next marker is only returned for delimited listings, otherwise it's the last key
+			marker = (resp.nextMarker != null) ? resp.nextMarker
+					: ((ListEntry) resp.entries.get(resp.entries.size() - 1)).key;
+		}
 	}
 
 	@Override
@@ -745,48 +970,4 @@ class S3FileStore extends FileStore
 		}
 		super.copyDirectory(sourceInfo, destination, options, monitor);
 	}
-
-	private static class HttpForcingOutputStream extends OutputStream
-	{
-
-		private OutputStream out;
-		private HttpURLConnection connection;
-
-		HttpForcingOutputStream(OutputStream out, HttpURLConnection connection)
-		{
-			this.out = out;
-			this.connection = connection;
-		}
-
-		@Override
-		public void write(int b) throws IOException
-		{
-			out.write(b);
-		}
-
-		@Override
-		public void flush() throws IOException
-		{
-			out.flush();
-		}
-
-		@Override
-		public void close() throws IOException
-		{
-			out.close();
-			connection.getResponseCode(); // force the connection to finish!
-		}
-
-		@Override
-		public void write(byte[] b, int off, int len) throws IOException
-		{
-			out.write(b, off, len);
-		}
-
-		@Override
-		public void write(byte[] b) throws IOException
-		{
-			out.write(b);
-		}
-	}
 }
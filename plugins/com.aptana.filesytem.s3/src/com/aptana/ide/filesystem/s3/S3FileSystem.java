@@ -1,20 +1,20 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
  */
 package com.aptana.ide.filesystem.s3;
 
-import java.io.IOException;
-import java.net.MalformedURLException;
 import java.net.URI;
 
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.filesystem.IFileTree;
 import org.eclipse.core.filesystem.provider.FileSystem;
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 
 public class S3FileSystem extends FileSystem
 {
@@ -46,19 +46,13 @@ public class S3FileSystem extends FileSystem
 		}
 		try
 		{
-			S3FileStore s3Store = (S3FileStore) root;
-			if (monitor != null && monitor.isCanceled())
-			{
-				return null;
-			}
-			// FIXME What about when s3Store is the absolute root (not in a bucket)?!
-			return new S3FileTree(root, s3Store.listEntries());
+			return ((S3FileStore) root).fetchFileTree(null, monitor);
 		}
-		catch (MalformedURLException e)
+		catch (OperationCanceledException e)
 		{
-			S3FileSystemPlugin.log(e);
+			// no tree
 		}
-		catch (IOException e)
+		catch (CoreException e)
 		{
 			S3FileSystemPlugin.log(e);
 		}
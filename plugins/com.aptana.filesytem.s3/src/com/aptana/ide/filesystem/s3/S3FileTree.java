@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -8,207 +8,260 @@
 package com.aptana.ide.filesystem.s3;
 
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.TreeMap;
 
+import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileInfo;
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.filesystem.provider.FileInfo;
 import org.eclipse.core.filesystem.provider.FileTree;
+import org.eclipse.core.runtime.CoreException;
 
 import com.amazon.s3.ListEntry;
+import com.aptana.core.io.vfs.IFileTreeVisitor;
 
 /**
- * A more efficient way of accessing/querying the S3 file tree. Since when we query root for it's children we end up
- * with entire hierarchy below it (not just direct descendants), just store all the sub-tree entries and generate
- * IFileInfo and IFileStore's from it.
- * 
+ * A more efficient way of accessing/querying the S3 file tree. Since when we query a directory for its children we
+ * end up with the entire hierarchy below it (not just direct descendants), the whole sub-tree is built from that flat
+ * listing, without querying the keys one by one. The "directories" are the common prefixes of the keys, and the
+ * _$folder$ keys of the empty ones.
+ *
  * @author cwilliams
  */
 class S3FileTree extends FileTree
 {
 
 	private static final String SEPARATOR = "/"; //$NON-NLS-1$
+	private static final IFileStore[] EMPTY_FILE_STORE_ARRAY = new IFileStore[0];
+	private static final IFileInfo[] EMPTY_FILE_INFO_ARRAY = new IFileInfo[0];
 
-	private List<ListEntry> entries;
+	private final Map<IFileStore, IFileStore[]> treeMap = new HashMap<IFileStore, IFileStore[]>();
+	private final Map<IFileStore, IFileInfo> infoMap = new HashMap<IFileStore, IFileInfo>();
 
-	protected S3FileTree(IFileStore treeRoot, List<ListEntry> entries)
+	protected S3FileTree(IFileStore treeRoot)
 	{
 		super(treeRoot);
-		this.entries = entries;
 	}
 
-	@Override
-	public IFileInfo[] getChildInfos(IFileStore store) // NO_UCD
+	/**
+	 * Adds the direct children of the parent.
+	 */
+	void addChildren(IFileStore parent, IFileStore[] stores, IFileInfo[] infos)
 	{
-		if (!(store instanceof S3FileStore))
-		{
-			return null;
-		}
-		List<ListEntry> matches = getChildEntries(store);
-		List<IFileInfo> infos = new ArrayList<IFileInfo>();
-		for (ListEntry match : matches)
+		for (int i = 0; i < stores.length; ++i)
 		{
-			FileInfo fileInfo = generateFileInfo(match);
-			// TODO these will always be files. What about "parent directories" that these keys imply?
-			infos.add(fileInfo);
+			infoMap.put(stores[i], infos[i]);
 		}
-		return infos.toArray(new IFileInfo[infos.size()]);
+		treeMap.put(parent, stores);
 	}
 
-	private FileInfo generateFileInfo(ListEntry match)
+	/**
+	 * Adds the sub-tree of the directory, from the listing of the keys starting with its key.
+	 *
+	 * @param directory
+	 * @param entries
+	 *            the entries of the listing
+	 * @param visitor
+	 *            the visitor deciding which stores are included (and visited), or null for all of them
+	 * @throws CoreException
+	 */
+	void addEntries(S3FileStore directory, List<ListEntry> entries, IFileTreeVisitor visitor) throws CoreException
 	{
-		String name = match.key;
-		int lastSlash = name.lastIndexOf(SEPARATOR);
-		boolean isDirectory = (match instanceof PsuedoDirEntry);
-		if (lastSlash != -1)
+		String prefix = directory.getKey();
+		if (prefix.startsWith(SEPARATOR))
+		{
+			prefix = prefix.substring(1);
+		}
+		if (prefix.length() > 0)
+		{
+			prefix += SEPARATOR;
+		}
+
+		Node root = new Node(null);
+		if (entries != null)
 		{
-			if (lastSlash == (name.length() - 1))
+			for (ListEntry entry : entries)
 			{
-				name = name.substring(0, lastSlash);
-				isDirectory = true;
-				lastSlash = name.lastIndexOf(SEPARATOR);
-				if (lastSlash != -1)
+				// skip the peers sharing the prefix, like "dir_$folder$" or "dir2/file"
+				if (!entry.key.startsWith(prefix))
 				{
-					name = name.substring(lastSlash + 1);
+					continue;
 				}
-			}
-			else
-			{
-				name = name.substring(lastSlash);
-				if (name.startsWith(SEPARATOR))
+				String relative = entry.key.substring(prefix.length());
+				boolean isDirectory = false;
+				if (relative.endsWith(S3FileStore.FOLDER_SUFFIX))
+				{
+					relative = relative.substring(0, relative.length() - S3FileStore.FOLDER_SUFFIX.length());
+					isDirectory = true;
+				}
+				else if (relative.endsWith(SEPARATOR))
+				{
+					isDirectory = true;
+				}
+
+				Node node = root;
+				for (String segment : relative.split(SEPARATOR))
 				{
-					name = name.substring(1);
+					if (segment.length() > 0)
+					{
+						node = node.getChild(segment);
+					}
+				}
+				if (node != root)
+				{
+					if (isDirectory)
+					{
+						node.directory = true;
+						node.lastModified = entry.lastModified.getTime();
+					}
+					else
+					{
+						node.entry = entry;
+					}
 				}
 			}
 		}
-
-		FileInfo fileInfo = new FileInfo(name);
-		fileInfo.setExists(true);
-		fileInfo.setLastModified(match.lastModified.getTime());
-		fileInfo.setLength(match.size);
-		fileInfo.setDirectory(isDirectory);
-		return fileInfo;
+		addNode(directory, root, visitor);
 	}
 
-	private List<ListEntry> getChildEntries(IFileStore store)
+	private void addNode(S3FileStore parent, Node node, IFileTreeVisitor visitor) throws CoreException
 	{
-		S3FileStore s3Store = (S3FileStore) store;
-		String key = s3Store.getKey();
-		if (key.startsWith(SEPARATOR))
-		{
-			key = key.substring(1);
-		}
-		// FIXME This isn't including the subdirs!
-		Set<String> pseudoDirs = new HashSet<String>();
-		// Find all the entries that have the key as prefix
-		List<ListEntry> matches = new ArrayList<ListEntry>();
-		for (ListEntry entry : entries)
+		List<IFileStore> stores = new ArrayList<IFileStore>();
+		List<IFileInfo> infos = new ArrayList<IFileInfo>();
+		List<S3FileStore> dirStores = new ArrayList<S3FileStore>();
+		List<Node> dirs = new ArrayList<Node>();
+		for (Node child : node.children.values())
 		{
-			String relative = entry.key;
-			if (relative.startsWith(SEPARATOR))
-			{
-				relative = relative.substring(1);
-			}
-			if (!(key.length() == 0 || relative.startsWith(key + SEPARATOR)))
-			{
-				continue;
-			}
-			// Only limit to direct children!
-			relative = relative.substring(key.length());
-			if (relative.startsWith(SEPARATOR))
-			{
-				relative = relative.substring(1);
-			}
-			if (relative.endsWith(SEPARATOR))
-			{
-				relative = relative.substring(0, relative.length() - 1);
-			}
-			if (relative.length() == 0)
+			IFileStore store = parent.getChild(child.name);
+			if (visitor != null && !visitor.include(store))
 			{
 				continue;
 			}
-			int index = relative.indexOf(SEPARATOR);
-			if (index != -1)
+			stores.add(store);
+			infos.add(child.toFileInfo());
+			if (child.isDirectory())
 			{
-				String dirName = relative.substring(0, index);
-				if (!pseudoDirs.contains(dirName))
-				{
-					ListEntry dirEntry = new PsuedoDirEntry(dirName);
-					pseudoDirs.add(dirEntry.key);
-					matches.add(dirEntry);
-				}
-			}
-			else
-			{
-				matches.add(entry);
+				dirStores.add((S3FileStore) store);
+				dirs.add(child);
 			}
 		}
-		return matches;
+		addChildren(parent, stores.toArray(new IFileStore[stores.size()]), infos.toArray(new IFileInfo[infos.size()]));
+		for (int i = 0; i < dirs.size(); ++i)
+		{
+			addNode(dirStores.get(i), dirs.get(i), visitor);
+		}
 	}
 
-	private class PsuedoDirEntry extends ListEntry
+	@Override
+	public IFileInfo[] getChildInfos(IFileStore store) // NO_UCD
 	{
-		public PsuedoDirEntry(String dirName)
+		IFileStore[] result = treeMap.get(store);
+		if (result == null)
+		{
+			return EMPTY_FILE_INFO_ARRAY;
+		}
+		IFileInfo[] infos = new IFileInfo[result.length];
+		for (int i = 0; i < result.length; ++i)
 		{
-			super();
-			size = 0;
-			lastModified = new Date();
-			key = dirName;
+			infos[i] = infoMap.get(result[i]);
 		}
+		return infos;
 	}
 
 	@Override
 	public IFileStore[] getChildStores(IFileStore store) // NO_UCD
 	{
-		if (!(store instanceof S3FileStore))
-		{
-			return null;
-		}
-		S3FileStore s3Store = (S3FileStore) store;
-		List<ListEntry> matches = getChildEntries(s3Store);
-		List<IFileStore> childrenStores = new ArrayList<IFileStore>();
-		for (ListEntry match : matches)
+		IFileStore[] result = treeMap.get(store);
+		if (result == null)
 		{
-			String childName = match.key;
-			if (childName.endsWith(SEPARATOR))
-			{
-				childName = childName.substring(0, childName.length() - 1);
-			}
-			childrenStores.add(s3Store.getChild(childName));
+			return EMPTY_FILE_STORE_ARRAY;
 		}
-		return childrenStores.toArray(new IFileStore[childrenStores.size()]);
+		return result;
 	}
 
 	@Override
 	public IFileInfo getFileInfo(IFileStore store)
 	{
-		if (!(store instanceof S3FileStore))
+		IFileInfo result = infoMap.get(store);
+		if (result == null)
 		{
-			return null;
+			return new FileInfo(store.getName());
 		}
-		S3FileStore s3Store = (S3FileStore) store;
-		String key = s3Store.getKey();
-		// generate an info from a ListEntry if we have a match!
-		for (ListEntry entry : entries)
+		return result;
+	}
+
+	/**
+	 * A file or a directory of the listing.
+	 */
+	private static class Node
+	{
+
+		final String name;
+		final Map<String, Node> children = new TreeMap<String, Node>();
+		ListEntry entry;
+		boolean directory;
+		long lastModified;
+
+		Node(String name)
 		{
-			String entryKey = entry.key;
-			if (entryKey.startsWith(SEPARATOR))
+			this.name = name;
+		}
+
+		Node getChild(String childName)
+		{
+			Node child = children.get(childName);
+			if (child == null)
 			{
-				entryKey = entryKey.substring(1);
+				child = new Node(childName);
+				children.put(childName, child);
 			}
-			if (entryKey.endsWith(SEPARATOR))
+			return child;
+		}
+
+		/**
+		 * A key with keys below it is a directory, as for S3FileStore#childNames().
+		 */
+		boolean isDirectory()
+		{
+			return directory || entry == null || !children.isEmpty();
+		}
+
+		/**
+		 * @return the last modification of the directory, or of the most recent key below it
+		 */
+		long getLastModified()
+		{
+			if (!isDirectory())
 			{
-				entryKey = entryKey.substring(0, entryKey.length() - 1);
+				return entry.lastModified.getTime();
 			}
-			if (entryKey.equals(key))
+			long result = lastModified;
+			for (Node child : children.values())
 			{
-				return generateFileInfo(entry);
+				result = Math.max(result, child.getLastModified());
 			}
+			return result;
 		}
-		return s3Store.fetchInfo();
-	}
 
+		IFileInfo toFileInfo()
+		{
+			FileInfo info = new FileInfo(name);
+			info.setExists(true);
+			info.setLastModified(getLastModified());
+			if (isDirectory())
+			{
+				info.setDirectory(true);
+				info.setLength(EFS.NONE);
+				info.setAttribute(EFS.ATTRIBUTE_OWNER_EXECUTE, true);
+			}
+			else
+			{
+				info.setLength(entry.size);
+			}
+			return info;
+		}
+	}
 }
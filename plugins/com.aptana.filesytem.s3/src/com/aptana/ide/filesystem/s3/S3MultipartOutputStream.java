@@ -0,0 +1,312 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.filesystem.s3;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import com.amazon.s3.AWSAuthConnection;
+import com.amazon.s3.InitiateMultipartUploadResponse;
+import com.amazon.s3.Response;
+
+/**
+ * Writes an object. What fits in one part is sent with a single PUT when the stream is closed; larger objects are sent
+ * as a multipart upload, whose parts are uploaded by several threads while the next ones are written. At most as many
+ * parts as threads are waiting or being uploaded, so that a slow connection slows the writer down instead of filling
+ * the memory. The buffer starts small and grows up to the part size, and the buffers of the uploaded parts are reused
+ * for the next ones, so that small objects do not cost a whole part and large ones do not churn through buffers.
+ */
+class S3MultipartOutputStream extends OutputStream
+{
+
+	private static final String ETAG = "ETag"; //$NON-NLS-1$
+	private static final int INITIAL_BUFFER_SIZE = 8192;
+
+	private final S3FileStore store;
+	private final int partSize;
+	private final Semaphore uploadSlots;
+	private final List<Future<String>> parts = new ArrayList<Future<String>>();
+
+	/**
+	 * The buffers of the parts whose upload finished, ready for the next parts.
+	 */
+	private final Queue<byte[]> spareBuffers = new ConcurrentLinkedQueue<byte[]>();
+
+	private byte[] buffer;
+	private int count;
+	private String uploadId;
+	private boolean closed;
+
+	/**
+	 * @param store
+	 * @param partSize
+	 * @param threads
+	 *            the number of parts uploaded at the same time
+	 */
+	S3MultipartOutputStream(S3FileStore store, int partSize, int threads)
+	{
+		this.store = store;
+		this.partSize = partSize;
+		this.uploadSlots = new Semaphore(threads);
+		this.buffer = new byte[Math.min(partSize, INITIAL_BUFFER_SIZE)];
+	}
+
+	@Override
+	public void write(int b) throws IOException
+	{
+		if (count == partSize)
+		{
+			uploadPart();
+		}
+		ensureCapacity(count + 1);
+		buffer[count++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException
+	{
+		while (len > 0)
+		{
+			if (count == partSize)
+			{
+				uploadPart();
+			}
+			int length = Math.min(len, partSize - count);
+			ensureCapacity(count + length);
+			System.arraycopy(b, off, buffer, count, length);
+			count += length;
+			off += length;
+			len -= length;
+		}
+	}
+
+	/**
+	 * Grows the buffer, by doubling it up to the part size, until it holds the given number of bytes. After the first
+	 * part, the buffer is a full part, reused if an upload finished.
+	 * 
+	 * @param capacity
+	 *            at most the part size
+	 */
+	private void ensureCapacity(int capacity)
+	{
+		if (buffer == null)
+		{
+			// the object spans several parts, so the next part is likely full size too
+			buffer = spareBuffers.poll();
+			if (buffer == null)
+			{
+				buffer = new byte[partSize];
+			}
+		}
+		else if (capacity > buffer.length)
+		{
+			byte[] grown = new byte[Math.min(partSize, Math.max(capacity, buffer.length * 2))];
+			System.arraycopy(buffer, 0, grown, 0, count);
+			buffer = grown;
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		if (closed)
+		{
+			return;
+		}
+		closed = true;
+		if (uploadId == null)
+		{
+			putObject();
+			return;
+		}
+		try
+		{
+			if (count > 0)
+			{
+				uploadPart();
+			}
+			List<String> eTags = new ArrayList<String>(parts.size());
+			for (Future<String> part : parts)
+			{
+				eTags.add(getResult(part));
+			}
+			Response response = store.getAWSConnection().completeMultipartUpload(store.getBucket(), store.getKey(),
+					uploadId, eTags, null);
+			int responseCode = response.connection.getResponseCode();
+			if (responseCode >= 400)
+			{
+				throw new IOException(store.errorMessage(responseCode, response.connection));
+			}
+		}
+		catch (IOException e)
+		{
+			abort();
+			throw e;
+		}
+		finally
+		{
+			buffer = null;
+			spareBuffers.clear();
+		}
+	}
+
+	/**
+	 * Sends what fits in one part with a single request.
+	 */
+	private void putObject() throws IOException
+	{
+		HttpURLConnection connection = store.getAWSConnection().putRaw(store.getBucket(), store.getKey(), null);
+		connection.setFixedLengthStreamingMode(count);
+		OutputStream out = connection.getOutputStream();
+		out.write(buffer, 0, count);
+		out.close();
+		buffer = null;
+		int responseCode = connection.getResponseCode();
+		if (responseCode >= 400)
+		{
+			throw new IOException(store.errorMessage(responseCode, connection));
+		}
+	}
+
+	/**
+	 * Hands the buffer over to an upload thread, waiting for a free one.
+	 */
+	private void uploadPart() throws IOException
+	{
+		try
+		{
+			if (uploadId == null)
+			{
+				initiate();
+			}
+			// fail early rather than after writing the whole object
+			for (Future<String> part : parts)
+			{
+				if (part.isDone())
+				{
+					getResult(part);
+				}
+			}
+			try
+			{
+				uploadSlots.acquire();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw (IOException) new IOException(e.getMessage()).initCause(e);
+			}
+			final String id = uploadId;
+			final byte[] data = buffer;
+			final int length = count;
+			final int partNumber = parts.size() + 1;
+			parts.add(S3FileStore.getTransferExecutor().submit(new Callable<String>()
+			{
+				public String call() throws Exception
+				{
+					try
+					{
+						Response response = store.getAWSConnection().uploadPart(store.getBucket(),
+								store.getKey(), id, partNumber, data, 0, length, null);
+						int responseCode = response.connection.getResponseCode();
+						if (responseCode >= 400)
+						{
+							throw new IOException(store.errorMessage(responseCode, response.connection));
+						}
+						return response.connection.getHeaderField(ETAG);
+					}
+					finally
+					{
+						// the part is sent, its buffer may take the next one
+						spareBuffers.offer(data);
+						uploadSlots.release();
+					}
+				}
+			}));
+			// the buffer of the next part is taken once something is written to it
+			buffer = null;
+			count = 0;
+		}
+		catch (IOException e)
+		{
+			closed = true;
+			abort();
+			throw e;
+		}
+	}
+
+	private void initiate() throws IOException
+	{
+		InitiateMultipartUploadResponse response = store.getAWSConnection().initiateMultipartUpload(
+				store.getBucket(), store.getKey(), null);
+		int responseCode = response.connection.getResponseCode();
+		if (responseCode >= 400 || response.uploadId == null)
+		{
+			throw new IOException(store.errorMessage(responseCode, response.connection));
+		}
+		uploadId = response.uploadId;
+	}
+
+	/**
+	 * Discards the parts uploaded so far, if any.
+	 */
+	private void abort()
+	{
+		for (Future<String> part : parts)
+		{
+			part.cancel(true);
+		}
+		if (uploadId == null)
+		{
+			return;
+		}
+		try
+		{
+			AWSAuthConnection connection = store.getAWSConnection();
+			// forces the request
+			connection.abortMultipartUpload(store.getBucket(), store.getKey(), uploadId, null).connection
+					.getResponseCode();
+		}
+		catch (IOException e)
+		{
+			S3FileSystemPlugin.log(e);
+		}
+		uploadId = null;
+	}
+
+	private static String getResult(Future<String> part) throws IOException
+	{
+		try
+		{
+			return part.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw (IOException) new IOException(e.getMessage()).initCause(e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+			{
+				throw (IOException) cause;
+			}
+			throw (IOException) new IOException(String.valueOf(cause.getMessage())).initCause(cause);
+		}
+	}
+}
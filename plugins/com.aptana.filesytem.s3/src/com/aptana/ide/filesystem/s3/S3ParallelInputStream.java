@@ -0,0 +1,218 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.filesystem.s3;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a large object by ranges: the parts after the first one are fetched by several threads ahead of the reader,
+ * while the first one is streamed. The parts are requested with the ETag of the first one, so that an object changing
+ * in the meantime is an error rather than a mix of both versions.
+ */
+class S3ParallelInputStream extends InputStream
+{
+
+	private static final String RANGE = "Range"; //$NON-NLS-1$
+	private static final String IF_MATCH = "If-Match"; //$NON-NLS-1$
+
+	private final S3FileStore store;
+	private final String eTag;
+	private final long length;
+	private final int partSize;
+	private final LinkedList<Future<byte[]>> parts = new LinkedList<Future<byte[]>>();
+
+	private InputStream current;
+	private long nextPartOffset;
+
+	/**
+	 * @param store
+	 * @param firstPart
+	 *            the stream of the response to the request of the first range
+	 * @param eTag
+	 *            the ETag of the object
+	 * @param length
+	 *            the length of the object
+	 * @param partSize
+	 * @param threads
+	 *            the number of parts to fetch ahead
+	 */
+	S3ParallelInputStream(S3FileStore store, InputStream firstPart, String eTag, long length, int partSize,
+			int threads)
+	{
+		this.store = store;
+		this.current = firstPart;
+		this.eTag = eTag;
+		this.length = length;
+		this.partSize = partSize;
+		this.nextPartOffset = partSize;
+		for (int i = 0; i < threads; ++i)
+		{
+			scheduleNextPart();
+		}
+	}
+
+	/**
+	 * @param offset
+	 * @param size
+	 * @param eTag
+	 *            the ETag the object must have, or null
+	 * @return the headers requesting the given part of an object
+	 */
+	static Map<String, List<String>> rangeHeaders(long offset, long size, String eTag)
+	{
+		Map<String, List<String>> headers = new HashMap<String, List<String>>();
+		headers.put(RANGE, Arrays.asList("bytes=" + offset + '-' + (offset + size - 1))); //$NON-NLS-1$
+		if (eTag != null)
+		{
+			headers.put(IF_MATCH, Arrays.asList(eTag));
+		}
+		return headers;
+	}
+
+	private void scheduleNextPart()
+	{
+		if (nextPartOffset >= length)
+		{
+			return;
+		}
+		final long offset = nextPartOffset;
+		final int size = (int) Math.min(partSize, length - offset);
+		nextPartOffset += size;
+		parts.add(S3FileStore.getTransferExecutor().submit(new Callable<byte[]>()
+		{
+			public byte[] call() throws Exception
+			{
+				return fetchPart(offset, size);
+			}
+		}));
+	}
+
+	private byte[] fetchPart(long offset, int size) throws IOException
+	{
+		HttpURLConnection connection = store.getAWSConnection().getRaw(store.getBucket(), store.getKey(),
+				rangeHeaders(offset, size, eTag));
+		int responseCode = connection.getResponseCode();
+		if (responseCode >= 400)
+		{
+			throw new IOException(store.errorMessage(responseCode, connection));
+		}
+		InputStream stream = connection.getInputStream();
+		try
+		{
+			byte[] data = new byte[size];
+			int count = 0;
+			int read;
+			while (count < size && (read = stream.read(data, count, size - count)) != -1)
+			{
+				count += read;
+			}
+			if (count != size || stream.read() != -1)
+			{
+				throw new IOException(Messages.S3FileStore_ObjectChanged);
+			}
+			return data;
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+
+	/**
+	 * @return false at the end of the object
+	 */
+	private boolean nextPart() throws IOException
+	{
+		if (parts.isEmpty())
+		{
+			return false;
+		}
+		Future<byte[]> part = parts.removeFirst();
+		try
+		{
+			current.close();
+			current = new ByteArrayInputStream(part.get());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw (IOException) new IOException(e.getMessage()).initCause(e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+			{
+				throw (IOException) cause;
+			}
+			throw (IOException) new IOException(String.valueOf(cause.getMessage())).initCause(cause);
+		}
+		scheduleNextPart();
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		int result;
+		while ((result = current.read()) == -1)
+		{
+			if (!nextPart())
+			{
+				return -1;
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		if (len == 0)
+		{
+			return 0;
+		}
+		int result;
+		while ((result = current.read(b, off, len)) == -1)
+		{
+			if (!nextPart())
+			{
+				return -1;
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public int available() throws IOException
+	{
+		return current.available();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		for (Future<byte[]> part : parts)
+		{
+			part.cancel(true);
+		}
+		parts.clear();
+		current.close();
+	}
+}
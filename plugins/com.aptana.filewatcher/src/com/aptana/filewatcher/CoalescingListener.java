@@ -0,0 +1,271 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.filewatcher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import net.contentobjects.jnotify.IJNotify;
+import net.contentobjects.jnotify.JNotifyListener;
+
+/**
+ * Holds back the events of a watch until no event arrived for a while, and merges the events of the same path in
+ * between, so that a burst of changes (a checkout, a build, an editor saving through a temporary file) reaches the
+ * listener as one notification per path. A burst that goes on is still delivered once its oldest event gets too old.
+ * Events are delivered in the order they arrived, on the thread of the executor.
+ */
+class CoalescingListener implements JNotifyListener
+{
+
+	/**
+	 * An event waiting to be delivered. A kind of 0 means that later events cancelled it.
+	 */
+	private static class PendingEvent
+	{
+		private int kind;
+		private final int wd;
+		private final String rootPath;
+		private final String name;
+		private final String oldName;
+
+		private PendingEvent(int kind, int wd, String rootPath, String name, String oldName)
+		{
+			this.kind = kind;
+			this.wd = wd;
+			this.rootPath = rootPath;
+			this.name = name;
+			this.oldName = oldName;
+		}
+	}
+
+	private final JNotifyListener listener;
+	private final ScheduledExecutorService executor;
+	private final long delay;
+	private final long maxDelay;
+
+	/**
+	 * The events waiting, in the order they arrived.
+	 */
+	private List<PendingEvent> pending = new ArrayList<PendingEvent>();
+
+	/**
+	 * The events waiting which later events of the same path may still be merged into, by path.
+	 */
+	private Map<String, PendingEvent> mergeable = new HashMap<String, PendingEvent>();
+
+	private long firstEventTime;
+	private long lastEventTime;
+	private boolean flushScheduled;
+	private volatile boolean disposed;
+
+	private final Runnable flush = new Runnable()
+	{
+		public void run()
+		{
+			flush();
+		}
+	};
+
+	/**
+	 * @param listener
+	 *            the listener to deliver the events to
+	 * @param executor
+	 *            the executor delivering the events
+	 * @param delay
+	 *            the time in milliseconds without events after which the events waiting are delivered
+	 * @param maxDelay
+	 *            the time in milliseconds after which an event is delivered even if others keep arriving
+	 */
+	CoalescingListener(JNotifyListener listener, ScheduledExecutorService executor, long delay, long maxDelay)
+	{
+		this.listener = listener;
+		this.executor = executor;
+		this.delay = delay;
+		this.maxDelay = Math.max(delay, maxDelay);
+	}
+
+	public void fileCreated(int wd, String rootPath, String name)
+	{
+		add(IJNotify.FILE_CREATED, wd, rootPath, name);
+	}
+
+	public void fileDeleted(int wd, String rootPath, String name)
+	{
+		add(IJNotify.FILE_DELETED, wd, rootPath, name);
+	}
+
+	public void fileModified(int wd, String rootPath, String name)
+	{
+		add(IJNotify.FILE_MODIFIED, wd, rootPath, name);
+	}
+
+	public void fileRenamed(int wd, String rootPath, String oldName, String newName)
+	{
+		synchronized (this)
+		{
+			if (disposed)
+			{
+				return;
+			}
+			// a rename involves two paths, so it is never merged; later events of either path come after it
+			mergeable.remove(key(rootPath, oldName));
+			mergeable.remove(key(rootPath, newName));
+			pending.add(new PendingEvent(IJNotify.FILE_RENAMED, wd, rootPath, newName, oldName));
+			eventArrived();
+		}
+	}
+
+	private synchronized void add(int kind, int wd, String rootPath, String name)
+	{
+		if (disposed)
+		{
+			return;
+		}
+		String key = key(rootPath, name);
+		PendingEvent previous = mergeable.get(key);
+		if (previous == null)
+		{
+			PendingEvent event = new PendingEvent(kind, wd, rootPath, name, null);
+			pending.add(event);
+			mergeable.put(key, event);
+		}
+		else
+		{
+			previous.kind = merge(previous.kind, kind);
+			if (previous.kind == 0)
+			{
+				mergeable.remove(key);
+			}
+		}
+		eventArrived();
+	}
+
+	/**
+	 * The kind of the single event standing for an event of the first kind followed by one of the second kind on the
+	 * same path.
+	 * 
+	 * @param first
+	 * @param second
+	 * @return the kind, or 0 if the path is back to how it was before both
+	 */
+	static int merge(int first, int second)
+	{
+		if (first == IJNotify.FILE_CREATED)
+		{
+			if (second == IJNotify.FILE_DELETED)
+			{
+				// never seen by the listener
+				return 0;
+			}
+			// still new to the listener, whatever happened to it since
+			return IJNotify.FILE_CREATED;
+		}
+		if (first == IJNotify.FILE_DELETED && second == IJNotify.FILE_CREATED)
+		{
+			// replaced
+			return IJNotify.FILE_MODIFIED;
+		}
+		return second;
+	}
+
+	private static String key(String rootPath, String name)
+	{
+		return rootPath + '\0' + name;
+	}
+
+	private void eventArrived()
+	{
+		lastEventTime = System.currentTimeMillis();
+		if (!flushScheduled)
+		{
+			firstEventTime = lastEventTime;
+			flushScheduled = true;
+			executor.schedule(flush, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Delivers the events waiting if the burst is over or has gone on for too long, or checks again later.
+	 */
+	private void flush()
+	{
+		List<PendingEvent> events;
+		synchronized (this)
+		{
+			if (disposed)
+			{
+				return;
+			}
+			long now = System.currentTimeMillis();
+			long quietUntil = lastEventTime + delay;
+			long dueAt = firstEventTime + maxDelay;
+			if (now < quietUntil && now < dueAt)
+			{
+				executor.schedule(flush, Math.min(quietUntil, dueAt) - now, TimeUnit.MILLISECONDS);
+				return;
+			}
+			events = pending;
+			pending = new ArrayList<PendingEvent>();
+			mergeable.clear();
+			flushScheduled = false;
+		}
+
+		for (PendingEvent event : events)
+		{
+			// the watch may be removed while the events are delivered
+			if (disposed)
+			{
+				return;
+			}
+			try
+			{
+				deliver(event);
+			}
+			catch (Throwable e)
+			{
+				FileWatcherPlugin.log(e);
+			}
+		}
+	}
+
+	private void deliver(PendingEvent event)
+	{
+		switch (event.kind)
+		{
+			case IJNotify.FILE_CREATED:
+				listener.fileCreated(event.wd, event.rootPath, event.name);
+				break;
+			case IJNotify.FILE_DELETED:
+				listener.fileDeleted(event.wd, event.rootPath, event.name);
+				break;
+			case IJNotify.FILE_MODIFIED:
+				listener.fileModified(event.wd, event.rootPath, event.name);
+				break;
+			case IJNotify.FILE_RENAMED:
+				listener.fileRenamed(event.wd, event.rootPath, event.oldName, event.name);
+				break;
+			default:
+				// cancelled
+				break;
+		}
+	}
+
+	/**
+	 * Drops the events waiting and ignores those still arriving, once the watch is removed.
+	 */
+	synchronized void dispose()
+	{
+		disposed = true;
+		pending.clear();
+		mergeable.clear();
+	}
+}
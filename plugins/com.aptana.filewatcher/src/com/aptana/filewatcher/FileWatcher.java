@@ -1,12 +1,18 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
  */
 package com.aptana.filewatcher;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
 import net.contentobjects.jnotify.IJNotify;
 import net.contentobjects.jnotify.JNotifyException;
 import net.contentobjects.jnotify.JNotifyListener;
@@ -19,8 +25,25 @@ import com.aptana.filewatcher.poller.PollingNotifier;
 public class FileWatcher
 {
 
+	/**
+	 * The system property setting the time in milliseconds a watch waits for a burst of events to end before
+	 * delivering them, merged by path. 0 delivers each event as it arrives, on the thread of the notifier.
+	 */
+	public static final String COALESCE_DELAY_PROPERTY = "studio.filewatcher.coalesceDelay"; //$NON-NLS-1$
+
+	/**
+	 * The system property setting the time in milliseconds after which an event is delivered even though the burst it
+	 * belongs to goes on.
+	 */
+	public static final String MAX_COALESCE_DELAY_PROPERTY = "studio.filewatcher.maxCoalesceDelay"; //$NON-NLS-1$
+
+	private static final int DEFAULT_COALESCE_DELAY = 250;
+	private static final int DEFAULT_MAX_COALESCE_DELAY = 2000;
+
 	private static IJNotify _instance;
 	private static boolean fgNotify = true;
+	private static ScheduledExecutorService notifyExecutor;
+	private static final Map<Integer, CoalescingListener> coalescingListeners = new HashMap<Integer, CoalescingListener>();
 
 	private synchronized static IJNotify instance()
 	{
@@ -59,14 +82,53 @@ public class FileWatcher
 		return _instance;
 	}
 
+	private synchronized static ScheduledExecutorService getNotifyExecutor()
+	{
+		if (notifyExecutor == null)
+		{
+			notifyExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+			{
+				public Thread newThread(Runnable runnable)
+				{
+					Thread thread = new Thread(runnable, "File Watcher Notifier"); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return notifyExecutor;
+	}
+
 	public static int addWatch(String path, int mask, boolean watchSubtree, final JNotifyListener listener)
 			throws JNotifyException
 	{
-		return instance().addWatch(path, mask, watchSubtree, listener);
+		int delay = Integer.getInteger(COALESCE_DELAY_PROPERTY, DEFAULT_COALESCE_DELAY);
+		if (delay <= 0)
+		{
+			return instance().addWatch(path, mask, watchSubtree, listener);
+		}
+
+		CoalescingListener coalescingListener = new CoalescingListener(listener, getNotifyExecutor(), delay,
+				Integer.getInteger(MAX_COALESCE_DELAY_PROPERTY, DEFAULT_MAX_COALESCE_DELAY));
+		int watchId = instance().addWatch(path, mask, watchSubtree, coalescingListener);
+		synchronized (coalescingListeners)
+		{
+			coalescingListeners.put(watchId, coalescingListener);
+		}
+		return watchId;
 	}
 
 	public static boolean removeWatch(int watchId) throws JNotifyException
 	{
+		CoalescingListener coalescingListener;
+		synchronized (coalescingListeners)
+		{
+			coalescingListener = coalescingListeners.remove(watchId);
+		}
+		if (coalescingListener != null)
+		{
+			coalescingListener.dispose();
+		}
 		return instance().removeWatch(watchId);
 	}
 
@@ -25,6 +25,7 @@ import java.util.regex.Pattern;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IRegion;
+import org.eclipse.text.edits.MultiTextEdit;
 import org.eclipse.text.edits.ReplaceEdit;
 import org.eclipse.text.edits.TextEdit;
 
@@ -376,6 +377,98 @@ public abstract class AbstractScriptFormatter implements IScriptFormatter
 		return new ReplaceEdit(offset, length, builder.toString());
 	}
 
+	/**
+	 * Creates a {@link TextEdit} that transforms the original text of a formatted region into the formatter's output by
+	 * touching only the white-space runs that actually changed.<br>
+	 * Replacing the whole region with a single {@link ReplaceEdit} forces the document, its partitioners and the undo
+	 * manager to process the entire text, even when the formatting only changed a handful of lines. In case the output
+	 * differs from the original in anything other than white-spaces, the method falls back to a single
+	 * {@link ReplaceEdit} that is trimmed to the differing part of the region.
+	 * 
+	 * @param originalText
+	 *            The original text of the formatted region
+	 * @param offset
+	 *            The offset of the region in the document
+	 * @param output
+	 *            The formatter output for that region
+	 * @return A {@link MultiTextEdit} that covers the given region, with a child edit for every changed white-space run.
+	 */
+	protected TextEdit createMinimalEdit(String originalText, int offset, String output)
+	{
+		int length = originalText.length();
+		MultiTextEdit edit = new MultiTextEdit(offset, length);
+		int outputLength = output.length();
+		int i = 0;
+		int j = 0;
+		while (i < length || j < outputLength)
+		{
+			char inChar = (i < length) ? originalText.charAt(i) : 0;
+			char outChar = (j < outputLength) ? output.charAt(j) : 0;
+			boolean inWhitespace = i < length && Character.isWhitespace(inChar);
+			boolean outWhitespace = j < outputLength && Character.isWhitespace(outChar);
+			if (!inWhitespace && !outWhitespace)
+			{
+				if (i < length && j < outputLength && inChar == outChar)
+				{
+					i++;
+					j++;
+					continue;
+				}
+				// A non white-space change. Replace the differing part in one edit.
+				return createTrimmedEdit(originalText, offset, output);
+			}
+			int inEnd = i;
+			while (inEnd < length && Character.isWhitespace(originalText.charAt(inEnd)))
+			{
+				inEnd++;
+			}
+			int outEnd = j;
+			while (outEnd < outputLength && Character.isWhitespace(output.charAt(outEnd)))
+			{
+				outEnd++;
+			}
+			if (!originalText.regionMatches(i, output, j, Math.max(inEnd - i, outEnd - j)))
+			{
+				edit.addChild(new ReplaceEdit(offset + i, inEnd - i, output.substring(j, outEnd)));
+			}
+			i = inEnd;
+			j = outEnd;
+		}
+		return edit;
+	}
+
+	/**
+	 * Creates a single {@link ReplaceEdit} that replaces only the part of the original text that is not shared with the
+	 * output as a common prefix or suffix.
+	 * 
+	 * @param originalText
+	 * @param offset
+	 * @param output
+	 * @return A {@link MultiTextEdit} that covers the given region and holds the trimmed {@link ReplaceEdit}.
+	 */
+	private TextEdit createTrimmedEdit(String originalText, int offset, String output)
+	{
+		int length = originalText.length();
+		int outputLength = output.length();
+		int prefix = 0;
+		int maxPrefix = Math.min(length, outputLength);
+		while (prefix < maxPrefix && originalText.charAt(prefix) == output.charAt(prefix))
+		{
+			prefix++;
+		}
+		int suffix = 0;
+		int maxSuffix = maxPrefix - prefix;
+		while (suffix < maxSuffix
+				&& originalText.charAt(length - suffix - 1) == output.charAt(outputLength - suffix - 1))
+		{
+			suffix++;
+		}
+		MultiTextEdit edit = new MultiTextEdit(offset, length);
+		edit.addChild(new ReplaceEdit(offset + prefix, length - prefix - suffix, output.substring(prefix, outputLength
+				- suffix)));
+		return edit;
+	}
+
 	/**
 	 * Returns true only when the source to format is located at the beginning of a line, or when there are only
 	 * white-space characters to its left.
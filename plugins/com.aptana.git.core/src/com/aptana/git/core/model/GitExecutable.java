@@ -37,9 +37,11 @@ import org.osgi.service.prefs.BackingStoreException;
 import com.aptana.core.ShellExecutable;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.CollectionsUtil;
+import com.aptana.core.util.AsyncProcess;
 import com.aptana.core.util.EclipseUtil;
 import com.aptana.core.util.ExecutableUtil;
 import com.aptana.core.util.IOUtil;
+import com.aptana.core.util.IProcessOutputListener;
 import com.aptana.core.util.PlatformUtil;
 import com.aptana.core.util.ProcessStatus;
 import com.aptana.core.util.ProcessUtil;
@@ -371,6 +373,24 @@ public class GitExecutable
 		return ProcessUtil.runInBackground(gitPath.toOSString(), workingDirectory, input, null, args);
 	}
 
+	/**
+	 * Launches the git process and hands its output to the listener as it is read, instead of collecting it.
+	 * 
+	 * @param workingDir
+	 * @param listener
+	 * @param monitor
+	 *            a monitor whose cancellation destroys the process, or null
+	 * @param args
+	 * @return a handle to wait for the process
+	 * @throws IOException
+	 * @throws CoreException
+	 */
+	AsyncProcess runAsync(IPath workingDir, IProcessOutputListener listener, IProgressMonitor monitor, String... args)
+			throws IOException, CoreException
+	{
+		return ProcessUtil.runAsync(gitPath.toOSString(), workingDir, null, listener, 0, monitor, args);
+	}
+
 	/**
 	 * Launches the git process and returns the handle to the active process.
 	 * 
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -15,7 +15,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -43,6 +42,7 @@ import com.aptana.core.util.ArrayUtil;
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.EclipseUtil;
 import com.aptana.core.util.IOUtil;
+import com.aptana.core.util.LineOutputListener;
 import com.aptana.core.util.StringUtil;
 import com.aptana.git.core.GitPlugin;
 import com.aptana.git.core.IDebugScopes;
@@ -746,6 +746,14 @@ public class GitIndex
 		job.schedule();
 	}
 
+	/**
+	 * Receives the records of the -z output of git, as they are read.
+	 */
+	private interface IRecordReader
+	{
+		void recordRead(String record);
+	}
+
 	private abstract static class FilesRefreshJob extends Job
 	{
 		protected GitRepository repo;
@@ -760,45 +768,66 @@ public class GitIndex
 			this.filePaths = filePaths;
 		}
 
-		protected List<String> linesFromNotification(String string)
+		/**
+		 * Runs a git command printing -z records on the file paths of this job, and reads its output as it comes rather
+		 * than collecting it.
+		 * 
+		 * @param args
+		 * @param records
+		 *            receives the records git printed on STDOUT
+		 * @param monitor
+		 * @return whether git succeeded
+		 */
+		protected boolean readRecords(List<String> args, final IRecordReader records, IProgressMonitor monitor)
 		{
-			// FIXME: throw an error?
-			if (string == null)
-			{
-				return Collections.emptyList();
-			}
-
-			// Strip trailing null
-			if (string.endsWith("\0")) //$NON-NLS-1$
+			if (!CollectionsUtil.isEmpty(filePaths))
 			{
-				string = string.substring(0, string.length() - 1);
+				args.add("--"); //$NON-NLS-1$
+				args.addAll(filePaths);
 			}
-
-			if (string.length() == 0)
+			IStatus result = repo.executeAsync(new LineOutputListener(IOUtil.UTF_8, (byte) 0)
 			{
-				return Collections.emptyList();
-			}
-
-			return StringUtil.tokenize(string, "\0"); //$NON-NLS-1$
-		}
-
-		protected Map<String, List<String>> dictionaryForLines(List<String> lines)
-		{
-			Map<String, List<String>> dictionary = new HashMap<String, List<String>>(lines.size() / 2);
-
-			// Fill the dictionary with the new information. These lines are in the form of:
-			// :00000 :0644 OTHER INDEX INFORMATION
-			// Filename
-			Assert.isTrue(lines.size() % 2 == 0, "Lines must have an even number of lines: " + lines); //$NON-NLS-1$
-			Iterator<String> iter = lines.iterator();
-			while (iter.hasNext())
+				@Override
+				protected void lineRead(int stream, String line)
+				{
+					if (stream == STDOUT)
+					{
+						records.recordRead(line);
+					}
+				}
+			}, monitor, args.toArray(new String[args.size()]));
+			return result != null && result.isOK();
+		}
+
+		/**
+		 * Reads the output of diff-index and diff-files, pairs of a status record and a path, into a dictionary from the
+		 * paths to the fields of their status.
+		 * 
+		 * @param args
+		 * @param monitor
+		 * @return the dictionary, or null if git failed
+		 */
+		protected Map<String, List<String>> readStatusRecords(List<String> args, IProgressMonitor monitor)
+		{
+			final Map<String, List<String>> dictionary = new HashMap<String, List<String>>();
+			boolean ok = readRecords(args, new IRecordReader()
 			{
-				String fileStatus = iter.next();
-				String fileName = iter.next();
-				dictionary.put(fileName, StringUtil.tokenize(fileStatus, " ")); //$NON-NLS-1$
-			}
+				private String fileStatus;
 
-			return dictionary;
+				public void recordRead(String record)
+				{
+					if (fileStatus == null)
+					{
+						fileStatus = record;
+					}
+					else
+					{
+						dictionary.put(record, StringUtil.tokenize(fileStatus, " ")); //$NON-NLS-1$
+						fileStatus = null;
+					}
+				}
+			}, monitor);
+			return ok ? dictionary : null;
 		}
 
 		protected void addFilesFromDictionary(Map<String, List<String>> dictionary, boolean staged, boolean tracked)
@@ -945,25 +974,13 @@ public class GitIndex
 			// HEAD vs filesystem
 			List<String> args = CollectionsUtil.newList("diff-index", "--cached", //$NON-NLS-1$ //$NON-NLS-2$
 					"-z", GitRepository.HEAD); //$NON-NLS-1$
-			if (!CollectionsUtil.isEmpty(filePaths))
-			{
-				args.add("--"); //$NON-NLS-1$
-				args.addAll(filePaths);
-			}
-			IStatus result = repo.execute(GitRepository.ReadWrite.READ, args.toArray(new String[args.size()]));
-			if (result != null && result.isOK())
+			Map<String, List<String>> dictionary = readStatusRecords(args, monitor);
+			if (dictionary != null)
 			{
-				readStagedFiles(result.getMessage());
+				addFilesFromDictionary(dictionary, true, true);
 			}
 			return Status.OK_STATUS;
 		}
-
-		private void readStagedFiles(String string)
-		{
-			List<String> lines = linesFromNotification(string);
-			Map<String, List<String>> dic = dictionaryForLines(lines);
-			addFilesFromDictionary(dic, true, true);
-		}
 	}
 
 	private static final class UnstagedFilesRefreshJob extends FilesRefreshJob
@@ -978,25 +995,13 @@ public class GitIndex
 		{
 			// index vs filesystem
 			List<String> args = CollectionsUtil.newList("diff-files", "-z"); //$NON-NLS-1$ //$NON-NLS-2$
-			if (!CollectionsUtil.isEmpty(filePaths))
-			{
-				args.add("--"); //$NON-NLS-1$
-				args.addAll(filePaths);
-			}
-			IStatus result = repo.execute(GitRepository.ReadWrite.READ, args.toArray(new String[args.size()]));
-			if (result != null && result.isOK())
+			Map<String, List<String>> dictionary = readStatusRecords(args, monitor);
+			if (dictionary != null)
 			{
-				readUnstagedFiles(result.getMessage());
+				addFilesFromDictionary(dictionary, false, true);
 			}
 			return Status.OK_STATUS;
 		}
-
-		private void readUnstagedFiles(String string)
-		{
-			List<String> lines = linesFromNotification(string);
-			Map<String, List<String>> dic = dictionaryForLines(lines);
-			addFilesFromDictionary(dic, false, true);
-		}
 	}
 
 	private static final class UntrackedFilesRefreshJob extends FilesRefreshJob
@@ -1012,42 +1017,31 @@ public class GitIndex
 			// index vs working tree (HEAD?)
 			List<String> args = CollectionsUtil.newList("ls-files", "--others", //$NON-NLS-1$ //$NON-NLS-2$
 					"--exclude-standard", "-z"); //$NON-NLS-1$ //$NON-NLS-2$
-			if (!CollectionsUtil.isEmpty(filePaths))
-			{
-				args.add("--"); //$NON-NLS-1$
-				args.addAll(filePaths);
-			}
-			IStatus result = repo.execute(GitRepository.ReadWrite.READ, args.toArray(new String[args.size()]));
-			if (result != null && result.isOK())
-			{
-				readOtherFiles(result.getMessage());
-			}
-			return Status.OK_STATUS;
-		}
-
-		private void readOtherFiles(String string)
-		{
-			List<String> lines = linesFromNotification(string);
-			Map<String, List<String>> dictionary = new HashMap<String, List<String>>(lines.size());
 			// Other files are untracked, so we don't have any real index information. Instead, we can just fake it.
 			// The line below is not used at all, as for these files the commitBlob isn't set
-			List<String> fileStatus = new ArrayList<String>();
+			final List<String> fileStatus = new ArrayList<String>();
 			fileStatus.add(":000000"); // for new file //$NON-NLS-1$
 			fileStatus.add("100644"); //$NON-NLS-1$
 			fileStatus.add("0000000000000000000000000000000000000000"); // SHA //$NON-NLS-1$
 			fileStatus.add("0000000000000000000000000000000000000000"); //$NON-NLS-1$
 			fileStatus.add("A"); // A for Add, D for delete //$NON-NLS-1$
 			fileStatus.add(null);
-			for (String path : lines)
+			final Map<String, List<String>> dictionary = new HashMap<String, List<String>>();
+			boolean ok = readRecords(args, new IRecordReader()
 			{
-				if (path.length() == 0)
+				public void recordRead(String path)
 				{
-					continue;
+					if (path.length() != 0)
+					{
+						dictionary.put(path, fileStatus);
+					}
 				}
-				dictionary.put(path, fileStatus);
+			}, monitor);
+			if (ok)
+			{
+				addFilesFromDictionary(dictionary, false, false);
 			}
-
-			addFilesFromDictionary(dictionary, false, false);
+			return Status.OK_STATUS;
 		}
 	}
 }
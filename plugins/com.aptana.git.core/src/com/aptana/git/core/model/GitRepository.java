@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -58,8 +58,10 @@ import org.eclipse.core.runtime.jobs.Job;
 
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.ArrayUtil;
+import com.aptana.core.util.AsyncProcess;
 import com.aptana.core.util.EclipseUtil;
 import com.aptana.core.util.IOUtil;
+import com.aptana.core.util.IProcessOutputListener;
 import com.aptana.core.util.StringUtil;
 import com.aptana.filewatcher.FileWatcher;
 import com.aptana.git.core.GitPlugin;
@@ -1500,6 +1502,50 @@ public class GitRepository
 		}
 	}
 
+	/**
+	 * Executes a git process which only reads the repository, and hands its output to the listener as it is read rather
+	 * than collecting it. Returns once the process is over and the listener was told.
+	 * 
+	 * @param listener
+	 * @param monitor
+	 *            a monitor whose cancellation destroys the process, or null
+	 * @param args
+	 * @return the status the listener was given
+	 */
+	IStatus executeAsync(IProcessOutputListener listener, IProgressMonitor monitor, String... args)
+	{
+		if (!enterRead())
+		{
+			return new Status(IStatus.ERROR, GitPlugin.getPluginId(), Messages.GitRepository_FailedAcquireLock);
+		}
+		try
+		{
+			AsyncProcess process = GitExecutable.instance().runAsync(workingDirectory(), listener, monitor, args);
+			try
+			{
+				return process.waitFor();
+			}
+			catch (InterruptedException e)
+			{
+				process.cancel();
+				Thread.currentThread().interrupt();
+				return Status.CANCEL_STATUS;
+			}
+		}
+		catch (IOException e)
+		{
+			return new Status(IStatus.ERROR, GitPlugin.getPluginId(), e.getMessage(), e);
+		}
+		catch (CoreException e)
+		{
+			return e.getStatus();
+		}
+		finally
+		{
+			exitRead();
+		}
+	}
+
 	IStatus executeWithInput(String input, String... args)
 	{
 		// All of these processes appear to be write, so just hard-code that
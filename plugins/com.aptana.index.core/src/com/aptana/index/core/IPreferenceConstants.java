@@ -13,4 +13,10 @@ public interface IPreferenceConstants
 {
 	public static final String FILTERED_INDEX_URIS = "FILTERED_INDEX_URIS"; //$NON-NLS-1$
 	public static final String NO_ITEMS = StringUtil.EMPTY;
+
+	/**
+	 * Enables the in-memory trigram index of the files contents, which is used to narrow down text searches. The
+	 * index is maintained by the builder, and is disabled by default.
+	 */
+	public static final String ENABLE_CONTENT_INDEX = "ENABLE_CONTENT_INDEX"; //$NON-NLS-1$
 }
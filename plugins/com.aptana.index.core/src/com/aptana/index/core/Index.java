@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the Eclipse Public License (EPL).
  * Please see the license-epl.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -304,6 +304,7 @@ public class Index
 	private DiskIndex diskIndex;
 	private ReadWriteLock monitor;
 	private URI containerURI;
+	private volatile long modificationStamp;
 
 	/**
 	 * Index
@@ -352,6 +353,7 @@ public class Index
 		try
 		{
 			this.memoryIndex.addEntry(category, key, containerRelativeURI.toString());
+			this.modificationStamp++;
 		}
 		finally
 		{
@@ -487,6 +489,17 @@ public class Index
 		return this.diskIndex == null ? null : this.diskIndex.indexFile;
 	}
 
+	/**
+	 * Returns a number which changes whenever entries are added to or removed from this index. Saving the index does not
+	 * change it.
+	 * 
+	 * @return
+	 */
+	public long getModificationStamp()
+	{
+		return this.modificationStamp;
+	}
+
 	/**
 	 * @deprecated
 	 * @return
@@ -626,6 +639,7 @@ public class Index
 		try
 		{
 			this.memoryIndex.remove(documentName);
+			this.modificationStamp++;
 		}
 		finally
 		{
@@ -644,6 +658,7 @@ public class Index
 		try
 		{
 			this.memoryIndex.removeCategories(categoryNames);
+			this.modificationStamp++;
 			this.diskIndex = this.diskIndex.removeCategories(categoryNames, this.memoryIndex);
 		}
 		catch (IOException e)
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the Eclipse Public License (EPL).
  * Please see the license-epl.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -17,6 +17,7 @@ import java.util.Set;
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileInfo;
 import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.filesystem.IFileTree;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -147,8 +148,6 @@ public class IndexContainerJob extends IndexRequestJob
 	 */
 	private Set<IFileStore> addFiles(IFileStore file, IProgressMonitor monitor)
 	{
-		// TODO We should likely call IFileSystem.fetchTree and use that if it doesn't return null (because that is more
-		// efficient in some schemes)!
 		SubMonitor sub = SubMonitor.convert(monitor, 10);
 		Set<IFileStore> files = new HashSet<IFileStore>();
 		try
@@ -167,6 +166,14 @@ public class IndexContainerJob extends IndexRequestJob
 			{
 				try
 				{
+					// File systems able to fetch the whole tree at once (remote ones list it in bulk) save a request
+					// per directory
+					IFileTree tree = file.getFileSystem().fetchFileTree(file, sub.newChild(2));
+					if (tree != null)
+					{
+						addFiles(tree, file, files);
+						return files;
+					}
 					// Now try to dive into directory and add all children recursively
 					IFileStore[] fileList = file.childStores(EFS.NONE, sub.newChild(2));
 					if (ArrayUtil.isEmpty(fileList))
@@ -200,6 +207,21 @@ public class IndexContainerJob extends IndexRequestJob
 		return files;
 	}
 
+	private static void addFiles(IFileTree tree, IFileStore directory, Set<IFileStore> files)
+	{
+		for (IFileStore child : tree.getChildStores(directory))
+		{
+			if (tree.getFileInfo(child).isDirectory())
+			{
+				addFiles(tree, child, files);
+			}
+			else
+			{
+				files.add(child);
+			}
+		}
+	}
+
 	// TODO Combine this with RemoveFilesOfIndexJob logic?
 	private void removeDeletedFiles(Index index, Set<String> documents, Set<IFileStore> files, IProgressMonitor monitor)
 	{
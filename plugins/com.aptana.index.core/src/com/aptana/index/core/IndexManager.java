@@ -50,6 +50,7 @@ public class IndexManager
 
 	private ArrayList<IIndexFileContributor> fileContributors;
 	private ArrayList<IIndexFilterParticipant> filterParticipants;
+	private TrigramIndex contentIndex;
 
 	static final ISchedulingRule MUTEX_RULE = new ISchedulingRule()
 	{
@@ -112,6 +113,30 @@ public class IndexManager
 		return index;
 	}
 
+	/**
+	 * Returns the workspace content index, or <code>null</code> when the content indexing is disabled in the
+	 * preferences.
+	 * 
+	 * @return The {@link TrigramIndex} of the files content (may be null).
+	 * @see IPreferenceConstants#ENABLE_CONTENT_INDEX
+	 */
+	public synchronized TrigramIndex getContentIndex()
+	{
+		boolean enabled = Platform.getPreferencesService().getBoolean(IndexPlugin.PLUGIN_ID,
+				IPreferenceConstants.ENABLE_CONTENT_INDEX, false, null);
+		if (!enabled)
+		{
+			// drop any content we may have collected before the index was disabled
+			contentIndex = null;
+			return null;
+		}
+		if (contentIndex == null)
+		{
+			contentIndex = new TrigramIndex();
+		}
+		return contentIndex;
+	}
+
 	/**
 	 * getIndexPaths
 	 * 
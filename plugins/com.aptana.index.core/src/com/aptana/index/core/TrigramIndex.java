@@ -0,0 +1,482 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An in-memory trigram index of file contents. The index maps every (lower-cased) sequence of three characters to the
+ * documents that contain it, so a text search can narrow down the files it has to scan to the ones that contain all
+ * the trigrams of the searched text. The candidates are a super-set of the real matches, and they still have to be
+ * verified by the searcher.<br>
+ * Documents that were never added to this index are unknown to it, and should always be treated as candidates (see
+ * {@link #contains(URI)}). Since the index only reflects the content a document had when it was added, files modified
+ * since then (see {@link #getIndexStamp(URI)}) should be treated as candidates too.
+ */
+public class TrigramIndex
+{
+	/**
+	 * Files with a larger content are not indexed (and are therefore always searched).
+	 */
+	public static final int MAX_CONTENT_LENGTH = 1024 * 1024;
+
+	private static final int MIN_REMOVED_FOR_COMPACT = 1000;
+
+	/**
+	 * The escapes that stand for a single char or a class of chars, and take no operand.
+	 */
+	private static final String SIMPLE_ESCAPES = "dDwWsShHvVbBAGZzRXntrfae"; //$NON-NLS-1$
+
+	/**
+	 * A growable list of document ids.
+	 */
+	private static class Postings
+	{
+		private int[] ids = new int[4];
+		private int size;
+
+		private void add(int id)
+		{
+			if (size == ids.length)
+			{
+				int[] newIds = new int[size * 2];
+				System.arraycopy(ids, 0, newIds, 0, size);
+				ids = newIds;
+			}
+			ids[size++] = id;
+		}
+	}
+
+	private final Map<URI, Integer> documentIds;
+	private final Map<URI, Long> stamps;
+	private final List<URI> documents;
+	private final Map<Long, Postings> postings;
+	private int removedCount;
+
+	public TrigramIndex()
+	{
+		documentIds = new HashMap<URI, Integer>();
+		stamps = new HashMap<URI, Long>();
+		documents = new ArrayList<URI>();
+		postings = new HashMap<Long, Postings>();
+	}
+
+	/**
+	 * Adds (or replaces) the content of a document, as it is now.
+	 * 
+	 * @param uri
+	 * @param content
+	 */
+	public void add(URI uri, String content)
+	{
+		add(uri, content, System.currentTimeMillis());
+	}
+
+	/**
+	 * Adds (or replaces) the content of a document.
+	 * 
+	 * @param uri
+	 * @param content
+	 * @param stamp
+	 *            The modification time (in milliseconds) of the document when its content was read. Any later
+	 *            modification of the document is not reflected by this index.
+	 */
+	public synchronized void add(URI uri, String content, long stamp)
+	{
+		remove(uri);
+		if (uri == null || content == null || content.length() > MAX_CONTENT_LENGTH)
+		{
+			return;
+		}
+		int id = documents.size();
+		documents.add(uri);
+		documentIds.put(uri, id);
+		stamps.put(uri, stamp);
+		for (Long trigram : getTrigrams(content))
+		{
+			Postings list = postings.get(trigram);
+			if (list == null)
+			{
+				list = new Postings();
+				postings.put(trigram, list);
+			}
+			list.add(id);
+		}
+	}
+
+	/**
+	 * Removes a document from the index.
+	 * 
+	 * @param uri
+	 */
+	public synchronized void remove(URI uri)
+	{
+		Integer id = documentIds.remove(uri);
+		if (id == null)
+		{
+			return;
+		}
+		stamps.remove(uri);
+		// Just mark the document as removed. Its id will be dropped from the postings on the next compaction.
+		documents.set(id, null);
+		removedCount++;
+		if (removedCount > MIN_REMOVED_FOR_COMPACT && removedCount > documentIds.size())
+		{
+			compact();
+		}
+	}
+
+	/**
+	 * Removes all the documents that are located under the given container URI.
+	 * 
+	 * @param containerURI
+	 */
+	public synchronized void removeAll(URI containerURI)
+	{
+		String prefix = containerURI.toString();
+		List<URI> toRemove = new ArrayList<URI>();
+		for (URI uri : documentIds.keySet())
+		{
+			if (uri.toString().startsWith(prefix))
+			{
+				toRemove.add(uri);
+			}
+		}
+		for (URI uri : toRemove)
+		{
+			remove(uri);
+		}
+	}
+
+	/**
+	 * Returns true if the given document is indexed.
+	 * 
+	 * @param uri
+	 * @return True if the document was added to this index; False, otherwise.
+	 */
+	public synchronized boolean contains(URI uri)
+	{
+		return documentIds.containsKey(uri);
+	}
+
+	/**
+	 * Returns the modification time of the given document when its indexed content was read.
+	 * 
+	 * @param uri
+	 * @return The time in milliseconds, or -1 if the document is not indexed.
+	 */
+	public synchronized long getIndexStamp(URI uri)
+	{
+		Long stamp = stamps.get(uri);
+		return (stamp == null) ? -1 : stamp;
+	}
+
+	/**
+	 * Returns the number of indexed documents.
+	 */
+	public synchronized int size()
+	{
+		return documentIds.size();
+	}
+
+	/**
+	 * Returns the indexed documents that may contain the given text.
+	 * 
+	 * @param text
+	 *            The searched text
+	 * @param isRegEx
+	 *            Indicates that the searched text is a regular expression. In that case, only its literal fragments
+	 *            are used to narrow down the candidates.
+	 * @return The candidate documents, or <code>null</code> when the search text does not have enough literal
+	 *         characters for the index to narrow down the search (in that case, every document is a candidate).
+	 */
+	public Set<URI> getCandidates(String text, boolean isRegEx)
+	{
+		if (text == null)
+		{
+			return null;
+		}
+		Collection<String> fragments = isRegEx ? getLiteralFragments(text) : Collections.singleton(text);
+		return getCandidates(fragments);
+	}
+
+	/**
+	 * Returns the indexed documents that contain all the trigrams of all the given fragments.
+	 * 
+	 * @param fragments
+	 * @return The candidate documents, or <code>null</code> when none of the fragments contains a trigram.
+	 */
+	public synchronized Set<URI> getCandidates(Collection<String> fragments)
+	{
+		Set<Long> trigrams = new HashSet<Long>();
+		for (String fragment : fragments)
+		{
+			trigrams.addAll(getTrigrams(fragment));
+		}
+		if (trigrams.isEmpty())
+		{
+			return null;
+		}
+		BitSet result = null;
+		for (Long trigram : trigrams)
+		{
+			Postings list = postings.get(trigram);
+			if (list == null)
+			{
+				return Collections.emptySet();
+			}
+			BitSet ids = new BitSet(documents.size());
+			for (int i = 0; i < list.size; i++)
+			{
+				ids.set(list.ids[i]);
+			}
+			if (result == null)
+			{
+				result = ids;
+			}
+			else
+			{
+				result.and(ids);
+			}
+			if (result.isEmpty())
+			{
+				return Collections.emptySet();
+			}
+		}
+		Set<URI> candidates = new HashSet<URI>();
+		for (int id = result.nextSetBit(0); id >= 0; id = result.nextSetBit(id + 1))
+		{
+			URI uri = documents.get(id);
+			if (uri != null)
+			{
+				candidates.add(uri);
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * Extracts the literal fragments that every match of the given regular expression must contain. The extraction is
+	 * conservative: any construct it does not fully understand simply ends the current fragment. In case the
+	 * expression contains a top-level alternation, no fragment is required and an empty list is returned.
+	 * 
+	 * @param regex
+	 * @return A list of literal fragments (may be empty)
+	 */
+	public static List<String> getLiteralFragments(String regex)
+	{
+		List<String> fragments = new ArrayList<String>();
+		StringBuilder current = new StringBuilder();
+		int length = regex.length();
+		int i = 0;
+		while (i < length)
+		{
+			char c = regex.charAt(i);
+			switch (c)
+			{
+				case '\\':
+					if (i + 1 >= length)
+					{
+						return Collections.emptyList();
+					}
+					char escaped = regex.charAt(i + 1);
+					if (escaped == 'Q')
+					{
+						// Quoted sequences are rare enough not to deserve special handling.
+						return Collections.emptyList();
+					}
+					if (!Character.isLetterOrDigit(escaped))
+					{
+						// An escaped meta char, or any other quoted punctuation.
+						current.append(escaped);
+					}
+					else if (SIMPLE_ESCAPES.indexOf(escaped) > -1)
+					{
+						// A character class (\w, \d...), a boundary or a special char (\n, \t...).
+						addFragment(fragments, current);
+					}
+					else if (escaped >= '1' && escaped <= '9')
+					{
+						// A back-reference. Its number may have several digits.
+						addFragment(fragments, current);
+						while (i + 2 < length && Character.isDigit(regex.charAt(i + 2)))
+						{
+							i++;
+						}
+					}
+					else
+					{
+						// An escape followed by an operand (\xhh, \uhhhh, \0nn, \cx, \p{..}, \k<..>), or one we don't
+						// know. Its operand must not be taken as literal text.
+						return Collections.emptyList();
+					}
+					i += 2;
+					continue;
+				case '|':
+					return Collections.emptyList();
+				case '?':
+				case '*':
+				case '{':
+					// The previous char is optional.
+					if (current.length() > 0)
+					{
+						current.deleteCharAt(current.length() - 1);
+					}
+					addFragment(fragments, current);
+					if (c == '{')
+					{
+						i = skipTo(regex, i, '}');
+					}
+					break;
+				case '+':
+					addFragment(fragments, current);
+					break;
+				case '[':
+					addFragment(fragments, current);
+					i = skipTo(regex, i + 1, ']');
+					break;
+				case '(':
+					// Skip the entire group, since it may contain alternations or be optional.
+					addFragment(fragments, current);
+					int depth = 1;
+					while (depth > 0 && ++i < length)
+					{
+						char groupChar = regex.charAt(i);
+						if (groupChar == '\\')
+						{
+							i++;
+						}
+						else if (groupChar == '(')
+						{
+							depth++;
+						}
+						else if (groupChar == ')')
+						{
+							depth--;
+						}
+					}
+					break;
+				case ')':
+				case '.':
+				case '^':
+				case '$':
+					addFragment(fragments, current);
+					break;
+				default:
+					current.append(c);
+			}
+			i++;
+		}
+		addFragment(fragments, current);
+		return fragments;
+	}
+
+	private static void addFragment(List<String> fragments, StringBuilder current)
+	{
+		if (current.length() > 0)
+		{
+			fragments.add(current.toString());
+			current.setLength(0);
+		}
+	}
+
+	private static int skipTo(String regex, int index, char closing)
+	{
+		int length = regex.length();
+		while (index < length && regex.charAt(index) != closing)
+		{
+			if (regex.charAt(index) == '\\')
+			{
+				index++;
+			}
+			index++;
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the set of the case-insensitive trigrams in the given text.
+	 * 
+	 * @param text
+	 * @return A set of encoded trigrams.
+	 */
+	private static Set<Long> getTrigrams(String text)
+	{
+		int length = text.length();
+		if (length < 3)
+		{
+			return Collections.emptySet();
+		}
+		Set<Long> trigrams = new HashSet<Long>();
+		long c1 = Character.toLowerCase(text.charAt(0));
+		long c2 = Character.toLowerCase(text.charAt(1));
+		for (int i = 2; i < length; i++)
+		{
+			long c3 = Character.toLowerCase(text.charAt(i));
+			trigrams.add((c1 << 32) | (c2 << 16) | c3);
+			c1 = c2;
+			c2 = c3;
+		}
+		return trigrams;
+	}
+
+	/**
+	 * Drops the removed documents from the postings, and re-numbers the remaining ones.
+	 */
+	private void compact()
+	{
+		int[] newIds = new int[documents.size()];
+		List<URI> newDocuments = new ArrayList<URI>(documentIds.size());
+		for (int id = 0; id < newIds.length; id++)
+		{
+			URI uri = documents.get(id);
+			if (uri == null)
+			{
+				newIds[id] = -1;
+			}
+			else
+			{
+				newIds[id] = newDocuments.size();
+				documentIds.put(uri, newIds[id]);
+				newDocuments.add(uri);
+			}
+		}
+		documents.clear();
+		documents.addAll(newDocuments);
+		Iterator<Postings> iterator = postings.values().iterator();
+		while (iterator.hasNext())
+		{
+			Postings list = iterator.next();
+			int size = 0;
+			for (int i = 0; i < list.size; i++)
+			{
+				int newId = newIds[list.ids[i]];
+				if (newId != -1)
+				{
+					list.ids[size++] = newId;
+				}
+			}
+			list.size = size;
+			if (size == 0)
+			{
+				iterator.remove();
+			}
+		}
+		removedCount = 0;
+	}
+}
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -46,6 +46,9 @@ public final class Util {
 	 * @return String
 	 */
 	public static String encodeData(String data) {
+		if (data.indexOf('#') == -1 && data.indexOf('|') == -1 && data.indexOf('*') == -1) {
+			return data;
+		}
 		return data.replaceAll("#", "#0").replaceAll("\\|", "#1").replaceAll("\\*", "#2"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
 	}
 
@@ -56,6 +59,9 @@ public final class Util {
 	 * @return String
 	 */
 	public static String decodeData(String data) {
+		if (data.indexOf('#') == -1) {
+			return data;
+		}
 		return data.replaceAll("#2", "*").replaceAll("#1", "|").replaceAll("#0", "#"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
 	}
 
@@ -69,6 +75,149 @@ public final class Util {
 		return CHECK_VARIABLE.matcher(variableName).matches();
 	}
 
+	/**
+	 * Splits the data around the separator, like {@link String#split(String)} does (trailing empty strings are
+	 * not included), but without compiling a regular expression. The parts are substrings of the data.
+	 * 
+	 * @param data
+	 * @param separator
+	 * @return String[]
+	 */
+	public static String[] split(String data, char separator) {
+		int count = 1;
+		int end = data.length();
+		// trailing empty strings are removed
+		while (end > 0 && data.charAt(end - 1) == separator) {
+			--end;
+		}
+		for (int i = data.indexOf(separator); i != -1 && i < end; i = data.indexOf(separator, i + 1)) {
+			++count;
+		}
+		if (end == 0) {
+			return data.length() == 0 ? new String[] { data } : new String[0];
+		}
+		String[] result = new String[count];
+		int start = 0;
+		for (int i = 0; i < count - 1; ++i) {
+			int index = data.indexOf(separator, start);
+			result[i] = data.substring(start, index);
+			start = index + 1;
+		}
+		result[count - 1] = data.substring(start, end);
+		return result;
+	}
+
+	/**
+	 * Walks the tokens of the data between separators by offsets, so that a caller only allocates the parts it
+	 * keeps. Unlike {@link #split(String, char)}, trailing empty tokens are returned.
+	 */
+	public static final class Tokenizer {
+		private final String data;
+		private final char separator;
+		private int start;
+		private int end = -1;
+
+		/**
+		 * @param data
+		 * @param separator
+		 */
+		public Tokenizer(String data, char separator) {
+			this.data = data;
+			this.separator = separator;
+		}
+
+		/**
+		 * Advances to the next token.
+		 * 
+		 * @return false if there are no more tokens
+		 */
+		public boolean next() {
+			if (end == data.length()) {
+				return false;
+			}
+			start = end + 1;
+			end = data.indexOf(separator, start);
+			if (end == -1) {
+				end = data.length();
+			}
+			return true;
+		}
+
+		/**
+		 * Returns the current token, or null if there is no current token.
+		 * 
+		 * @return String
+		 */
+		public String token() {
+			return start <= end ? data.substring(start, end) : null;
+		}
+
+		/**
+		 * Returns the current token decoded like {@link Util#decodeData(String)} does, or null if there is no
+		 * current token.
+		 * 
+		 * @return String
+		 */
+		public String decodedToken() {
+			if (start > end) {
+				return null;
+			}
+			int index = data.indexOf('#', start);
+			if (index == -1 || index >= end) {
+				return data.substring(start, end);
+			}
+			StringBuilder sb = new StringBuilder(end - start);
+			for (int i = start; i < end; ++i) {
+				char c = data.charAt(i);
+				if (c == '#' && i + 1 < end) {
+					switch (data.charAt(i + 1)) {
+						case '0':
+							c = '#';
+							++i;
+							break;
+						case '1':
+							c = '|';
+							++i;
+							break;
+						case '2':
+							c = '*';
+							++i;
+							break;
+						default:
+							break;
+					}
+				}
+				sb.append(c);
+			}
+			return sb.toString();
+		}
+
+		/**
+		 * Returns whether the current token contains the character.
+		 * 
+		 * @param c
+		 * @return boolean
+		 */
+		public boolean contains(char c) {
+			int index = data.indexOf(c, start);
+			return index != -1 && index < end;
+		}
+
+		/**
+		 * @return the offset of the current token in the data
+		 */
+		public int start() {
+			return start;
+		}
+
+		/**
+		 * @return the offset after the current token in the data
+		 */
+		public int end() {
+			return end;
+		}
+	}
+
 	public static String[] removeArrayElement(String[] array, int index) {
 		if (array.length == 0 || index >= array.length) {
 			return array;
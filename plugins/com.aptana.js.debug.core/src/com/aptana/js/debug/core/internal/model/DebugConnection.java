@@ -15,9 +15,15 @@ import java.io.Writer;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
-import java.text.MessageFormat;
-import java.util.Hashtable;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -25,6 +31,7 @@ import org.eclipse.debug.core.DebugException;
 
 import com.aptana.js.debug.core.JSDebugPlugin;
 import com.aptana.js.debug.core.internal.ProtocolLogger;
+import com.aptana.js.debug.core.internal.Util;
 
 /**
  * @author Max Stepanov
@@ -32,7 +39,13 @@ import com.aptana.js.debug.core.internal.ProtocolLogger;
 public class DebugConnection {
 
 	public interface IHandler {
-		void handleMessage(String message);
+		/**
+		 * Handles a message that is not a reply to a pending command.
+		 * 
+		 * @param args
+		 *            the message split into its arguments; the first one is the action
+		 */
+		void handleMessage(String[] args);
 
 		void handleShutdown();
 	}
@@ -42,17 +55,24 @@ public class DebugConnection {
 	 */
 	protected static final int COMMAND_TIMEOUT = 20000;
 
-	private static final String ARGS_SPLIT = "\\*"; //$NON-NLS-1$
+	private static final char ARGS_SEPARATOR = '*';
+
+	private static final Runnable NO_OP = new Runnable() {
+		public void run() {
+		}
+	};
 
 	private Socket socket;
 	private Reader reader;
 	private Writer writer;
-	private boolean connected = false;
+	private volatile boolean connected = false;
 	private boolean terminated = false;
 	private final ProtocolLogger logger;
 
-	private Map<String, Object> locks = new Hashtable<String, Object>(); // synchronized get/put required
-	private volatile long lastReqId = System.currentTimeMillis();
+	private final Object writeLock = new Object();
+	private final Map<String, PendingReply> pendingReplies = new ConcurrentHashMap<String, PendingReply>();
+	private final AtomicLong lastReqId = new AtomicLong(System.currentTimeMillis());
+	private final char[] readBuffer = new char[1024];
 
 	private IHandler handler;
 
@@ -126,16 +146,10 @@ public class DebugConnection {
 			return;
 		}
 		connected = false;
-		synchronized (locks) {
-			Object[] list = locks.values().toArray();
-			locks.clear();
-			for (Object lock : list) {
-				synchronized (lock) {
-					lock.notify();
-				}
-			}
+		for (PendingReply reply : pendingReplies.values()) {
+			reply.cancel(false);
 		}
-
+		pendingReplies.clear();
 	}
 
 	public void dispose() throws IOException {
@@ -155,22 +169,17 @@ public class DebugConnection {
 		if (message.endsWith("*")) { //$NON-NLS-1$
 			message += "* "; //$NON-NLS-1$
 		}
-		handler.handleMessage(message);
+		String[] args = Util.split(message, ARGS_SEPARATOR);
 
-		if (!connected) {
-			return;
-		}
 		/* check if action comes to waiting commands */
-		String[] args = message.split(ARGS_SPLIT);
-		String action = args[0];
-		Object lock = locks.get(action);
-		if (lock != null) {
-			locks.put(action, args);
-			synchronized (lock) {
-				lock.notify();
+		if (connected) {
+			PendingReply reply = pendingReplies.remove(args[0]);
+			if (reply != null) {
+				reply.set(args);
+				return;
 			}
-			return;
 		}
+		handler.handleMessage(args);
 	}
 
 	/**
@@ -210,14 +219,31 @@ public class DebugConnection {
 	 * @throws DebugException
 	 */
 	protected void sendCommand(String reqid, String command) throws DebugException {
-		try {
-			String message = MessageFormat.format("{0}*{1}*{2}", //$NON-NLS-1$
-					Integer.toString(command.length() + reqid.length() + 1), reqid, command);
+		sendCommands(new String[] { reqid }, new String[] { command });
+	}
+
+	/**
+	 * Send commands w/o waiting for response. All the commands are written at once.
+	 * 
+	 * @param reqids
+	 * @param commands
+	 * @throws DebugException
+	 */
+	private void sendCommands(String[] reqids, String[] commands) throws DebugException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < commands.length; ++i) {
+			int start = sb.length();
+			sb.append(commands[i].length() + reqids[i].length() + 1).append(ARGS_SEPARATOR).append(reqids[i])
+					.append(ARGS_SEPARATOR).append(commands[i]);
 			if (logger != null) {
-				logger.log(false, message);
+				logger.log(false, sb.substring(start));
+			}
+		}
+		try {
+			synchronized (writeLock) {
+				writer.write(sb.toString());
+				writer.flush();
 			}
-			writer.write(message);
-			writer.flush();
 		} catch (IOException e) {
 			throwDebugException(e);
 		}
@@ -231,8 +257,7 @@ public class DebugConnection {
 	 * @throws DebugException
 	 */
 	protected String[] sendCommandAndWait(String command) throws DebugException {
-		long reqid = ++lastReqId;
-		return sendCommandAndWait(command, Long.toString(reqid));
+		return sendCommandAndWait(command, nextReqId());
 	}
 
 	/**
@@ -247,23 +272,101 @@ public class DebugConnection {
 		if (!connected) {
 			return null;
 		}
-		Object lock = new Object();
-		synchronized (lock) {
-			try {
-				locks.put(reqid, lock);
-				sendCommand(reqid, command);
-				lock.wait(COMMAND_TIMEOUT);
-			} catch (InterruptedException e) {
-				throwDebugException(e);
+		Future<String[]> reply = sendCommandsAsync(new String[] { reqid }, new String[] { command })[0];
+		return waitForReply(reply, System.currentTimeMillis() + COMMAND_TIMEOUT);
+	}
+
+	/**
+	 * Send commands without waiting for the responses of the previous ones (pipelining), then wait for all the
+	 * responses.
+	 * 
+	 * @param commands
+	 * @return String[][] the response for each command, <code>null</code> for the commands that have timed out
+	 * @throws DebugException
+	 */
+	protected String[][] sendCommandsAndWait(String[] commands) throws DebugException {
+		String[][] results = new String[commands.length][];
+		if (!connected || commands.length == 0) {
+			return results;
+		}
+		Future<String[]>[] replies = sendCommandsAsync(commands);
+		long deadline = System.currentTimeMillis() + COMMAND_TIMEOUT;
+		for (int i = 0; i < replies.length; ++i) {
+			results[i] = waitForReply(replies[i], deadline);
+		}
+		return results;
+	}
+
+	/**
+	 * Send commands without waiting for the responses. The responses are delivered through the returned futures;
+	 * they are cancelled when the connection stops.
+	 * 
+	 * @param commands
+	 * @return Future[] the future response of each command
+	 * @throws DebugException
+	 */
+	protected Future<String[]>[] sendCommandsAsync(String[] commands) throws DebugException {
+		String[] reqids = new String[commands.length];
+		for (int i = 0; i < reqids.length; ++i) {
+			reqids[i] = nextReqId();
+		}
+		return sendCommandsAsync(reqids, commands);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Future<String[]>[] sendCommandsAsync(String[] reqids, String[] commands) throws DebugException {
+		PendingReply[] replies = new PendingReply[commands.length];
+		for (int i = 0; i < replies.length; ++i) {
+			replies[i] = new PendingReply();
+			pendingReplies.put(reqids[i], replies[i]);
+		}
+		try {
+			sendCommands(reqids, commands);
+		} catch (DebugException e) {
+			for (String reqid : reqids) {
+				pendingReplies.remove(reqid);
 			}
+			throw e;
 		}
-		lock = locks.remove(reqid);
-		if (lock instanceof String[]) {
-			return (String[]) lock;
+		if (!connected) {
+			// stopped while sending
+			for (PendingReply reply : replies) {
+				reply.cancel(false);
+			}
+		}
+		return replies;
+	}
+
+	private String nextReqId() {
+		return Long.toString(lastReqId.incrementAndGet());
+	}
+
+	/**
+	 * Waits for the response until the deadline
+	 * 
+	 * @param reply
+	 * @param deadline
+	 * @return String[] the response, or <code>null</code> if timed out or cancelled
+	 * @throws DebugException
+	 */
+	private String[] waitForReply(Future<String[]> reply, long deadline) throws DebugException {
+		try {
+			return reply.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			throwDebugException(e);
+		} catch (ExecutionException e) {
+			throwDebugException(e);
+		} catch (TimeoutException e) {
+			removeReply(reply);
+		} catch (CancellationException e) {
 		}
 		return null;
 	}
 
+	private void removeReply(Future<String[]> reply) {
+		pendingReplies.values().remove(reply);
+	}
+
 	/**
 	 * readMessage
 	 * 
@@ -294,17 +397,37 @@ public class DebugConnection {
 			return null;
 		}
 
-		char[] buffer = new char[1024];
-		sb.setLength(0); // clear the buffer
+		// small messages are read into a reusable buffer
+		char[] buffer = messageSize <= readBuffer.length ? readBuffer : new char[messageSize];
+		int length = 0;
 		int n;
-		while (messageSize > sb.length()) {
-			n = reader.read(buffer, 0, Math.min(messageSize - sb.length(), buffer.length));
+		while (messageSize > length) {
+			n = reader.read(buffer, length, messageSize - length);
 			if (n == -1) {
 				return null;
 			}
-			sb.append(buffer, 0, n);
+			length += n;
+		}
+		return new String(buffer, 0, length);
+	}
+
+	/**
+	 * A response to a command, completed by the reader thread
+	 */
+	private static class PendingReply extends FutureTask<String[]> {
+
+		private PendingReply() {
+			super(NO_OP, null);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.util.concurrent.FutureTask#set(java.lang.Object)
+		 */
+		@Override
+		protected void set(String[] args) {
+			super.set(args);
 		}
-		return sb.toString();
 	}
 
 	/**
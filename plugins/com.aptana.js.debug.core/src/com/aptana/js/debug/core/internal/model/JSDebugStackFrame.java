@@ -332,15 +332,27 @@ public class JSDebugStackFrame extends JSDebugElement implements IJSStackFrame {
 	}
 
 	private void getVariables0() throws DebugException {
+		if (variables == null) {
+			thread.loadVariables(this);
+		}
+	}
+
+	/**
+	 * @return the qualifier to load the variables of this frame with, or <code>null</code> if the variables are
+	 *         already loaded or the frame is not valid
+	 */
+	/* package */String getVariablesQualifier() {
 		if (variables != null || !isValid()) {
-			return;
+			return null;
 		}
-		JSDebugTarget target = getJSDebugTarget();
-		String command = MessageFormat.format(FRAME_0, frameId);
-		variables = target.loadVariables(thread.getThreadId(), command);
+		return MessageFormat.format(FRAME_0, frameId);
+	}
+
+	/* package */void setVariables(IVariable[] variables) {
 		for (IVariable var : variables) {
 			((JSDebugVariable) var).flags |= JSDebugVariable.FLAGS_TOPLEVEL;
 		}
+		this.variables = variables;
 	}
 
 	private boolean isValid() {
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -118,8 +118,7 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 	private static final String CREATE = "create"; //$NON-NLS-1$
 	private static final String RESOLVED = "resolved"; //$NON-NLS-1$
 	private static final String DESTROYED = "destroyed"; //$NON-NLS-1$
-	private static final String ARGS_SPLIT = "\\*"; //$NON-NLS-1$
-	private static final String SUBARGS_SPLIT = "\\|"; //$NON-NLS-1$
+	private static final char SUBARGS_SEPARATOR = '|';
 	private static final String CREATED = "created"; //$NON-NLS-1$
 	private static final String TERMINATE = "terminate"; //$NON-NLS-1$
 	private static final String SUSPEND = "suspend"; //$NON-NLS-1$
@@ -352,7 +351,7 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 			} else if (TRACE.equals(type)) {
 				sb.append('\n');
 				for (int i = 4; i < args.length; ++i) {
-					String[] subargs = args[i].split(SUBARGS_SPLIT);
+					String[] subargs = Util.split(args[i], SUBARGS_SEPARATOR);
 					if (subargs[0].length() == 0) {
 						subargs[0] = MessageFormat.format("[{0}]", //$NON-NLS-1$
 								i == args.length - 1 ? Messages.JSDebugTarget_TopLevelScript
@@ -524,7 +523,7 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 		if (CREATED.equals(action)) {
 			for (int i = 2; i < args.length; ++i) {
 				int j = 0;
-				String[] subargs = args[i].split(SUBARGS_SPLIT);
+				String[] subargs = Util.split(args[i], SUBARGS_SEPARATOR);
 				if (subargs.length < 5) {
 					JSDebugPlugin.log(MessageFormat.format("Missing fields in response: <{0}>", args[i])); //$NON-NLS-1$
 					continue;
@@ -568,7 +567,7 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 			;
 		} else if (DESTROYED.equals(action)) {
 			int j = 0;
-			String[] subargs = args[2].split(SUBARGS_SPLIT);
+			String[] subargs = Util.split(args[2], SUBARGS_SEPARATOR);
 			int scriptTag = -1;
 			try {
 				scriptTag = Integer.parseInt(subargs[j++]);
@@ -585,7 +584,7 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 		} else if (RESOLVED.equals(action)) {
 			for (int i = 2; i < args.length; ++i) {
 				int j = 0;
-				String[] subargs = args[i].split(SUBARGS_SPLIT);
+				String[] subargs = Util.split(args[i], SUBARGS_SEPARATOR);
 				int scriptTag = -1;
 				try {
 					scriptTag = Integer.parseInt(subargs[j++]);
@@ -1200,34 +1199,65 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 	 * @throws DebugException
 	 */
 	protected IVariable[] loadVariables(String threadId, String qualifier) throws DebugException {
+		IVariable[] variables = loadVariables(threadId, new String[] { qualifier })[0];
+		return variables != null ? variables : new IVariable[0];
+	}
+
+	/**
+	 * Loads the variables of several qualifiers in one pipelined exchange with the debug host.
+	 * 
+	 * @param threadId
+	 * @param qualifiers
+	 * @return IVariable[][] the variables of each qualifier, null for a qualifier whose reply did not come (or when
+	 *         the thread is not suspended)
+	 * @throws DebugException
+	 */
+	protected IVariable[][] loadVariables(String threadId, String[] qualifiers) throws DebugException {
+		IVariable[][] result = new IVariable[qualifiers.length][];
 		if (!isThreadSuspended(threadId)) {
-			return new IVariable[0];
+			return result;
+		}
+		String[] commands = new String[qualifiers.length];
+		for (int i = 0; i < commands.length; ++i) {
+			commands[i] = MessageFormat.format(protocolVersion >= 2 ? VARIABLES_0_V2 : VARIABLES_0, threadId,
+					Util.encodeData(qualifiers[i]));
 		}
+		String[][] replies = connection.sendCommandsAndWait(commands);
+		for (int i = 0; i < result.length; ++i) {
+			if (replies[i] != null) {
+				result[i] = parseVariables(threadId, qualifiers[i], replies[i]);
+			}
+		}
+		return result;
+	}
+
+	private IVariable[] parseVariables(String threadId, String qualifier, String[] args) {
 		List<IVariable> list = new ArrayList<IVariable>();
-		String[] args = connection.sendCommandAndWait(MessageFormat.format(protocolVersion >= 2 ? VARIABLES_0_V2
-				: VARIABLES_0, threadId, Util.encodeData(qualifier)));
 		if (args != null) {
 			for (int i = 1; i < args.length; ++i) {
 				String varData = args[i];
-				int j = 0;
 				if (varData.length() == 0) {
 					break;
 				}
-				if (varData.endsWith("|")) //$NON-NLS-1$
-				{
-					varData += "| "; //$NON-NLS-1$
+				// name|type|flags|value, read by offsets so only the kept fields are copied
+				Util.Tokenizer tokenizer = new Util.Tokenizer(varData, SUBARGS_SEPARATOR);
+				tokenizer.next();
+				String name = tokenizer.decodedToken();
+				if (!tokenizer.next()) {
+					continue;
 				}
-				String[] subargs = varData.split(SUBARGS_SPLIT);
-				String name = Util.decodeData(subargs[j++]);
-				String type = Util.decodeData(subargs[j++]);
-				String flags = subargs[j++];
-				String stringValue = Util.decodeData(subargs[j++]);
-				boolean complex = flags.indexOf('o') != -1;
+				String type = tokenizer.decodedToken();
+				if (!tokenizer.next()) {
+					continue;
+				}
+				boolean complex = tokenizer.contains('o');
+				int flags = convertVariableFlags(varData, tokenizer.start(), tokenizer.end());
+				String stringValue = tokenizer.next() ? tokenizer.decodedToken() : StringUtil.EMPTY;
 				IValue ivalue;
 				String q = MessageFormat.format("{0}.{1}", //$NON-NLS-1$
 						qualifier, name);
 				ivalue = new JSDebugValue(this, threadId, q, type, complex, stringValue);
-				list.add(new JSDebugVariable(this, threadId, q, name, ivalue, convertVariableFlags(flags)));
+				list.add(new JSDebugVariable(this, threadId, q, name, ivalue, flags));
 			}
 		}
 
@@ -1270,7 +1300,7 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 			{
 				varData += "| "; //$NON-NLS-1$
 			}
-			String[] subargs = varData.split(SUBARGS_SPLIT);
+			String[] subargs = Util.split(varData, SUBARGS_SEPARATOR);
 			int j = 0;
 			String type = subargs[j++];
 			String flags = subargs[j++];
@@ -1316,7 +1346,7 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 		if (args != null && args.length >= 3) {
 			String status = args[1];
 			if (RESULT.equals(status)) {
-				String[] subargs = args[2].split(SUBARGS_SPLIT);
+				String[] subargs = Util.split(args[2], SUBARGS_SEPARATOR);
 				int j = 0;
 				String type = subargs[j++];
 				String flags = subargs[j++];
@@ -1712,12 +1742,15 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 
 	/*
 	 * convertVariableFlags
-	 * @param string
+	 * @param data
+	 * @param start
+	 * @param end
 	 * @return int
 	 */
-	private static int convertVariableFlags(String string) {
+	private static int convertVariableFlags(String data, int start, int end) {
 		int flags = 0;
-		for (char c : string.toCharArray()) {
+		for (int i = start; i < end; ++i) {
+			char c = data.charAt(i);
 			switch (c) {
 				case VARIABLE_FLAG_WRITABLE:
 					flags |= JSDebugVariable.FLAGS_MODIFIABLE;
@@ -1760,10 +1793,9 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 
 		/*
 		 * (non-Javadoc)
-		 * @see com.aptana.js.debug.core.internal.model.DebugConnection.IHandler#handleMessage(java.lang.String)
+		 * @see com.aptana.js.debug.core.internal.model.DebugConnection.IHandler#handleMessage(java.lang.String[])
 		 */
-		public void handleMessage(String message) {
-			String[] args = message.split(ARGS_SPLIT);
+		public void handleMessage(String[] args) {
 			int j = 0;
 			String action = args[j++];
 			if (LOG.equals(action)) {
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -9,6 +9,8 @@ package com.aptana.js.debug.core.internal.model;
 
 import java.net.URI;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
 
 import org.eclipse.core.runtime.CoreException;
@@ -18,6 +20,7 @@ import org.eclipse.debug.core.model.IBreakpoint;
 import org.eclipse.debug.core.model.IDebugTarget;
 import org.eclipse.debug.core.model.IStackFrame;
 import org.eclipse.debug.core.model.IThread;
+import org.eclipse.debug.core.model.IVariable;
 
 import com.aptana.core.util.StringUtil;
 import com.aptana.js.debug.core.JSDebugPlugin;
@@ -52,7 +55,7 @@ public class JSDebugThread extends JSDebugElement implements IThread {
 	private static final String STEP = "step"; //$NON-NLS-1$
 	private static final String FRAMES = "frames"; //$NON-NLS-1$
 	private static final String FRAMES_V2 = "frames*{0}"; //$NON-NLS-1$
-	private static final String SUBARGS_SPLIT = "\\|"; //$NON-NLS-1$
+	private static final char SUBARGS_SEPARATOR = '|';
 	private static final String STEP_TO_FRAME_0 = "stepToFrame*{1,number,integer}"; //$NON-NLS-1$
 	private static final String STEP_TO_FRAME_0_V2 = "stepToFrame*{0}*{1,number,integer}"; //$NON-NLS-1$
 
@@ -60,6 +63,11 @@ public class JSDebugThread extends JSDebugElement implements IThread {
 		STARTING, RUNNING, SUSPENDED, SUSPENDING, STEPPPING
 	}
 
+	/**
+	 * The maximum number of stack frames whose variables are fetched when the variables of one of them are requested
+	 */
+	private static final int PREFETCH_FRAMES = 4;
+
 	private static final IStackFrame[] emptyStack = new IStackFrame[0];
 	private static final IBreakpoint[] emptyBreakpoints = new IBreakpoint[0];
 
@@ -406,7 +414,7 @@ public class JSDebugThread extends JSDebugElement implements IThread {
 			int frameIndex = (stackFrames != null) ? stackFrames.length - 1 : -1;
 			for (int i = args.length - 1; i >= 1; --i) {
 				int j = 0;
-				String[] subargs = args[i].split(SUBARGS_SPLIT);
+				String[] subargs = Util.split(args[i], SUBARGS_SEPARATOR);
 				int depth = Integer.parseInt(subargs[j++]);
 				String function = Util.decodeData(subargs[j++]);
 				String arguments = Util.decodeData(subargs[j++]);
@@ -448,6 +456,59 @@ public class JSDebugThread extends JSDebugElement implements IThread {
 		}
 	}
 
+	/**
+	 * Loads the variables of a stack frame when they are first requested, along with those of the next few frames in
+	 * the same pipelined exchange, since these are usually looked at next. A failure of the batch only falls back to
+	 * loading the requested frame alone.
+	 * 
+	 * @param requested
+	 * @throws DebugException
+	 */
+	/* package */void loadVariables(JSDebugStackFrame requested) throws DebugException {
+		String qualifier = requested.getVariablesQualifier();
+		if (qualifier == null) {
+			return;
+		}
+		List<JSDebugStackFrame> frames = new ArrayList<JSDebugStackFrame>();
+		List<String> qualifiers = new ArrayList<String>();
+		frames.add(requested);
+		qualifiers.add(qualifier);
+		IStackFrame[] currentFrames = stackFrames;
+		if (currentFrames != null) {
+			boolean following = false;
+			for (int i = 0; i < currentFrames.length && frames.size() < PREFETCH_FRAMES; ++i) {
+				if (currentFrames[i] == requested) {
+					following = true;
+				} else if (following) {
+					JSDebugStackFrame frame = (JSDebugStackFrame) currentFrames[i];
+					String frameQualifier = frame.getVariablesQualifier();
+					if (frameQualifier != null) {
+						frames.add(frame);
+						qualifiers.add(frameQualifier);
+					}
+				}
+			}
+		}
+		if (frames.size() > 1) {
+			try {
+				IVariable[][] variables = getJSDebugTarget().loadVariables(threadId,
+						qualifiers.toArray(new String[qualifiers.size()]));
+				// a frame without a reply is loaded again once it is requested
+				for (int i = 1; i < variables.length; ++i) {
+					if (variables[i] != null) {
+						frames.get(i).setVariables(variables[i]);
+					}
+				}
+				requested.setVariables(variables[0] != null ? variables[0] : new IVariable[0]);
+				return;
+			} catch (DebugException e) {
+				// the other frames were only fetched in advance
+				JSDebugPlugin.log(e);
+			}
+		}
+		requested.setVariables(getJSDebugTarget().loadVariables(threadId, qualifier));
+	}
+
 	private synchronized void invalidateStackFrames() {
 		if (stackFrames != null) {
 			for (IStackFrame stackFrame : stackFrames) {
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -8,23 +8,33 @@
 package com.aptana.js.debug.core.internal.model;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.eclipse.debug.core.DebugException;
 import org.eclipse.debug.core.model.IDebugTarget;
 import org.eclipse.debug.core.model.IValue;
 import org.eclipse.debug.core.model.IVariable;
 
+import com.aptana.js.debug.core.JSDebugPlugin;
+
 /**
  * @author Max Stepanov
  */
 public class JSDebugValue extends JSDebugElement implements IValue {
 
+	/**
+	 * The maximum number of child values whose variables are fetched along with the variables of this value
+	 */
+	private static final int PREFETCH_VALUES = 32;
+
 	private final String threadId;
 	private final String qualifier;
 	private final String typeName;
 	private boolean hasVariables;
 	private final String valueString;
 	private IVariable[] variables;
+	private boolean prefetched;
 
 	/**
 	 * JSDebugValue
@@ -92,9 +102,55 @@ public class JSDebugValue extends JSDebugElement implements IValue {
 	}
 
 	private void getVariables0() throws DebugException {
+		JSDebugTarget target = (JSDebugTarget) getDebugTarget();
 		if (variables == null) {
-			variables = ((JSDebugTarget) getDebugTarget()).loadVariables(threadId, qualifier);
-			hasVariables = variables != null && variables.length > 0;
+			setVariables(target.loadVariables(threadId, qualifier));
+		}
+		if (!prefetched) {
+			prefetched = true;
+			try {
+				prefetchVariables(target);
+			} catch (DebugException e) {
+				// the children were only fetched in advance, they are loaded again once expanded
+				JSDebugPlugin.log(e);
+			}
+		}
+	}
+
+	/* package */void setVariables(IVariable[] variables) {
+		this.variables = variables;
+		hasVariables = variables != null && variables.length > 0;
+	}
+
+	/**
+	 * Loads the variables of the complex children in one pipelined exchange, so that expanding them does not cost a
+	 * round trip each.
+	 * 
+	 * @param target
+	 * @throws DebugException
+	 */
+	private void prefetchVariables(JSDebugTarget target) throws DebugException {
+		List<JSDebugValue> values = new ArrayList<JSDebugValue>();
+		List<String> qualifiers = new ArrayList<String>();
+		for (IVariable variable : variables) {
+			IValue value = variable.getValue();
+			if (value instanceof JSDebugValue && value.hasVariables() && ((JSDebugValue) value).variables == null) {
+				values.add((JSDebugValue) value);
+				qualifiers.add(((JSDebugValue) value).qualifier);
+				if (values.size() == PREFETCH_VALUES) {
+					break;
+				}
+			}
+		}
+		if (values.isEmpty()) {
+			return;
+		}
+		IVariable[][] children = target.loadVariables(threadId, qualifiers.toArray(new String[qualifiers.size()]));
+		for (int i = 0; i < children.length; ++i) {
+			// a value without a reply is loaded again once it is expanded
+			if (children[i] != null) {
+				values.get(i).setVariables(children[i]);
+			}
 		}
 	}
 }
@@ -0,0 +1,311 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.parsing;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.aptana.parsing.ParseCacheStatistics;
+
+/**
+ * The cache of the parse results. The cache is bounded by the sum of the weights of its entries (roughly, the length
+ * of the parsed sources) instead of a number of entries, so that a few big files don't keep lots of memory alive and
+ * lots of small files don't get reparsed all the time.
+ * <p>
+ * The entries are kept in one segment per content type. Each segment has its own lock and its own LRU order, so
+ * concurrent lookups for different languages don't contend. When the cache is full, the least recently used entry of
+ * the heaviest segment is evicted. The most recently used entry of a segment is never evicted: the cache may exceed
+ * its maximum weight by one entry per content type (i.e. for a file bigger than the whole cache).
+ *
+ * @param <K>
+ *            the key type
+ * @param <V>
+ *            the value type
+ */
+public class ParseCache<K, V>
+{
+
+	/**
+	 * The weight added to each entry, for the memory used by the AST regardless of the length of the source.
+	 */
+	public static final int ENTRY_OVERHEAD = 512;
+
+	private static class Entry<V>
+	{
+		private final V value;
+		private final long weight;
+
+		private Entry(V value, long weight)
+		{
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+
+	/**
+	 * The entries of a content type, in LRU order. Any access to the map must be synchronized on the segment.
+	 */
+	private static class Segment<K, V>
+	{
+		private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+		private volatile long weight;
+		private final AtomicLong hits = new AtomicLong();
+		private final AtomicLong misses = new AtomicLong();
+		private final AtomicLong evictions = new AtomicLong();
+		private final AtomicLong parses = new AtomicLong();
+		private final AtomicLong parseTime = new AtomicLong();
+
+		private synchronized int size()
+		{
+			return entries.size();
+		}
+
+		private ParseCacheStatistics getStatistics()
+		{
+			int size;
+			long weight;
+			synchronized (this)
+			{
+				size = entries.size();
+				weight = this.weight;
+			}
+			return new ParseCacheStatistics(size, weight, hits.get(), misses.get(), evictions.get(), parses.get(),
+					parseTime.get() / 1000000L, null);
+		}
+	}
+
+	private final ConcurrentMap<String, Segment<K, V>> fSegments = new ConcurrentHashMap<String, Segment<K, V>>();
+
+	/**
+	 * The total weight of the entries of all the segments.
+	 */
+	private final AtomicLong fWeight = new AtomicLong();
+
+	private final long fMaxWeight;
+
+	/**
+	 * @param maxWeight
+	 *            the maximum sum of the weights of the entries
+	 */
+	public ParseCache(long maxWeight)
+	{
+		fMaxWeight = maxWeight;
+	}
+
+	/**
+	 * @param source
+	 * @return the weight of the parse result of the given source
+	 */
+	public static long weigh(String source)
+	{
+		return (source == null ? 0 : source.length()) + ENTRY_OVERHEAD;
+	}
+
+	/**
+	 * Returns the lock of the given content type. Holding it makes a sequence of {@link #get(String, Object)} and
+	 * {@link #put(String, Object, Object, long)} atomic for the content type. {@link #trim()} must not be called while
+	 * holding it.
+	 *
+	 * @param contentTypeId
+	 * @return the lock
+	 */
+	public Object getLock(String contentTypeId)
+	{
+		return getSegment(contentTypeId);
+	}
+
+	/**
+	 * Looks up a value and makes it the most recently used of its content type. Doesn't count as a hit or a miss (see
+	 * {@link #recordHit(String)} and {@link #recordMiss(String)}).
+	 *
+	 * @param contentTypeId
+	 * @param key
+	 * @return the cached value or null
+	 */
+	public V get(String contentTypeId, K key)
+	{
+		Segment<K, V> segment = fSegments.get(contentTypeId);
+		if (segment == null)
+		{
+			return null;
+		}
+		synchronized (segment)
+		{
+			Entry<V> entry = segment.entries.get(key);
+			return entry == null ? null : entry.value;
+		}
+	}
+
+	/**
+	 * Stores a value. The cache may be over its maximum weight until {@link #trim()} is called.
+	 *
+	 * @param contentTypeId
+	 * @param key
+	 * @param value
+	 * @param weight
+	 *            see {@link #weigh(String)}
+	 */
+	public void put(String contentTypeId, K key, V value, long weight)
+	{
+		Segment<K, V> segment = getSegment(contentTypeId);
+		synchronized (segment)
+		{
+			Entry<V> old = segment.entries.put(key, new Entry<V>(value, weight));
+			long delta = old == null ? weight : weight - old.weight;
+			segment.weight += delta;
+			fWeight.addAndGet(delta);
+		}
+	}
+
+	/**
+	 * Evicts the least recently used entries of the heaviest content types until the cache is under its maximum
+	 * weight. Must be called without holding any lock of the cache (the locks of the content types are never nested).
+	 */
+	public void trim()
+	{
+		while (fWeight.get() > fMaxWeight)
+		{
+			Segment<K, V> victim = null;
+			for (Segment<K, V> segment : fSegments.values())
+			{
+				if ((victim == null || segment.weight > victim.weight) && segment.size() > 1)
+				{
+					victim = segment;
+				}
+			}
+			if (victim == null)
+			{
+				return;
+			}
+			evictEldest(victim);
+		}
+	}
+
+	/**
+	 * Counts a lookup answered by the cache.
+	 *
+	 * @param contentTypeId
+	 */
+	public void recordHit(String contentTypeId)
+	{
+		getSegment(contentTypeId).hits.incrementAndGet();
+	}
+
+	/**
+	 * Counts a lookup that required a parse.
+	 *
+	 * @param contentTypeId
+	 */
+	public void recordMiss(String contentTypeId)
+	{
+		getSegment(contentTypeId).misses.incrementAndGet();
+	}
+
+	/**
+	 * Records the time spent parsing a source of the given content type.
+	 *
+	 * @param contentTypeId
+	 * @param nanos
+	 */
+	public void recordParse(String contentTypeId, long nanos)
+	{
+		Segment<K, V> segment = getSegment(contentTypeId);
+		segment.parses.incrementAndGet();
+		segment.parseTime.addAndGet(nanos);
+	}
+
+	/**
+	 * Removes all the entries. The counters are kept.
+	 */
+	public void clear()
+	{
+		for (Segment<K, V> segment : fSegments.values())
+		{
+			synchronized (segment)
+			{
+				fWeight.addAndGet(-segment.weight);
+				segment.entries.clear();
+				segment.weight = 0;
+			}
+		}
+	}
+
+	/**
+	 * @return the maximum sum of the weights of the entries
+	 */
+	public long getMaxWeight()
+	{
+		return fMaxWeight;
+	}
+
+	/**
+	 * @return a snapshot of the counters, for all the content types and per content type
+	 */
+	public ParseCacheStatistics getStatistics()
+	{
+		Map<String, ParseCacheStatistics> contentTypes = new HashMap<String, ParseCacheStatistics>();
+		int size = 0;
+		long weight = 0;
+		long hits = 0;
+		long misses = 0;
+		long evictions = 0;
+		long parses = 0;
+		long parseTime = 0;
+		for (Map.Entry<String, Segment<K, V>> entry : fSegments.entrySet())
+		{
+			ParseCacheStatistics statistics = entry.getValue().getStatistics();
+			contentTypes.put(entry.getKey(), statistics);
+			size += statistics.getEntries();
+			weight += statistics.getWeight();
+			hits += statistics.getHits();
+			misses += statistics.getMisses();
+			evictions += statistics.getEvictions();
+			parses += statistics.getParses();
+			parseTime += statistics.getParseTime();
+		}
+		return new ParseCacheStatistics(size, weight, hits, misses, evictions, parses, parseTime, contentTypes);
+	}
+
+	private Segment<K, V> getSegment(String contentTypeId)
+	{
+		Segment<K, V> segment = fSegments.get(contentTypeId);
+		if (segment == null)
+		{
+			segment = new Segment<K, V>();
+			Segment<K, V> existing = fSegments.putIfAbsent(contentTypeId, segment);
+			if (existing != null)
+			{
+				segment = existing;
+			}
+		}
+		return segment;
+	}
+
+	private void evictEldest(Segment<K, V> segment)
+	{
+		synchronized (segment)
+		{
+			// the segment may have changed since it was chosen
+			if (segment.entries.size() > 1)
+			{
+				Iterator<Entry<V>> iterator = segment.entries.values().iterator();
+				Entry<V> eldest = iterator.next();
+				iterator.remove();
+				segment.weight -= eldest.weight;
+				fWeight.addAndGet(-eldest.weight);
+				segment.evictions.incrementAndGet();
+			}
+		}
+	}
+}
+
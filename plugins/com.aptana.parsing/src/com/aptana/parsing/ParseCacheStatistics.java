@@ -0,0 +1,128 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing;
+
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A snapshot of the counters of the parse cache, used to size the cache (see
+ * {@link ParsingEngine#PARSE_CACHE_SIZE_PROPERTY}). The counters are accumulated since the start of the
+ * {@link ParsingEngine}.
+ */
+public class ParseCacheStatistics
+{
+
+	private final int fEntries;
+	private final long fWeight;
+	private final long fHits;
+	private final long fMisses;
+	private final long fEvictions;
+	private final long fParses;
+	private final long fParseTime;
+	private final Map<String, ParseCacheStatistics> fContentTypes;
+
+	public ParseCacheStatistics(int entries, long weight, long hits, long misses, long evictions, long parses,
+			long parseTime, Map<String, ParseCacheStatistics> contentTypes)
+	{
+		fEntries = entries;
+		fWeight = weight;
+		fHits = hits;
+		fMisses = misses;
+		fEvictions = evictions;
+		fParses = parses;
+		fParseTime = parseTime;
+		if (contentTypes == null)
+		{
+			fContentTypes = Collections.emptyMap();
+		}
+		else
+		{
+			fContentTypes = Collections.unmodifiableMap(contentTypes);
+		}
+	}
+
+	/**
+	 * @return the number of cached parse results
+	 */
+	public int getEntries()
+	{
+		return fEntries;
+	}
+
+	/**
+	 * @return the sum of the weights of the cached parse results (about the length of their sources)
+	 */
+	public long getWeight()
+	{
+		return fWeight;
+	}
+
+	/**
+	 * @return the number of parses served from the cache, including the ones waiting for a parse in progress
+	 */
+	public long getHits()
+	{
+		return fHits;
+	}
+
+	/**
+	 * @return the number of cache lookups that required a parse
+	 */
+	public long getMisses()
+	{
+		return fMisses;
+	}
+
+	/**
+	 * @return the number of parse results removed to keep the cache under its maximum weight
+	 */
+	public long getEvictions()
+	{
+		return fEvictions;
+	}
+
+	/**
+	 * @return the number of parses, cached or not
+	 */
+	public long getParses()
+	{
+		return fParses;
+	}
+
+	/**
+	 * @return the total time spent parsing, in milliseconds
+	 */
+	public long getParseTime()
+	{
+		return fParseTime;
+	}
+
+	/**
+	 * @return the counters per content type; empty for the counters of a content type
+	 */
+	public Map<String, ParseCacheStatistics> getContentTypes()
+	{
+		return fContentTypes;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder builder = new StringBuilder();
+		builder.append(MessageFormat.format(
+				"{0} entries, weight {1}, {2} hits, {3} misses, {4} evictions, {5} parses in {6} ms", fEntries, //$NON-NLS-1$
+				fWeight, fHits, fMisses, fEvictions, fParses, fParseTime));
+		for (Map.Entry<String, ParseCacheStatistics> entry : fContentTypes.entrySet())
+		{
+			builder.append('\n').append(entry.getKey()).append(": ").append(entry.getValue()); //$NON-NLS-1$
+		}
+		return builder.toString();
+	}
+}
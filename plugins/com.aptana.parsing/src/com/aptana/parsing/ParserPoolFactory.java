@@ -10,6 +10,7 @@ package com.aptana.parsing;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -229,4 +230,40 @@ public class ParserPoolFactory implements ParsingEngine.IParserPoolProvider
 	{
 		return getInstance().fParsingEngine.parse(contentTypeId, parseState);
 	}
+
+	/**
+	 * Parses without using the parse cache. To be used for the regions of a document in another language, which are
+	 * parsed as part of the (cached) parse of the document.
+	 * 
+	 * @param contentTypeId
+	 * @param parseState
+	 * @return
+	 */
+	public static ParseResult parseWithoutCache(String contentTypeId, IParseState parseState) throws Exception // $codepro.audit.disable
+																												// declaredExceptions
+	{
+		return getInstance().fParsingEngine.parseWithoutCache(contentTypeId, parseState);
+	}
+
+	/**
+	 * Parses in a worker thread, without using the parse cache.
+	 * 
+	 * @param contentTypeId
+	 * @param parseState
+	 * @return
+	 * @see #parseWithoutCache(String, IParseState)
+	 */
+	public static Future<ParseResult> parseInBackground(String contentTypeId, IParseState parseState)
+	{
+		return getInstance().fParsingEngine.parseInBackground(contentTypeId, parseState);
+	}
+
+	/**
+	 * @return the counters of the parse cache
+	 * @see ParsingEngine#getCacheStatistics()
+	 */
+	public static ParseCacheStatistics getCacheStatistics()
+	{
+		return getInstance().fParsingEngine.getCacheStatistics();
+	}
 }
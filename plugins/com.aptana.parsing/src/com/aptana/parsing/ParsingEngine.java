@@ -8,12 +8,19 @@
 package com.aptana.parsing;
 
 import java.text.MessageFormat;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.core.runtime.Assert;
 
-import com.aptana.core.epl.util.LRUCacheWithSoftPrunedValues;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.StringUtil;
+import com.aptana.internal.parsing.ParseCache;
 
 /**
  * This class is responsible for actually calling the parsing. It'll use the ParseState#getCacheKey() to know if an
@@ -25,6 +32,16 @@ import com.aptana.core.util.StringUtil;
 public class ParsingEngine
 {
 
+	/**
+	 * System property with the maximum weight of the parse cache, about the total length of the cached sources.
+	 */
+	public static final String PARSE_CACHE_SIZE_PROPERTY = "studio.parseCacheSize"; //$NON-NLS-1$
+
+	/**
+	 * The default maximum weight of the parse cache.
+	 */
+	public static final long DEFAULT_PARSE_CACHE_SIZE = 4 * 1024 * 1024;
+
 	public static interface IParserPoolProvider
 	{
 		IParserPool getParserPool(String contentTypeId);
@@ -117,9 +134,9 @@ public class ParsingEngine
 
 	/**
 	 * A parse cache. Keyed by combo of content type and source hash, holds IParseRootNode result. Retains most recently
-	 * used ASTs.
+	 * used ASTs, up to a total length of the sources.
 	 */
-	private LRUCacheWithSoftPrunedValues<IParseStateCacheKey, CacheValue> fParseCache;
+	private ParseCache<IParseStateCacheKey, CacheValue> fParseCache;
 
 	/**
 	 * Object providing access to the pool provider.
@@ -127,20 +144,49 @@ public class ParsingEngine
 	private IParserPoolProvider fParserPoolProvider;
 
 	/**
-	 * Any access to the fParseCache should have this lock in place.
+	 * The maximum number of threads parsing in background.
 	 */
-	private final Object fParseCacheLock = new Object();
+	private static final int BACKGROUND_PARSER_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * The worker threads for {@link #parseInBackground(String, IParseState)}. Lazily created.
+	 */
+	private ExecutorService fBackgroundParsers;
 
 	public ParsingEngine(IParserPoolProvider parserPoolProvider)
 	{
-		// Create a cache with N 'strong' references but still keep prunned values as soft references.
-		fParseCache = new LRUCacheWithSoftPrunedValues<IParseStateCacheKey, CacheValue>(15);
+		this(parserPoolProvider, Long.getLong(PARSE_CACHE_SIZE_PROPERTY, DEFAULT_PARSE_CACHE_SIZE));
+	}
+
+	/**
+	 * @param parserPoolProvider
+	 * @param maxCacheWeight
+	 *            the maximum total length of the sources of the cached parse results
+	 */
+	public ParsingEngine(IParserPoolProvider parserPoolProvider, long maxCacheWeight)
+	{
+		fParseCache = new ParseCache<IParseStateCacheKey, CacheValue>(maxCacheWeight);
 		fParserPoolProvider = parserPoolProvider;
 	}
 
 	public void dispose()
 	{
+		ParseCache<IParseStateCacheKey, CacheValue> parseCache = fParseCache;
+		if (parseCache != null && IdeLog.isTraceEnabled(ParsingPlugin.getDefault(), IDebugScopes.PARSING))
+		{
+			IdeLog.logTrace(ParsingPlugin.getDefault(), MessageFormat.format(
+					"Parse cache (max weight {0}): {1}", parseCache.getMaxWeight(), parseCache.getStatistics()), //$NON-NLS-1$
+					IDebugScopes.PARSING);
+		}
 		fParseCache = null;
+		synchronized (this)
+		{
+			if (fBackgroundParsers != null)
+			{
+				fBackgroundParsers.shutdownNow();
+				fBackgroundParsers = null;
+			}
+		}
 	}
 
 	/**
@@ -152,7 +198,19 @@ public class ParsingEngine
 		{
 			return;
 		}
-		fParseCache.flush();
+		fParseCache.clear();
+	}
+
+	/**
+	 * Returns the counters of the parse cache: hits, misses, evictions and time spent parsing, in total and per
+	 * content type. Meant for tuning {@link #PARSE_CACHE_SIZE_PROPERTY}.
+	 * 
+	 * @return the statistics, or null if disposed
+	 */
+	public ParseCacheStatistics getCacheStatistics()
+	{
+		ParseCache<IParseStateCacheKey, CacheValue> parseCache = fParseCache;
+		return parseCache == null ? null : parseCache.getStatistics();
 	}
 
 	public ParseResult parse(String contentTypeId, IParseState parseState) throws Exception // $codepro.audit.disable
@@ -175,7 +233,7 @@ public class ParsingEngine
 			}
 			IParseStateCacheKey newParseStateKey = parseState.getCacheKey(contentTypeId);
 			CacheValue cacheValue = null;
-			LRUCacheWithSoftPrunedValues<IParseStateCacheKey, CacheValue> parseCache = fParseCache;
+			ParseCache<IParseStateCacheKey, CacheValue> parseCache = fParseCache;
 			if (parseCache == null)
 			{
 				return ParseResult.EMPTY; // already disposed.
@@ -187,9 +245,9 @@ public class ParsingEngine
 			boolean traceEnabled = IdeLog.isTraceEnabled(ParsingPlugin.getDefault(), IDebugScopes.PARSING);
 			try
 			{
-				synchronized (fParseCacheLock)
+				synchronized (parseCache.getLock(contentTypeId))
 				{
-					cacheValue = parseCache.get(newParseStateKey);
+					cacheValue = parseCache.get(contentTypeId, newParseStateKey);
 
 					if (cacheValue != null && !cacheValue.requiresReparse(newParseStateKey))
 					{
@@ -204,6 +262,7 @@ public class ParsingEngine
 						// Cache hit... it may still be in progress, but the cacheValue.getResult should handle that
 						// (but we'll get out of the synchronized block to actually do that).
 						getResultFromCache = true;
+						parseCache.recordHit(contentTypeId);
 					}
 					else
 					{
@@ -255,12 +314,18 @@ public class ParsingEngine
 						// not match the one in the cache for this key (i.e.: parse without comments and later with
 						// comments).
 						cacheValue = new CacheValue(newParseStateKey);
-						parseCache.put(newParseStateKey, cacheValue);
+						parseCache.put(contentTypeId, newParseStateKey, cacheValue, ParseCache.weigh(source));
+						parseCache.recordMiss(contentTypeId);
 						// Important: after we put it here (in the situation getResultFromCache), we MUST have a result
 						// cacheValue.setResult(), otherwise we may end up with a listener waiting eternally for a
 						// result.
 					}
 				}
+				if (!getResultFromCache)
+				{
+					// Outside of the lock of the content type, as it may evict the entries of another one.
+					parseCache.trim();
+				}
 			}
 			catch (Throwable e)
 			{
@@ -309,20 +374,18 @@ public class ParsingEngine
 									IDebugScopes.PARSING);
 						}
 
+						long start = System.nanoTime();
 						result = parser.parse(parseState);
-
+						parseCache.recordParse(contentTypeId, System.nanoTime() - start);
 					}
 					finally
 					{
 						pool.checkIn(parser);
 					}
-					synchronized (fParseCacheLock)
-					{
-						// Make a get just to update time stamp or change it from the soft map back into the main LRU.
-						// Done because we may have the situation where the a main parse has multiple sub-parses, and
-						// it's more important to persist the main parse than the sub-parses.
-						parseCache.get(newParseStateKey);
-					}
+					// Make a get just to update the LRU order. Done because we may have the situation where the a main
+					// parse has multiple sub-parses, and it's more important to persist the main parse than the
+					// sub-parses.
+					parseCache.get(contentTypeId, newParseStateKey);
 				}
 				finally
 				{
@@ -341,4 +404,91 @@ public class ParsingEngine
 
 	}
 
+	/**
+	 * Parses the given state without looking up or storing the result in the parse cache. This is meant for the
+	 * regions of a document in another language (i.e. scripts and styles in HTML): they are parsed as part of the
+	 * parse of the whole document, which is cached itself, so caching them would only evict the results of other
+	 * documents.
+	 * 
+	 * @param contentTypeId
+	 * @param parseState
+	 * @return the parse result, never null
+	 */
+	public ParseResult parseWithoutCache(String contentTypeId, IParseState parseState) throws Exception // $codepro.audit.disable
+																										// declaredExceptions
+	{
+		try
+		{
+			ParseCache<IParseStateCacheKey, CacheValue> parseCache = fParseCache;
+			if (contentTypeId == null || parseState.getSource() == null || parseCache == null)
+			{
+				return ParseResult.EMPTY;
+			}
+			IParserPool pool = fParserPoolProvider.getParserPool(contentTypeId);
+			if (pool == null)
+			{
+				return ParseResult.EMPTY;
+			}
+			IParser parser = pool.checkOut();
+			if (parser == null)
+			{
+				String message = MessageFormat.format(Messages.ParserPoolFactory_Cannot_Acquire_Parser, contentTypeId);
+				IdeLog.logError(ParsingPlugin.getDefault(), message, IDebugScopes.PARSING);
+				return ParseResult.EMPTY;
+			}
+			try
+			{
+				long start = System.nanoTime();
+				ParseResult result = parser.parse(parseState);
+				parseCache.recordParse(contentTypeId, System.nanoTime() - start);
+				return result;
+			}
+			finally
+			{
+				pool.checkIn(parser);
+			}
+		}
+		finally
+		{
+			parseState.clearEditState();
+		}
+	}
+
+	/**
+	 * Same as {@link #parseWithoutCache(String, IParseState)}, but the parse is done by a worker thread. When all the
+	 * workers are busy, the parse is done in the calling thread.
+	 * 
+	 * @param contentTypeId
+	 * @param parseState
+	 * @return the future parse result
+	 */
+	public Future<ParseResult> parseInBackground(final String contentTypeId, final IParseState parseState)
+	{
+		return getBackgroundParsers().submit(new Callable<ParseResult>()
+		{
+			public ParseResult call() throws Exception
+			{
+				return parseWithoutCache(contentTypeId, parseState);
+			}
+		});
+	}
+
+	private synchronized ExecutorService getBackgroundParsers()
+	{
+		if (fBackgroundParsers == null)
+		{
+			fBackgroundParsers = new ThreadPoolExecutor(0, BACKGROUND_PARSER_THREADS, 30, TimeUnit.SECONDS,
+					new SynchronousQueue<Runnable>(), new ThreadFactory()
+					{
+						public Thread newThread(Runnable runnable)
+						{
+							Thread thread = new Thread(runnable, "Background Parser"); //$NON-NLS-1$
+							thread.setDaemon(true);
+							return thread;
+						}
+					}, new ThreadPoolExecutor.CallerRunsPolicy());
+		}
+		return fBackgroundParsers;
+	}
+
 }
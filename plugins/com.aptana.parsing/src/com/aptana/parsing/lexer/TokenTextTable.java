@@ -0,0 +1,209 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing.lexer;
+
+/**
+ * Shares the text of the tokens a scanner reads from one source. Identifiers, numbers and short literals repeat
+ * throughout a file, so their text is looked up straight from the buffer of the scanner and a string is only created
+ * the first time a text is seen. The table is not thread-safe; each scanner keeps its own and clears it when its
+ * source changes.
+ */
+public class TokenTextTable
+{
+	/**
+	 * Texts longer than this are seldom repeated, and are not kept
+	 */
+	public static final int MAX_TEXT_LENGTH = 64;
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	private String[] fTexts;
+	private int[] fHashes;
+	private int fSize;
+	private int fHits;
+	private int fMisses;
+
+	/**
+	 * TokenTextTable
+	 */
+	public TokenTextTable()
+	{
+		fTexts = new String[INITIAL_CAPACITY];
+		fHashes = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Returns the string with the given text, the same instance for every occurrence of that text since the table was
+	 * last cleared.
+	 *
+	 * @param buffer
+	 * @param offset
+	 * @param length
+	 * @return the string
+	 */
+	public String intern(char[] buffer, int offset, int length)
+	{
+		if (length > MAX_TEXT_LENGTH)
+		{
+			fMisses++;
+
+			return new String(buffer, offset, length);
+		}
+
+		int hash = 0;
+
+		for (int i = offset, end = offset + length; i < end; i++)
+		{
+			hash = 31 * hash + buffer[i];
+		}
+
+		int mask = fTexts.length - 1;
+		int index = mix(hash) & mask;
+		String text;
+
+		while ((text = fTexts[index]) != null)
+		{
+			if (fHashes[index] == hash && matches(text, buffer, offset, length))
+			{
+				fHits++;
+
+				return text;
+			}
+
+			index = (index + 1) & mask;
+		}
+
+		fMisses++;
+		text = new String(buffer, offset, length);
+		fTexts[index] = text;
+		fHashes[index] = hash;
+
+		// keep the table at most half full
+		if (++fSize > fTexts.length >> 1)
+		{
+			grow();
+		}
+
+		return text;
+	}
+
+	/**
+	 * Forgets all texts
+	 */
+	public void clear()
+	{
+		if (fSize > 0)
+		{
+			if (fTexts.length > INITIAL_CAPACITY)
+			{
+				fTexts = new String[INITIAL_CAPACITY];
+				fHashes = new int[INITIAL_CAPACITY];
+			}
+			else
+			{
+				for (int i = 0; i < fTexts.length; i++)
+				{
+					fTexts[i] = null;
+				}
+			}
+
+			fSize = 0;
+		}
+
+		fHits = 0;
+		fMisses = 0;
+	}
+
+	/**
+	 * The number of distinct texts kept
+	 *
+	 * @return
+	 */
+	public int size()
+	{
+		return fSize;
+	}
+
+	/**
+	 * The number of lookups which returned a kept text since the table was last cleared
+	 *
+	 * @return
+	 */
+	public int getHits()
+	{
+		return fHits;
+	}
+
+	/**
+	 * The number of lookups which created a string since the table was last cleared
+	 *
+	 * @return
+	 */
+	public int getMisses()
+	{
+		return fMisses;
+	}
+
+	private void grow()
+	{
+		String[] texts = fTexts;
+		int[] hashes = fHashes;
+		int capacity = texts.length << 1;
+		int mask = capacity - 1;
+
+		fTexts = new String[capacity];
+		fHashes = new int[capacity];
+
+		for (int i = 0; i < texts.length; i++)
+		{
+			if (texts[i] != null)
+			{
+				int index = mix(hashes[i]) & mask;
+
+				while (fTexts[index] != null)
+				{
+					index = (index + 1) & mask;
+				}
+
+				fTexts[index] = texts[i];
+				fHashes[index] = hashes[i];
+			}
+		}
+	}
+
+	/**
+	 * Spreads the string hash over the low bits used as index, since short texts differ mostly in their last characters
+	 *
+	 * @param hash
+	 * @return
+	 */
+	private static int mix(int hash)
+	{
+		hash ^= (hash >>> 20) ^ (hash >>> 12);
+
+		return hash ^ (hash >>> 7) ^ (hash >>> 4);
+	}
+
+	private static boolean matches(String text, char[] buffer, int offset, int length)
+	{
+		if (text.length() != length)
+		{
+			return false;
+		}
+
+		for (int i = 0; i < length; i++)
+		{
+			if (text.charAt(i) != buffer[offset + i])
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -12,7 +12,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import beaver.Symbol;
 
@@ -131,6 +133,61 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 		}
 	}
 
+	/**
+	 * Collects the names one of which begins a step of every scope the node matches.
+	 * 
+	 * @param node
+	 * @return the names, or null if the node may match any scope
+	 */
+	private static Set<String> getRequiredNames(ISelectorNode node)
+	{
+		if (node instanceof NameSelector)
+		{
+			String name = node.toString();
+			int index = name.indexOf('.');
+			Set<String> result = new HashSet<String>();
+			result.add((index == -1) ? name : name.substring(0, index));
+			return result;
+		}
+		if (node instanceof GroupSelector)
+		{
+			return getRequiredNames(((GroupSelector) node).getChild());
+		}
+		if (node instanceof BinarySelector)
+		{
+			BinarySelector binary = (BinarySelector) node;
+			ISelectorNode left = binary.getLeftChild();
+			ISelectorNode right = binary.getRightChild();
+			if (left == null || right == null)
+			{
+				return null;
+			}
+			if (node instanceof OrSelector)
+			{
+				// either side may match
+				Set<String> leftNames = getRequiredNames(left);
+				Set<String> rightNames = getRequiredNames(right);
+				if (leftNames == null || rightNames == null)
+				{
+					return null;
+				}
+				leftNames.addAll(rightNames);
+				return leftNames;
+			}
+			if (node instanceof NegativeLookaheadSelector)
+			{
+				return getRequiredNames(left);
+			}
+			if (node instanceof DescendantSelector || node instanceof IntersectionSelector)
+			{
+				// both sides have to match, so the deepest one is enough
+				Set<String> rightNames = getRequiredNames(right);
+				return (rightNames != null) ? rightNames : getRequiredNames(left);
+			}
+		}
+		return null;
+	}
+
 	private ISelectorNode _root;
 	private List<Integer> matchResults;
 
@@ -196,6 +253,26 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 		return this._root;
 	}
 
+	/**
+	 * Returns the names one of which begins a step of every scope this selector matches, up to the first period of the
+	 * step. E.g. a scope matched by "source.js string, comment" has a step "string..." or a step "comment...". Rule
+	 * engines use this to skip the selectors which cannot match a scope.
+	 * 
+	 * @return the names, or null if this selector may match scopes without any particular step
+	 */
+	public Set<String> getRequiredNames()
+	{
+		if (this._root == null)
+		{
+			// matches nothing
+			return Collections.emptySet();
+		}
+
+		Set<String> result = getRequiredNames(this._root);
+
+		return (result != null) ? Collections.unmodifiableSet(result) : null;
+	}
+
 	@Override
 	public int hashCode()
 	{
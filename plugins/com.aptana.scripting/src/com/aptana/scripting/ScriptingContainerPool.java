@@ -0,0 +1,276 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.scripting;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.jruby.embed.ScriptingContainer;
+
+/**
+ * A bounded pool of scripting containers, each with its own Ruby runtime, for Ruby code which does not need the
+ * bundles loaded in the shared container. Containers are started in the background until the pool is full, callers
+ * wait for one to be started or released. The pool keeps counts of its use and of the time callers waited.
+ */
+public abstract class ScriptingContainerPool
+{
+
+	private final int maxSize;
+	private final BlockingQueue<ScriptingContainer> idle = new LinkedBlockingQueue<ScriptingContainer>();
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicInteger busy = new AtomicInteger();
+	private final AtomicLong acquisitions = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong totalWaitTime = new AtomicLong();
+	private final AtomicLong maxWaitTime = new AtomicLong();
+
+	private final Job warmUpJob = new Job("Starting Ruby runtimes") //$NON-NLS-1$
+	{
+		@Override
+		protected IStatus run(IProgressMonitor monitor)
+		{
+			while (!monitor.isCanceled())
+			{
+				ScriptingContainer container = createIfNotFull();
+
+				if (container == null)
+				{
+					break;
+				}
+
+				idle.offer(container);
+			}
+
+			return Status.OK_STATUS;
+		}
+	};
+
+	/**
+	 * @param maxSize
+	 *            the maximum number of containers
+	 */
+	protected ScriptingContainerPool(int maxSize)
+	{
+		this.maxSize = Math.max(1, maxSize);
+
+		warmUpJob.setSystem(true);
+		warmUpJob.setPriority(Job.DECORATE);
+	}
+
+	/**
+	 * Creates a container for the pool, ready to run scripts.
+	 * 
+	 * @return
+	 */
+	protected abstract ScriptingContainer createContainer();
+
+	/**
+	 * Returns an idle container, waiting for one to be released or started otherwise. Containers are only started in
+	 * the background, see {@link #warmUp()}, so that callers never wait longer than the timeout for a runtime to start.
+	 * The container has to be given back through {@link #release(ScriptingContainer)} or
+	 * {@link #discard(ScriptingContainer)}.
+	 * 
+	 * @param timeout
+	 *            the maximum time in milliseconds to wait for a container
+	 * @return the container, or null if none was available in time
+	 * @throws InterruptedException
+	 */
+	public ScriptingContainer acquire(long timeout) throws InterruptedException
+	{
+		long start = System.currentTimeMillis();
+		ScriptingContainer container = idle.poll();
+
+		if (container == null)
+		{
+			if (size.get() < maxSize)
+			{
+				warmUp();
+			}
+
+			container = idle.poll(timeout, TimeUnit.MILLISECONDS);
+		}
+
+		recordWait(System.currentTimeMillis() - start);
+
+		if (container == null)
+		{
+			timeouts.incrementAndGet();
+		}
+		else
+		{
+			busy.incrementAndGet();
+			acquisitions.incrementAndGet();
+		}
+
+		return container;
+	}
+
+	/**
+	 * Gives back a container returned by {@link #acquire(long)}.
+	 * 
+	 * @param container
+	 */
+	public void release(ScriptingContainer container)
+	{
+		if (container != null)
+		{
+			busy.decrementAndGet();
+			idle.offer(container);
+		}
+	}
+
+	/**
+	 * Takes a container returned by {@link #acquire(long)} out of the pool, for callers who ran code that may have
+	 * changed its runtime. A fresh container is started in the background to replace it.
+	 * 
+	 * @param container
+	 */
+	public void discard(ScriptingContainer container)
+	{
+		if (container != null)
+		{
+			busy.decrementAndGet();
+			size.decrementAndGet();
+			container.terminate();
+			warmUp();
+		}
+	}
+
+	/**
+	 * Creates the containers the pool may still hold in the background, so that callers do not wait for a runtime to
+	 * start.
+	 */
+	public void warmUp()
+	{
+		// scheduling the job while it runs makes it run once more, which picks up the containers discarded meanwhile
+		warmUpJob.schedule();
+	}
+
+	/**
+	 * createIfNotFull
+	 * 
+	 * @return a new container, or null if the pool is full
+	 */
+	private ScriptingContainer createIfNotFull()
+	{
+		while (true)
+		{
+			int current = size.get();
+
+			if (current >= maxSize)
+			{
+				return null;
+			}
+			if (size.compareAndSet(current, current + 1))
+			{
+				break;
+			}
+		}
+
+		try
+		{
+			return createContainer();
+		}
+		catch (RuntimeException e)
+		{
+			size.decrementAndGet();
+			throw e;
+		}
+	}
+
+	/**
+	 * recordWait
+	 * 
+	 * @param waitTime
+	 */
+	private void recordWait(long waitTime)
+	{
+		totalWaitTime.addAndGet(waitTime);
+
+		while (true)
+		{
+			long max = maxWaitTime.get();
+
+			if (waitTime <= max || maxWaitTime.compareAndSet(max, waitTime))
+			{
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @return the maximum number of containers
+	 */
+	public int getMaxSize()
+	{
+		return maxSize;
+	}
+
+	/**
+	 * @return the number of containers started and not discarded
+	 */
+	public int getSize()
+	{
+		return size.get();
+	}
+
+	/**
+	 * @return the number of containers acquired and not released yet
+	 */
+	public int getBusyCount()
+	{
+		return busy.get();
+	}
+
+	/**
+	 * @return the share of the maximum number of containers in use, between 0 and 1
+	 */
+	public double getUtilization()
+	{
+		return (double) busy.get() / maxSize;
+	}
+
+	/**
+	 * @return the number of successful calls to {@link #acquire(long)}
+	 */
+	public long getAcquisitionCount()
+	{
+		return acquisitions.get();
+	}
+
+	/**
+	 * @return the number of calls to {@link #acquire(long)} which gave up waiting
+	 */
+	public long getTimeoutCount()
+	{
+		return timeouts.get();
+	}
+
+	/**
+	 * @return the time in milliseconds spent in {@link #acquire(long)}, by all callers
+	 */
+	public long getTotalWaitTime()
+	{
+		return totalWaitTime.get();
+	}
+
+	/**
+	 * @return the longest time in milliseconds spent in a call to {@link #acquire(long)}
+	 */
+	public long getMaxWaitTime()
+	{
+		return maxWaitTime.get();
+	}
+}
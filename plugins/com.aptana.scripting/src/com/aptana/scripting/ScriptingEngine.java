@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -46,9 +46,16 @@ public class ScriptingEngine
 	private static final String TAG_LOADPATH = "loadPath"; //$NON-NLS-1$
 	private static final String ATTR_PATH = "path"; //$NON-NLS-1$
 
+	/**
+	 * The system property to look at for an override of the # of Ruby runtimes in the pool.
+	 */
+	public static final String RUNTIME_POOL_SIZE_PROPERTY = "studio.scripting.runtimePoolSize"; //$NON-NLS-1$
+	private static final int DEFAULT_RUNTIME_POOL_SIZE = 2;
+
 	private static ScriptingEngine instance;
 
 	private ScriptingContainer _scriptingContainer;
+	private ScriptingContainerPool _runtimePool;
 	private List<String> _loadPaths;
 	private List<String> _frameworkFiles;
 	private RunType _runType;
@@ -233,6 +240,33 @@ public class ScriptingEngine
 		return this._scriptingContainer;
 	}
 
+	/**
+	 * Returns the pool of containers with runtimes of their own, set up like the shared container but without the
+	 * bundles. Code run there neither waits for nor blocks the commands running in the shared container. The pool
+	 * starts its runtimes in the background when first requested.
+	 * 
+	 * @return
+	 */
+	public synchronized ScriptingContainerPool getRuntimePool()
+	{
+		if (this._runtimePool == null)
+		{
+			int size = Integer.getInteger(RUNTIME_POOL_SIZE_PROPERTY, DEFAULT_RUNTIME_POOL_SIZE);
+
+			this._runtimePool = new ScriptingContainerPool(size)
+			{
+				@Override
+				protected ScriptingContainer createContainer()
+				{
+					return createScriptingContainer(LocalContextScope.SINGLETHREAD);
+				}
+			};
+			this._runtimePool.warmUp();
+		}
+
+		return this._runtimePool;
+	}
+
 	/**
 	 * runScript
 	 * 
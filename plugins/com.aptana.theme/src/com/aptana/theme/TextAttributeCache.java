@@ -0,0 +1,105 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.theme;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jface.text.TextAttribute;
+
+/**
+ * Remembers the text attributes of the scopes a theme colored, for any number of threads. The number of scopes kept is
+ * bounded: once it is reached, a quarter of them are dropped, whichever the map yields first.
+ */
+class TextAttributeCache
+{
+
+	/**
+	 * The system property setting the maximum number of scopes kept by each theme.
+	 */
+	static final String MAX_SIZE_PROPERTY = "studio.theme.cacheSize"; //$NON-NLS-1$
+
+	private static final int DEFAULT_MAX_SIZE = 4096;
+
+	private final ConcurrentMap<String, TextAttribute> attributes;
+	private final int maxSize;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	TextAttributeCache()
+	{
+		this(Integer.getInteger(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE));
+	}
+
+	TextAttributeCache(int maxSize)
+	{
+		this.maxSize = Math.max(1, maxSize);
+		attributes = new ConcurrentHashMap<String, TextAttribute>(Math.min(this.maxSize, 256));
+	}
+
+	/**
+	 * @param scope
+	 * @return the text attribute of the scope, or null if it is not kept
+	 */
+	TextAttribute get(String scope)
+	{
+		TextAttribute attribute = attributes.get(scope);
+		if (attribute != null)
+		{
+			hits.incrementAndGet();
+		}
+		else
+		{
+			misses.incrementAndGet();
+		}
+		return attribute;
+	}
+
+	void put(String scope, TextAttribute attribute)
+	{
+		if (attributes.size() >= maxSize)
+		{
+			int toRemove = Math.max(1, maxSize / 4);
+			Iterator<String> scopes = attributes.keySet().iterator();
+			while (toRemove-- > 0 && scopes.hasNext())
+			{
+				scopes.next();
+				scopes.remove();
+			}
+		}
+		attributes.put(scope, attribute);
+	}
+
+	int size()
+	{
+		return attributes.size();
+	}
+
+	int getMaxSize()
+	{
+		return maxSize;
+	}
+
+	/**
+	 * @return the number of lookups which found the scope
+	 */
+	long getHits()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of lookups which did not find the scope
+	 */
+	long getMisses()
+	{
+		return misses.get();
+	}
+}
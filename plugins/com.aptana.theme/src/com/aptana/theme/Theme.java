@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -16,12 +16,9 @@ import java.io.UnsupportedEncodingException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.InvalidPropertiesFormatException;
 import java.util.List;
-import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 
@@ -84,20 +81,23 @@ public class Theme
 	private RGB searchResultBG;
 
 	/**
-	 * Used for recursion in getDelayedTextAttribute to avoid matching same rule on scope twice
+	 * The rules compiled for matching, built lazily and dropped whenever the rules change. It is built and dropped
+	 * holding matcherLock, so that a matcher of the old rules is never published after it was dropped.
 	 */
-	private IScopeSelector lastSelectorMatch;
+	private volatile ThemeRuleMatcher matcher;
+	private final Object matcherLock = new Object();
 
 	/**
-	 * A cache to memoize the ultimate TextAttribute generated for a given fully qualified scope.
+	 * A cache to memoize the ultimate TextAttribute generated for a given fully qualified scope. Replaced whenever the
+	 * rules or default colors change.
 	 */
-	private Map<String, TextAttribute> cache;
+	private volatile TextAttributeCache cache;
 
 	public Theme(ColorManager colormanager, Properties props)
 	{
 		this.colorManager = colormanager;
 		coloringRules = new ArrayList<ThemeRule>();
-		cache = new HashMap<String, TextAttribute>();
+		cache = new TextAttributeCache();
 		parseProps(props);
 		storeDefaults();
 	}
@@ -279,40 +279,70 @@ public class Theme
 
 	public TextAttribute getTextAttribute(String scope)
 	{
-		if (cache.containsKey(scope))
+		// read the cache before the matcher, so that a result of rules replaced meanwhile goes to the discarded cache
+		TextAttributeCache textAttributes = cache;
+		TextAttribute ta = textAttributes.get(scope);
+		if (ta == null)
 		{
-			return cache.get(scope);
+			ta = toTextAttribute(getDelayedTextAttribute(scope, null), true);
+			textAttributes.put(scope, ta);
 		}
-		lastSelectorMatch = null;
-		TextAttribute ta = toTextAttribute(getDelayedTextAttribute(scope), true);
-		cache.put(scope, ta);
 		return ta;
 	}
 
+	/**
+	 * The cache of the text attributes of this theme, with its hit and miss counts.
+	 * 
+	 * @return
+	 */
+	TextAttributeCache getTextAttributeCache()
+	{
+		return cache;
+	}
+
 	ThemeRule winningRule(String scope)
 	{
-		IScopeSelector match = findMatch(scope);
-		if (match == null)
+		return getMatcher().match(scope);
+	}
+
+	private ThemeRuleMatcher getMatcher()
+	{
+		ThemeRuleMatcher result = matcher;
+		if (result == null)
 		{
-			return null;
+			synchronized (matcherLock)
+			{
+				result = matcher;
+				if (result == null)
+				{
+					result = new ThemeRuleMatcher(new ArrayList<ThemeRule>(coloringRules));
+					matcher = result;
+				}
+			}
 		}
-		return getRuleForSelector(match);
+		return result;
 	}
 
-	private DelayedTextAttribute getDelayedTextAttribute(String scope)
+	/**
+	 * @param scope
+	 * @param lastSelectorMatch
+	 *            the selector matched by the child scope this is recursing from, to avoid matching the same rule on
+	 *            the scope twice
+	 * @return
+	 */
+	private DelayedTextAttribute getDelayedTextAttribute(String scope, IScopeSelector lastSelectorMatch)
 	{
-		IScopeSelector match = findMatch(scope);
-		if (match != null)
+		ThemeRule rule = winningRule(scope);
+		if (rule != null)
 		{
+			IScopeSelector match = rule.getScopeSelector();
 			// This is to avoid matching the same selector multiple times when recursing up the scope! Basically our
 			// match may have been many steps up our scope, not at the end!
 			if (lastSelectorMatch != null && lastSelectorMatch.equals(match))
 			{
 				// We just matched the same rule! We need to recurse from parent scope!
-				return getParent(scope);
+				return getParent(scope, lastSelectorMatch);
 			}
-			lastSelectorMatch = match;
-			ThemeRule rule = getRuleForSelector(match);
 			DelayedTextAttribute attr = rule.getTextAttribute();
 
 			// if our coloring has no background, we should use parent's. If it has some opacity (alpha != 255), we
@@ -320,7 +350,7 @@ public class Theme
 			if (attr.getBackground() == null || !attr.getBackground().isFullyOpaque())
 			{
 				// Need to merge bg color up the scope!
-				DelayedTextAttribute parentAttr = getParent(scope);
+				DelayedTextAttribute parentAttr = getParent(scope, match);
 				// Now do actual merge
 				attr = merge(attr, parentAttr);
 			}
@@ -443,13 +473,18 @@ public class Theme
 	}
 
 	protected DelayedTextAttribute getParent(String scope)
+	{
+		return getParent(scope, null);
+	}
+
+	private DelayedTextAttribute getParent(String scope, IScopeSelector lastSelectorMatch)
 	{
 		DelayedTextAttribute parentAttr = null;
 		int index = scope.lastIndexOf(' ');
 		if (index != -1)
 		{
 			String subType = scope.substring(0, index);
-			parentAttr = getDelayedTextAttribute(subType);
+			parentAttr = getDelayedTextAttribute(subType, lastSelectorMatch);
 		}
 		if (parentAttr == null)
 		{
@@ -459,20 +494,6 @@ public class Theme
 		return parentAttr;
 	}
 
-	private IScopeSelector findMatch(String scope)
-	{
-		Collection<IScopeSelector> selectors = new ArrayList<IScopeSelector>();
-		for (ThemeRule rule : coloringRules)
-		{
-			if (rule.isSeparator())
-			{
-				continue;
-			}
-			selectors.add(rule.getScopeSelector());
-		}
-		return ScopeSelector.bestMatch(selectors, scope);
-	}
-
 	private DelayedTextAttribute merge(DelayedTextAttribute childAttr, DelayedTextAttribute parentAttr)
 	{
 		return new DelayedTextAttribute(merge(childAttr.getForeground(), parentAttr.getForeground(), defaultFG), merge(
@@ -833,8 +854,8 @@ public class Theme
 			}
 		}
 		coloringRules.clear();
-		wipeCache();
 		parseProps(props);
+		wipeCache();
 		deleteCustomVersion();
 	}
 
@@ -874,6 +895,7 @@ public class Theme
 		}
 		ThemeRule selected = coloringRules.remove(startIndex);
 		coloringRules.add(endIndex, selected);
+		wipeCache();
 		save();
 	}
 
@@ -938,7 +960,12 @@ public class Theme
 
 	private void wipeCache()
 	{
-		cache.clear();
+		// drop the matcher first, so that a new cache is never filled from the old rules
+		synchronized (matcherLock)
+		{
+			matcher = null;
+			cache = new TextAttributeCache();
+		}
 	}
 
 	public void updateLineHighlight(RGB newColor)
@@ -0,0 +1,170 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.theme;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.aptana.scope.IScopeSelector;
+import com.aptana.scope.ScopeSelector;
+
+/**
+ * Finds the rule of a theme which colors a scope. The rules are indexed by the names their selectors require at the
+ * start of a step of the scope (see {@link ScopeSelector#getRequiredNames()}), so that only the selectors which may
+ * match are tried. Selectors keep the results of their last match, so matching is serialized.
+ */
+class ThemeRuleMatcher
+{
+
+	private static final int[] NO_RULES = new int[0];
+
+	/**
+	 * The rules which are not separators, in theme order.
+	 */
+	private final ThemeRule[] rules;
+
+	/**
+	 * The indices of the rules which may match a scope with a step starting with a name, by name.
+	 */
+	private final Map<String, int[]> rulesByName;
+
+	/**
+	 * The indices of the rules which may match any scope.
+	 */
+	private final int[] anyRules;
+
+	ThemeRuleMatcher(List<ThemeRule> themeRules)
+	{
+		List<ThemeRule> matchable = new ArrayList<ThemeRule>(themeRules.size());
+		for (ThemeRule rule : themeRules)
+		{
+			if (!rule.isSeparator())
+			{
+				matchable.add(rule);
+			}
+		}
+		rules = matchable.toArray(new ThemeRule[matchable.size()]);
+
+		Map<String, List<Integer>> byName = new HashMap<String, List<Integer>>();
+		List<Integer> any = new ArrayList<Integer>();
+		for (int i = 0; i < rules.length; i++)
+		{
+			IScopeSelector selector = rules[i].getScopeSelector();
+			Set<String> names = (selector instanceof ScopeSelector) ? ((ScopeSelector) selector).getRequiredNames()
+					: null;
+			if (names == null)
+			{
+				any.add(i);
+				continue;
+			}
+			for (String name : names)
+			{
+				List<Integer> indices = byName.get(name);
+				if (indices == null)
+				{
+					indices = new ArrayList<Integer>();
+					byName.put(name, indices);
+				}
+				indices.add(i);
+			}
+		}
+
+		rulesByName = new HashMap<String, int[]>(byName.size() * 2);
+		for (Map.Entry<String, List<Integer>> entry : byName.entrySet())
+		{
+			rulesByName.put(entry.getKey(), toArray(entry.getValue()));
+		}
+		anyRules = toArray(any);
+	}
+
+	private static int[] toArray(List<Integer> indices)
+	{
+		if (indices.isEmpty())
+		{
+			return NO_RULES;
+		}
+		int[] result = new int[indices.size()];
+		for (int i = 0; i < result.length; i++)
+		{
+			result[i] = indices.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the rule whose selector best matches the scope, as {@link ScopeSelector#bestMatch(java.util.Collection,
+	 * String)} does: when several selectors match equally well, the last rule wins.
+	 * 
+	 * @param scope
+	 * @return the rule, or null if no selector matches
+	 */
+	synchronized ThemeRule match(String scope)
+	{
+		if (scope == null || rules.length == 0)
+		{
+			return null;
+		}
+
+		boolean[] candidates = new boolean[rules.length];
+		mark(candidates, anyRules);
+		int length = scope.length();
+		int start = 0;
+		while (start < length)
+		{
+			if (Character.isWhitespace(scope.charAt(start)))
+			{
+				start++;
+				continue;
+			}
+			int end = start;
+			int nameEnd = -1;
+			while (end < length && !Character.isWhitespace(scope.charAt(end)))
+			{
+				if (nameEnd == -1 && scope.charAt(end) == '.')
+				{
+					nameEnd = end;
+				}
+				end++;
+			}
+			int[] indices = rulesByName.get(scope.substring(start, (nameEnd == -1) ? end : nameEnd));
+			if (indices != null)
+			{
+				mark(candidates, indices);
+			}
+			start = end;
+		}
+
+		ThemeRule best = null;
+		IScopeSelector bestSelector = null;
+		for (int i = rules.length - 1; i >= 0; i--)
+		{
+			if (!candidates[i])
+			{
+				continue;
+			}
+			IScopeSelector selector = rules[i].getScopeSelector();
+			if (selector.matches(scope) && (bestSelector == null || selector.compareTo(bestSelector) > 0))
+			{
+				best = rules[i];
+				bestSelector = selector;
+			}
+		}
+		return best;
+	}
+
+	private static void mark(boolean[] candidates, int[] indices)
+	{
+		for (int index : indices)
+		{
+			candidates[index] = true;
+		}
+	}
+}
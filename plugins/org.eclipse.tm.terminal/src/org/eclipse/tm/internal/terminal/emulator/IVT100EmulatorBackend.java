@@ -119,6 +119,15 @@ public interface IVT100EmulatorBackend {
 	 */
 	void appendString(String buffer);
 
+	/**
+	 * Same as {@link #appendString(String)}, for a range of a char array.
+	 * This avoids copying the text when large amounts of text are displayed.
+	 * @param chars the characters to display
+	 * @param start the offset of the first character
+	 * @param len the number of characters to display
+	 */
+	void appendChars(char[] chars, int start, int len);
+
 	/**
 	 * Process a newline (Control-J) character. A newline (NL) character just
 	 * moves the cursor to the same column on the next line, creating new lines
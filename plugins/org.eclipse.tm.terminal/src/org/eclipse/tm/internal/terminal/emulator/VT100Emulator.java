@@ -124,6 +124,19 @@ public class VT100Emulator implements ControlListener {
 
 	Reader fReader;
 
+	/**
+	 * The size of the chunks read from {@link #fReader}.
+	 */
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	/**
+	 * The characters read from {@link #fReader} that still have to be processed
+	 * are <code>fBuffer[fBufferPosition..fBufferLength-1]</code>.
+	 */
+	private final char[] fBuffer = new char[BUFFER_SIZE];
+	private int fBufferPosition;
+	private int fBufferLength;
+
 	boolean fCrAfterNewLine;
 	/**
 	 * The constructor.
@@ -311,7 +324,7 @@ public class VT100Emulator implements ControlListener {
 					break;
 
 				default:
-					processNonControlCharacters(character);
+					processNonControlCharacters();
 					break;
 				}
 				break;
@@ -1056,31 +1069,37 @@ public class VT100Emulator implements ControlListener {
 	 * This method processes a contiguous sequence of non-control characters.
 	 * This is a performance optimization, so that we don't have to insert or
 	 * append each non-control character individually to the StyledText widget.
-	 * A non-control character is any character that passes the condition in the
-	 * below while loop.
+	 * The sequence is scanned in {@link #fBuffer} and passed to the backend
+	 * without copying it. The sequence starts with the last character taken
+	 * from {@link #fBuffer} by {@link #getNextChar()}.
 	 * @throws IOException
 	 */
-	private void processNonControlCharacters(char character) throws IOException {
-		StringBuffer buffer=new StringBuffer();
-		buffer.append(character);
-		// Identify a contiguous sequence of non-control characters, starting at
-		// firstNonControlCharacterIndex in newText.
-		while(hasNextChar()) {
-			character=getNextChar();
-			if(character == '\u0000' || character == '\b' || character == '\t'
-				|| character == '\u0007' || character == '\n'
-				|| character == '\r' || character == '\u001b'
-				|| character == '\u000e' || character == '\u000f') {
-				pushBackChar(character);
-				break;
+	private void processNonControlCharacters() throws IOException {
+		int start=fBufferPosition-1;
+		while(true) {
+			// Identify a contiguous sequence of non-control characters
+			int end=fBufferPosition;
+			while(end<fBufferLength && !isControlCharacter(fBuffer[end])) {
+				end++;
 			}
-			buffer.append(character);
-		}
+			fBufferPosition=end;
+
+			// Now insert the sequence of non-control characters in the StyledText widget
+			// at the location of the cursor.
 
-		// Now insert the sequence of non-control characters in the StyledText widget
-		// at the location of the cursor.
+			displayNewText(fBuffer, start, end-start);
+			// the sequence may continue in the next chunk
+			if(end<fBufferLength || !fReader.ready() || !fillBuffer())
+				return;
+			start=0;
+		}
+	}
 
-		displayNewText(buffer.toString());
+	private static boolean isControlCharacter(char character) {
+		return character == '\u0000' || character == '\b' || character == '\t'
+			|| character == '\u0007' || character == '\n'
+			|| character == '\r' || character == '\u001b'
+			|| character == '\u000e' || character == '\u000f';
 	}
 
 	/**
@@ -1094,11 +1113,13 @@ public class VT100Emulator implements ControlListener {
 	 * returns, and tabs).
 	 * <p>
 	 */
-	private void displayNewText(String buffer) {
+	private void displayNewText(char[] buffer, int start, int len) {
+		if(len==0)
+			return;
 		if (insertMode) {
-			text.insertCharacters(buffer.length());
+			text.insertCharacters(len);
 		}
-		text.appendString(buffer);
+		text.appendChars(buffer, start, len);
 	}
 
 
@@ -1275,43 +1296,40 @@ public class VT100Emulator implements ControlListener {
 //		return fTerminalInputStream.getOutputStream();
 //	}
 
-	/**
-	 * Buffer for {@link #pushBackChar(char)}.
-	 */
-	private int fNextChar=-1;
 	private char getNextChar() throws IOException {
-		int c=-1;
-		if(fNextChar!=-1) {
-			c= fNextChar;
-			fNextChar=-1;
-		} else {
-			c = fReader.read();
-		}
-		// workaround for unicode characters (for some reasons they appear as 137 63 63)
-		if (c == 137) {
-			c = ' ';
-		}
 		// TODO: better end of file handling
-		if(c==-1)
-			c=0;
-		return (char)c;
+		if(fBufferPosition==fBufferLength && !fillBuffer())
+			return 0;
+		return fBuffer[fBufferPosition++];
 	}
 
 	private boolean hasNextChar() throws IOException  {
-		if(fNextChar>=0)
+		if(fBufferPosition<fBufferLength)
 			return true;
 		return fReader.ready();
 	}
 
 	/**
-	 * Put back one character to the stream. This method can push
-	 * back exactly one character. The character is the next character
-	 * returned by {@link #getNextChar}
-	 * @param c the character to be pushed back.
+	 * Reads the next chunk of characters into {@link #fBuffer}. This blocks
+	 * unless {@link Reader#ready()} is true.
+	 * @return false if the end of the stream has been reached
+	 * @throws IOException
 	 */
-	void pushBackChar(char c) {
-		//assert fNextChar!=-1: "Already a character waiting:"+fNextChar; //$NON-NLS-1$
-		fNextChar=c;
+	private boolean fillBuffer() throws IOException {
+		int n=fReader.read(fBuffer, 0, fBuffer.length);
+		if(n<=0) {
+			fBufferPosition=fBufferLength=0;
+			return false;
+		}
+		for (int i = 0; i < n; i++) {
+			// workaround for unicode characters (for some reasons they appear as 137 63 63)
+			if (fBuffer[i] == 137) {
+				fBuffer[i] = ' ';
+			}
+		}
+		fBufferPosition=0;
+		fBufferLength=n;
+		return true;
 	}
 	private int getCursorColumn() {
 		return text.getCursorColumn();
@@ -12,7 +12,7 @@ package org.eclipse.tm.internal.terminal.emulator;
 
 import java.util.Stack;
 
-import org.eclipse.tm.internal.terminal.model.TerminalTextDataStore;
+import org.eclipse.tm.internal.terminal.model.TerminalTextDataCompactStore;
 import org.eclipse.tm.terminal.model.ITerminalTextData;
 import org.eclipse.tm.terminal.model.Style;
 
@@ -294,15 +294,23 @@ public class VT100EmulatorBackend implements IVT100EmulatorBackend {
 	 * @see org.eclipse.tm.internal.terminal.emulator.IVT100EmulatorBackend#appendString(java.lang.String)
 	 */
 	public void appendString(String buffer) {
+		char[] chars=buffer.toCharArray();
+		appendChars(chars, 0, chars.length);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.tm.internal.terminal.emulator.IVT100EmulatorBackend#appendChars(char[], int, int)
+	 */
+	public void appendChars(char[] chars, int start, int len) {
 		synchronized (fTerminal) {
-			char[] chars=buffer.toCharArray();
-			int i=0;
-			while (i < chars.length) {
+			int i=start;
+			int end=start+len;
+			while (i < end) {
 				if (wrapNewLine) {
 					doNewline();
 				}
 				int line=toAbsoluteLine(fCursorLine);
-				int n=Math.min(fColumns-fCursorColumn,chars.length-i);
+				int n=Math.min(fColumns-fCursorColumn,end-i);
 				fTerminal.setChars(line, fCursorColumn, chars, i, n, fStyle);
 				int col=fCursorColumn+n;
 				i+=n;
@@ -450,7 +458,7 @@ public class VT100EmulatorBackend implements IVT100EmulatorBackend {
 		synchronized (fTerminal) {
 			wrapNewLine = false;
 			if (enable) {
-				ITerminalTextData data = new TerminalTextDataStore();
+				ITerminalTextData data = new TerminalTextDataCompactStore();
 				data.copy(fTerminal);
 				fBufferStack.push(data);
 			} else if (!fBufferStack.isEmpty()) {
@@ -0,0 +1,348 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Appcelerator, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Appcelerator, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tm.internal.terminal.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.tm.terminal.model.LineSegment;
+import org.eclipse.tm.terminal.model.Style;
+
+/**
+ * A single line of a {@link TerminalTextDataCompactStore}. Instead of a style
+ * per character, the styles are stored as runs: run <code>i</code> covers the
+ * columns <code>[fRunEnds[i-1], fRunEnds[i])</code> and has the style
+ * <code>fRunStyles[i]</code>. The columns after {@link #length()} are
+ * <code>'\000'</code> with a <code>null</code> style.
+ * <p>
+ * A line is either writable or frozen. Frozen lines are never modified:
+ * they are shared between stores (copy-on-write) or compacted. A compacted
+ * line has trimmed arrays and keeps its text in a <code>byte[]</code> if all
+ * the characters are in the ISO-8859-1 range.
+ * <p>
+ * Threading considerations:
+ * This class is <b>not threadsafe</b>!
+ */
+final class StyledLine {
+	private static final int MIN_CAPACITY=16;
+	private char[] fChars;
+	/**
+	 * The text of a compact line, when all the characters fit into a byte.
+	 */
+	private byte[] fBytes;
+	private int fLength;
+	private Style[] fRunStyles;
+	private int[] fRunEnds;
+	private int fRunCount;
+	private boolean fCompact;
+	private boolean fFrozen;
+
+	/**
+	 * Creates an empty writable line
+	 */
+	StyledLine() {
+		fChars=new char[0];
+		fRunStyles=new Style[2];
+		fRunEnds=new int[2];
+	}
+	/**
+	 * Creates a compact line from a char and a style array
+	 * @param chars the characters of the line
+	 * @param styles the style for each character (may be <code>null</code>)
+	 * @return a frozen line
+	 */
+	static StyledLine create(char[] chars, Style[] styles) {
+		StyledLine line=new StyledLine();
+		line.ensureCapacity(chars.length, chars.length);
+		System.arraycopy(chars, 0, line.fChars, 0, chars.length);
+		for (int i = 0; i < chars.length; i++) {
+			line.appendRun(i+1, styles!=null && i<styles.length?styles[i]:null);
+		}
+		line.fLength=chars.length;
+		return line.compact();
+	}
+	/**
+	 * @return true if the line must not be modified
+	 */
+	boolean isFrozen() {
+		return fFrozen;
+	}
+	/**
+	 * Marks the line as shared. From now on, it must not be modified.
+	 */
+	void freeze() {
+		fFrozen=true;
+	}
+	boolean isCompact() {
+		return fCompact;
+	}
+	/**
+	 * @return the number of used columns
+	 */
+	int length() {
+		return fLength;
+	}
+	/**
+	 * @return the number of style runs
+	 */
+	int getRunCount() {
+		return fRunCount;
+	}
+	/**
+	 * @param capacity the minimal number of columns of the copy
+	 * @return a writable copy of this line
+	 */
+	StyledLine copy(int capacity) {
+		StyledLine line=new StyledLine();
+		line.fChars=new char[Math.max(capacity, fLength)];
+		if(fBytes!=null) {
+			for (int i = 0; i < fLength; i++) {
+				line.fChars[i]=(char) (fBytes[i]&0xff);
+			}
+		} else {
+			System.arraycopy(fChars, 0, line.fChars, 0, fLength);
+		}
+		line.fLength=fLength;
+		line.fRunStyles=new Style[fRunCount+2];
+		line.fRunEnds=new int[fRunCount+2];
+		System.arraycopy(fRunStyles, 0, line.fRunStyles, 0, fRunCount);
+		System.arraycopy(fRunEnds, 0, line.fRunEnds, 0, fRunCount);
+		line.fRunCount=fRunCount;
+		return line;
+	}
+	/**
+	 * @return a frozen copy of this line that uses as little memory as possible
+	 */
+	StyledLine compact() {
+		if(fCompact)
+			return this;
+		StyledLine line=new StyledLine();
+		boolean isByte=true;
+		for (int i = 0; i < fLength && isByte; i++) {
+			isByte=fChars[i]<=0xff;
+		}
+		if(isByte) {
+			line.fBytes=new byte[fLength];
+			for (int i = 0; i < fLength; i++) {
+				line.fBytes[i]=(byte) fChars[i];
+			}
+			line.fChars=null;
+		} else {
+			line.fChars=new char[fLength];
+			System.arraycopy(fChars, 0, line.fChars, 0, fLength);
+		}
+		line.fLength=fLength;
+		line.fRunStyles=new Style[fRunCount];
+		line.fRunEnds=new int[fRunCount];
+		System.arraycopy(fRunStyles, 0, line.fRunStyles, 0, fRunCount);
+		System.arraycopy(fRunEnds, 0, line.fRunEnds, 0, fRunCount);
+		line.fRunCount=fRunCount;
+		line.fCompact=true;
+		line.fFrozen=true;
+		return line;
+	}
+	char getChar(int column) {
+		if(column>=fLength)
+			return 0;
+		if(fBytes!=null)
+			return (char) (fBytes[column]&0xff);
+		return fChars[column];
+	}
+	Style getStyle(int column) {
+		if(column>=fLength)
+			return null;
+		return fRunStyles[findRun(column)];
+	}
+	/**
+	 * @return a copy of the used characters of the line
+	 */
+	char[] getChars() {
+		char[] chars=new char[fLength];
+		copyChars(0, fLength, chars, 0);
+		return chars;
+	}
+	/**
+	 * @return the style of each used column of the line
+	 */
+	Style[] getStyles() {
+		Style[] styles=new Style[fLength];
+		int start=0;
+		for (int i = 0; i < fRunCount; i++) {
+			int end=fRunEnds[i];
+			Style style=fRunStyles[i];
+			for (int j = start; j < end; j++) {
+				styles[j]=style;
+			}
+			start=end;
+		}
+		return styles;
+	}
+	/**
+	 * Sets the characters of the line. The line must not be frozen.
+	 * @param column the first column to set
+	 * @param chars the source of the characters
+	 * @param start the offset in chars
+	 * @param len the number of characters to set
+	 * @param style the style of the characters
+	 * @param width the width of the terminal
+	 */
+	void setChars(int column, char[] chars, int start, int len, Style style, int width) {
+		assert !fFrozen;
+		int end=column+len;
+		ensureCapacity(end, width);
+		System.arraycopy(chars, start, fChars, column, len);
+		setStyle(column, end, style);
+	}
+	/**
+	 * Sets a single character. The line must not be frozen.
+	 * @param column
+	 * @param c
+	 * @param style
+	 * @param width the width of the terminal
+	 */
+	void setChar(int column, char c, Style style, int width) {
+		assert !fFrozen;
+		ensureCapacity(column+1, width);
+		fChars[column]=c;
+		setStyle(column, column+1, style);
+	}
+	LineSegment[] getLineSegments(int column, int len) {
+		int end=column+len;
+		List segments=new ArrayList();
+		int run=column<fLength?findRun(column):fRunCount;
+		int col=column;
+		int segmentStart=column;
+		Style style=null;
+		while(col<end) {
+			Style runStyle=null;
+			int runEnd=end;
+			if(run<fRunCount) {
+				runStyle=fRunStyles[run];
+				runEnd=Math.min(fRunEnds[run], end);
+				run++;
+			}
+			if(col>segmentStart && runStyle!=style) {
+				segments.add(makeSegment(segmentStart, col, style));
+				segmentStart=col;
+			}
+			style=runStyle;
+			col=runEnd;
+		}
+		if(segmentStart<end)
+			segments.add(makeSegment(segmentStart, end, style));
+		return (LineSegment[]) segments.toArray(new LineSegment[segments.size()]);
+	}
+	private LineSegment makeSegment(int start, int end, Style style) {
+		char[] chars=new char[end-start];
+		copyChars(start, Math.min(end, fLength), chars, 0);
+		return new LineSegment(start, new String(chars), style);
+	}
+	/**
+	 * Copies the used characters from start to end into dest
+	 */
+	private void copyChars(int start, int end, char[] dest, int destStart) {
+		if(fBytes!=null) {
+			for (int i = start; i < end; i++) {
+				dest[destStart+i-start]=(char) (fBytes[i]&0xff);
+			}
+		} else if(end>start) {
+			System.arraycopy(fChars, start, dest, destStart, end-start);
+		}
+	}
+	/**
+	 * @param column a column smaller than {@link #length()}
+	 * @return the index of the run that contains the column
+	 */
+	private int findRun(int column) {
+		int low=0;
+		int high=fRunCount-1;
+		while(low<high) {
+			int mid=(low+high)>>>1;
+			if(fRunEnds[mid]<=column)
+				low=mid+1;
+			else
+				high=mid;
+		}
+		return low;
+	}
+	private void ensureCapacity(int length, int width) {
+		if(fChars.length>=length)
+			return;
+		int capacity=Math.max(length, Math.min(Math.max(2*fChars.length, MIN_CAPACITY), width));
+		char[] chars=new char[capacity];
+		System.arraycopy(fChars, 0, chars, 0, fLength);
+		fChars=chars;
+	}
+	/**
+	 * Appends a run ending at end, or extends the last run if it has the same style
+	 */
+	private void appendRun(int end, Style style) {
+		if(fRunCount>0 && fRunStyles[fRunCount-1]==style) {
+			fRunEnds[fRunCount-1]=end;
+			return;
+		}
+		if(fRunCount==fRunStyles.length) {
+			Style[] styles=new Style[2*fRunCount];
+			int[] ends=new int[2*fRunCount];
+			System.arraycopy(fRunStyles, 0, styles, 0, fRunCount);
+			System.arraycopy(fRunEnds, 0, ends, 0, fRunCount);
+			fRunStyles=styles;
+			fRunEnds=ends;
+		}
+		fRunStyles[fRunCount]=style;
+		fRunEnds[fRunCount]=end;
+		fRunCount++;
+	}
+	/**
+	 * Sets the style of the columns from..to and updates the length of the line
+	 */
+	private void setStyle(int from, int to, Style style) {
+		if(from>=fLength) {
+			// the common case: text is appended to the line
+			if(from>fLength)
+				appendRun(from, null);
+			appendRun(to, style);
+			fLength=to;
+			return;
+		}
+		Style[] styles=new Style[fRunCount+2];
+		int[] ends=new int[fRunCount+2];
+		int n=0;
+		int runStart=0;
+		boolean inserted=false;
+		for (int i = 0; i < fRunCount; i++) {
+			int runEnd=fRunEnds[i];
+			Style runStyle=fRunStyles[i];
+			if(runStart<from)
+				n=addRun(styles, ends, n, Math.min(runEnd, from), runStyle);
+			if(!inserted && runEnd>=from) {
+				n=addRun(styles, ends, n, to, style);
+				inserted=true;
+			}
+			if(runEnd>to)
+				n=addRun(styles, ends, n, runEnd, runStyle);
+			runStart=runEnd;
+		}
+		fRunStyles=styles;
+		fRunEnds=ends;
+		fRunCount=n;
+		fLength=Math.max(fLength, to);
+	}
+	private static int addRun(Style[] styles, int[] ends, int n, int end, Style style) {
+		if(n>0 && styles[n-1]==style) {
+			ends[n-1]=end;
+			return n;
+		}
+		styles[n]=style;
+		ends[n]=end;
+		return n+1;
+	}
+}
@@ -78,7 +78,7 @@ public class TerminalTextData implements ITerminalTextData {
 	}
 
 	public TerminalTextData() {
-		this(new TerminalTextDataFastScroll());
+		this(new TerminalTextDataFastScroll(new TerminalTextDataCompactStore(),1));
 
 //		this(new TerminalTextDataStore());
 	}
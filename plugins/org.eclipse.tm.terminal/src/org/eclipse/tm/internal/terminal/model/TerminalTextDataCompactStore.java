@@ -0,0 +1,316 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Appcelerator, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Appcelerator, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tm.internal.terminal.model;
+
+import org.eclipse.tm.terminal.model.ITerminalTextData;
+import org.eclipse.tm.terminal.model.ITerminalTextDataSnapshot;
+import org.eclipse.tm.terminal.model.LineSegment;
+import org.eclipse.tm.terminal.model.Style;
+
+/**
+ * A memory efficient alternative to {@link TerminalTextDataStore}, meant for
+ * large scroll back buffers:
+ * <ul>
+ * <li>each line stores runs of styles instead of a style per character (see {@link StyledLine})</li>
+ * <li>only the {@link #RECENT_LINES} most recently modified lines are kept writable,
+ * older lines get compacted</li>
+ * <li>copying lines from another compact store (e.g. when a snapshot is updated)
+ * shares the line; a shared line is copied when it gets modified (copy-on-write)</li>
+ * </ul>
+ *
+ * Threading considerations:
+ * This class is <b>not threadsafe</b>!
+ */
+public class TerminalTextDataCompactStore implements ITerminalTextData {
+	/**
+	 * The number of recently modified lines that are not compacted
+	 */
+	static final int RECENT_LINES=16;
+	private StyledLine[] fLines;
+	private int fWidth;
+	private int fHeight;
+	private int fMaxHeight;
+	private int fCursorColumn;
+	private int fCursorLine;
+	/**
+	 * A ring buffer of the recently modified lines
+	 */
+	private final int[] fRecentLines=new int[RECENT_LINES];
+	private int fRecentIndex;
+	public TerminalTextDataCompactStore() {
+		fLines=new StyledLine[0];
+		fWidth=0;
+		for (int i = 0; i < fRecentLines.length; i++) {
+			fRecentLines[i]=-1;
+		}
+	}
+	/**
+	 * This is used in asserts to throw an {@link RuntimeException}.
+	 * This is useful for tests.
+	 * @return never -- throws an exception
+	 */
+	private boolean throwRuntimeException() {
+		throw new RuntimeException();
+	}
+
+	public int getWidth() {
+		return fWidth;
+	}
+	public int getHeight() {
+		return fHeight;
+	}
+	public void setDimensions(int height, int width) {
+		assert height>=0 || throwRuntimeException();
+		assert width>=0  || throwRuntimeException();
+		if(height>fLines.length) {
+			StyledLine[] lines=new StyledLine[height];
+			System.arraycopy(fLines, 0, lines, 0, fLines.length);
+			fLines=lines;
+		}
+		// clean the new lines
+		for (int i = fHeight; i < height; i++) {
+			fLines[i]=null;
+		}
+		// set dimensions after successful resize!
+		fWidth=width;
+		fHeight=height;
+	}
+	public LineSegment[] getLineSegments(int line, int column, int len) {
+		StyledLine styledLine=fLines[line];
+		if(len<=0)
+			return new LineSegment[0];
+		if(styledLine==null)
+			return new LineSegment[]{new LineSegment(column,new String(new char[len]),null)};
+		return styledLine.getLineSegments(column, len);
+	}
+	public char getChar(int line, int column) {
+		assert column<fWidth || throwRuntimeException();
+		if(fLines[line]==null)
+			return 0;
+		return fLines[line].getChar(column);
+	}
+	public Style getStyle(int line, int column) {
+		assert column<fWidth || throwRuntimeException();
+		if(fLines[line]==null)
+			return null;
+		return fLines[line].getStyle(column);
+	}
+	public void setChar(int line, int column, char c, Style style) {
+		if(line<0 || line>=fHeight || column<0 || column>=fWidth)
+			throw new IndexOutOfBoundsException();
+		getWritableLine(line).setChar(column, c, style, fWidth);
+	}
+	public void setChars(int line, int column, char[] chars, Style style) {
+		setChars(line,column,chars,0,chars.length,style);
+	}
+	public void setChars(int line, int column, char[] chars, int start, int len, Style style) {
+		if(line<0 || line>=fHeight || column<0 || column+len>fWidth || start<0 || len<0 || start+len>chars.length)
+			throw new IndexOutOfBoundsException();
+		getWritableLine(line).setChars(column, chars, start, len, style, fWidth);
+	}
+	/**
+	 * @param line
+	 * @return a line that can be modified
+	 */
+	private StyledLine getWritableLine(int line) {
+		StyledLine styledLine=fLines[line];
+		if(styledLine==null) {
+			styledLine=new StyledLine();
+			fLines[line]=styledLine;
+		} else if(styledLine.isFrozen()) {
+			// copy on write
+			styledLine=styledLine.copy(0);
+			fLines[line]=styledLine;
+		}
+		markRecentLine(line);
+		return styledLine;
+	}
+	/**
+	 * Remembers the line as recently modified and compacts the line
+	 * that has not been modified for the longest time.
+	 * @param line
+	 */
+	private void markRecentLine(int line) {
+		int last=fRecentIndex==0?RECENT_LINES-1:fRecentIndex-1;
+		if(fRecentLines[last]==line)
+			return;
+		for (int i = 0; i < RECENT_LINES; i++) {
+			if(fRecentLines[i]==line)
+				return;
+		}
+		int oldest=fRecentLines[fRecentIndex];
+		fRecentLines[fRecentIndex]=line;
+		fRecentIndex=(fRecentIndex+1)%RECENT_LINES;
+		// the line numbers in the ring may be out of date (scrolling),
+		// in which case we just compact a line a bit too early.
+		if(oldest>=0 && oldest<fHeight && fLines[oldest]!=null)
+			fLines[oldest]=fLines[oldest].compact();
+	}
+	public void scroll(int startLine, int size, int shift) {
+		assert startLine+size <= getHeight() || throwRuntimeException();
+		if(shift<0) {
+			// move the region up
+			// shift is negative!!
+			for (int i = startLine; i < startLine+size+shift; i++) {
+				fLines[i]=fLines[i-shift];
+			}
+			// then clean the opened lines
+			cleanLines(Math.max(startLine, startLine+size+shift),Math.min(-shift, getHeight()-startLine));
+		} else {
+			for (int i = startLine+size-1; i >=startLine && i-shift>=0; i--) {
+				fLines[i]=fLines[i-shift];
+			}
+			cleanLines(startLine, Math.min(shift, getHeight()-startLine));
+		}
+	}
+	/**
+	 * Replaces the lines with new empty data
+	 * @param line
+	 * @param len
+	 */
+	private void cleanLines(int line, int len) {
+		for (int i = line; i < line+len; i++) {
+			fLines[i]=null;
+		}
+	}
+
+	/*
+	 * @return a text representation of the object.
+	 * Lines are separated by '\n'. No style information is returned.
+	 */
+	public String toString() {
+		StringBuffer buff=new StringBuffer();
+		for (int line = 0; line < getHeight(); line++) {
+			if(line>0)
+				buff.append("\n"); //$NON-NLS-1$
+			for (int column = 0; column < fWidth; column++) {
+				buff.append(getChar(line, column));
+			}
+		}
+		return buff.toString();
+	}
+
+	public ITerminalTextDataSnapshot makeSnapshot() {
+		throw new UnsupportedOperationException();
+	}
+
+	public void addLine() {
+		if(fMaxHeight>0 && getHeight()<fMaxHeight) {
+			setDimensions(getHeight()+1, getWidth());
+		} else {
+			scroll(0,getHeight(),-1);
+		}
+	}
+
+	public void copy(ITerminalTextData source) {
+		fWidth=source.getWidth();
+		int n=source.getHeight();
+		if(fLines.length<n)
+			fLines=new StyledLine[n];
+		for (int i = 0; i < n; i++) {
+			copyLine(source, i, i);
+		}
+		fHeight=n;
+		fCursorLine=source.getCursorLine();
+		fCursorColumn=source.getCursorColumn();
+	}
+	public void copyRange(ITerminalTextData source, int sourceStartLine, int destStartLine,int length) {
+		for (int i = 0; i < length; i++) {
+			copyLine(source, i+sourceStartLine, i+destStartLine);
+		}
+	}
+	public void copyLine(ITerminalTextData source, int sourceLine, int destLine) {
+		if(shareLine(source, sourceLine, destLine))
+			return;
+		char[] chars=source.getChars(sourceLine);
+		if(chars==null)
+			fLines[destLine]=null;
+		else
+			fLines[destLine]=StyledLine.create(chars, source.getStyles(sourceLine));
+	}
+	/**
+	 * If the source is a {@link TerminalTextDataCompactStore} (or one of the
+	 * unsynchronized wrappers of this package around it), the line is shared
+	 * instead of copied.
+	 * @return false if the line could not be shared
+	 */
+	private boolean shareLine(ITerminalTextData source, int sourceLine, int destLine) {
+		ITerminalTextData data=source;
+		int line=sourceLine;
+		while(!(data instanceof TerminalTextDataCompactStore)) {
+			if(data instanceof TerminalTextData) {
+				data=((TerminalTextData)data).fData;
+			} else if(data instanceof TerminalTextDataFastScroll) {
+				TerminalTextDataFastScroll fastScroll=(TerminalTextDataFastScroll)data;
+				// let the wrapper report invalid lines
+				if(line<0 || line>=fastScroll.getHeight())
+					return false;
+				line=fastScroll.getPositionOfLine(line);
+				data=fastScroll.fData;
+			} else if(data instanceof TerminalTextDataWindow) {
+				TerminalTextDataWindow window=(TerminalTextDataWindow)data;
+				if(!window.isInWindow(line)) {
+					fLines[destLine]=null;
+					return true;
+				}
+				line-=window.fWindowStartLine;
+				data=window.fData;
+			} else {
+				return false;
+			}
+		}
+		StyledLine styledLine=((TerminalTextDataCompactStore)data).fLines[line];
+		if(styledLine!=null)
+			styledLine.freeze();
+		fLines[destLine]=styledLine;
+		return true;
+	}
+
+	public char[] getChars(int line) {
+		if(fLines[line]==null)
+			return null;
+		return fLines[line].getChars();
+	}
+
+	public Style[] getStyles(int line) {
+		if(fLines[line]==null)
+			return null;
+		return fLines[line].getStyles();
+	}
+
+	public void setLine(int line, char[] chars, Style[] styles) {
+		fLines[line]=StyledLine.create(chars, styles);
+	}
+
+	public void setMaxHeight(int height) {
+		fMaxHeight=height;
+	}
+
+	public int getMaxHeight() {
+		return fMaxHeight;
+	}
+
+	public void cleanLine(int line) {
+		fLines[line]=null;
+	}
+	public int getCursorColumn() {
+		return fCursorColumn;
+	}
+	public int getCursorLine() {
+		return fCursorLine;
+	}
+	public void setCursorColumn(int column) {
+		fCursorColumn=column;
+	}
+	public void setCursorLine(int line) {
+		fCursorLine=line;
+	}
+}
@@ -221,7 +221,12 @@ public class TerminalTextDataFastScroll implements ITerminalTextData {
 		int start=getPositionOfLine(0);
 		if(start!=0) {
 			// invent a more efficient algorithm....
-			ITerminalTextData buffer=new TerminalTextDataStore();
+			ITerminalTextData buffer;
+			if(fData instanceof TerminalTextDataCompactStore)
+				// lines are shared between compact stores and not copied
+				buffer=new TerminalTextDataCompactStore();
+			else
+				buffer=new TerminalTextDataStore();
 			// create a buffer with the expected height
 			buffer.setDimensions(maxHeight, getWidth());
 			int n=Math.min(fMaxHeight-start,maxHeight);
@@ -53,7 +53,8 @@ class TerminalTextDataSnapshot implements ITerminalTextDataSnapshot {
 	private int fInterestWindowStartLine;
 
 	TerminalTextDataSnapshot(TerminalTextData terminal) {
-		fSnapshot = new TerminalTextDataWindow();
+		// the compact store shares the unchanged lines with the terminal
+		fSnapshot = new TerminalTextDataWindow(new TerminalTextDataCompactStore());
 		fTerminal = terminal;
 		fCurrentChanges = new SnapshotChanges(fTerminal.getHeight());
 		fCurrentChanges.setTerminalChanged();
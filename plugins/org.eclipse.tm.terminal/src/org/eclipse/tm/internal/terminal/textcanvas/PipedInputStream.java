@@ -10,6 +10,7 @@
  * Douglas Lea (Addison Wesley) - [cq:1552] BoundedBufferWithStateTracking adapted to BoundedByteBuffer 
  * Martin Oberhuber (Wind River) - the waitForAvailable method
  * Martin Oberhuber (Wind River) - [208166] Avoid unnecessary arraycopy in BoundedByteBuffer
+ * Appcelerator, Inc. - Replaced BoundedByteBuffer by a lock-free single producer/consumer ring buffer
  *******************************************************************************/
 
 package org.eclipse.tm.internal.terminal.textcanvas;
@@ -32,21 +33,23 @@ public class PipedInputStream extends InputStream {
 	/**
 	 * A blocking byte queue.
 	 */
-	private final BoundedByteBuffer fQueue;
+	private final RingBuffer fQueue;
+	/**
+	 * Serializes the writers of {@link #fQueue}.
+	 */
+	private final Object fWriteLock=new Object();
+	/**
+	 * Serializes the readers of {@link #fQueue}.
+	 */
+	private final Object fReadLock=new Object();
 	
 	/**
-	 * A byte bounded buffer used to synchronize the input and the output stream.
-	 * <p>
-	 * Adapted from BoundedBufferWithStateTracking 
-	 * http://gee.cs.oswego.edu/dl/cpj/allcode.java
-	 * http://gee.cs.oswego.edu/dl/cpj/
+	 * A byte ring buffer used to pass the data from the output stream to the input stream.
 	 * <p>
-	 * BoundedBufferWithStateTracking is part of the examples for the book
-	 * Concurrent Programming in Java: Design Principles and Patterns by
-	 * Doug Lea (ISBN 0-201-31009-0). Second edition published by 
-	 * Addison-Wesley, November 1999. The code is 
-	 * Copyright(c) Douglas Lea 1996, 1999 and released to the public domain
-	 * and may be used for any purposes whatsoever. 
+	 * The buffer has a single writer and a single reader that do not share a lock:
+	 * each of them only updates its own (volatile) counter. The lock of the
+	 * buffer is only taken to block the reader when the buffer is empty, or the
+	 * writer when the buffer is full, and to wake them up again.
 	 * <p>
 	 * For some reasons a solution based on
 	 * PipedOutputStream/PipedIntputStream
@@ -55,105 +58,127 @@ public class PipedInputStream extends InputStream {
 	 * <p>
 	 * 
 	 */
-	private class BoundedByteBuffer {
-		protected final byte[] fBuffer; // the elements
-		protected int fPutPos = 0; // circular indices
-		protected int fTakePos = 0;
-		protected int fUsedSlots = 0; // the count
-		private boolean fClosed;
-		public BoundedByteBuffer(int capacity) throws IllegalArgumentException {
+	private static class RingBuffer {
+		private final byte[] fBuffer;
+		/**
+		 * The total number of bytes written. Only modified by the writer.
+		 */
+		private volatile long fWritten;
+		/**
+		 * The total number of bytes read. Only modified by the reader.
+		 */
+		private volatile long fRead;
+		private volatile boolean fClosed;
+		/**
+		 * The lock used to wait for data or for free slots.
+		 */
+		private final Object fLock=new Object();
+		// these variables are modified with a lock on fLock
+		private volatile int fWaitingReaders;
+		private volatile int fWaitingWriters;
+		public RingBuffer(int capacity) throws IllegalArgumentException {
 			// make sure we don't deadlock on too small capacity
 			if (capacity <= 0)
 				throw new IllegalArgumentException();
 			fBuffer = new byte[capacity];
 		}
 		/**
-		 * @return the bytes available for {@link #read()}
-		 * Must be called with a lock on this!
+		 * @return the bytes available for {@link #read(byte[], int, int)}
 		 */
 		public int available() {
-			return fUsedSlots;
+			return (int) (fWritten - fRead);
+		}
+		public int getFreeSlots() {
+			return fBuffer.length - available();
 		}
 		/**
-		 * Writes a single byte to the buffer. Blocks if the buffer is full.
-		 * @param b byte to write to the buffer
+		 * Writes all the bytes to the buffer. Blocks while the buffer is full.
+		 * Must only be called by one thread at a time!
 		 * @throws InterruptedException when the thread is interrupted while waiting
 		 *     for the buffer to become ready
-		 * Must be called with a lock on this!
+		 * @throws IOException when the buffer is closed
 		 */
-		public void write(byte b) throws InterruptedException {
-			while (fUsedSlots == fBuffer.length)
-				// wait until not full
-				wait();
-
-			fBuffer[fPutPos] = b;
-			fPutPos = (fPutPos + 1) % fBuffer.length; // cyclically increment
-
-			if (fUsedSlots++ == 0) // signal if was empty
-				notifyAll();
-		}
-		public int getFreeSlots() {
-			return fBuffer.length - fUsedSlots;
+		public void write(byte[] b, int off, int len) throws InterruptedException, IOException {
+			while (len > 0) {
+				if (fClosed)
+					throw new IOException("Stream is closed!"); //$NON-NLS-1$
+				int free = getFreeSlots();
+				if (free == 0) {
+					// wait until not full
+					waitForFreeSlots();
+					continue;
+				}
+				int n = Math.min(len, free);
+				int putPos = (int) (fWritten % fBuffer.length);
+				int first = Math.min(n, fBuffer.length - putPos);
+				System.arraycopy(b, off, fBuffer, putPos, first);
+				if (first < n)
+					System.arraycopy(b, off + first, fBuffer, 0, n - first);
+				// publish the data
+				fWritten += n;
+				off += n;
+				len -= n;
+				if (fWaitingReaders > 0)
+					signal();
+			}
 		}
-		public void write(byte[] b, int off, int len) throws InterruptedException {
-			assert len<=getFreeSlots();
-			while (fUsedSlots == fBuffer.length)
-				// wait until not full
-				wait();
-			int n = Math.min(len, fBuffer.length - fPutPos);
-			System.arraycopy(b, off, fBuffer, fPutPos, n);
-			if (fPutPos + len > fBuffer.length)
-				System.arraycopy(b, off + n, fBuffer, 0, len - n);
-			fPutPos = (fPutPos + len) % fBuffer.length; // cyclically increment
-			boolean wasEmpty = fUsedSlots == 0;
-			fUsedSlots += len;
-			if (wasEmpty) // signal if was empty
-				notifyAll();
+		/**
+		 * Reads at most {@link #available()} bytes. Does not block.
+		 * Must only be called by one thread at a time!
+		 * @return the number of bytes read
+		 */
+		public int read(byte[] cbuf, int off, int len) {
+			int n = Math.min(len, available());
+			if (n == 0)
+				return 0;
+			int takePos = (int) (fRead % fBuffer.length);
+			int first = Math.min(n, fBuffer.length - takePos);
+			System.arraycopy(fBuffer, takePos, cbuf, off, first);
+			if (first < n)
+				System.arraycopy(fBuffer, 0, cbuf, off + first, n - first);
+			// free the slots
+			fRead += n;
+			if (fWaitingWriters > 0)
+				signal();
+			return n;
 		}
 		/**
-		 * Read a single byte. Blocks until a byte is available.
-		 * @return a byte from the buffer
-		 * @throws InterruptedException when the thread is interrupted while waiting
-		 *     for the buffer to become ready
-		 * Must be called with a lock on this!
+		 * Waits until data is available or the buffer is closed.
+		 * @param millis see {@link Object#wait(long)}
+		 * @throws InterruptedException
 		 */
-		public int read() throws InterruptedException {
-			while (fUsedSlots == 0) {
-				if(fClosed)
-					return -1;
-				// wait until not empty
-				wait();
+		public void waitForData(long millis) throws InterruptedException {
+			synchronized (fLock) {
+				fWaitingReaders++;
+				try {
+					// the writer checks fWaitingReaders after publishing the data,
+					// therefore either we see the data or it sees us waiting
+					if (available() == 0 && !fClosed)
+						fLock.wait(millis);
+				} finally {
+					fWaitingReaders--;
+				}
+			}
+		}
+		private void waitForFreeSlots() throws InterruptedException {
+			synchronized (fLock) {
+				fWaitingWriters++;
+				try {
+					if (getFreeSlots() == 0 && !fClosed)
+						fLock.wait();
+				} finally {
+					fWaitingWriters--;
+				}
 			}
-			byte b = fBuffer[fTakePos];
-			fTakePos = (fTakePos + 1) % fBuffer.length;
-
-			if (fUsedSlots-- == fBuffer.length) // signal if was full
-				notifyAll();
-			return b;
 		}
-		public int read(byte[] cbuf, int off, int len) throws InterruptedException {
-			assert len<=available();
-			while (fUsedSlots == 0) {
-				if(fClosed)
-					return 0;
-				// wait until not empty
-				wait();
+		private void signal() {
+			synchronized (fLock) {
+				fLock.notifyAll();
 			}
-			int n = Math.min(len, fBuffer.length - fTakePos);
-			System.arraycopy(fBuffer, fTakePos, cbuf, off, n);
-			if (fTakePos + len > n)
-				System.arraycopy(fBuffer, 0, cbuf, off + n, len - n);
-			fTakePos = (fTakePos + len) % fBuffer.length;
-			boolean wasFull = fUsedSlots == fBuffer.length;
-			fUsedSlots -= len;
-			if(wasFull)
-				notifyAll();
-				
-			return len;
 		}
 		public void close() {
 			fClosed=true;
-			notifyAll();
+			signal();
 		}
 		public boolean isClosed() {
 			return fClosed;
@@ -169,24 +194,8 @@ public class PipedInputStream extends InputStream {
 	class PipedOutputStream extends OutputStream {
 		public void write(byte[] b, int off, int len) throws IOException {
 			try {
-				synchronized (fQueue) {
-					if(fQueue.isClosed())
-						throw new IOException("Stream is closed!"); //$NON-NLS-1$
-					int written=0;
-					while(written<len) {
-						if(fQueue.getFreeSlots()==0) {
-							// if no slots available, write one byte and block
-							// until free slots are available
-							fQueue.write(b[off + written]);
-							written++;
-						} else {
-							// if slots are available, write as much as 
-							// we can in one junk
-							int n=Math.min(fQueue.getFreeSlots(), len-written);
-							fQueue.write(b, off + written, n);
-							written+=n;
-						}
-					}
+				synchronized (fWriteLock) {
+					fQueue.write(b, off, len);
 				}
 			} catch (InterruptedException e) {
 				Thread.currentThread().interrupt();
@@ -194,20 +203,10 @@ public class PipedInputStream extends InputStream {
 		}
 
 		public void write(int b) throws IOException {
-			try {
-				synchronized(fQueue) {
-					if(fQueue.isClosed())
-						throw new IOException("Stream is closed!"); //$NON-NLS-1$
-					fQueue.write((byte)b);
-				}
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
-			}
+			write(new byte[] { (byte) b }, 0, 1);
 		}
 		public void close() throws IOException {
-			synchronized(fQueue) {
-				fQueue.close();
-			}
+			fQueue.close();
 		}
 	}
 	/**
@@ -215,7 +214,7 @@ public class PipedInputStream extends InputStream {
 	 */
 	public PipedInputStream(int bufferSize) {
 		fOutputStream =new PipedOutputStream();
-		fQueue=new BoundedByteBuffer(bufferSize);
+		fQueue=new RingBuffer(bufferSize);
 	}
 	/**
 	 * @return the output stream used by the backend to write to the terminal.
@@ -230,33 +229,25 @@ public class PipedInputStream extends InputStream {
 	 *     for the buffer to become ready
 	 */
 	public void waitForAvailable(long millis) throws InterruptedException {
-		synchronized(fQueue) {
-			if(fQueue.available()==0) 
-				fQueue.wait(millis);
-		}
+		if(fQueue.available()==0) 
+			fQueue.waitForData(millis);
 	} 
 	/**
 	 * Must be called in the Display Thread!
 	 * @return true if a character is available for the terminal to show.
 	 */
 	public int available() {
-		synchronized(fQueue) {
-			return fQueue.available();
-		}
+		return fQueue.available();
 	}
 	/**
 	 * @return the next available byte. Check with {@link #available}
 	 * if characters are available.
 	 */
 	public int read() throws IOException  {
-		try {
-			synchronized (fQueue) {
-				return fQueue.read();
-			}
-		} catch (InterruptedException e) {
-			Thread.currentThread().interrupt();
+		byte[] b=new byte[1];
+		if(read(b, 0, 1)<=0)
 			return -1;
-		}
+		return b[0]&0xff;
 	}
     /**
      * Closing a <tt>PipedInputStream</tt> has no effect. The methods in
@@ -268,42 +259,23 @@ public class PipedInputStream extends InputStream {
 	}
 
 	public int read(byte[] cbuf, int off, int len) throws IOException {
-		int n=0;
 		if(len==0)
 			return 0;
-		// read as much as we can using a single synchronized statement
 		try {
-			synchronized (fQueue) {		
-				// if nothing available, block and read one byte
-				if (fQueue.available() == 0) {
-					// block now until at least one byte is available
-					int c = fQueue.read();
-					// are we at the end of stream
-					if (c == -1)
-						return -1;
-					cbuf[off] = (byte) c;
-					n++;
-				}
-				// is there more data available?
-				if (n < len && fQueue.available() > 0) {
-					// read at most available()
-					int nn = Math.min(fQueue.available(), len - n);
+			synchronized (fReadLock) {
+				// if nothing available, block until at least one byte is available
+				while (fQueue.available() == 0) {
 					// are we at the end of the stream?
-					if (nn == 0 && fQueue.isClosed()) {
-						// if no byte was read, return -1 to indicate end of stream
-						// else return the bytes we read up to now
-						if (n == 0)
-							n = -1;
-						return n;
-					}
-					fQueue.read(cbuf, off + n, nn);
-					n += nn;
+					if (fQueue.isClosed())
+						return -1;
+					fQueue.waitForData(0);
 				}
-				
+				// read as much as we can
+				return fQueue.read(cbuf, off, len);
 			}
 		} catch (InterruptedException e) {
 			Thread.currentThread().interrupt();
 		}
-		return n;
+		return 0;
 	}
 }
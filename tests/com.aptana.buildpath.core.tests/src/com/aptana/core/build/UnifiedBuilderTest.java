@@ -6,6 +6,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.TestCase;
 
@@ -537,4 +540,154 @@ public class UnifiedBuilderTest extends TestCase
 		builder.build(IncrementalProjectBuilder.FULL_BUILD, null, new NullProgressMonitor());
 		context.assertIsSatisfied();
 	}
+
+	public void testParallelBuildCallsParticipantOnOneThreadAtATime() throws Exception
+	{
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		participant = new TaskBuildParticipant(running, maxRunning);
+
+		List<IFile> files = createFiles(20);
+		createParallelBuilder().build(IncrementalProjectBuilder.FULL_BUILD, null, new NullProgressMonitor());
+
+		assertEquals(1, maxRunning.get());
+		assertTaskMarkers(files);
+	}
+
+	public void testParallelBuildWithThreadSafeParticipant() throws Exception
+	{
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		// the first files wait for each other, which only returns in time if they are built at the same time
+		final CountDownLatch inFlight = new CountDownLatch(2);
+		participant = new TaskBuildParticipant(running, maxRunning, inFlight)
+		{
+			@Override
+			public boolean isThreadSafe()
+			{
+				return true;
+			}
+		};
+
+		List<IFile> files = createFiles(20);
+		createParallelBuilder().build(IncrementalProjectBuilder.FULL_BUILD, null, new NullProgressMonitor());
+
+		assertEquals(0, inFlight.getCount());
+		assertTrue(maxRunning.get() >= 2);
+		assertTrue(maxRunning.get() <= 4);
+		assertTaskMarkers(files);
+	}
+
+	private List<IFile> createFiles(int count) throws CoreException
+	{
+		List<IFile> files = new ArrayList<IFile>(count);
+		for (int i = 0; i < count; i++)
+		{
+			IFile file = project.getFile("file" + i + ".txt");
+			file.create(new ByteArrayInputStream(("Hello world " + i).getBytes()), true, null);
+			files.add(file);
+		}
+		return files;
+	}
+
+	private void assertTaskMarkers(List<IFile> files) throws CoreException
+	{
+		for (IFile file : files)
+		{
+			IMarker[] markers = file.findMarkers(IMarkerConstants.TASK_MARKER, true, IResource.DEPTH_ZERO);
+			assertEquals(file.getName(), 1, markers.length);
+			assertEquals("Task " + file.getName(), markers[0].getAttribute(IMarker.MESSAGE));
+		}
+	}
+
+	private UnifiedBuilder createParallelBuilder()
+	{
+		return new UnifiedBuilder()
+		{
+			@Override
+			protected IProject getProjectHandle()
+			{
+				return project;
+			}
+
+			@Override
+			protected IResourceDelta getResourceDelta()
+			{
+				return delta;
+			}
+
+			@Override
+			protected IBuildParticipantManager getBuildParticipantManager()
+			{
+				return manager;
+			}
+
+			@Override
+			protected int getBuildConcurrency()
+			{
+				return 4;
+			}
+		};
+	}
+
+	/**
+	 * Adds a task to each file, and records how many threads are in {@link #buildFile(BuildContext, IProgressMonitor)}
+	 * at the same time.
+	 */
+	private static class TaskBuildParticipant extends RequiredBuildParticipant
+	{
+		private final AtomicInteger running;
+		private final AtomicInteger maxRunning;
+		private final CountDownLatch inFlight;
+
+		TaskBuildParticipant(AtomicInteger running, AtomicInteger maxRunning)
+		{
+			this(running, maxRunning, null);
+		}
+
+		/**
+		 * @param inFlight
+		 *            counted down by each file, which then waits for it to reach zero
+		 */
+		TaskBuildParticipant(AtomicInteger running, AtomicInteger maxRunning, CountDownLatch inFlight)
+		{
+			this.running = running;
+			this.maxRunning = maxRunning;
+			this.inFlight = inFlight;
+		}
+
+		public void deleteFile(BuildContext context, IProgressMonitor monitor)
+		{
+		}
+
+		public void buildFile(BuildContext context, IProgressMonitor monitor)
+		{
+			int current = running.incrementAndGet();
+			try
+			{
+				synchronized (maxRunning)
+				{
+					maxRunning.set(Math.max(maxRunning.get(), current));
+				}
+				if (inFlight != null && inFlight.getCount() > 0)
+				{
+					inFlight.countDown();
+					inFlight.await(10, TimeUnit.SECONDS);
+				}
+				Thread.sleep(5);
+				Collection<IProblem> problems = new ArrayList<IProblem>();
+				problems.add(createTask(context.getURI().toString(), "Task " + context.getName(),
+						IMarker.PRIORITY_NORMAL, 1, 0, 4));
+				context.putProblems(IMarkerConstants.TASK_MARKER, problems);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			finally
+			{
+				running.decrementAndGet();
+			}
+		}
+	}
 }
@@ -14,6 +14,7 @@ public class InternalBuildTests extends TestCase
 		suite.addTestSuite(BuildParticipantWorkingCopyTest.class);
 		suite.addTestSuite(BuildParticipantManagerTest.class);
 		suite.addTestSuite(IndexBuildParticipantTest.class);
+		suite.addTestSuite(ProblemMarkerBatchTest.class);
 		// $JUnit-END$
 		return suite;
 	}
@@ -0,0 +1,214 @@
+package com.aptana.core.internal.build;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import com.aptana.core.build.IProblem;
+import com.aptana.core.build.Problem;
+import com.aptana.core.resources.IMarkerConstants;
+import com.aptana.testing.utils.ProjectCreator;
+
+public class ProblemMarkerBatchTest extends TestCase
+{
+
+	private IProject project;
+	private IFile file;
+
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		project = ProjectCreator.createAndOpen("marker_batch");
+		file = createFile("file.js");
+	}
+
+	protected void tearDown() throws Exception
+	{
+		if (project != null)
+		{
+			project.delete(IResource.FORCE, new NullProgressMonitor());
+			project = null;
+		}
+		file = null;
+		super.tearDown();
+	}
+
+	public void testAddsMarkers() throws Exception
+	{
+		ProblemMarkerBatch batch = new ProblemMarkerBatch(null);
+		batch.add(file, problems(IMarkerConstants.PROBLEM_MARKER, error("a", 0, 1), warning("b", 5, 1)));
+		assertEquals(1, batch.size());
+		batch.apply(new NullProgressMonitor());
+
+		assertEquals(0, batch.size());
+		assertEquals(2, findMarkers(IMarkerConstants.PROBLEM_MARKER).length);
+		assertEquals(2, batch.getAddedCount());
+		assertEquals(0, batch.getRemovedCount());
+	}
+
+	public void testKeepsUnchangedMarkers() throws Exception
+	{
+		ProblemMarkerBatch batch = new ProblemMarkerBatch(null);
+		batch.add(file, problems(IMarkerConstants.PROBLEM_MARKER, error("a", 0, 1)));
+		batch.apply(new NullProgressMonitor());
+		long id = findMarkers(IMarkerConstants.PROBLEM_MARKER)[0].getId();
+
+		batch.add(file, problems(IMarkerConstants.PROBLEM_MARKER, error("a", 0, 1)));
+		batch.apply(new NullProgressMonitor());
+
+		IMarker[] markers = findMarkers(IMarkerConstants.PROBLEM_MARKER);
+		assertEquals(1, markers.length);
+		assertEquals(id, markers[0].getId());
+		assertEquals(1, batch.getAddedCount());
+		assertEquals(0, batch.getRemovedCount());
+		assertEquals(0, batch.getUpdatedCount());
+	}
+
+	public void testReplacesChangedProblems() throws Exception
+	{
+		ProblemMarkerBatch batch = new ProblemMarkerBatch(null);
+		batch.add(file, problems(IMarkerConstants.PROBLEM_MARKER, error("a", 0, 1), error("b", 5, 1)));
+		batch.apply(new NullProgressMonitor());
+
+		batch.add(file, problems(IMarkerConstants.PROBLEM_MARKER, error("a", 0, 1), warning("b", 5, 1)));
+		batch.apply(new NullProgressMonitor());
+
+		IMarker[] markers = findMarkers(IMarkerConstants.PROBLEM_MARKER);
+		assertEquals(2, markers.length);
+		assertEquals(3, batch.getAddedCount());
+		assertEquals(1, batch.getRemovedCount());
+		int warnings = 0;
+		for (IMarker marker : markers)
+		{
+			if (marker.getAttribute(IMarker.SEVERITY, -1) == IMarker.SEVERITY_WARNING)
+			{
+				warnings++;
+			}
+		}
+		assertEquals(1, warnings);
+	}
+
+	public void testUpdatesOtherAttributesInPlace() throws Exception
+	{
+		ProblemMarkerBatch batch = new ProblemMarkerBatch(null);
+		batch.add(file, problems(IMarkerConstants.PROBLEM_MARKER, error("a", 0, 1)));
+		batch.apply(new NullProgressMonitor());
+		long id = findMarkers(IMarkerConstants.PROBLEM_MARKER)[0].getId();
+
+		// same offset, message and severity, but longer
+		batch.add(file, problems(IMarkerConstants.PROBLEM_MARKER, error("a", 0, 3)));
+		batch.apply(new NullProgressMonitor());
+
+		IMarker[] markers = findMarkers(IMarkerConstants.PROBLEM_MARKER);
+		assertEquals(1, markers.length);
+		assertEquals(id, markers[0].getId());
+		assertEquals(3, markers[0].getAttribute(IMarker.CHAR_END, -1));
+		assertEquals(1, batch.getUpdatedCount());
+	}
+
+	public void testRemovesMarkersOfEmptyType() throws Exception
+	{
+		ProblemMarkerBatch batch = new ProblemMarkerBatch(null);
+		batch.add(file, problems(IMarkerConstants.PROBLEM_MARKER, error("a", 0, 1)));
+		batch.apply(new NullProgressMonitor());
+
+		batch.add(file, problems(IMarkerConstants.PROBLEM_MARKER));
+		batch.apply(new NullProgressMonitor());
+
+		assertEquals(0, findMarkers(IMarkerConstants.PROBLEM_MARKER).length);
+		assertEquals(1, batch.getRemovedCount());
+	}
+
+	public void testLeavesOtherMarkerTypes() throws Exception
+	{
+		ProblemMarkerBatch batch = new ProblemMarkerBatch(null);
+		batch.add(file, problems(IMarkerConstants.TASK_MARKER, warning("TODO", 0, 4)));
+		batch.apply(new NullProgressMonitor());
+
+		batch.add(file, problems(IMarkerConstants.PROBLEM_MARKER, error("a", 0, 1)));
+		batch.apply(new NullProgressMonitor());
+
+		assertEquals(1, findMarkers(IMarkerConstants.TASK_MARKER).length);
+		assertEquals(1, findMarkers(IMarkerConstants.PROBLEM_MARKER).length);
+	}
+
+	public void testSingleDeltaPerBatch() throws Exception
+	{
+		ProblemMarkerBatch batch = new ProblemMarkerBatch(null);
+		for (int i = 0; i < 5; i++)
+		{
+			batch.add(createFile("file" + i + ".js"), problems(IMarkerConstants.PROBLEM_MARKER, error("a", 0, 1)));
+		}
+
+		final int[] events = new int[1];
+		IResourceChangeListener listener = new IResourceChangeListener()
+		{
+			public void resourceChanged(IResourceChangeEvent event)
+			{
+				events[0]++;
+			}
+		};
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+		workspace.addResourceChangeListener(listener, IResourceChangeEvent.POST_CHANGE);
+		try
+		{
+			batch.apply(new NullProgressMonitor());
+		}
+		finally
+		{
+			workspace.removeResourceChangeListener(listener);
+		}
+
+		assertEquals(1, events[0]);
+		assertEquals(5, batch.getAddedCount());
+	}
+
+	private IFile createFile(String name) throws CoreException
+	{
+		IFile file = project.getFile(name);
+		file.create(new ByteArrayInputStream("var a = 1;".getBytes()), true, null);
+		return file;
+	}
+
+	private IMarker[] findMarkers(String type) throws CoreException
+	{
+		return file.findMarkers(type, false, IResource.DEPTH_ZERO);
+	}
+
+	private Map<String, Collection<IProblem>> problems(String type, IProblem... problems)
+	{
+		Collection<IProblem> list = new ArrayList<IProblem>();
+		for (IProblem problem : problems)
+		{
+			list.add(problem);
+		}
+		Map<String, Collection<IProblem>> result = new HashMap<String, Collection<IProblem>>();
+		result.put(type, list);
+		return result;
+	}
+
+	private IProblem error(String message, int offset, int length)
+	{
+		return new Problem(IMarker.SEVERITY_ERROR, message, offset, length, 1, file.getLocationURI().toString());
+	}
+
+	private IProblem warning(String message, int offset, int length)
+	{
+		return new Problem(IMarker.SEVERITY_WARNING, message, offset, length, 1, file.getLocationURI().toString());
+	}
+}
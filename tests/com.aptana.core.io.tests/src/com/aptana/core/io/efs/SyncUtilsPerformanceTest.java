@@ -0,0 +1,148 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.io.efs;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.test.performance.PerformanceTestCase;
+
+import com.aptana.core.util.FileUtil;
+
+/**
+ * Measures the throughput of copies of many small files and of a few large ones.
+ */
+@SuppressWarnings("nls")
+public class SyncUtilsPerformanceTest extends PerformanceTestCase
+{
+
+	private static final int SMALL_FILES = 500;
+	private static final int SMALL_FILE_SIZE = 4 * 1024;
+	private static final int LARGE_FILES = 3;
+	private static final int LARGE_FILE_SIZE = 16 * 1024 * 1024;
+
+	private File dir;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		dir = File.createTempFile("syncperf", "test");
+		dir.delete();
+		dir.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		FileUtil.deleteRecursively(dir);
+		dir = null;
+		super.tearDown();
+	}
+
+	private IFileStore[] createFiles(String name, int count, int size) throws IOException
+	{
+		File sourceDir = new File(dir, name);
+		sourceDir.mkdirs();
+		byte[] data = SyncUtilsTest.data(size);
+		IFileStore[] stores = new IFileStore[count];
+		for (int i = 0; i < count; ++i)
+		{
+			File file = new File(sourceDir, "file" + i);
+			OutputStream out = new FileOutputStream(file);
+			try
+			{
+				out.write(data);
+			}
+			finally
+			{
+				out.close();
+			}
+			stores[i] = EFS.getLocalFileSystem().fromLocalFile(file);
+		}
+		return stores;
+	}
+
+	private void copyFiles(IFileStore[] sources, int iterations) throws Exception
+	{
+		IFileStore destinationDir = EFS.getLocalFileSystem().fromLocalFile(new File(dir, "copies"));
+		destinationDir.mkdir(EFS.NONE, null);
+		for (int i = 0; i < iterations; ++i)
+		{
+			startMeasuring();
+			for (IFileStore source : sources)
+			{
+				SyncUtils.copy(source, null, destinationDir.getChild(source.getName()), EFS.NONE, null);
+			}
+			stopMeasuring();
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	public void testCopyManySmallFiles() throws Exception
+	{
+		copyFiles(createFiles("small", SMALL_FILES, SMALL_FILE_SIZE), 10);
+	}
+
+	public void testCopyLargeFiles() throws Exception
+	{
+		copyFiles(createFiles("large", LARGE_FILES, LARGE_FILE_SIZE), 5);
+	}
+
+	/**
+	 * Transfers large files between streams of unknown types, as to and from remote connections.
+	 */
+	public void testTransferLargeStreams() throws Exception
+	{
+		IFileStore store = EFS.getLocalFileSystem().fromLocalFile(dir);
+		byte[] data = SyncUtilsTest.data(LARGE_FILE_SIZE);
+		for (int i = 0; i < 5; ++i)
+		{
+			startMeasuring();
+			for (int j = 0; j < LARGE_FILES; ++j)
+			{
+				FileTransfer.create(store, store, new FilterInputStream(new ByteArrayInputStream(data))
+				{
+				}, new FilterOutputStream(new NullOutputStream())
+				{
+					@Override
+					public void write(byte[] b, int off, int len) throws IOException
+					{
+						out.write(b, off, len);
+					}
+				}, data.length).transfer(new NullProgressMonitor());
+			}
+			stopMeasuring();
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	private static class NullOutputStream extends OutputStream
+	{
+
+		@Override
+		public void write(int b)
+		{
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len)
+		{
+		}
+	}
+}
@@ -0,0 +1,256 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.io.efs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import com.aptana.core.util.FileUtil;
+
+@SuppressWarnings("nls")
+public class SyncUtilsTest extends TestCase
+{
+
+	private File dir;
+	private IFileStore sourceStore;
+	private IFileStore destinationStore;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		dir = File.createTempFile("sync", "test");
+		dir.delete();
+		dir.mkdirs();
+		sourceStore = EFS.getLocalFileSystem().fromLocalFile(new File(dir, "source"));
+		destinationStore = EFS.getLocalFileSystem().fromLocalFile(new File(dir, "destination"));
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		System.clearProperty(FileTransfer.MAX_BUFFER_SIZE_PROPERTY);
+		System.clearProperty(FileTransfer.READ_AHEAD_BUFFERS_PROPERTY);
+		FileUtil.deleteRecursively(dir);
+		dir = null;
+		sourceStore = null;
+		destinationStore = null;
+		super.tearDown();
+	}
+
+	static byte[] data(int size)
+	{
+		byte[] data = new byte[size];
+		for (int i = 0; i < size; ++i)
+		{
+			data[i] = (byte) (i * 31 + i / 251);
+		}
+		return data;
+	}
+
+	private static void write(File file, byte[] data) throws IOException
+	{
+		OutputStream out = new FileOutputStream(file);
+		try
+		{
+			out.write(data);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	private static byte[] read(IFileStore store) throws Exception
+	{
+		InputStream in = store.openInputStream(EFS.NONE, null);
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1)
+			{
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * Hides the type of a file stream, as remote streams would.
+	 */
+	private static InputStream remote(InputStream in)
+	{
+		return new FilterInputStream(in)
+		{
+		};
+	}
+
+	private byte[] transfer(byte[] data, long length) throws CoreException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		FileTransfer.create(sourceStore, destinationStore, remote(new ByteArrayInputStream(data)), out, length)
+				.transfer(new NullProgressMonitor());
+		return out.toByteArray();
+	}
+
+	public void testCopyLocalFile() throws Exception
+	{
+		byte[] data = data(3 * 1024 * 1024 + 17);
+		write(sourceStore.toLocalFile(EFS.NONE, null), data);
+
+		SyncUtils.copy(sourceStore, null, destinationStore, EFS.NONE, null);
+
+		assertTrue(Arrays.equals(data, read(destinationStore)));
+	}
+
+	public void testCopyEmptyLocalFile() throws Exception
+	{
+		write(sourceStore.toLocalFile(EFS.NONE, null), new byte[0]);
+
+		SyncUtils.copy(sourceStore, null, destinationStore, EFS.NONE, null);
+
+		assertTrue(destinationStore.fetchInfo().exists());
+		assertEquals(0, destinationStore.fetchInfo().getLength());
+	}
+
+	public void testCopyOverLongerFile() throws Exception
+	{
+		byte[] data = data(1000);
+		write(sourceStore.toLocalFile(EFS.NONE, null), data);
+		write(destinationStore.toLocalFile(EFS.NONE, null), data(5000));
+
+		SyncUtils.copy(sourceStore, null, destinationStore, EFS.NONE, null);
+
+		assertTrue(Arrays.equals(data, read(destinationStore)));
+	}
+
+	public void testBufferedTransfer() throws Exception
+	{
+		System.setProperty(FileTransfer.READ_AHEAD_BUFFERS_PROPERTY, "0");
+		byte[] data = data(FileTransfer.MIN_BUFFER_SIZE * 100 + 3);
+		assertTrue(Arrays.equals(data, transfer(data, data.length)));
+		assertTrue(Arrays.equals(data, transfer(data, -1)));
+		assertEquals(0, transfer(new byte[0], 0).length);
+	}
+
+	public void testReadAheadTransfer() throws Exception
+	{
+		System.setProperty(FileTransfer.MAX_BUFFER_SIZE_PROPERTY, Integer.toString(FileTransfer.MIN_BUFFER_SIZE * 4));
+		byte[] data = data(FileTransfer.MIN_BUFFER_SIZE * 100 + 3);
+		assertTrue(Arrays.equals(data, transfer(data, data.length)));
+		assertTrue(Arrays.equals(data, transfer(data, -1)));
+		assertEquals(0, transfer(new byte[0], -1).length);
+	}
+
+	public void testReadAheadTransferReportsReadErrors() throws Exception
+	{
+		System.setProperty(FileTransfer.MAX_BUFFER_SIZE_PROPERTY, Integer.toString(FileTransfer.MIN_BUFFER_SIZE));
+		InputStream in = new FilterInputStream(new ByteArrayInputStream(data(FileTransfer.MIN_BUFFER_SIZE * 10)))
+		{
+			private int count;
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException
+			{
+				if (++count > 3)
+				{
+					throw new IOException("broken");
+				}
+				return super.read(b, off, len);
+			}
+		};
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try
+		{
+			FileTransfer.create(sourceStore, destinationStore, in, out, -1).transfer(new NullProgressMonitor());
+			fail("The read error was not reported");
+		}
+		catch (CoreException e)
+		{
+			assertEquals("broken", e.getStatus().getException().getMessage());
+		}
+		assertEquals(FileTransfer.MIN_BUFFER_SIZE * 3, out.size());
+	}
+
+	public void testCancelReleasesBlockedReadAhead() throws Exception
+	{
+		final NullProgressMonitor monitor = new NullProgressMonitor();
+		final CountDownLatch closed = new CountDownLatch(1);
+		final AtomicBoolean readDone = new AtomicBoolean();
+		InputStream in = new InputStream()
+		{
+			@Override
+			public int read() throws IOException
+			{
+				return read(new byte[1], 0, 1);
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException
+			{
+				// blocks like a stalled connection, until the stream is closed
+				monitor.setCanceled(true);
+				try
+				{
+					closed.await();
+					Thread.sleep(100);
+					throw new IOException("closed");
+				}
+				catch (InterruptedException e)
+				{
+					throw new InterruptedIOException();
+				}
+				finally
+				{
+					readDone.set(true);
+				}
+			}
+
+			@Override
+			public void close()
+			{
+				closed.countDown();
+			}
+		};
+		try
+		{
+			FileTransfer.create(sourceStore, destinationStore, in, new ByteArrayOutputStream(), -1).transfer(monitor);
+			fail("The transfer was not cancelled");
+		}
+		catch (OperationCanceledException e)
+		{
+			// expected
+		}
+		assertEquals(0, closed.getCount());
+		assertTrue("The transfer returned before the read-ahead was done", readDone.get());
+	}
+}
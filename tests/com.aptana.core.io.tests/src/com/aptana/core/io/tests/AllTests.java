@@ -1,12 +1,13 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
  */
 package com.aptana.core.io.tests;
 
+import com.aptana.core.io.efs.SyncUtilsTest;
 import com.aptana.ide.core.io.preferences.CloakingUtilsTest;
 
 import junit.framework.Test;
@@ -33,6 +34,7 @@ public class AllTests
 		suite.addTestSuite(WorkspaceConnectionPointTest.class);
 		suite.addTestSuite(ConnectionPointManagerTest.class);
 		suite.addTestSuite(CloakingUtilsTest.class);
+		suite.addTestSuite(SyncUtilsTest.class);
 		// $JUnit-END$
 		return suite;
 	}
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -21,8 +21,10 @@ import java.io.Reader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Properties;
 import java.util.Random;
 
@@ -40,6 +42,7 @@ import org.eclipse.core.runtime.Path;
 import com.aptana.core.io.vfs.ExtendedFileInfo;
 import com.aptana.core.io.vfs.IExtendedFileInfo;
 import com.aptana.core.io.vfs.IExtendedFileStore;
+import com.aptana.core.io.vfs.IFileTreeVisitor;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.ide.core.io.ConnectionContext;
 import com.aptana.ide.core.io.CoreIOPlugin;
@@ -1122,4 +1125,43 @@ public abstract class CommonConnectionTest extends TestCase
 			assertNotNull(fs);
 		}
 	}
+
+	public final void testFetchTreeWithVisitor() throws CoreException, IOException
+	{
+		IFileStore fs = cp.getRoot().getFileStore(testPath);
+		assertNotNull(fs);
+		fs.getChild("folder1/folder2").mkdir(EFS.NONE, null);
+		fs.getChild("skipped/folder3").mkdir(EFS.NONE, null);
+		fs.getChild("file1").openOutputStream(EFS.NONE, null).close();
+		fs.getChild("folder1/file2").openOutputStream(EFS.NONE, null).close();
+		fs.getChild("skipped/file3").openOutputStream(EFS.NONE, null).close();
+
+		final List<String> visited = new ArrayList<String>();
+		IFileTree ft = ((IExtendedFileStore) fs).fetchFileTree(new IFileTreeVisitor()
+		{
+			public boolean include(IFileStore store) throws CoreException
+			{
+				visited.add(store.getName());
+				return !"skipped".equals(store.getName());
+			}
+		}, null);
+		assertNotNull(ft);
+		assertEquals(fs, ft.getTreeRoot());
+
+		IFileStore[] fslist = ft.getChildStores(fs);
+		IFileInfo[] filist = ft.getChildInfos(fs);
+		assertEquals(2, fslist.length);
+		assertEquals(fslist.length, filist.length);
+		for (int i = 0; i < fslist.length; ++i)
+		{
+			assertEquals(fslist[i].getName(), filist[i].getName());
+			assertFalse("skipped".equals(filist[i].getName()));
+		}
+		IFileStore folder1 = fs.getChild("folder1");
+		assertEquals(2, ft.getChildInfos(folder1).length);
+		assertEquals(0, ft.getChildInfos(folder1.getChild("folder2")).length);
+		assertFalse(visited.contains("file3"));
+		assertFalse(visited.contains("folder3"));
+		assertTrue(visited.contains("file2"));
+	}
 }
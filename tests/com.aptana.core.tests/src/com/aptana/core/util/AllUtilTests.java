@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -18,6 +18,7 @@ public class AllUtilTests
 		TestSuite suite = new TestSuite("Test for com.aptana.core.util");
 		// $JUnit-BEGIN$
 		suite.addTestSuite(ArrayUtilTest.class);
+		suite.addTestSuite(AsyncProcessTest.class);
 		suite.addTestSuite(BrowserUtilTest.class);
 		suite.addTestSuite(ClassUtilTest.class);
 		suite.addTestSuite(CollectionsUtilTest.class);
@@ -29,6 +30,7 @@ public class AllUtilTests
 		suite.addTestSuite(ImmutableTupleNTest.class);
 		suite.addTestSuite(InputStreamGobblerTest.class);
 		suite.addTestSuite(IOUtilTest.class);
+		suite.addTestSuite(ObjectPoolTest.class);
 		suite.addTestSuite(ObjectUtilTest.class);
 		suite.addTestSuite(OutputStreamThreadTest.class);
 		suite.addTestSuite(PlatformUtilTest.class);
@@ -0,0 +1,248 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Platform;
+
+public class AsyncProcessTest extends TestCase
+{
+
+	private static final long WAIT_TIME = 30000;
+
+	private static class CollectingListener extends LineOutputListener
+	{
+		private final List<String> stdout = Collections.synchronizedList(new ArrayList<String>());
+		private final List<String> stderr = Collections.synchronizedList(new ArrayList<String>());
+		private long bytes;
+		private IStatus status;
+		private int finishedCount;
+
+		CollectingListener()
+		{
+			super();
+		}
+
+		CollectingListener(byte terminator)
+		{
+			super(IOUtil.UTF_8, terminator);
+		}
+
+		@Override
+		public void bytesRead(int stream, byte[] buffer, int offset, int length)
+		{
+			bytes += length;
+			super.bytesRead(stream, buffer, offset, length);
+		}
+
+		@Override
+		protected void lineRead(int stream, String line)
+		{
+			if (stream == STDOUT)
+			{
+				stdout.add(line);
+			}
+			else
+			{
+				stderr.add(line);
+			}
+		}
+
+		@Override
+		protected void finished(IStatus status)
+		{
+			this.status = status;
+			finishedCount++;
+		}
+	}
+
+	private AsyncProcess runScript(String script, CollectingListener listener, long timeout,
+			NullProgressMonitor monitor) throws Exception
+	{
+		return ProcessUtil.runAsync("/bin/sh", null, null, listener, timeout, monitor, "-c", script); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	@Override
+	protected void runTest() throws Throwable
+	{
+		// the scripts need a POSIX shell
+		if (!Platform.OS_WIN32.equals(Platform.getOS()))
+		{
+			super.runTest();
+		}
+	}
+
+	public void testLargeOutputIsStreamedLineByLine() throws Exception
+	{
+		CollectingListener listener = new CollectingListener();
+		AsyncProcess process = runScript("i=0; while [ $i -lt 20000 ]; do echo \"line $i\"; i=$((i+1)); done", //$NON-NLS-1$
+				listener, 0, null);
+
+		IStatus status = process.waitFor(WAIT_TIME);
+		assertNotNull("Process did not finish", status); //$NON-NLS-1$
+		assertTrue(process.isDone());
+		assertEquals(IStatus.OK, status.getSeverity());
+		assertEquals(0, status.getCode());
+		assertSame(status, listener.status);
+		assertEquals(1, listener.finishedCount);
+		assertEquals(20000, listener.stdout.size());
+		assertEquals("line 0", listener.stdout.get(0)); //$NON-NLS-1$
+		assertEquals("line 19999", listener.stdout.get(19999)); //$NON-NLS-1$
+		assertTrue(listener.stderr.isEmpty());
+	}
+
+	public void testStderrAndLastLineWithoutNewline() throws Exception
+	{
+		CollectingListener listener = new CollectingListener();
+		AsyncProcess process = runScript("echo out; echo err 1>&2; printf 'last\\r\\nno newline'; exit 3", //$NON-NLS-1$
+				listener, 0, null);
+
+		IStatus status = process.waitFor(WAIT_TIME);
+		assertNotNull("Process did not finish", status); //$NON-NLS-1$
+		assertEquals(IStatus.ERROR, status.getSeverity());
+		assertEquals(3, status.getCode());
+		assertEquals(CollectionsUtil.newList("out", "last", "no newline"), listener.stdout); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertEquals(CollectionsUtil.newList("err"), listener.stderr); //$NON-NLS-1$
+		assertEquals(24, listener.bytes);
+	}
+
+	public void testNulTerminatedRecords() throws Exception
+	{
+		CollectingListener listener = new CollectingListener((byte) 0);
+		AsyncProcess process = runScript("printf 'a b\\r\\n\\000c\\000\\000d\\000'", listener, 0, null); //$NON-NLS-1$
+
+		IStatus status = process.waitFor(WAIT_TIME);
+		assertNotNull("Process did not finish", status); //$NON-NLS-1$
+		assertEquals(CollectionsUtil.newList("a b\r\n", "c", "", "d"), listener.stdout); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	}
+
+	public void testTimeoutDestroysProcess() throws Exception
+	{
+		CollectingListener listener = new CollectingListener();
+		long start = System.currentTimeMillis();
+		AsyncProcess process = runScript("echo started; exec sleep 30", listener, 300, null); //$NON-NLS-1$
+
+		IStatus status = process.waitFor(WAIT_TIME);
+		assertNotNull("Process did not finish", status); //$NON-NLS-1$
+		assertTrue(System.currentTimeMillis() - start < 10000);
+		assertEquals(IStatus.ERROR, status.getSeverity());
+		assertTrue(status.getCode() != 0);
+		assertEquals(CollectionsUtil.newList("started"), listener.stdout); //$NON-NLS-1$
+	}
+
+	public void testCancellingMonitorDestroysProcess() throws Exception
+	{
+		CollectingListener listener = new CollectingListener();
+		NullProgressMonitor monitor = new NullProgressMonitor();
+		AsyncProcess process = runScript("exec sleep 30", listener, 0, monitor); //$NON-NLS-1$
+
+		assertNull(process.waitFor(200));
+		assertFalse(process.isDone());
+		monitor.setCanceled(true);
+
+		IStatus status = process.waitFor(WAIT_TIME);
+		assertNotNull("Process did not finish", status); //$NON-NLS-1$
+		assertEquals(IStatus.CANCEL, status.getSeverity());
+	}
+
+	public void testCancel() throws Exception
+	{
+		CollectingListener listener = new CollectingListener();
+		AsyncProcess process = runScript("exec sleep 30", listener, 0, null); //$NON-NLS-1$
+		process.cancel();
+
+		IStatus status = process.waitFor(WAIT_TIME);
+		assertNotNull("Process did not finish", status); //$NON-NLS-1$
+		assertEquals(IStatus.CANCEL, status.getSeverity());
+		assertEquals(1, listener.finishedCount);
+	}
+
+	public void testSlowListenerGetsAllOutput() throws Exception
+	{
+		CollectingListener listener = new CollectingListener()
+		{
+			@Override
+			protected void lineRead(int stream, String line)
+			{
+				try
+				{
+					Thread.sleep(1);
+				}
+				catch (InterruptedException e)
+				{
+					// go on
+				}
+				super.lineRead(stream, line);
+			}
+		};
+		AsyncProcess process = runScript(
+				"i=0; while [ $i -lt 500 ]; do echo \"out $i\"; echo \"err $i\" 1>&2; i=$((i+1)); done", //$NON-NLS-1$
+				listener, 0, null);
+
+		IStatus status = process.waitFor(WAIT_TIME);
+		assertNotNull("Process did not finish", status); //$NON-NLS-1$
+		assertEquals(IStatus.OK, status.getSeverity());
+		assertEquals(500, listener.stdout.size());
+		assertEquals(500, listener.stderr.size());
+		assertEquals("out 499", listener.stdout.get(499)); //$NON-NLS-1$
+		assertEquals("err 499", listener.stderr.get(499)); //$NON-NLS-1$
+	}
+
+	public void testSlowListenerGetsOutputLeftAfterExit() throws Exception
+	{
+		CollectingListener listener = new CollectingListener()
+		{
+			@Override
+			protected void lineRead(int stream, String line)
+			{
+				try
+				{
+					Thread.sleep(10);
+				}
+				catch (InterruptedException e)
+				{
+					// go on
+				}
+				super.lineRead(stream, line);
+			}
+		};
+		// the process is over long before the listener took its output
+		AsyncProcess process = runScript("i=0; while [ $i -lt 300 ]; do echo \"line $i\"; i=$((i+1)); done", //$NON-NLS-1$
+				listener, 0, null);
+
+		IStatus status = process.waitFor(WAIT_TIME);
+		assertNotNull("Process did not finish", status); //$NON-NLS-1$
+		assertEquals(IStatus.OK, status.getSeverity());
+		assertEquals(300, listener.stdout.size());
+		assertEquals("line 299", listener.stdout.get(299)); //$NON-NLS-1$
+	}
+
+	public void testListenerFailureCancelsProcess() throws Exception
+	{
+		CollectingListener listener = new CollectingListener()
+		{
+			@Override
+			protected void lineRead(int stream, String line)
+			{
+				throw new IllegalStateException(line);
+			}
+		};
+		AsyncProcess process = runScript("echo boom; exec sleep 30", listener, 0, null); //$NON-NLS-1$
+
+		IStatus status = process.waitFor(WAIT_TIME);
+		assertNotNull("Process did not finish", status); //$NON-NLS-1$
+		assertEquals(IStatus.CANCEL, status.getSeverity());
+	}
+}
@@ -0,0 +1,345 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class ObjectPoolTest extends TestCase
+{
+
+	private static class Item
+	{
+		private final int id;
+		private boolean valid = true;
+		private boolean expired;
+		private final AtomicInteger users = new AtomicInteger();
+
+		private Item(int id)
+		{
+			this.id = id;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Item " + id; //$NON-NLS-1$
+		}
+	}
+
+	private static class TestObjectPool extends ObjectPool<Item>
+	{
+		private final AtomicInteger ids = new AtomicInteger();
+		private final List<Item> expired = Collections.synchronizedList(new ArrayList<Item>());
+
+		private TestObjectPool(int expirationTime)
+		{
+			super(expirationTime);
+		}
+
+		@Override
+		public Item create()
+		{
+			return new Item(ids.incrementAndGet());
+		}
+
+		@Override
+		public boolean validate(Item o)
+		{
+			return o.valid;
+		}
+
+		@Override
+		public void expire(Item o)
+		{
+			o.expired = true;
+			expired.add(o);
+		}
+	}
+
+	private static class TestReapingPool extends ReapingObjectPool<Item>
+	{
+		private int ids;
+
+		private TestReapingPool(int expirationTime)
+		{
+			super(expirationTime);
+		}
+
+		@Override
+		public Item create()
+		{
+			return new Item(++ids);
+		}
+
+		@Override
+		public boolean validate(Item o)
+		{
+			// Always keep one available item, as the parser pool does
+			return unlockedItems() == 1;
+		}
+
+		@Override
+		public void expire(Item o)
+		{
+			o.expired = true;
+		}
+	}
+
+	private static class TestKeepAlivePool extends KeepAliveObjectPool<Item>
+	{
+		private final AtomicInteger ids = new AtomicInteger();
+		private final Set<String> errors = Collections.synchronizedSet(new HashSet<String>());
+		private boolean disposeOnValidate;
+
+		private TestKeepAlivePool()
+		{
+			super(Integer.MAX_VALUE);
+		}
+
+		public Item create()
+		{
+			return new Item(ids.incrementAndGet());
+		}
+
+		public boolean validate(Item o)
+		{
+			// like a keep-alive request, which must not share the connection with the thread using it
+			if (o.users.incrementAndGet() != 1)
+			{
+				errors.add(o + " validated while in use"); //$NON-NLS-1$
+			}
+			Thread.yield();
+			o.users.decrementAndGet();
+			if (disposeOnValidate)
+			{
+				dispose();
+			}
+			return true;
+		}
+
+		public void expire(Item o)
+		{
+			o.expired = true;
+		}
+	}
+
+	public void testCheckOutReusesCheckedInInstance()
+	{
+		TestObjectPool pool = new TestObjectPool(-1);
+		Item item = pool.checkOut();
+		pool.checkIn(item);
+
+		assertSame(item, pool.checkOut());
+		assertEquals(1, pool.getCreatedCount());
+		assertEquals(2, pool.getBorrowCount());
+		assertEquals(1, pool.getCheckedOutCount());
+		assertEquals(0, pool.getIdleCount());
+	}
+
+	public void testInvalidInstanceIsExpiredOnCheckOut()
+	{
+		TestObjectPool pool = new TestObjectPool(-1);
+		Item item = pool.checkOut();
+		pool.checkIn(item);
+		item.valid = false;
+
+		Item other = pool.checkOut();
+		assertNotSame(item, other);
+		assertTrue(item.expired);
+		assertEquals(1, pool.getExpiredCount());
+		assertEquals(2, pool.getCreatedCount());
+	}
+
+	public void testOldInstanceIsExpiredOnCheckOut() throws Exception
+	{
+		TestObjectPool pool = new TestObjectPool(10);
+		Item item = pool.checkOut();
+		pool.checkIn(item);
+		Thread.sleep(50);
+
+		assertNotSame(item, pool.checkOut());
+		assertTrue(item.expired);
+	}
+
+	public void testIdleInstancesAreBounded()
+	{
+		TestObjectPool pool = new TestObjectPool(-1);
+		List<Item> items = new ArrayList<Item>();
+		for (int i = 0; i < pool.getMaxIdle() + 3; i++)
+		{
+			items.add(pool.checkOut());
+		}
+		for (Item item : items)
+		{
+			pool.checkIn(item);
+		}
+
+		assertEquals(pool.getMaxIdle(), pool.getIdleCount());
+		assertEquals(3, pool.getExpiredCount());
+		assertEquals(0, pool.getCheckedOutCount());
+	}
+
+	public void testDisposeExpiresIdleInstances()
+	{
+		TestObjectPool pool = new TestObjectPool(-1);
+		Item first = pool.checkOut();
+		Item second = pool.checkOut();
+		pool.checkIn(first);
+		pool.checkIn(second);
+		pool.dispose();
+
+		assertTrue(first.expired);
+		assertTrue(second.expired);
+		assertEquals(0, pool.getIdleCount());
+	}
+
+	public void testCheckInAfterDisposeExpiresInstance()
+	{
+		TestObjectPool pool = new TestObjectPool(-1);
+		Item item = pool.checkOut();
+		pool.dispose();
+		pool.checkIn(item);
+
+		assertTrue(item.expired);
+		assertEquals(0, pool.getIdleCount());
+	}
+
+	public void testInstanceKeptByReapDuringDisposeIsExpired()
+	{
+		TestKeepAlivePool pool = new TestKeepAlivePool();
+		Item item = pool.checkOut();
+		pool.checkIn(item);
+		// the reaper puts the valid instance back after dispose drained the idle instances
+		pool.disposeOnValidate = true;
+		pool.reap();
+
+		assertTrue(item.expired);
+		assertEquals(0, pool.getIdleCount());
+	}
+
+	public void testReapKeepsOneIdleInstance() throws Exception
+	{
+		TestReapingPool pool = new TestReapingPool(10);
+		Item first = pool.checkOut();
+		Item second = pool.checkOut();
+		Item third = pool.checkOut();
+		pool.checkIn(first);
+		pool.checkIn(second);
+		pool.checkIn(third);
+		Thread.sleep(50);
+
+		pool.reap();
+
+		assertEquals(1, pool.getIdleCount());
+		assertTrue(first.expired);
+		assertTrue(second.expired);
+		assertFalse(third.expired);
+		assertSame(third, pool.checkOut());
+	}
+
+	public void testConcurrentCheckOutNeverSharesInstances() throws Exception
+	{
+		final TestObjectPool pool = new TestObjectPool(-1);
+		final Set<String> errors = Collections.synchronizedSet(new HashSet<String>());
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 8; i++)
+		{
+			threads.add(new Thread()
+			{
+				@Override
+				public void run()
+				{
+					for (int j = 0; j < 2000; j++)
+					{
+						Item item = pool.checkOut();
+						if (item.users.incrementAndGet() != 1)
+						{
+							errors.add(item + " checked out twice"); //$NON-NLS-1$
+						}
+						if (item.expired)
+						{
+							errors.add(item + " checked out after expiring"); //$NON-NLS-1$
+						}
+						item.users.decrementAndGet();
+						pool.checkIn(item);
+					}
+				}
+			});
+		}
+		for (Thread thread : threads)
+		{
+			thread.start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+
+		assertTrue(errors.toString(), errors.isEmpty());
+		assertEquals(0, pool.getCheckedOutCount());
+		assertEquals(16000, pool.getBorrowCount());
+		assertTrue(pool.getCreatedCount() <= 8 + pool.getExpiredCount());
+		assertTrue(pool.getMaxBorrowTime() >= pool.getAverageBorrowTime());
+	}
+
+	public void testReapDoesNotValidateCheckedOutInstances() throws Exception
+	{
+		final TestKeepAlivePool pool = new TestKeepAlivePool();
+		final Set<String> errors = pool.errors;
+		final AtomicInteger running = new AtomicInteger();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 4; i++)
+		{
+			threads.add(new Thread()
+			{
+				@Override
+				public void run()
+				{
+					for (int j = 0; j < 2000; j++)
+					{
+						Item item = pool.checkOut();
+						if (item.users.incrementAndGet() != 1)
+						{
+							errors.add(item + " used while validated or checked out"); //$NON-NLS-1$
+						}
+						Thread.yield();
+						item.users.decrementAndGet();
+						pool.checkIn(item);
+					}
+					running.decrementAndGet();
+				}
+			});
+		}
+		running.set(threads.size());
+		for (Thread thread : threads)
+		{
+			thread.start();
+		}
+		while (running.get() > 0)
+		{
+			pool.reap();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+		pool.reap();
+
+		assertTrue(errors.toString(), errors.isEmpty());
+		assertEquals(0, pool.getCheckedOutCount());
+		assertEquals(0, pool.getExpiredCount());
+		assertEquals(pool.getCreatedCount(), pool.getIdleCount());
+	}
+}
@@ -1,20 +1,41 @@
 package com.aptana.editor.common.text.reconciler;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 import junit.framework.TestCase;
 
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.TypedRegion;
 import org.eclipse.ui.IPropertyListener;
 import org.jmock.Expectations;
 import org.jmock.Mockery;
 import org.jmock.lib.legacy.ClassImposteriser;
 
+import com.aptana.core.build.AbstractBuildParticipant;
+import com.aptana.core.build.IBuildParticipant;
+import com.aptana.core.build.IBuildParticipant.BuildType;
+import com.aptana.core.build.IBuildParticipantManager;
+import com.aptana.core.build.IProblem;
+import com.aptana.core.build.Problem;
+import com.aptana.core.build.ReconcileContext;
 import com.aptana.editor.common.AbstractThemeableEditor;
+import com.aptana.index.core.build.BuildContext;
+import com.aptana.parsing.ast.IParseRootNode;
 
 public class CommonReconcilingStrategyTest extends TestCase
 {
 
 	private Mockery context;
 	private AbstractThemeableEditor editor;
+	private IBuildParticipantManager manager;
 
 	protected void setUp() throws Exception
 	{
@@ -27,6 +48,7 @@ public class CommonReconcilingStrategyTest extends TestCase
 			}
 		};
 		editor = context.mock(AbstractThemeableEditor.class);
+		manager = context.mock(IBuildParticipantManager.class);
 	}
 
 	protected void tearDown() throws Exception
@@ -34,6 +56,7 @@ public class CommonReconcilingStrategyTest extends TestCase
 		try
 		{
 			editor = null;
+			manager = null;
 			context = null;
 		}
 		finally
@@ -59,4 +82,269 @@ public class CommonReconcilingStrategyTest extends TestCase
 		context.assertIsSatisfied();
 	}
 
+	public void testSkipsFoldingAndValidationOfUnchangedDocument() throws Exception
+	{
+		TestParticipant participant = new TestParticipant(0);
+		expectReconciles(true, participant);
+
+		TestReconcilingStrategy strategy = new TestReconcilingStrategy(editor);
+		strategy.setDocument(new Document("var x = 1;"));
+		strategy.fullReconcile();
+		strategy.fullReconcile();
+		strategy.fullReconcile();
+
+		assertEquals(1, strategy.foldings);
+		assertEquals(1, participant.builds.size());
+	}
+
+	public void testReconcilesEditedDocument() throws Exception
+	{
+		TestParticipant participant = new TestParticipant(0);
+		expectReconciles(true, participant);
+
+		IDocument document = new Document("var x = 1;");
+		TestReconcilingStrategy strategy = new TestReconcilingStrategy(editor);
+		strategy.setDocument(document);
+		strategy.fullReconcile();
+		document.replace(0, 3, "let");
+		assertNotNull(strategy.getDirtyRegion());
+		strategy.fullReconcile();
+
+		assertNull(strategy.getDirtyRegion());
+		assertEquals(2, strategy.foldings);
+		assertEquals(2, participant.builds.size());
+	}
+
+	public void testReconcilesAfterInvalidate() throws Exception
+	{
+		TestParticipant participant = new TestParticipant(0);
+		expectReconciles(true, participant);
+
+		TestReconcilingStrategy strategy = new TestReconcilingStrategy(editor);
+		strategy.setDocument(new Document("var x = 1;"));
+		strategy.fullReconcile();
+		strategy.invalidate();
+		strategy.fullReconcile();
+
+		assertEquals(2, strategy.foldings);
+		assertEquals(2, participant.builds.size());
+	}
+
+	public void testRefoldsWhenFoldingIsTurnedOn() throws Exception
+	{
+		final TestParticipant participant = new TestParticipant(0);
+		context.checking(new Expectations()
+		{
+			{
+				allowing(editor).addPropertyListener(with(any(IPropertyListener.class)));
+				allowing(editor).getReconcileAST();
+				will(returnValue(null));
+				allowing(editor).refreshOutline(with(any(IParseRootNode.class)));
+				allowing(editor).getContentType();
+				will(returnValue("text"));
+				allowing(editor).getEditorInput();
+				will(returnValue(null));
+				allowing(editor).getDocumentProvider();
+				will(returnValue(null));
+				allowing(editor).updateFoldingStructure(with(any(Map.class)));
+				exactly(2).of(editor).isFoldingEnabled();
+				will(onConsecutiveCalls(returnValue(false), returnValue(true)));
+				allowing(manager).getBuildParticipants("text");
+				will(returnValue(Collections.<IBuildParticipant> singletonList(participant)));
+			}
+		});
+
+		TestReconcilingStrategy strategy = new TestReconcilingStrategy(editor);
+		strategy.setDocument(new Document("var x = 1;"));
+		strategy.fullReconcile();
+		strategy.fullReconcile();
+
+		assertEquals(1, strategy.foldings);
+		assertEquals(1, participant.builds.size());
+	}
+
+	public void testDefersParticipantOverBudget() throws Exception
+	{
+		TestParticipant participant = new TestParticipant(50);
+		expectReconciles(true, participant);
+
+		IDocument document = new Document("var x = 1;");
+		TestReconcilingStrategy strategy = new TestReconcilingStrategy(editor);
+		strategy.budget = 10;
+		strategy.setDocument(document);
+		strategy.fullReconcile();
+		assertNull(strategy.getDeferredParticipantsJob());
+
+		document.replace(0, 3, "let");
+		strategy.fullReconcile();
+		Job job = strategy.getDeferredParticipantsJob();
+		assertNotNull(job);
+		job.join();
+
+		assertEquals(2, participant.builds.size());
+		assertSame(Thread.currentThread(), participant.builds.get(0));
+		assertNotSame(Thread.currentThread(), participant.builds.get(1));
+	}
+
+	public void testDropsDeferredProblemsOfOlderDocument() throws Exception
+	{
+		TestParticipant participant = new TestParticipant(50);
+		expectReconciles(true, participant);
+
+		IDocument document = new Document("var x = 1;");
+		TestReconcilingStrategy strategy = new TestReconcilingStrategy(editor);
+		strategy.budget = 10;
+		strategy.setDocument(document);
+		strategy.fullReconcile();
+		assertTrue(strategy.reported.containsKey(TestParticipant.MARKER_TYPE));
+
+		document.replace(0, 3, "let");
+		strategy.fullReconcile();
+		strategy.getDeferredParticipantsJob().join();
+		assertTrue(strategy.reported.containsKey(TestParticipant.MARKER_TYPE));
+
+		// the problems found by the job are stale once the document changes, until the next job reports them again
+		document.replace(0, 3, "var");
+		strategy.fullReconcile();
+		assertFalse(strategy.reported.containsKey(TestParticipant.MARKER_TYPE));
+		strategy.getDeferredParticipantsJob().join();
+		assertTrue(strategy.reported.containsKey(TestParticipant.MARKER_TYPE));
+	}
+
+	public void testKeepsParticipantWithinBudget() throws Exception
+	{
+		TestParticipant participant = new TestParticipant(0);
+		expectReconciles(true, participant);
+
+		IDocument document = new Document("var x = 1;");
+		TestReconcilingStrategy strategy = new TestReconcilingStrategy(editor);
+		strategy.budget = 1000;
+		strategy.setDocument(document);
+		strategy.fullReconcile();
+		document.replace(0, 3, "let");
+		strategy.fullReconcile();
+
+		assertNull(strategy.getDeferredParticipantsJob());
+		assertEquals(2, participant.builds.size());
+		assertSame(Thread.currentThread(), participant.builds.get(1));
+	}
+
+	private void expectReconciles(final boolean foldingEnabled, final IBuildParticipant participant)
+	{
+		context.checking(new Expectations()
+		{
+			{
+				allowing(editor).addPropertyListener(with(any(IPropertyListener.class)));
+				allowing(editor).getReconcileAST();
+				will(returnValue(null));
+				allowing(editor).refreshOutline(with(any(IParseRootNode.class)));
+				allowing(editor).getContentType();
+				will(returnValue("text"));
+				allowing(editor).getEditorInput();
+				will(returnValue(null));
+				allowing(editor).getDocumentProvider();
+				will(returnValue(null));
+				allowing(editor).isFoldingEnabled();
+				will(returnValue(foldingEnabled));
+				allowing(manager).getBuildParticipants("text");
+				will(returnValue(Collections.singletonList(participant)));
+			}
+		});
+	}
+
+	private class TestReconcilingStrategy extends CommonReconcilingStrategy
+	{
+		int foldings;
+		long budget;
+		volatile Map<String, Collection<IProblem>> reported = Collections.emptyMap();
+
+		TestReconcilingStrategy(AbstractThemeableEditor editor)
+		{
+			super(editor);
+		}
+
+		@Override
+		protected IFoldingComputer createFoldingComputer(IDocument document)
+		{
+			return null;
+		}
+
+		@Override
+		protected void calculatePositions(boolean initialReconcile, IProgressMonitor monitor, IParseRootNode ast)
+		{
+			foldings++;
+		}
+
+		@Override
+		protected IBuildParticipantManager getBuildParticipantManager()
+		{
+			return manager;
+		}
+
+		@Override
+		protected ReconcileContext createContext()
+		{
+			return new ReconcileContext("text", (IFile) null, getDocument().get());
+		}
+
+		@Override
+		protected long getParticipantBudget()
+		{
+			return budget;
+		}
+
+		@Override
+		protected void reportProblems(Map<String, Collection<IProblem>> problems, IProgressMonitor monitor)
+		{
+			reported = problems;
+		}
+	}
+
+	/**
+	 * Records the thread of each build, and reports a problem.
+	 */
+	private static class TestParticipant extends AbstractBuildParticipant
+	{
+		static final String MARKER_TYPE = "test.marker";
+
+		final List<Thread> builds = Collections.synchronizedList(new ArrayList<Thread>());
+		private final long delay;
+
+		TestParticipant(long delay)
+		{
+			this.delay = delay;
+		}
+
+		@Override
+		public String getId()
+		{
+			return "test.participant";
+		}
+
+		@Override
+		public boolean isEnabled(BuildType type)
+		{
+			return true;
+		}
+
+		public void buildFile(BuildContext context, IProgressMonitor monitor)
+		{
+			builds.add(Thread.currentThread());
+			context.putProblems(MARKER_TYPE,
+					Collections.<IProblem> singletonList(new Problem(1, "problem", 0, 3, 1, "test.js")));
+			try
+			{
+				Thread.sleep(delay);
+			}
+			catch (InterruptedException e)
+			{
+				// done
+			}
+		}
+
+		public void deleteFile(BuildContext context, IProgressMonitor monitor)
+		{
+		}
+	}
+
 }
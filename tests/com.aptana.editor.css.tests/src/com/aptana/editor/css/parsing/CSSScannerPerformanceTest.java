@@ -17,7 +17,9 @@ import org.eclipse.test.performance.PerformanceTestCase;
 import beaver.Symbol;
 
 import com.aptana.core.util.IOUtil;
+import com.aptana.testing.utils.AllocationCounter;
 
+@SuppressWarnings("nls")
 public class CSSScannerPerformanceTest extends PerformanceTestCase
 {
 	private CSSFlexScanner fScanner;
@@ -93,5 +95,46 @@ public class CSSScannerPerformanceTest extends PerformanceTestCase
 
 		commitMeasurements();
 		assertPerformance();
+
+		reportAllocations(resourceName, src);
+	}
+
+	/**
+	 * Prints the bytes allocated by a scan, with the text of names and literals shared and with a copy per token
+	 * 
+	 * @param resourceName
+	 * @param src
+	 * @throws Exception
+	 */
+	private void reportAllocations(String resourceName, String src) throws Exception
+	{
+		if (!AllocationCounter.isSupported())
+		{
+			return;
+		}
+
+		fScanner.setInternText(false);
+		long copied = scanAllocations(src);
+		fScanner.setInternText(true);
+		long interned = scanAllocations(src);
+
+		System.out.println(resourceName + ": " + interned + " bytes allocated by a scan (" + copied
+				+ " bytes without shared token text)");
+	}
+
+	private long scanAllocations(String src) throws Exception
+	{
+		long start = AllocationCounter.getAllocatedBytes();
+
+		fScanner.setSource(src);
+
+		Symbol symbol = fScanner.nextToken();
+
+		while (symbol != null && symbol.getId() != 0)
+		{
+			symbol = fScanner.nextToken();
+		}
+
+		return AllocationCounter.getAllocatedBytes() - start;
 	}
 }
@@ -13,6 +13,7 @@ import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.runtime.CoreException;
 
 import com.aptana.core.build.IBuildParticipant;
+import com.aptana.core.build.IBuildParticipantWorkingCopy;
 import com.aptana.core.build.IProblem;
 import com.aptana.editor.common.validation.AbstractValidatorTestCase;
 import com.aptana.editor.css.CSSPlugin;
@@ -167,4 +168,40 @@ public class CSSValidatorTest extends AbstractValidatorTestCase
 		List<IProblem> items = getParseErrors(text);
 		assertEquals(0, items.size());
 	}
+
+	public void testErrorMessage() throws CoreException
+	{
+		String text = "div {\ncolor: foo;\n}";
+
+		List<IProblem> items = getParseErrors(text);
+		assertEquals(1, items.size());
+		assertProblem(items.get(0),
+				"Value Error : color (http://www.w3.org/TR/REC-CSS2/colors.html#propdef-color) foo is not a color value :",
+				2, IMarker.SEVERITY_ERROR, 0);
+	}
+
+	public void testFiltersApplyToCachedResults() throws CoreException
+	{
+		String text = "div {\ncolor: foo;\n}";
+
+		List<IProblem> items = getParseErrors(text);
+		assertEquals(1, items.size());
+
+		IBuildParticipantWorkingCopy wc = fValidator.getWorkingCopy();
+		wc.setFilters("(?i).*NOT A COLOR.*", ".*unrelated.*");
+		wc.doSave();
+		items = getParseErrors(text);
+		assertEquals(0, items.size());
+	}
+
+	public void testInvalidFilterIsSkipped() throws CoreException
+	{
+		String text = "div {\ncolor: foo;\n}";
+
+		IBuildParticipantWorkingCopy wc = fValidator.getWorkingCopy();
+		wc.setFilters("(unclosed", ".*not a color.*");
+		wc.doSave();
+		List<IProblem> items = getParseErrors(text);
+		assertEquals(0, items.size());
+	}
 }
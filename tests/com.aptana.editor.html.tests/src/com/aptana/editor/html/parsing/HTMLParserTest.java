@@ -369,6 +369,65 @@ public class HTMLParserTest extends TestCase
 		assertEquals(new Range(19, 19), endTag.getNameRange());
 	}
 
+	public void testLargeScriptsParsedInBackground() throws Exception
+	{
+		StringBuilder script = new StringBuilder();
+		for (int i = 0; i < 1000; i++)
+		{
+			script.append("var v").append(i).append(" = ").append(i).append(";\n");
+		}
+		String source = "<html><head><script>" + script + "</script><p>text</p><script>" + script
+				+ "var = ;</script><script>var small = 1;</script></head></html>";
+		fParseState = new HTMLParseState(source);
+		ParseResult parseResult = fParser.parse(fParseState);
+
+		IParseNode head = parseResult.getRootNode().getChild(0).getChild(0);
+		int[] offsets = { source.indexOf("var v0"), source.lastIndexOf("var v0"), source.indexOf("var small") };
+		int scripts = 0;
+		for (IParseNode child : head.getChildren())
+		{
+			if ("script".equals(child.getNameNode().getName()))
+			{
+				assertEquals(1, child.getChildCount());
+				IParseNode js = child.getChild(0);
+				assertTrue(js instanceof JSParseRootNode);
+				assertEquals(offsets[scripts++], js.getChild(0).getStartingOffset());
+			}
+		}
+		assertEquals(3, scripts);
+
+		// the syntax error in the second block is reported at the right offset
+		int errorStart = source.indexOf("var = ;");
+		boolean found = false;
+		for (IParseError error : parseResult.getErrors())
+		{
+			if (IJSConstants.CONTENT_TYPE_JS.equals(error.getLangauge()))
+			{
+				assertTrue(error.getOffset() >= errorStart && error.getOffset() < errorStart + 7);
+				found = true;
+			}
+		}
+		assertTrue(found);
+	}
+
+	public void testInlineFragmentsReusedAcrossReparses() throws Exception
+	{
+		String source = "<div onclick=\"toggle();\" style=\"color: red;\"></div><p onclick=\"hide();\"></p>";
+		fParseState = new HTMLParseState(source);
+		IParseNode[] children = parse().getChildren();
+		IParseNode handler = ((HTMLElementNode) children[0]).getJSAttributeNodes()[0];
+		IParseNode style = ((HTMLElementNode) children[0]).getCSSStyleNodes()[0];
+
+		// the second element is moved
+		String edited = source.replace("<p ", "<p  ");
+		fParseState = new HTMLParseState(edited);
+		children = parse().getChildren();
+		assertSame(handler, ((HTMLElementNode) children[0]).getJSAttributeNodes()[0]);
+		assertSame(style, ((HTMLElementNode) children[0]).getCSSStyleNodes()[0]);
+		IParseNode moved = ((HTMLElementNode) children[1]).getJSAttributeNodes()[0];
+		assertEquals(edited.indexOf("hide"), moved.getStartingOffset());
+	}
+
 	/**
 	 * This method is not being used for formal testing, but it's useful to determine how effective
 	 * {@link ParseNode#trimToSize()} is.
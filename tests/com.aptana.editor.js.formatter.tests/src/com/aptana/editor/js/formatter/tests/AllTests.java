@@ -18,6 +18,7 @@ public class AllTests
 		TestSuite suite = new TestSuite("Test for com.aptana.editor.js.formatter.tests");
 		// $JUnit-BEGIN$
 		suite.addTest(new FormattingTests().suite());
+		suite.addTestSuite(MinimalEditTest.class);
 		// $JUnit-END$
 		return suite;
 	}
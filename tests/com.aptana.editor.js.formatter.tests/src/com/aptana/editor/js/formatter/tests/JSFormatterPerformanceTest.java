@@ -0,0 +1,105 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.js.formatter.tests;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.test.performance.PerformanceTestCase;
+import org.eclipse.text.edits.TextEdit;
+
+import com.aptana.core.util.StringUtil;
+import com.aptana.editor.common.formatting.FormatterTestFile;
+import com.aptana.formatter.IScriptFormatter;
+import com.aptana.formatter.IScriptFormatterFactory;
+import com.aptana.formatter.ScriptFormatterManager;
+
+/**
+ * Compares the time it takes to format a complete (large) JavaScript document with the time it takes to format a small
+ * selection inside that document.
+ */
+public class JSFormatterPerformanceTest extends PerformanceTestCase
+{
+	private static final String FORMATTER_FACTORY_ID = "com.aptana.editor.js.formatterFactory"; //$NON-NLS-1$
+	private static final String TEST_BUNDLE_ID = "com.aptana.editor.js.formatter.tests"; //$NON-NLS-1$
+	private static final String FORMATTING_FOLDER = "formatting"; //$NON-NLS-1$
+	private static final String LARGE_FILE = "jquery-1.7.1.min.js"; //$NON-NLS-1$
+
+	private IScriptFormatter formatter;
+	private String source;
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.test.performance.PerformanceTestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		IScriptFormatterFactory factory = (IScriptFormatterFactory) ScriptFormatterManager.getInstance()
+				.getContributionById(FORMATTER_FACTORY_ID);
+		FormatterTestFile file = new FormatterTestFile(factory, TEST_BUNDLE_ID, LARGE_FILE, FORMATTING_FOLDER);
+		formatter = file.getFormatter();
+		// The formatted jQuery gives us a large, multi-line document to work with.
+		source = file.getFormattedContent();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.test.performance.PerformanceTestCase#tearDown()
+	 */
+	@Override
+	protected void tearDown() throws Exception
+	{
+		formatter = null;
+		source = null;
+		super.tearDown();
+	}
+
+	/**
+	 * Format the entire document.
+	 * 
+	 * @throws Exception
+	 */
+	public void testFormatDocument() throws Exception
+	{
+		for (int i = 0; i < 10; i++)
+		{
+			startMeasuring();
+			TextEdit edit = formatter.format(source, 0, source.length(), 0, false, null, StringUtil.EMPTY);
+			stopMeasuring();
+			assertNotNull(edit);
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	/**
+	 * Format a few lines in the middle of the document, including the indentation detection for the selection.
+	 * 
+	 * @throws Exception
+	 */
+	public void testFormatSelection() throws Exception
+	{
+		IDocument document = new Document(source);
+		int middleLine = document.getNumberOfLines() / 2;
+		IRegion start = document.getLineInformation(middleLine);
+		IRegion end = document.getLineInformation(middleLine + 5);
+		int offset = start.getOffset();
+		int length = end.getOffset() + end.getLength() - offset;
+		for (int i = 0; i < 50; i++)
+		{
+			startMeasuring();
+			int indentationLevel = formatter.detectIndentationLevel(document, offset, true, null);
+			formatter.format(source, offset, length, indentationLevel, true, null, StringUtil.EMPTY);
+			stopMeasuring();
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+}
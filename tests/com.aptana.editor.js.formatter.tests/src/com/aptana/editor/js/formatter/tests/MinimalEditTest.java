@@ -0,0 +1,135 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.js.formatter.tests;
+
+import java.util.HashMap;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.text.edits.ReplaceEdit;
+import org.eclipse.text.edits.TextEdit;
+
+import com.aptana.editor.js.IJSConstants;
+import com.aptana.editor.js.formatter.JSFormatter;
+
+/**
+ * Tests the edits the formatters build out of their output, see AbstractScriptFormatter#createMinimalEdit.
+ */
+public class MinimalEditTest extends TestCase
+{
+
+	private static final String TAIL = "\n// tail"; //$NON-NLS-1$
+
+	private static class TestFormatter extends JSFormatter
+	{
+		private TestFormatter()
+		{
+			super("\n", new HashMap<String, String>(), IJSConstants.CONTENT_TYPE_JS); //$NON-NLS-1$
+		}
+
+		private TextEdit minimalEdit(String originalText, int offset, String output)
+		{
+			return createMinimalEdit(originalText, offset, output);
+		}
+	}
+
+	/**
+	 * Creates the edit of a region at the given offset of a document, and checks that applying it turns the region
+	 * into the output and leaves the rest of the document alone.
+	 * 
+	 * @param originalText
+	 * @param offset
+	 * @param output
+	 * @return the edit
+	 * @throws Exception
+	 */
+	private TextEdit assertEdit(String originalText, int offset, String output) throws Exception
+	{
+		StringBuilder head = new StringBuilder();
+		for (int i = 0; i < offset; i++)
+		{
+			head.append('x');
+		}
+		IDocument document = new Document(head + originalText + TAIL);
+		TextEdit edit = new TestFormatter().minimalEdit(originalText, offset, output);
+		assertEquals(offset, edit.getOffset());
+		assertEquals(originalText.length(), edit.getLength());
+
+		edit.apply(document);
+		assertEquals(head + output + TAIL, document.get());
+		return edit;
+	}
+
+	private void assertReplace(TextEdit edit, int offset, int length, String text)
+	{
+		assertTrue(edit instanceof ReplaceEdit);
+		assertEquals(offset, edit.getOffset());
+		assertEquals(length, edit.getLength());
+		assertEquals(text, ((ReplaceEdit) edit).getText());
+	}
+
+	public void testIdenticalOutputHasNoEdit() throws Exception
+	{
+		TextEdit edit = assertEdit("var a = 1;\nvar b = 2;", 0, "var a = 1;\nvar b = 2;"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertFalse(edit.hasChildren());
+	}
+
+	public void testPrefixOnlyChange() throws Exception
+	{
+		TextEdit edit = assertEdit("    var a = 1;", 0, "var a = 1;"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(1, edit.getChildrenSize());
+		assertReplace(edit.getChildren()[0], 0, 4, ""); //$NON-NLS-1$
+	}
+
+	public void testSuffixOnlyChange() throws Exception
+	{
+		TextEdit edit = assertEdit("var a = 1;\t \n", 0, "var a = 1;\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(1, edit.getChildrenSize());
+		assertReplace(edit.getChildren()[0], 10, 3, "\n"); //$NON-NLS-1$
+	}
+
+	public void testInsertion() throws Exception
+	{
+		TextEdit edit = assertEdit("a=1;", 0, "a = 1;"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(2, edit.getChildrenSize());
+		assertReplace(edit.getChildren()[0], 1, 0, " "); //$NON-NLS-1$
+		assertReplace(edit.getChildren()[1], 2, 0, " "); //$NON-NLS-1$
+	}
+
+	public void testDeletion() throws Exception
+	{
+		TextEdit edit = assertEdit("foo( a );", 0, "foo(a);"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(2, edit.getChildrenSize());
+		assertReplace(edit.getChildren()[0], 4, 1, ""); //$NON-NLS-1$
+		assertReplace(edit.getChildren()[1], 6, 1, ""); //$NON-NLS-1$
+	}
+
+	public void testOnlyChangedLinesAreTouched() throws Exception
+	{
+		TextEdit edit = assertEdit("if (a) {\nb();\n    c();\n}", 0, "if (a) {\n    b();\n    c();\n}"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(1, edit.getChildrenSize());
+		assertReplace(edit.getChildren()[0], 8, 1, "\n    "); //$NON-NLS-1$
+	}
+
+	public void testNonZeroOffset() throws Exception
+	{
+		TextEdit edit = assertEdit("foo( a );", 25, "foo(a);"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(2, edit.getChildrenSize());
+		assertReplace(edit.getChildren()[0], 29, 1, ""); //$NON-NLS-1$
+		assertReplace(edit.getChildren()[1], 31, 1, ""); //$NON-NLS-1$
+	}
+
+	public void testNonWhitespaceChangeIsTrimmed() throws Exception
+	{
+		TextEdit edit = assertEdit("var a = 1;", 10, "var b = 1;"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(1, edit.getChildrenSize());
+		assertReplace(edit.getChildren()[0], 14, 1, "b"); //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,24 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.js.formatter.tests;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+public class PerformanceTests
+{
+
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite("Performance tests for com.aptana.editor.js.formatter plugin");
+		// $JUnit-BEGIN$
+		suite.addTestSuite(JSFormatterPerformanceTest.class);
+		// $JUnit-END$
+		return suite;
+	}
+}
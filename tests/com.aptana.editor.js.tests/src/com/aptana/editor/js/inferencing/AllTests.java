@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -21,6 +21,7 @@ public class AllTests
 		suite.addTestSuite(DynamicTypeInferencingTests.class);
 		suite.addTestSuite(FunctionInferencingTests.class);
 		suite.addTestSuite(InferencingBugs.class);
+		suite.addTestSuite(JSTypeInferenceCacheTests.class);
 		suite.addTestSuite(ObjectInferencingTests.class);
 		suite.addTestSuite(OperatorInferencingTests.class);
 		suite.addTestSuite(PrimitiveInferencingTests.class);
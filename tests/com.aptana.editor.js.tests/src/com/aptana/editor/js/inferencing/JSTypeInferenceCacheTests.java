@@ -0,0 +1,160 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.js.inferencing;
+
+import java.net.URI;
+import java.util.List;
+
+import com.aptana.editor.js.JSTypeConstants;
+import com.aptana.editor.js.parsing.ast.JSNode;
+import com.aptana.editor.js.parsing.ast.JSParseRootNode;
+import com.aptana.index.core.Index;
+import com.aptana.parsing.ast.IParseNode;
+
+public class JSTypeInferenceCacheTests extends InferencingTestsBase
+{
+	private static final String TEST_CATEGORY = "cache.testing";
+
+	/**
+	 * getRoot
+	 * 
+	 * @param source
+	 * @return
+	 */
+	protected JSParseRootNode getRoot(String source)
+	{
+		IParseNode root = getParseRootNode(source);
+		assertTrue(root instanceof JSParseRootNode);
+
+		return (JSParseRootNode) root;
+	}
+
+	/**
+	 * inferLastStatement
+	 * 
+	 * @param root
+	 * @return
+	 */
+	protected List<String> inferLastStatement(JSParseRootNode root)
+	{
+		IParseNode statement = root.getLastChild();
+		assertTrue(statement instanceof JSNode);
+
+		JSNodeTypeInferrer inferrer = new JSNodeTypeInferrer(getGlobals(root), getIndex(), getLocation());
+
+		return inferrer.inferTypes((JSNode) statement);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.js.inferencing.InferencingTestsBase#tearDown()
+	 */
+	@Override
+	protected void tearDown() throws Exception
+	{
+		Index index = getIndex();
+
+		if (index != null)
+		{
+			index.removeCategories(TEST_CATEGORY);
+		}
+
+		super.tearDown();
+	}
+
+	/**
+	 * testRepeatedRequestIsAnswered
+	 */
+	public void testRepeatedRequestIsAnswered()
+	{
+		JSParseRootNode root = getRoot("var abc = 10; abc;");
+		JSTypeInferenceCache cache = root.getTypeInferenceCache();
+
+		List<String> types = inferLastStatement(root);
+		assertStatementTypes(types, JSTypeConstants.NUMBER_TYPE);
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		assertSame(types, inferLastStatement(root));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.size());
+	}
+
+	/**
+	 * testIndexChangeInvalidates
+	 */
+	public void testIndexChangeInvalidates()
+	{
+		JSParseRootNode root = getRoot("var abc = 10; abc;");
+		JSTypeInferenceCache cache = root.getTypeInferenceCache();
+
+		inferLastStatement(root);
+		getIndex().addEntry(TEST_CATEGORY, "abc", URI.create("other_file.js"));
+
+		List<String> types = inferLastStatement(root);
+		assertStatementTypes(types, JSTypeConstants.NUMBER_TYPE);
+		assertEquals(0, cache.getHits());
+		assertEquals(2, cache.getMisses());
+	}
+
+	/**
+	 * testFileOnlyTypesSurviveIndexChange
+	 */
+	public void testFileOnlyTypesSurviveIndexChange()
+	{
+		JSParseRootNode root = getRoot("'abc';");
+		JSTypeInferenceCache cache = root.getTypeInferenceCache();
+
+		List<String> types = inferLastStatement(root);
+		assertStatementTypes(types, JSTypeConstants.STRING_TYPE);
+		getIndex().addEntry(TEST_CATEGORY, "abc", URI.create("other_file.js"));
+
+		assertSame(types, inferLastStatement(root));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	/**
+	 * testReparseStartsEmpty
+	 */
+	public void testReparseStartsEmpty()
+	{
+		String source = "var abc = 10; abc;";
+		JSParseRootNode root = getRoot(source);
+
+		inferLastStatement(root);
+		assertEquals(1, root.getTypeInferenceCache().size());
+
+		JSParseRootNode edited = getRoot(source);
+		assertNotSame(root.getTypeInferenceCache(), edited.getTypeInferenceCache());
+		assertEquals(0, edited.getTypeInferenceCache().size());
+
+		inferLastStatement(edited);
+		assertEquals(0, edited.getTypeInferenceCache().getHits());
+	}
+
+	/**
+	 * testScopesAreKeptApart
+	 */
+	public void testScopesAreKeptApart()
+	{
+		JSParseRootNode root = getRoot("var abc = 10; function f() { var abc = 'x'; } abc;");
+		JSScope globals = getGlobals(root);
+		JSNode statement = (JSNode) root.getLastChild();
+		JSScope functionScope = globals.getChildren().get(0);
+
+		List<String> globalTypes = new JSNodeTypeInferrer(globals, getIndex(), getLocation()).inferTypes(statement);
+		List<String> localTypes = new JSNodeTypeInferrer(functionScope, getIndex(), getLocation())
+				.inferTypes(statement);
+
+		assertStatementTypes(globalTypes, JSTypeConstants.NUMBER_TYPE);
+		assertStatementTypes(localTypes, JSTypeConstants.STRING_TYPE);
+		assertEquals(2, root.getTypeInferenceCache().size());
+	}
+}
@@ -0,0 +1,166 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.js.inferencing;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.test.performance.PerformanceTestCase;
+
+import com.aptana.core.util.IOUtil;
+import com.aptana.editor.js.JSMetadataLoader;
+import com.aptana.editor.js.JSPlugin;
+import com.aptana.editor.js.parsing.JSParser;
+import com.aptana.editor.js.parsing.ast.JSGetPropertyNode;
+import com.aptana.editor.js.parsing.ast.JSNode;
+import com.aptana.editor.js.parsing.ast.JSParseRootNode;
+import com.aptana.index.core.Index;
+import com.aptana.index.core.IndexPlugin;
+import com.aptana.parsing.ParseState;
+import com.aptana.parsing.ast.IParseNode;
+
+/**
+ * Measures the type inference behind content assist on the receivers of all property accesses of a large file, once
+ * with the inference cache cleared before each pass and once with the types of the previous pass kept.
+ */
+public class JSTypeInferencePerformanceTest extends PerformanceTestCase
+{
+	private static final String RESOURCE = "performance/jaxer/jquery-1.2.1.js";
+	private static final URI INDEX_URI = URI.create("inference.performance");
+	private static final URI LOCATION = URI.create("jquery-1.2.1.js");
+
+	private JSParseRootNode fRoot;
+	private JSScope fGlobals;
+	private List<JSNode> fReceivers;
+
+	/**
+	 * collectReceivers
+	 * 
+	 * @param node
+	 * @param receivers
+	 */
+	private void collectReceivers(IParseNode node, List<JSNode> receivers)
+	{
+		if (node instanceof JSGetPropertyNode)
+		{
+			IParseNode lhs = ((JSGetPropertyNode) node).getLeftHandSide();
+
+			if (lhs instanceof JSNode)
+			{
+				receivers.add((JSNode) lhs);
+			}
+		}
+
+		for (IParseNode child : node.getChildren())
+		{
+			collectReceivers(child, receivers);
+		}
+	}
+
+	/**
+	 * inferReceivers
+	 */
+	private void inferReceivers()
+	{
+		Index index = IndexPlugin.getDefault().getIndexManager().getIndex(INDEX_URI);
+
+		for (JSNode receiver : fReceivers)
+		{
+			JSScope scope = fGlobals.getScopeAtOffset(receiver.getStartingOffset());
+			JSNodeTypeInferrer inferrer = new JSNodeTypeInferrer(scope, index, LOCATION);
+
+			inferrer.inferTypes(receiver);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.test.performance.PerformanceTestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		JSMetadataLoader loader = new JSMetadataLoader();
+		loader.schedule();
+		loader.join();
+
+		InputStream stream = FileLocator.openStream(Platform.getBundle(JSPlugin.PLUGIN_ID), new Path(RESOURCE), false);
+		String source = IOUtil.read(stream);
+
+		fRoot = (JSParseRootNode) new JSParser().parse(new ParseState(source)).getRootNode();
+		fGlobals = fRoot.getGlobals();
+		fReceivers = new ArrayList<JSNode>();
+		collectReceivers(fRoot, fReceivers);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.test.performance.PerformanceTestCase#tearDown()
+	 */
+	@Override
+	protected void tearDown() throws Exception
+	{
+		IndexPlugin.getDefault().getIndexManager().removeIndex(INDEX_URI);
+		fReceivers = null;
+		fGlobals = null;
+		fRoot = null;
+
+		super.tearDown();
+	}
+
+	/**
+	 * testColdInference
+	 * 
+	 * @throws Exception
+	 */
+	public void testColdInference() throws Exception
+	{
+		for (int i = 0; i < 10; i++)
+		{
+			fRoot.getTypeInferenceCache().clear();
+
+			startMeasuring();
+			inferReceivers();
+			stopMeasuring();
+		}
+
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	/**
+	 * testWarmInference
+	 * 
+	 * @throws Exception
+	 */
+	public void testWarmInference() throws Exception
+	{
+		inferReceivers();
+
+		for (int i = 0; i < 10; i++)
+		{
+			startMeasuring();
+			inferReceivers();
+			stopMeasuring();
+		}
+
+		commitMeasurements();
+		assertPerformance();
+
+		JSTypeInferenceCache cache = fRoot.getTypeInferenceCache();
+		System.out.println("Type inference cache: " + cache.size() + " entries, " + cache.getHits() + " hits, " //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				+ cache.getMisses() + " misses"); //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,180 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.js.parsing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+
+import com.aptana.editor.common.contentassist.ILexemeProvider;
+import com.aptana.editor.js.parsing.lexer.JSTokenType;
+import com.aptana.parsing.lexer.Lexeme;
+import com.aptana.parsing.lexer.Range;
+
+/**
+ * JSFlexLexemeStoreTest
+ */
+public class JSFlexLexemeStoreTest extends TestCase
+{
+	private IDocument document;
+	private JSFlexLexemeStore store;
+
+	/*
+	 * (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		document = new Document();
+		JSFlexLexemeStore.connect(document);
+		store = JSFlexLexemeStore.getStore(document);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	@Override
+	protected void tearDown() throws Exception
+	{
+		JSFlexLexemeStore.disconnect(document);
+		store = null;
+		document = null;
+
+		super.tearDown();
+	}
+
+	/**
+	 * Asserts that the lexemes of the store are the ones of a full scan of the document
+	 */
+	protected void assertLexemes()
+	{
+		List<String> expected = toList(new JSFlexLexemeProvider(document, new Range(0, document.getLength() - 1),
+				new JSFlexScanner()));
+		assertEquals(expected, toList(store.getLexemeProvider()));
+	}
+
+	protected List<String> toList(ILexemeProvider<JSTokenType> lexemes)
+	{
+		List<String> result = new ArrayList<String>();
+		for (Lexeme<JSTokenType> lexeme : lexemes)
+		{
+			result.add(lexeme.toString());
+		}
+		return result;
+	}
+
+	public void testDisconnect()
+	{
+		assertNotNull(store);
+		JSFlexLexemeStore.disconnect(document);
+		assertNull(JSFlexLexemeStore.getStore(document));
+	}
+
+	public void testTyping() throws BadLocationException
+	{
+		document.set("var a = 1;\nfunction f() {}\n");
+		store.getLexemeProvider();
+
+		String text = "var foo = bar.baz(1, 'x') / 2;";
+		int offset = 11;
+		for (int i = 0; i < text.length(); i++)
+		{
+			document.replace(offset + i, 0, text.substring(i, i + 1));
+			assertLexemes();
+		}
+	}
+
+	public void testDivisionAfterEdit() throws BadLocationException
+	{
+		document.set("var a = b / c / d;");
+		store.getLexemeProvider();
+
+		// the '/' tokens must still be divisions after the identifiers before them change
+		document.replace(8, 1, "bb");
+		assertLexemes();
+		document.replace(14, 1, "cc");
+		assertLexemes();
+	}
+
+	public void testOpeningComment() throws BadLocationException
+	{
+		document.set("var a = 1;\nvar b = 2;\nvar c = 3;\n");
+		store.getLexemeProvider();
+
+		document.replace(11, 0, "/*");
+		assertLexemes();
+		document.replace(document.getLength(), 0, "*/");
+		assertLexemes();
+		document.replace(11, 2, "");
+		assertLexemes();
+	}
+
+	public void testReplaceAll() throws BadLocationException
+	{
+		document.set("var a = 1;");
+		store.getLexemeProvider();
+
+		document.set("function f(x) { return /x/.test(x); }");
+		assertLexemes();
+		document.set("");
+		assertLexemes();
+	}
+
+	public void testRandomEdits() throws BadLocationException
+	{
+		document.set("var a = 1; // comment\nfunction f(x) {\n\treturn x / 2 + /re/g.exec(\"s\").length;\n}\n/* c */ f(a);\n");
+		store.getLexemeProvider();
+
+		String[] insertions = { "/", "*", "\"", "'", "\n", "a", "1", " ", "/*", "*/", "//", "(", ")", "{", "}", "=" };
+		Random random = new Random(42);
+		for (int i = 0; i < 500; i++)
+		{
+			int offset = random.nextInt(document.getLength() + 1);
+			int length = random.nextInt(4) == 0 ? Math.min(random.nextInt(5), document.getLength() - offset) : 0;
+			String text = random.nextInt(3) == 0 ? "" : insertions[random.nextInt(insertions.length)];
+			document.replace(offset, length, text);
+			assertLexemes();
+		}
+	}
+
+	public void testSnapshotIsImmutable() throws BadLocationException
+	{
+		document.set("var a = 1;");
+		ILexemeProvider<JSTokenType> lexemes = store.getLexemeProvider();
+		List<String> before = toList(lexemes);
+
+		document.replace(0, 0, "x = 2; ");
+
+		assertEquals(before, toList(lexemes));
+		assertLexemes();
+	}
+
+	public void testRange() throws BadLocationException
+	{
+		document.set("var a = 1; var b = 2;");
+
+		ILexemeProvider<JSTokenType> lexemes = store.getLexemeProvider(new Range(11, 20));
+
+		assertEquals(5, lexemes.size());
+		assertEquals(JSTokenType.VAR, lexemes.getFirstLexeme().getType());
+		assertEquals(JSTokenType.SEMICOLON, lexemes.getLastLexeme().getType());
+		assertEquals(1, lexemes.getLexemeIndex(15));
+		assertEquals(-1, lexemes.getLexemeFloorIndex(5));
+		assertEquals(0, lexemes.getLexemeCeilingIndex(5));
+	}
+}
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -21,7 +21,9 @@ import com.aptana.core.util.IOUtil;
 import com.aptana.editor.js.JSPlugin;
 import com.aptana.parsing.IParseState;
 import com.aptana.parsing.ParseState;
+import com.aptana.testing.utils.AllocationCounter;
 
+@SuppressWarnings("nls")
 public class JSScannerPerformanceTest extends PerformanceTestCase
 {
 	private JSFlexScanner fScanner;
@@ -186,5 +188,46 @@ public class JSScannerPerformanceTest extends PerformanceTestCase
 
 			stopMeasuring();
 		}
+
+		reportAllocations(resourceName, src);
+	}
+
+	/**
+	 * Prints the bytes allocated by a scan, with the text of identifiers and literals shared and with a copy per token
+	 * 
+	 * @param resourceName
+	 * @param src
+	 * @throws Exception
+	 */
+	private void reportAllocations(String resourceName, String src) throws Exception
+	{
+		if (!AllocationCounter.isSupported())
+		{
+			return;
+		}
+
+		fScanner.setInternText(false);
+		long copied = scanAllocations(src);
+		fScanner.setInternText(true);
+		long interned = scanAllocations(src);
+
+		System.out.println(resourceName + ": " + interned + " bytes allocated by a scan (" + copied
+				+ " bytes without shared token text)");
+	}
+
+	private long scanAllocations(String src) throws Exception
+	{
+		long start = AllocationCounter.getAllocatedBytes();
+
+		fScanner.setSource(src);
+
+		Symbol symbol = fScanner.nextToken();
+
+		while (symbol != null && symbol.getId() != 0)
+		{
+			symbol = fScanner.nextToken();
+		}
+
+		return AllocationCounter.getAllocatedBytes() - start;
 	}
 }
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -664,4 +664,36 @@ public class JSScannerTest extends TestCase
 
 		this.assertListCrossProducts(lists, JSTokenType.NUMBER);
 	}
+
+	public void testSharedTokenText() throws Exception
+	{
+		_scanner.setSource("var abc = abc + \"x\" + \"x\";");
+
+		Symbol var = _scanner.nextToken();
+		Symbol abc1 = _scanner.nextToken();
+		_scanner.nextToken();
+		Symbol abc2 = _scanner.nextToken();
+		_scanner.nextToken();
+		Symbol x1 = _scanner.nextToken();
+		_scanner.nextToken();
+		Symbol x2 = _scanner.nextToken();
+
+		assertEquals("var", var.value);
+		assertEquals("abc", abc1.value);
+		assertSame(abc1.value, abc2.value);
+		assertEquals("\"x\"", x1.value);
+		assertSame(x1.value, x2.value);
+	}
+
+	public void testUnsharedTokenText() throws Exception
+	{
+		_scanner.setInternText(false);
+		_scanner.setSource("abc abc");
+
+		Symbol abc1 = _scanner.nextToken();
+		Symbol abc2 = _scanner.nextToken();
+
+		assertEquals(abc1.value, abc2.value);
+		assertNotSame(abc1.value, abc2.value);
+	}
 }
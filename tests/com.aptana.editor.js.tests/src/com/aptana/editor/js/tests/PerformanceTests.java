@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -19,6 +19,7 @@ import com.aptana.editor.js.JSPlugin;
 import com.aptana.editor.js.JSSourcePartitionScannerPerformanceTest;
 import com.aptana.editor.js.contentassist.JSBuildPerformanceTest;
 import com.aptana.editor.js.contentassist.JSIndexingPerformanceTest;
+import com.aptana.editor.js.inferencing.JSTypeInferencePerformanceTest;
 import com.aptana.editor.js.parsing.JSParserPerformanceTest;
 import com.aptana.editor.js.parsing.JSScannerPerformanceTest;
 import com.aptana.editor.js.sdoc.parsing.SDocParserPerformanceTest;
@@ -47,6 +48,7 @@ public class PerformanceTests
 		suite.addTestSuite(JSParserPerformanceTest.class);
 		suite.addTestSuite(JSScannerPerformanceTest.class);
 		suite.addTestSuite(JSSourcePartitionScannerPerformanceTest.class);
+		suite.addTestSuite(JSTypeInferencePerformanceTest.class);
 		suite.addTestSuite(SDocParserPerformanceTest.class);
 		suite.addTest(OpenJSEditorTest.suite());
 		// $JUnit-END$
@@ -0,0 +1,100 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.js.validator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+public class JSLintEngineTest extends TestCase
+{
+
+	private static final String SOURCE = "function bar() {\n    var foo = 1;\n    var foo = 2;\n}";
+
+	private JSLintEngine engine;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		engine = JSLintValidator.getJSLintEngine();
+		assertNotNull(engine);
+		engine.clearCache();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		engine.clearCache();
+		engine = null;
+		super.tearDown();
+	}
+
+	public void testResultsCachedByContentAndOptions() throws Exception
+	{
+		List<JSLintEngine.Lint> lints = engine.lint(SOURCE, "{}");
+		assertTrue(lints.size() > 0);
+		assertSame(lints, engine.lint(SOURCE, "{}"));
+		assertNotSame(lints, engine.lint(SOURCE, "{\"white\": true}"));
+		assertNotSame(lints, engine.lint(SOURCE + '\n', "{}"));
+
+		engine.clearCache();
+		List<JSLintEngine.Lint> relinted = engine.lint(SOURCE, "{}");
+		assertNotSame(lints, relinted);
+		assertLints(lints, relinted);
+	}
+
+	public void testParallelLinting() throws Exception
+	{
+		List<JSLintEngine.Lint> expected = engine.lint(SOURCE, "{}");
+		engine.clearCache();
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			List<Future<List<JSLintEngine.Lint>>> results = new ArrayList<Future<List<JSLintEngine.Lint>>>();
+			for (int i = 0; i < 16; i++)
+			{
+				// different sources, so that the results don't come from the cache
+				final String source = SOURCE + "\n// " + i;
+				results.add(executor.submit(new Callable<List<JSLintEngine.Lint>>()
+				{
+					public List<JSLintEngine.Lint> call() throws Exception
+					{
+						return engine.lint(source, "{}");
+					}
+				}));
+			}
+			for (Future<List<JSLintEngine.Lint>> result : results)
+			{
+				assertLints(expected, result.get());
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	private void assertLints(List<JSLintEngine.Lint> expected, List<JSLintEngine.Lint> actual)
+	{
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++)
+		{
+			assertEquals(expected.get(i).reason, actual.get(i).reason);
+			assertEquals(expected.get(i).line, actual.get(i).line);
+			assertEquals(expected.get(i).offset, actual.get(i).offset);
+			assertEquals(expected.get(i).error, actual.get(i).error);
+		}
+	}
+}
@@ -11,6 +11,7 @@ public class ValidatorTests extends TestCase
 	{
 		TestSuite suite = new TestSuite(ValidatorTests.class.getName());
 		//$JUnit-BEGIN$
+		suite.addTestSuite(JSLintEngineTest.class);
 		suite.addTestSuite(JSLintValidatorTest.class);
 		suite.addTestSuite(JSParserValidatorTest.class);
 		//$JUnit-END$
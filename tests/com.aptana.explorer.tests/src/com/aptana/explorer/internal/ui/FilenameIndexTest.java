@@ -0,0 +1,145 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.explorer.internal.ui;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+@SuppressWarnings("nls")
+public class FilenameIndexTest extends TestCase
+{
+
+	private IProject project;
+	private IFolder src;
+	private IFile view;
+	private IFile filter;
+	private IFile readme;
+	private FilenameIndex index;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		project = ResourcesPlugin.getWorkspace().getRoot().getProject("filename_index");
+		project.create(new NullProgressMonitor());
+		project.open(new NullProgressMonitor());
+		src = project.getFolder("src");
+		src.create(true, true, new NullProgressMonitor());
+		view = createFile(src.getFile("FilteringProjectViewTest.java"));
+		filter = createFile(src.getFile("PathFilterTest.java"));
+		readme = createFile(project.getFile("README_INDEX_TEST.txt"));
+		index = new FilenameIndex(ResourcesPlugin.getWorkspace());
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		try
+		{
+			index.dispose();
+			project.delete(true, new NullProgressMonitor());
+		}
+		finally
+		{
+			index = null;
+			project = null;
+			super.tearDown();
+		}
+	}
+
+	private IFile createFile(IFile file) throws CoreException
+	{
+		file.create(new ByteArrayInputStream("content".getBytes()), true, new NullProgressMonitor());
+		return file;
+	}
+
+	public void testPrefixMatch() throws Exception
+	{
+		assertEquals(Arrays.asList(filter.getFullPath()), index.find("pathfiltertest", FilenameIndex.PREFIX_MATCH));
+		assertTrue(index.find("FilterTest", FilenameIndex.PREFIX_MATCH).isEmpty());
+	}
+
+	public void testSubstringMatch() throws Exception
+	{
+		List<IPath> paths = index.find("ProjectViewTest", FilenameIndex.SUBSTRING_MATCH);
+		assertEquals(Arrays.asList(view.getFullPath()), paths);
+	}
+
+	public void testCamelCaseMatch() throws Exception
+	{
+		List<IPath> paths = index.find("FiPVT", FilenameIndex.CAMEL_CASE_MATCH);
+		assertTrue(paths.contains(view.getFullPath()));
+		assertFalse(paths.contains(filter.getFullPath()));
+	}
+
+	public void testGetPaths() throws Exception
+	{
+		List<IPath> members = Arrays.asList(index.getPaths(src.getFullPath()));
+		assertEquals(2, members.size());
+		assertTrue(members.contains(view.getFullPath()));
+		assertTrue(members.contains(filter.getFullPath()));
+
+		// the project members include the .project file
+		members = Arrays.asList(index.getPaths(project.getFullPath()));
+		assertEquals(5, members.size());
+		assertTrue(members.contains(src.getFullPath()));
+		assertTrue(members.contains(readme.getFullPath()));
+	}
+
+	public void testResourceChanges() throws Exception
+	{
+		assertEquals(5, index.getPaths(project.getFullPath()).length);
+		int modificationCount = index.getModificationCount();
+
+		IFile added = createFile(src.getFile("AddedIndexTest.js"));
+		assertEquals(Arrays.asList(added.getFullPath()), index.find("addedindextest", FilenameIndex.PREFIX_MATCH));
+		assertTrue(index.getModificationCount() != modificationCount);
+
+		// removing a folder removes its members
+		src.delete(true, new NullProgressMonitor());
+		assertTrue(index.find("pathfiltertest", FilenameIndex.PREFIX_MATCH).isEmpty());
+		assertTrue(index.find("addedindextest", FilenameIndex.PREFIX_MATCH).isEmpty());
+		List<IPath> members = Arrays.asList(index.getPaths(project.getFullPath()));
+		assertEquals(2, members.size());
+		assertTrue(members.contains(readme.getFullPath()));
+	}
+
+	public void testClosedProjectIsRemoved() throws Exception
+	{
+		assertEquals(5, index.getPaths(project.getFullPath()).length);
+
+		project.close(new NullProgressMonitor());
+		assertEquals(0, index.getPaths(project.getFullPath()).length);
+
+		project.open(new NullProgressMonitor());
+		assertEquals(5, index.getPaths(project.getFullPath()).length);
+	}
+
+	public void testInitializeInBackground() throws Exception
+	{
+		assertFalse(index.isInitialized());
+		index.initializeInBackground();
+		for (int i = 0; i < 100 && !index.isInitialized(); i++)
+		{
+			Thread.sleep(100);
+		}
+		assertTrue(index.isInitialized());
+		assertEquals(5, index.getPaths(project.getFullPath()).length);
+	}
+}
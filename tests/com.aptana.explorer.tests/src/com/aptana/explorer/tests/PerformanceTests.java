@@ -0,0 +1,41 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.explorer.tests;
+
+import java.text.MessageFormat;
+
+import junit.framework.Test;
+import junit.framework.TestResult;
+import junit.framework.TestSuite;
+
+import com.aptana.core.logging.IdeLog;
+import com.aptana.explorer.ExplorerPlugin;
+import com.aptana.explorer.ui.filter.PathFilterPerformanceTest;
+
+public class PerformanceTests
+{
+
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite(PerformanceTests.class.getName())
+		{
+			@Override
+			public void runTest(Test test, TestResult result)
+			{
+				String msg = MessageFormat.format("Running test: {0}", test.toString());
+				IdeLog.logError(ExplorerPlugin.getDefault(), msg);
+				System.out.println(msg);
+				super.runTest(test, result);
+			}
+		};
+		// $JUnit-BEGIN$
+		suite.addTestSuite(PathFilterPerformanceTest.class);
+		// $JUnit-END$
+		return suite;
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.explorer.ui.filter;
+
+import java.io.File;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.test.performance.PerformanceTestCase;
+
+import com.aptana.explorer.ExplorerPlugin;
+
+/**
+ * Measures the latency of a pattern change in the explorer filter over a workspace of 100k resources, from setting the
+ * filtered resource to the visibility of the first element.
+ */
+@SuppressWarnings("nls")
+public class PathFilterPerformanceTest extends PerformanceTestCase
+{
+	private static final int NUM_FOLDERS = 100;
+	private static final int FILES_PER_FOLDER = 1000;
+
+	private IProject project;
+	private PathFilter filter;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		project = ResourcesPlugin.getWorkspace().getRoot().getProject("filter_performance");
+		project.create(new NullProgressMonitor());
+		project.open(new NullProgressMonitor());
+		// generate the files on disk, and refresh once, which is much faster than creating them one by one
+		File root = project.getLocation().toFile();
+		for (int i = 0; i < NUM_FOLDERS; i++)
+		{
+			File folder = new File(root, "folder" + i);
+			folder.mkdirs();
+			for (int j = 0; j < FILES_PER_FOLDER; j++)
+			{
+				new File(folder, "file" + i + "_" + j + ".js").createNewFile();
+			}
+		}
+		project.refreshLocal(IResource.DEPTH_INFINITE, new NullProgressMonitor());
+		// build the index up front, it's done in the background in the UI
+		ExplorerPlugin.getDefault().getFilenameIndex().getPaths(project.getFullPath());
+		filter = new PathFilter();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		filter.setResourceToFilterOn(null);
+		project.delete(true, new NullProgressMonitor());
+		filter = null;
+		project = null;
+		super.tearDown();
+	}
+
+	public void testFilterOnFile() throws Exception
+	{
+		IFile file = project.getFolder("folder42").getFile("file42_123.js");
+		for (int i = 0; i < 10; i++)
+		{
+			startMeasuring();
+			filter.setResourceToFilterOn(file);
+			boolean visible = filter.select(null, null, file);
+			stopMeasuring();
+			assertTrue(visible);
+			assertFalse(filter.select(null, null, project.getFolder("folder43")));
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	public void testFilterOnFolder() throws Exception
+	{
+		IFolder folder = project.getFolder("folder42");
+		IFile member = folder.getFile("file42_999.js");
+		for (int i = 0; i < 10; i++)
+		{
+			startMeasuring();
+			filter.setResourceToFilterOn(folder);
+			boolean visible = filter.select(null, null, member);
+			stopMeasuring();
+			assertTrue(visible);
+			assertFalse(filter.select(null, null, project.getFolder("folder43").getFile("file43_999.js")));
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+}
@@ -0,0 +1,142 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.explorer.ui.filter;
+
+import java.io.ByteArrayInputStream;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import com.aptana.explorer.ExplorerPlugin;
+
+@SuppressWarnings("nls")
+public class PathFilterTest extends TestCase
+{
+
+	private IProject project;
+	private PathFilter filter;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		project = ResourcesPlugin.getWorkspace().getRoot().getProject("path_filter");
+		project.create(new NullProgressMonitor());
+		project.open(new NullProgressMonitor());
+		// the filter falls back to walking the viewer until the index is built
+		ExplorerPlugin.getDefault().getFilenameIndex().getPaths(project.getFullPath());
+		filter = new PathFilter();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		try
+		{
+			filter.setResourceToFilterOn(null);
+			project.delete(true, new NullProgressMonitor());
+		}
+		finally
+		{
+			filter = null;
+			project = null;
+			super.tearDown();
+		}
+	}
+
+	private IFile createFile(String path) throws CoreException
+	{
+		IFile file = project.getFile(path);
+		createParent(file);
+		file.create(new ByteArrayInputStream("content".getBytes()), true, new NullProgressMonitor());
+		return file;
+	}
+
+	private void createParent(IResource resource) throws CoreException
+	{
+		if (resource.getParent() instanceof IFolder && !resource.getParent().exists())
+		{
+			createParent(resource.getParent());
+			((IFolder) resource.getParent()).create(true, true, new NullProgressMonitor());
+		}
+	}
+
+	private boolean isVisible(IResource resource)
+	{
+		// the indexed lookup does not need the viewer
+		return filter.select(null, null, resource);
+	}
+
+	public void testMatchesAndAncestorsAreVisible() throws Exception
+	{
+		IFile index = createFile("a/b/index.html");
+		IFile other = createFile("a/other.js");
+		IFile backup = createFile("c/index.html.bak");
+		IFile lib = createFile("lib/x.js");
+
+		filter.setResourceToFilterOn(index);
+
+		assertTrue(isVisible(project));
+		assertTrue(isVisible(index));
+		assertTrue(isVisible(index.getParent()));
+		assertTrue(isVisible(project.getFolder("a")));
+		assertTrue(isVisible(backup));
+		assertTrue(isVisible(backup.getParent()));
+		assertFalse(isVisible(other));
+		assertFalse(isVisible(lib));
+		assertFalse(isVisible(lib.getParent()));
+	}
+
+	public void testFolderMatchShowsItsMembers() throws Exception
+	{
+		IFile button = createFile("src/widgets/button.js");
+		IFile nested = createFile("src/widgets/form/input.js");
+		IFile other = createFile("src/other.js");
+
+		filter.setResourceToFilterOn(button.getParent());
+
+		assertTrue(isVisible(button.getParent()));
+		assertTrue(isVisible(button));
+		assertTrue(isVisible(nested));
+		assertTrue(isVisible(nested.getParent()));
+		assertFalse(isVisible(other));
+	}
+
+	public void testAddedAndRemovedResources() throws Exception
+	{
+		IFile index = createFile("a/index.html");
+		IFile backup = createFile("c/index.html.bak");
+
+		filter.setResourceToFilterOn(index);
+		assertTrue(isVisible(backup));
+		assertFalse(isVisible(project.getFolder("d")));
+
+		IFile added = createFile("d/index.html");
+		assertTrue(isVisible(added));
+		assertTrue(isVisible(added.getParent()));
+
+		backup.delete(true, new NullProgressMonitor());
+		assertFalse(isVisible(backup.getParent()));
+	}
+
+	public void testLongestLiteral() throws Exception
+	{
+		assertEquals("index", PathFilter.getLongestLiteral("index.html"));
+		assertEquals("widgets", PathFilter.getLongestLiteral("src/widgets"));
+		assertEquals("button", PathFilter.getLongestLiteral("\\bbutton\\w*\\.js"));
+		assertNull(PathFilter.getLongestLiteral("a|b"));
+		assertNull(PathFilter.getLongestLiteral(".*"));
+	}
+}
@@ -0,0 +1,607 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.filesystem.s3;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URLDecoder;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A local stand-in for S3, with the path-style requests used by the S3 file system: buckets, objects, range requests,
+ * paged listings and multipart uploads. The signatures are not checked. It counts the requests, and how many of them
+ * are served at the same time.
+ */
+public class LocalS3Server
+{
+
+	private static final String UTF_8 = "UTF-8"; //$NON-NLS-1$
+	private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)"); //$NON-NLS-1$
+	private static final Pattern PART = Pattern.compile("<PartNumber>(\\d+)</PartNumber>\\s*<ETag>([^<]*)</ETag>"); //$NON-NLS-1$
+
+	private final ServerSocket serverSocket;
+	private final Map<String, SortedMap<String, StoredObject>> buckets = new HashMap<String, SortedMap<String, StoredObject>>();
+	private final Map<String, SortedMap<Integer, byte[]>> uploads = new HashMap<String, SortedMap<Integer, byte[]>>();
+	private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<String, AtomicInteger>();
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicInteger maxActive = new AtomicInteger();
+	private final int pageSize;
+	private final long delay;
+	private int nextUploadId;
+
+	private static class StoredObject
+	{
+		final byte[] data;
+		final Date lastModified = new Date();
+
+		StoredObject(byte[] data)
+		{
+			this.data = data;
+		}
+
+		String getETag()
+		{
+			return "\"" + Integer.toHexString(Arrays.hashCode(data)) + "\""; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	/**
+	 * @param pageSize
+	 *            the maximum number of keys of a listing
+	 * @param delay
+	 *            the time the ranges and the parts take to be transferred, in milliseconds
+	 * @throws IOException
+	 */
+	public LocalS3Server(int pageSize, long delay) throws IOException
+	{
+		this.pageSize = pageSize;
+		this.delay = delay;
+		serverSocket = new ServerSocket(0, 50, InetAddress.getByName("localhost")); //$NON-NLS-1$
+		Thread thread = new Thread("Local S3") //$NON-NLS-1$
+		{
+			@Override
+			public void run()
+			{
+				accept();
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public int getPort()
+	{
+		return serverSocket.getLocalPort();
+	}
+
+	public void stop() throws IOException
+	{
+		serverSocket.close();
+	}
+
+	/**
+	 * @param type
+	 *            the method of the requests, followed by " list", " range", " part" or " complete" for those requests
+	 * @return the number of requests of the type
+	 */
+	public int getRequestCount(String type)
+	{
+		AtomicInteger count = requestCounts.get(type);
+		return (count == null) ? 0 : count.get();
+	}
+
+	public void resetCounts()
+	{
+		requestCounts.clear();
+		maxActive.set(0);
+	}
+
+	/**
+	 * @return the largest number of ranges or parts transferred at the same time
+	 */
+	public int getMaxConcurrentTransfers()
+	{
+		return maxActive.get();
+	}
+
+	public synchronized void createBucket(String bucket)
+	{
+		buckets.put(bucket, new TreeMap<String, StoredObject>());
+	}
+
+	public synchronized void putObject(String bucket, String key, byte[] data)
+	{
+		buckets.get(bucket).put(key, new StoredObject(data));
+	}
+
+	public synchronized byte[] getObject(String bucket, String key)
+	{
+		StoredObject object = buckets.get(bucket).get(key);
+		return (object == null) ? null : object.data;
+	}
+
+	public synchronized int getPendingUploadCount()
+	{
+		return uploads.size();
+	}
+
+	private void accept()
+	{
+		try
+		{
+			while (true)
+			{
+				final Socket socket = serverSocket.accept();
+				Thread thread = new Thread("Local S3 request") //$NON-NLS-1$
+				{
+					@Override
+					public void run()
+					{
+						try
+						{
+							serve(socket);
+						}
+						catch (IOException e)
+						{
+							// the client went away
+						}
+						finally
+						{
+							try
+							{
+								socket.close();
+							}
+							catch (IOException e)
+							{
+							}
+						}
+					}
+				};
+				thread.setDaemon(true);
+				thread.start();
+			}
+		}
+		catch (SocketException e)
+		{
+			// stopped
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	private void serve(Socket socket) throws IOException
+	{
+		InputStream in = socket.getInputStream();
+		String[] requestLine = readLine(in).split(" "); //$NON-NLS-1$
+		if (requestLine.length < 2)
+		{
+			return;
+		}
+		String method = requestLine[0];
+		Map<String, String> headers = new HashMap<String, String>();
+		String line;
+		while ((line = readLine(in)).length() > 0)
+		{
+			int index = line.indexOf(':');
+			headers.put(line.substring(0, index).trim().toLowerCase(), line.substring(index + 1).trim());
+		}
+		byte[] body = new byte[0];
+		if (headers.containsKey("content-length")) //$NON-NLS-1$
+		{
+			body = new byte[Integer.parseInt(headers.get("content-length"))]; //$NON-NLS-1$
+			int count = 0;
+			while (count < body.length)
+			{
+				int read = in.read(body, count, body.length - count);
+				if (read == -1)
+				{
+					throw new IOException("Truncated body"); //$NON-NLS-1$
+				}
+				count += read;
+			}
+		}
+
+		String target = requestLine[1];
+		Map<String, String> query = new HashMap<String, String>();
+		int index = target.indexOf('?');
+		if (index != -1)
+		{
+			for (String arg : target.substring(index + 1).split("&")) //$NON-NLS-1$
+			{
+				int equal = arg.indexOf('=');
+				if (equal == -1)
+				{
+					query.put(arg, null);
+				}
+				else
+				{
+					query.put(arg.substring(0, equal), URLDecoder.decode(arg.substring(equal + 1), UTF_8));
+				}
+			}
+			target = target.substring(0, index);
+		}
+		String bucket = null;
+		String key = ""; //$NON-NLS-1$
+		if (target.length() > 1)
+		{
+			index = target.indexOf('/', 1);
+			if (index == -1)
+			{
+				bucket = target.substring(1);
+			}
+			else
+			{
+				bucket = target.substring(1, index);
+				key = URLDecoder.decode(target.substring(index + 1), UTF_8);
+			}
+		}
+
+		OutputStream out = socket.getOutputStream();
+		if (query.containsKey("partNumber") || (headers.containsKey("range") && "GET".equals(method))) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		{
+			transfer(method, bucket, key, query, headers, body, out);
+		}
+		else
+		{
+			handle(method, bucket, key, query, body, out);
+		}
+	}
+
+	/**
+	 * Serves a range or a part, as slow as the delay.
+	 */
+	private void transfer(String method, String bucket, String key, Map<String, String> query,
+			Map<String, String> headers, byte[] body, OutputStream out) throws IOException
+	{
+		int current = active.incrementAndGet();
+		synchronized (maxActive)
+		{
+			maxActive.set(Math.max(maxActive.get(), current));
+		}
+		try
+		{
+			Thread.sleep(delay);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		try
+		{
+			if ("PUT".equals(method)) //$NON-NLS-1$
+			{
+				count("PUT part"); //$NON-NLS-1$
+				synchronized (this)
+				{
+					SortedMap<Integer, byte[]> parts = uploads.get(query.get("uploadId")); //$NON-NLS-1$
+					if (parts == null)
+					{
+						respond(out, 404, null, error("NoSuchUpload")); //$NON-NLS-1$
+						return;
+					}
+					parts.put(Integer.valueOf(query.get("partNumber")), body); //$NON-NLS-1$
+				}
+				Map<String, String> responseHeaders = new HashMap<String, String>();
+				responseHeaders.put("ETag", new StoredObject(body).getETag()); //$NON-NLS-1$
+				respond(out, 200, responseHeaders, new byte[0]);
+				return;
+			}
+
+			count("GET range"); //$NON-NLS-1$
+			StoredObject object;
+			synchronized (this)
+			{
+				object = buckets.get(bucket).get(key);
+			}
+			if (object == null)
+			{
+				respond(out, 404, null, error("NoSuchKey")); //$NON-NLS-1$
+				return;
+			}
+			String ifMatch = headers.get("if-match"); //$NON-NLS-1$
+			if (ifMatch != null && !ifMatch.equals(object.getETag()))
+			{
+				respond(out, 412, null, error("PreconditionFailed")); //$NON-NLS-1$
+				return;
+			}
+			Matcher matcher = RANGE.matcher(headers.get("range")); //$NON-NLS-1$
+			matcher.matches();
+			int start = Integer.parseInt(matcher.group(1));
+			int end = Math.min(Integer.parseInt(matcher.group(2)), object.data.length - 1);
+			if (start >= object.data.length)
+			{
+				respond(out, 416, null, error("InvalidRange")); //$NON-NLS-1$
+				return;
+			}
+			byte[] data = new byte[end - start + 1];
+			System.arraycopy(object.data, start, data, 0, data.length);
+			Map<String, String> responseHeaders = new HashMap<String, String>();
+			responseHeaders.put("Content-Range", "bytes " + start + '-' + end + '/' + object.data.length); //$NON-NLS-1$ //$NON-NLS-2$
+			responseHeaders.put("ETag", object.getETag()); //$NON-NLS-1$
+			respond(out, 206, responseHeaders, data);
+		}
+		finally
+		{
+			active.decrementAndGet();
+		}
+	}
+
+	private synchronized void handle(String method, String bucket, String key, Map<String, String> query,
+			byte[] body, OutputStream out) throws IOException
+	{
+		if (bucket == null)
+		{
+			count(method);
+			StringBuilder xml = new StringBuilder("<ListAllMyBucketsResult><Buckets>"); //$NON-NLS-1$
+			for (String name : new TreeMap<String, SortedMap<String, StoredObject>>(buckets).keySet())
+			{
+				xml.append("<Bucket><Name>").append(name).append("</Name></Bucket>"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			xml.append("</Buckets></ListAllMyBucketsResult>"); //$NON-NLS-1$
+			respond(out, 200, null, xml.toString().getBytes(UTF_8));
+			return;
+		}
+		SortedMap<String, StoredObject> objects = buckets.get(bucket);
+		if (objects == null && !("PUT".equals(method) && key.length() == 0)) //$NON-NLS-1$
+		{
+			count(method);
+			respond(out, 404, null, error("NoSuchBucket")); //$NON-NLS-1$
+			return;
+		}
+
+		if ("POST".equals(method)) //$NON-NLS-1$
+		{
+			if (query.containsKey("uploads")) //$NON-NLS-1$
+			{
+				count("POST initiate"); //$NON-NLS-1$
+				String uploadId = "upload" + (++nextUploadId); //$NON-NLS-1$
+				uploads.put(uploadId, new TreeMap<Integer, byte[]>());
+				respond(out, 200, null, ("<InitiateMultipartUploadResult><Bucket>" + bucket + "</Bucket><Key>" + key //$NON-NLS-1$ //$NON-NLS-2$
+						+ "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>").getBytes(UTF_8)); //$NON-NLS-1$ //$NON-NLS-2$
+				return;
+			}
+			count("POST complete"); //$NON-NLS-1$
+			SortedMap<Integer, byte[]> parts = uploads.remove(query.get("uploadId")); //$NON-NLS-1$
+			if (parts == null)
+			{
+				respond(out, 404, null, error("NoSuchUpload")); //$NON-NLS-1$
+				return;
+			}
+			ByteArrayOutputStream data = new ByteArrayOutputStream();
+			Matcher matcher = PART.matcher(new String(body, UTF_8));
+			int expected = 1;
+			while (matcher.find())
+			{
+				byte[] part = parts.get(Integer.valueOf(matcher.group(1)));
+				if (part == null || Integer.parseInt(matcher.group(1)) != expected++
+						|| !new StoredObject(part).getETag().equals(matcher.group(2)))
+				{
+					respond(out, 200, null, error("InvalidPart")); //$NON-NLS-1$
+					return;
+				}
+				data.write(part);
+			}
+			objects.put(key, new StoredObject(data.toByteArray()));
+			respond(out, 200, null, ("<CompleteMultipartUploadResult><Key>" + key + "</Key></CompleteMultipartUploadResult>") //$NON-NLS-1$ //$NON-NLS-2$
+					.getBytes(UTF_8));
+			return;
+		}
+
+		if (key.length() == 0)
+		{
+			if ("GET".equals(method)) //$NON-NLS-1$
+			{
+				count("GET list"); //$NON-NLS-1$
+				list(bucket, objects, query, out);
+			}
+			else if ("HEAD".equals(method)) //$NON-NLS-1$
+			{
+				count(method);
+				respond(out, 200, null, null);
+			}
+			else if ("PUT".equals(method)) //$NON-NLS-1$
+			{
+				count(method);
+				createBucket(bucket);
+				respond(out, 200, null, new byte[0]);
+			}
+			else if ("DELETE".equals(method)) //$NON-NLS-1$
+			{
+				count(method);
+				buckets.remove(bucket);
+				respond(out, 204, null, null);
+			}
+			return;
+		}
+
+		count(method);
+		if ("PUT".equals(method)) //$NON-NLS-1$
+		{
+			objects.put(key, new StoredObject(body));
+			respond(out, 200, null, new byte[0]);
+		}
+		else if ("DELETE".equals(method)) //$NON-NLS-1$
+		{
+			if (query.containsKey("uploadId")) //$NON-NLS-1$
+			{
+				uploads.remove(query.get("uploadId")); //$NON-NLS-1$
+			}
+			else
+			{
+				objects.remove(key);
+			}
+			respond(out, 204, null, null);
+		}
+		else
+		{
+			StoredObject object = objects.get(key);
+			if (object == null)
+			{
+				respond(out, 404, null, "HEAD".equals(method) ? null : error("NoSuchKey")); //$NON-NLS-1$ //$NON-NLS-2$
+				return;
+			}
+			Map<String, String> responseHeaders = new HashMap<String, String>();
+			responseHeaders.put("ETag", object.getETag()); //$NON-NLS-1$
+			responseHeaders.put("Last-Modified", formatDate(object.lastModified)); //$NON-NLS-1$
+			if ("HEAD".equals(method)) //$NON-NLS-1$
+			{
+				responseHeaders.put("Content-Length", Integer.toString(object.data.length)); //$NON-NLS-1$
+				respond(out, 200, responseHeaders, null);
+			}
+			else
+			{
+				respond(out, 200, responseHeaders, object.data);
+			}
+		}
+	}
+
+	private void list(String bucket, SortedMap<String, StoredObject> objects, Map<String, String> query,
+			OutputStream out) throws IOException
+	{
+		String prefix = query.containsKey("prefix") ? query.get("prefix") : ""; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		String marker = query.get("marker"); //$NON-NLS-1$
+		List<Map.Entry<String, StoredObject>> page = new ArrayList<Map.Entry<String, StoredObject>>();
+		boolean truncated = false;
+		SortedMap<String, StoredObject> tail = (marker == null) ? objects : objects.tailMap(marker + '\0');
+		for (Map.Entry<String, StoredObject> entry : tail.entrySet())
+		{
+			if (!entry.getKey().startsWith(prefix))
+			{
+				continue;
+			}
+			if (page.size() == pageSize)
+			{
+				truncated = true;
+				break;
+			}
+			page.add(entry);
+		}
+
+		SimpleDateFormat iso8601 = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'"); //$NON-NLS-1$
+		iso8601.setTimeZone(TimeZone.getTimeZone("GMT")); //$NON-NLS-1$
+		StringBuilder xml = new StringBuilder("<ListBucketResult><Name>").append(bucket).append("</Name>"); //$NON-NLS-1$ //$NON-NLS-2$
+		xml.append("<Prefix>").append(escape(prefix)).append("</Prefix>"); //$NON-NLS-1$ //$NON-NLS-2$
+		xml.append("<Marker>").append(marker == null ? "" : escape(marker)).append("</Marker>"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		xml.append("<MaxKeys>").append(pageSize).append("</MaxKeys>"); //$NON-NLS-1$ //$NON-NLS-2$
+		xml.append("<IsTruncated>").append(truncated).append("</IsTruncated>"); //$NON-NLS-1$ //$NON-NLS-2$
+		for (Map.Entry<String, StoredObject> entry : page)
+		{
+			xml.append("<Contents><Key>").append(escape(entry.getKey())).append("</Key>"); //$NON-NLS-1$ //$NON-NLS-2$
+			xml.append("<LastModified>").append(iso8601.format(entry.getValue().lastModified)).append("</LastModified>"); //$NON-NLS-1$ //$NON-NLS-2$
+			xml.append("<ETag>").append(escape(entry.getValue().getETag())).append("</ETag>"); //$NON-NLS-1$ //$NON-NLS-2$
+			xml.append("<Size>").append(entry.getValue().data.length).append("</Size>"); //$NON-NLS-1$ //$NON-NLS-2$
+			xml.append("<StorageClass>STANDARD</StorageClass></Contents>"); //$NON-NLS-1$
+		}
+		xml.append("</ListBucketResult>"); //$NON-NLS-1$
+		respond(out, 200, null, xml.toString().getBytes(UTF_8));
+	}
+
+	private void count(String type)
+	{
+		AtomicInteger count = requestCounts.get(type);
+		if (count == null)
+		{
+			synchronized (requestCounts)
+			{
+				count = requestCounts.get(type);
+				if (count == null)
+				{
+					count = new AtomicInteger();
+					requestCounts.put(type, count);
+				}
+			}
+		}
+		count.incrementAndGet();
+	}
+
+	private static byte[] error(String code) throws IOException
+	{
+		return ("<Error><Code>" + code + "</Code><Message>" + code + "</Message></Error>").getBytes(UTF_8); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+	private static String escape(String text)
+	{
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace("\"", "&quot;"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+	}
+
+	private static String formatDate(Date date)
+	{
+		SimpleDateFormat format = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss z", Locale.US); //$NON-NLS-1$
+		format.setTimeZone(TimeZone.getTimeZone("GMT")); //$NON-NLS-1$
+		return format.format(date);
+	}
+
+	/**
+	 * @param body
+	 *            the body, or null for none (the Content-Length header is then left to the caller)
+	 */
+	private static void respond(OutputStream out, int code, Map<String, String> headers, byte[] body)
+			throws IOException
+	{
+		StringBuilder response = new StringBuilder("HTTP/1.1 ").append(code).append(" S3\r\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		response.append("Connection: close\r\n"); //$NON-NLS-1$
+		if (headers != null)
+		{
+			for (Map.Entry<String, String> header : headers.entrySet())
+			{
+				response.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+		if (body != null)
+		{
+			response.append("Content-Length: ").append(body.length).append("\r\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		else if (headers == null || !headers.containsKey("Content-Length")) //$NON-NLS-1$
+		{
+			response.append("Content-Length: 0\r\n"); //$NON-NLS-1$
+		}
+		response.append("\r\n"); //$NON-NLS-1$
+		out.write(response.toString().getBytes(UTF_8));
+		if (body != null)
+		{
+			out.write(body);
+		}
+		out.flush();
+	}
+
+	private static String readLine(InputStream in) throws IOException
+	{
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int c;
+		while ((c = in.read()) != -1 && c != '\n')
+		{
+			if (c != '\r')
+			{
+				line.write(c);
+			}
+		}
+		return line.toString(UTF_8);
+	}
+}
@@ -0,0 +1,254 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.filesystem.s3;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.filesystem.IFileTree;
+import org.eclipse.core.runtime.CoreException;
+
+import com.aptana.core.io.vfs.IFileTreeVisitor;
+
+/**
+ * Runs the S3 file store against a local stand-in for S3.
+ */
+public class S3FileStoreTest extends TestCase
+{
+
+	private static final String BUCKET = "bucket"; //$NON-NLS-1$
+	private static final int PART_SIZE = 1000;
+
+	private LocalS3Server server;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		server = new LocalS3Server(3, 50);
+		server.createBucket(BUCKET);
+		System.setProperty(S3FileStore.PART_SIZE_PROPERTY, Integer.toString(PART_SIZE));
+		System.setProperty(S3FileStore.SMALL_PARTS_PROPERTY, Boolean.TRUE.toString());
+		System.setProperty(S3FileStore.TRANSFER_THREADS_PROPERTY, "4"); //$NON-NLS-1$
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		System.clearProperty(S3FileStore.PART_SIZE_PROPERTY);
+		System.clearProperty(S3FileStore.SMALL_PARTS_PROPERTY);
+		System.clearProperty(S3FileStore.TRANSFER_THREADS_PROPERTY);
+		server.stop();
+		server = null;
+		super.tearDown();
+	}
+
+	private S3FileStore getStore(String path)
+	{
+		return new S3FileStore(URI.create("s3://key:secret@localhost:" + server.getPort() + path)); //$NON-NLS-1$
+	}
+
+	private void putObject(String key, int size)
+	{
+		server.putObject(BUCKET, key, data(size));
+	}
+
+	private static byte[] data(int size)
+	{
+		byte[] data = new byte[size];
+		for (int i = 0; i < size; ++i)
+		{
+			data[i] = (byte) (i * 31 + i / 251);
+		}
+		return data;
+	}
+
+	private static List<String> names(IFileInfo[] infos)
+	{
+		List<String> names = new ArrayList<String>();
+		for (IFileInfo info : infos)
+		{
+			names.add(info.getName());
+		}
+		return names;
+	}
+
+	public void testFetchFileTreeFromPagedListing() throws CoreException
+	{
+		putObject("dir/a.txt", 10); //$NON-NLS-1$
+		putObject("dir/b.txt", 20); //$NON-NLS-1$
+		putObject("dir/empty_$folder$", 0); //$NON-NLS-1$
+		putObject("dir/sub/c.txt", 30); //$NON-NLS-1$
+		putObject("dir/sub/deeper/d.txt", 40); //$NON-NLS-1$
+		putObject("dir2/x.txt", 50); //$NON-NLS-1$
+		putObject("dir_$folder$", 0); //$NON-NLS-1$
+		putObject("top.txt", 60); //$NON-NLS-1$
+		server.resetCounts();
+
+		S3FileStore dir = getStore("/bucket/dir"); //$NON-NLS-1$
+		IFileTree tree = dir.fetchFileTree(null, null);
+
+		// 7 keys start with "dir", by pages of 3
+		assertEquals(3, server.getRequestCount("GET list")); //$NON-NLS-1$
+		assertEquals(0, server.getRequestCount("HEAD")); //$NON-NLS-1$
+
+		IFileInfo[] infos = tree.getChildInfos(dir);
+		assertEquals(Arrays.asList("a.txt", "b.txt", "empty", "sub"), names(infos)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		assertFalse(infos[0].isDirectory());
+		assertEquals(10, infos[0].getLength());
+		assertEquals(20, infos[1].getLength());
+		assertTrue(infos[2].isDirectory());
+		assertTrue(infos[3].isDirectory());
+
+		IFileStore[] stores = tree.getChildStores(dir);
+		assertEquals(dir.getChild("sub"), stores[3]); //$NON-NLS-1$
+		assertEquals(0, tree.getChildStores(stores[2]).length);
+		assertEquals(Arrays.asList("c.txt", "deeper"), names(tree.getChildInfos(stores[3]))); //$NON-NLS-1$ //$NON-NLS-2$
+		IFileStore deeper = stores[3].getChild("deeper"); //$NON-NLS-1$
+		IFileInfo[] deeperInfos = tree.getChildInfos(deeper);
+		assertEquals(Arrays.asList("d.txt"), names(deeperInfos)); //$NON-NLS-1$
+		assertEquals(40, deeperInfos[0].getLength());
+		assertTrue(tree.getFileInfo(deeper.getChild("d.txt")).exists()); //$NON-NLS-1$
+	}
+
+	public void testFetchFileTreeWithVisitor() throws CoreException
+	{
+		putObject("dir/a.txt", 10); //$NON-NLS-1$
+		putObject("dir/skipped/b.txt", 20); //$NON-NLS-1$
+		putObject("dir/sub/c.txt", 30); //$NON-NLS-1$
+
+		S3FileStore dir = getStore("/bucket/dir"); //$NON-NLS-1$
+		final List<String> visited = new ArrayList<String>();
+		IFileTree tree = dir.fetchFileTree(new IFileTreeVisitor()
+		{
+			public boolean include(IFileStore store) throws CoreException
+			{
+				visited.add(store.getName());
+				return !"skipped".equals(store.getName()); //$NON-NLS-1$
+			}
+		}, null);
+
+		assertEquals(Arrays.asList("a.txt", "sub"), names(tree.getChildInfos(dir))); //$NON-NLS-1$ //$NON-NLS-2$
+		assertFalse(visited.contains("b.txt")); //$NON-NLS-1$
+		assertTrue(visited.contains("c.txt")); //$NON-NLS-1$
+	}
+
+	public void testFetchFileTreeOfRoot() throws CoreException
+	{
+		server.createBucket("other"); //$NON-NLS-1$
+		server.putObject("other", "x.txt", data(5)); //$NON-NLS-1$ //$NON-NLS-2$
+		putObject("dir/a.txt", 10); //$NON-NLS-1$
+
+		S3FileStore root = getStore("/"); //$NON-NLS-1$
+		IFileTree tree = root.fetchFileTree(null, null);
+
+		IFileStore[] buckets = tree.getChildStores(root);
+		assertEquals(Arrays.asList(BUCKET, "other"), names(tree.getChildInfos(root))); //$NON-NLS-1$
+		assertEquals(Arrays.asList("dir"), names(tree.getChildInfos(buckets[0]))); //$NON-NLS-1$
+		assertEquals(Arrays.asList("x.txt"), names(tree.getChildInfos(buckets[1]))); //$NON-NLS-1$
+		assertEquals(0, server.getRequestCount("HEAD")); //$NON-NLS-1$
+	}
+
+	public void testChildNamesOfPagedListing() throws CoreException
+	{
+		for (int i = 0; i < 10; ++i)
+		{
+			putObject("dir/file" + i, 1); //$NON-NLS-1$
+		}
+
+		String[] names = getStore("/bucket/dir").childNames(EFS.NONE, null); //$NON-NLS-1$
+		assertEquals(10, names.length);
+	}
+
+	public void testMultipartUpload() throws Exception
+	{
+		byte[] data = data(PART_SIZE * 10 + 500);
+		server.resetCounts();
+
+		OutputStream out = getStore("/bucket/big.bin").openOutputStream(EFS.NONE, null); //$NON-NLS-1$
+		// by small writes, as copies do
+		for (int i = 0; i < data.length; i += 333)
+		{
+			out.write(data, i, Math.min(333, data.length - i));
+		}
+		out.close();
+
+		assertTrue(Arrays.equals(data, server.getObject(BUCKET, "big.bin"))); //$NON-NLS-1$
+		assertEquals(1, server.getRequestCount("POST initiate")); //$NON-NLS-1$
+		assertEquals(11, server.getRequestCount("PUT part")); //$NON-NLS-1$
+		assertEquals(1, server.getRequestCount("POST complete")); //$NON-NLS-1$
+		assertEquals(0, server.getRequestCount("PUT")); //$NON-NLS-1$
+		assertTrue(server.getMaxConcurrentTransfers() > 1);
+		assertEquals(0, server.getPendingUploadCount());
+	}
+
+	public void testSmallUploadIsOneRequest() throws Exception
+	{
+		byte[] data = data(PART_SIZE);
+		server.resetCounts();
+
+		OutputStream out = getStore("/bucket/small.bin").openOutputStream(EFS.NONE, null); //$NON-NLS-1$
+		out.write(data);
+		out.close();
+
+		assertTrue(Arrays.equals(data, server.getObject(BUCKET, "small.bin"))); //$NON-NLS-1$
+		assertEquals(1, server.getRequestCount("PUT")); //$NON-NLS-1$
+		assertEquals(0, server.getRequestCount("POST initiate")); //$NON-NLS-1$
+	}
+
+	public void testPartSizeIsAtLeastFiveMegabytes() throws Exception
+	{
+		assertEquals(PART_SIZE, S3FileStore.getPartSize());
+		System.clearProperty(S3FileStore.SMALL_PARTS_PROPERTY);
+		assertEquals(5 * 1024 * 1024, S3FileStore.getPartSize());
+		System.setProperty(S3FileStore.PART_SIZE_PROPERTY, Integer.toString(16 * 1024 * 1024));
+		assertEquals(16 * 1024 * 1024, S3FileStore.getPartSize());
+	}
+
+	public void testParallelDownload() throws Exception
+	{
+		byte[] data = data(PART_SIZE * 10 + 500);
+		server.putObject(BUCKET, "big.bin", data); //$NON-NLS-1$
+		server.resetCounts();
+
+		InputStream in = getStore("/bucket/big.bin").openInputStream(EFS.NONE, null); //$NON-NLS-1$
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[777];
+		int read;
+		while ((read = in.read(buffer)) != -1)
+		{
+			out.write(buffer, 0, read);
+		}
+		in.close();
+
+		assertTrue(Arrays.equals(data, out.toByteArray()));
+		assertEquals(11, server.getRequestCount("GET range")); //$NON-NLS-1$
+		assertTrue(server.getMaxConcurrentTransfers() > 1);
+	}
+
+	public void testEmptyObject() throws Exception
+	{
+		S3FileStore store = getStore("/bucket/empty.txt"); //$NON-NLS-1$
+		store.openOutputStream(EFS.NONE, null).close();
+		assertEquals(0, server.getObject(BUCKET, "empty.txt").length); //$NON-NLS-1$
+
+		InputStream in = store.openInputStream(EFS.NONE, null);
+		assertEquals(-1, in.read());
+		in.close();
+	}
+}
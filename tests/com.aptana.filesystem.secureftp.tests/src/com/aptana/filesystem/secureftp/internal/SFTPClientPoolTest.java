@@ -0,0 +1,80 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.filesystem.secureftp.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.enterprisedt.net.ftp.ssh.SSHFTPClient;
+
+public class SFTPClientPoolTest extends TestCase
+{
+
+	private SFTPClientPool pool;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		System.setProperty(SFTPClientPool.MAX_CONNECTIONS_PROPERTY, "3"); //$NON-NLS-1$
+		pool = new SFTPClientPool();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		System.clearProperty(SFTPClientPool.MAX_CONNECTIONS_PROPERTY);
+		pool.dispose();
+		pool = null;
+		super.tearDown();
+	}
+
+	public void testCheckOutIsBounded()
+	{
+		List<SSHFTPClient> clients = new ArrayList<SSHFTPClient>();
+		for (int i = 0; i < 3; ++i)
+		{
+			SSHFTPClient client = pool.checkOut();
+			assertNotNull(client);
+			assertFalse(clients.contains(client));
+			clients.add(client);
+		}
+		assertNull(pool.checkOut());
+
+		pool.checkIn(clients.remove(0));
+		SSHFTPClient client = pool.checkOut();
+		assertNotNull(client);
+		clients.add(client);
+		assertNull(pool.checkOut());
+
+		for (SSHFTPClient c : clients)
+		{
+			pool.checkIn(c);
+		}
+	}
+
+	public void testCheckOutAfterDispose()
+	{
+		SSHFTPClient client = pool.checkOut();
+		assertNotNull(client);
+		pool.dispose();
+		assertNull(pool.checkOut());
+		// still accepted, and let go
+		pool.checkIn(client);
+		assertNull(pool.checkOut());
+	}
+
+	public void testUnconnectedClientsAreNotReused()
+	{
+		SSHFTPClient client = pool.checkOut();
+		pool.checkIn(client);
+		assertNotSame(client, pool.checkOut());
+	}
+}
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -14,6 +14,7 @@ import org.kohsuke.junit.ParallelTestSuite;
 
 import com.aptana.filesystem.secureftp.FTPSConnectionPointTest;
 import com.aptana.filesystem.secureftp.SFTPConnectionPointTest;
+import com.aptana.filesystem.secureftp.internal.SFTPClientPoolTest;
 
 public class AllTests
 {
@@ -35,6 +36,7 @@ public class AllTests
 		suite.addTestSuite(SFTPConnectionPointTest.class);
 		suite.addTestSuite(SFTPConnectionTest.class);
 		suite.addTestSuite(FTPSConnectionPointTest.class);
+		suite.addTestSuite(SFTPClientPoolTest.class);
 		// suite.addTestSuite(FTPSConnectionTest.class);
 		// suite.addTestSuite(FTPSConnectionWithBasePathTest.class);
 		// suite.addTestSuite(ImplicitFTPSConnectionTest.class);
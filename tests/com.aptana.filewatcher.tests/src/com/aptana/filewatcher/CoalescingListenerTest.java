@@ -0,0 +1,224 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.filewatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import net.contentobjects.jnotify.IJNotify;
+import net.contentobjects.jnotify.JNotifyListener;
+
+public class CoalescingListenerTest extends TestCase
+{
+
+	private static final String ROOT = "/root"; //$NON-NLS-1$
+
+	/**
+	 * Keeps the scheduled tasks until the test runs them, whatever their delay.
+	 */
+	private static class ManualExecutor extends ScheduledThreadPoolExecutor
+	{
+		private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+		private ManualExecutor()
+		{
+			super(1);
+		}
+
+		@Override
+		public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit)
+		{
+			tasks.add(command);
+			return null;
+		}
+
+		private int runTasks()
+		{
+			List<Runnable> due = new ArrayList<Runnable>(tasks);
+			tasks.clear();
+			for (Runnable task : due)
+			{
+				task.run();
+			}
+			return due.size();
+		}
+	}
+
+	private static class RecordingListener implements JNotifyListener
+	{
+		private final List<String> events = new ArrayList<String>();
+
+		public void fileCreated(int wd, String rootPath, String name)
+		{
+			events.add("created " + name); //$NON-NLS-1$
+		}
+
+		public void fileDeleted(int wd, String rootPath, String name)
+		{
+			events.add("deleted " + name); //$NON-NLS-1$
+		}
+
+		public void fileModified(int wd, String rootPath, String name)
+		{
+			events.add("modified " + name); //$NON-NLS-1$
+		}
+
+		public void fileRenamed(int wd, String rootPath, String oldName, String newName)
+		{
+			events.add("renamed " + oldName + " to " + newName); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	private ManualExecutor executor;
+	private RecordingListener recorder;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		executor = new ManualExecutor();
+		recorder = new RecordingListener();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		executor.shutdownNow();
+		executor = null;
+		recorder = null;
+		super.tearDown();
+	}
+
+	private CoalescingListener createListener(long delay, long maxDelay)
+	{
+		return new CoalescingListener(recorder, executor, delay, maxDelay);
+	}
+
+	private void assertEvents(String... expected)
+	{
+		assertEquals(Arrays.asList(expected), recorder.events);
+	}
+
+	public void testMerge()
+	{
+		assertEquals(0, CoalescingListener.merge(IJNotify.FILE_CREATED, IJNotify.FILE_DELETED));
+		assertEquals(IJNotify.FILE_CREATED, CoalescingListener.merge(IJNotify.FILE_CREATED, IJNotify.FILE_MODIFIED));
+		assertEquals(IJNotify.FILE_MODIFIED, CoalescingListener.merge(IJNotify.FILE_DELETED, IJNotify.FILE_CREATED));
+		assertEquals(IJNotify.FILE_DELETED, CoalescingListener.merge(IJNotify.FILE_MODIFIED, IJNotify.FILE_DELETED));
+		assertEquals(IJNotify.FILE_MODIFIED, CoalescingListener.merge(IJNotify.FILE_MODIFIED, IJNotify.FILE_MODIFIED));
+	}
+
+	public void testEventsOfSamePathAreMerged()
+	{
+		CoalescingListener listener = createListener(0, 0);
+		listener.fileModified(1, ROOT, "a"); //$NON-NLS-1$
+		listener.fileModified(1, ROOT, "b"); //$NON-NLS-1$
+		listener.fileModified(1, ROOT, "a"); //$NON-NLS-1$
+		listener.fileCreated(1, ROOT, "c"); //$NON-NLS-1$
+		listener.fileModified(1, ROOT, "c"); //$NON-NLS-1$
+		listener.fileDeleted(1, ROOT, "d"); //$NON-NLS-1$
+		listener.fileCreated(1, ROOT, "d"); //$NON-NLS-1$
+
+		assertEquals(1, executor.runTasks());
+		assertEvents("modified a", "modified b", "created c", "modified d"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	}
+
+	public void testCreateThenDeleteIsDropped()
+	{
+		CoalescingListener listener = createListener(0, 0);
+		listener.fileCreated(1, ROOT, "tmp"); //$NON-NLS-1$
+		listener.fileModified(1, ROOT, "tmp"); //$NON-NLS-1$
+		listener.fileDeleted(1, ROOT, "tmp"); //$NON-NLS-1$
+		executor.runTasks();
+		assertEvents();
+
+		// the path starts over once the events cancelled each other
+		listener.fileCreated(1, ROOT, "tmp"); //$NON-NLS-1$
+		executor.runTasks();
+		assertEvents("created tmp"); //$NON-NLS-1$
+	}
+
+	public void testRenameKeepsOrder()
+	{
+		CoalescingListener listener = createListener(0, 0);
+		listener.fileModified(1, ROOT, "a"); //$NON-NLS-1$
+		listener.fileRenamed(1, ROOT, "a", "b"); //$NON-NLS-1$ //$NON-NLS-2$
+		listener.fileModified(1, ROOT, "a"); //$NON-NLS-1$
+		listener.fileModified(1, ROOT, "b"); //$NON-NLS-1$
+		listener.fileModified(1, ROOT, "b"); //$NON-NLS-1$
+
+		executor.runTasks();
+		assertEvents("modified a", "renamed a to b", "modified a", "modified b"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	}
+
+	public void testEventsAreHeldDuringBurst()
+	{
+		CoalescingListener listener = createListener(60000, 120000);
+		listener.fileModified(1, ROOT, "a"); //$NON-NLS-1$
+
+		// the burst is not over yet, so the flush checks again later
+		assertEquals(1, executor.runTasks());
+		assertEvents();
+		assertEquals(1, executor.tasks.size());
+	}
+
+	public void testLongBurstIsFlushedAfterMaxDelay() throws Exception
+	{
+		CoalescingListener listener = createListener(30, 60);
+		listener.fileModified(1, ROOT, "a"); //$NON-NLS-1$
+		Thread.sleep(100);
+		listener.fileModified(1, ROOT, "b"); //$NON-NLS-1$
+
+		// the last event is recent, but the first one waited long enough
+		executor.runTasks();
+		assertEvents("modified a", "modified b"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertTrue(executor.tasks.isEmpty());
+
+		// a new burst is timed from its own first event
+		listener.fileModified(1, ROOT, "c"); //$NON-NLS-1$
+		executor.runTasks();
+		assertEvents("modified a", "modified b"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	public void testDisposeDropsPendingEvents()
+	{
+		CoalescingListener listener = createListener(0, 0);
+		listener.fileModified(1, ROOT, "a"); //$NON-NLS-1$
+		listener.dispose();
+		listener.fileModified(1, ROOT, "b"); //$NON-NLS-1$
+
+		executor.runTasks();
+		assertEvents();
+	}
+
+	public void testDisposeDuringDeliveryStopsIt()
+	{
+		final CoalescingListener[] listener = new CoalescingListener[1];
+		recorder = new RecordingListener()
+		{
+			@Override
+			public void fileModified(int wd, String rootPath, String name)
+			{
+				super.fileModified(wd, rootPath, name);
+				// the watch is removed while the batch is delivered
+				listener[0].dispose();
+			}
+		};
+		listener[0] = createListener(0, 0);
+		listener[0].fileModified(1, ROOT, "a"); //$NON-NLS-1$
+		listener[0].fileModified(1, ROOT, "b"); //$NON-NLS-1$
+
+		executor.runTasks();
+		assertEvents("modified a"); //$NON-NLS-1$
+	}
+}
@@ -14,6 +14,7 @@ public class IndexCoreTests extends TestCase
 		suite.addTestSuite(FileStoreBuildContextTest.class);
 		suite.addTestSuite(IndexContainerJobTest.class);
 		suite.addTestSuite(IndexTest.class);
+		suite.addTestSuite(TrigramIndexTest.class);
 		//$JUnit-END$
 		return suite;
 	}
@@ -0,0 +1,147 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.eclipse.test.performance.PerformanceTestCase;
+
+import com.aptana.core.util.FileUtil;
+import com.aptana.core.util.IOUtil;
+
+/**
+ * Measures the latency of a text search over a generated workspace, when the search first narrows down its candidates
+ * through the {@link TrigramIndex}, and compares it to a search that scans every file.
+ */
+@SuppressWarnings("nls")
+public class TrigramIndexPerformanceTest extends PerformanceTestCase
+{
+	private static final int NUM_FILES = 5000;
+	private static final int LINES_PER_FILE = 100;
+	private static final String[] WORDS = { "function", "var", "return", "this", "prototype", "length", "value",
+			"element", "document", "window", "callback", "options", "result", "index", "node", "parent" };
+
+	private File root;
+	private List<File> files;
+	private TrigramIndex index;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		root = File.createTempFile("trigram_workspace", "");
+		root.delete();
+		root.mkdirs();
+		files = new ArrayList<File>(NUM_FILES);
+		index = new TrigramIndex();
+		Random random = new Random(NUM_FILES);
+		for (int i = 0; i < NUM_FILES; i++)
+		{
+			File file = new File(root, "file" + i + ".js");
+			StringBuilder content = new StringBuilder();
+			for (int line = 0; line < LINES_PER_FILE; line++)
+			{
+				for (int w = 0; w < 8; w++)
+				{
+					content.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(100)).append(' ');
+				}
+				content.append('\n');
+			}
+			// Plant a rare identifier in one percent of the files.
+			if (i % 100 == 0)
+			{
+				content.append("var uniqueIdentifier").append(i).append(" = 1;\n");
+			}
+			FileWriter writer = new FileWriter(file);
+			writer.write(content.toString());
+			writer.close();
+			files.add(file);
+			index.add(file.toURI(), content.toString());
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		FileUtil.deleteRecursively(root);
+		files = null;
+		index = null;
+		super.tearDown();
+	}
+
+	public void testIndexedSearch() throws Exception
+	{
+		for (int i = 0; i < 10; i++)
+		{
+			startMeasuring();
+			int matches = search("uniqueIdentifier", false, true);
+			stopMeasuring();
+			assertEquals(NUM_FILES / 100, matches);
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	public void testIndexedRegexSearch() throws Exception
+	{
+		for (int i = 0; i < 10; i++)
+		{
+			startMeasuring();
+			int matches = search("unique\\w+\\d+ = 1", true, true);
+			stopMeasuring();
+			assertEquals(NUM_FILES / 100, matches);
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	public void testFullScanSearch() throws Exception
+	{
+		for (int i = 0; i < 10; i++)
+		{
+			startMeasuring();
+			int matches = search("uniqueIdentifier", false, false);
+			stopMeasuring();
+			assertEquals(NUM_FILES / 100, matches);
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	/**
+	 * Returns the number of files that match the given text.
+	 */
+	private int search(String text, boolean isRegEx, boolean useIndex) throws IOException
+	{
+		Set<URI> candidates = useIndex ? index.getCandidates(text, isRegEx) : null;
+		Pattern pattern = Pattern.compile(isRegEx ? text : Pattern.quote(text));
+		int matches = 0;
+		for (File file : files)
+		{
+			if (candidates != null && !candidates.contains(file.toURI()))
+			{
+				continue;
+			}
+			String content = IOUtil.read(new FileInputStream(file));
+			if (pattern.matcher(content).find())
+			{
+				matches++;
+			}
+		}
+		return matches;
+	}
+}
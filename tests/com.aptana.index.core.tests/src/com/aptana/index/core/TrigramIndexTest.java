@@ -0,0 +1,136 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("nls")
+public class TrigramIndexTest extends TestCase
+{
+
+	private TrigramIndex index;
+	private URI a;
+	private URI b;
+	private URI c;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		index = new TrigramIndex();
+		a = new URI("file:/project/a.js");
+		b = new URI("file:/project/b.js");
+		c = new URI("file:/other/c.js");
+		index.add(a, "function Hello(name) { return 'hello ' + name; }");
+		index.add(b, "var greeting = HELLO_WORLD;");
+		index.add(c, "nothing to see here");
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		index = null;
+		super.tearDown();
+	}
+
+	public void testCaseInsensitiveCandidates() throws Exception
+	{
+		assertEquals(new HashSet<URI>(Arrays.asList(a, b)), index.getCandidates("hello", false));
+	}
+
+	public void testNoCandidates() throws Exception
+	{
+		assertTrue(index.getCandidates("missing", false).isEmpty());
+	}
+
+	public void testShortTextCannotNarrow() throws Exception
+	{
+		assertNull(index.getCandidates("he", false));
+	}
+
+	public void testRegexCandidates() throws Exception
+	{
+		Set<URI> candidates = index.getCandidates("func\\w+\\s+hel+o", true);
+		assertEquals(new HashSet<URI>(Arrays.asList(a)), candidates);
+	}
+
+	public void testRegexWithAlternationCannotNarrow() throws Exception
+	{
+		assertNull(index.getCandidates("hello|nothing", true));
+	}
+
+	public void testLiteralFragments() throws Exception
+	{
+		assertEquals(Arrays.asList("foo.bar", "qux", "en"),
+				TrigramIndex.getLiteralFragments("foo\\.bar(baz|x)?qux[abc]+end?\\d"));
+	}
+
+	public void testEscapeOperandsAreNotLiteral() throws Exception
+	{
+		assertTrue(TrigramIndex.getLiteralFragments("\\x41bc").isEmpty());
+		assertTrue(TrigramIndex.getLiteralFragments("foo\\u0041bar").isEmpty());
+		assertTrue(TrigramIndex.getLiteralFragments("\\0101xyz").isEmpty());
+		assertTrue(TrigramIndex.getLiteralFragments("\\cJabc").isEmpty());
+		assertTrue(TrigramIndex.getLiteralFragments("\\p{Lu}abc").isEmpty());
+		assertTrue(TrigramIndex.getLiteralFragments("(?<n>a)\\k<n>bc").isEmpty());
+		assertNull(index.getCandidates("\\x41bc", true));
+	}
+
+	public void testEscapedPunctuationAndBackReferences() throws Exception
+	{
+		assertEquals(Arrays.asList("a/b-c", "end"), TrigramIndex.getLiteralFragments("a\\/b\\-c\\12end"));
+	}
+
+	public void testRemove() throws Exception
+	{
+		index.remove(a);
+		assertFalse(index.contains(a));
+		assertEquals(new HashSet<URI>(Arrays.asList(b)), index.getCandidates("hello", false));
+	}
+
+	public void testReplaceContent() throws Exception
+	{
+		index.add(b, "var x = 1;");
+		assertEquals(new HashSet<URI>(Arrays.asList(a)), index.getCandidates("hello", false));
+	}
+
+	public void testRemoveAll() throws Exception
+	{
+		index.removeAll(new URI("file:/project/"));
+		assertEquals(1, index.size());
+		assertTrue(index.contains(c));
+	}
+
+	public void testIndexStamp() throws Exception
+	{
+		index.add(b, "var x = 1;", 1234);
+		assertEquals(1234, index.getIndexStamp(b));
+		index.remove(b);
+		assertEquals(-1, index.getIndexStamp(b));
+		assertEquals(-1, index.getIndexStamp(new URI("file:/project/unknown.js")));
+	}
+
+	public void testCompaction() throws Exception
+	{
+		for (int i = 0; i < 3000; i++)
+		{
+			index.add(new URI("file:/gen/" + i + ".js"), "generated " + i);
+		}
+		for (int i = 0; i < 3000; i++)
+		{
+			index.remove(new URI("file:/gen/" + i + ".js"));
+		}
+		assertEquals(3, index.size());
+		assertEquals(new HashSet<URI>(Arrays.asList(a, b)), index.getCandidates("hello", false));
+	}
+}
@@ -0,0 +1,74 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.debug.core.internal;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class UtilTest extends TestCase
+{
+
+	public void testSplitLikeStringSplit()
+	{
+		String[] data = { "", "*", "***", "a", "a*b", "a**b", "*a", "a*", "a*b**", "**a*b", "12*result*a|b|c" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$ //$NON-NLS-10$ //$NON-NLS-11$
+		for (String string : data)
+		{
+			assertEquals(string, Arrays.asList(string.split("\\*")), Arrays.asList(Util.split(string, '*'))); //$NON-NLS-1$
+		}
+	}
+
+	public void testEncodeDecodeData()
+	{
+		String[] data = { "", "plain", "a*b|c#d", "##", "#2#1#0" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+		for (String string : data)
+		{
+			String encoded = Util.encodeData(string);
+			assertEquals(-1, encoded.indexOf('*'));
+			assertEquals(-1, encoded.indexOf('|'));
+			assertEquals(string, Util.decodeData(encoded));
+		}
+		assertEquals("a#2b#1c#0d", Util.encodeData("a*b|c#d")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	public void testTokenizerKeepsTrailingEmptyTokens()
+	{
+		Util.Tokenizer tokenizer = new Util.Tokenizer("name|Object|wo|", '|'); //$NON-NLS-1$
+		assertTrue(tokenizer.next());
+		assertEquals("name", tokenizer.token()); //$NON-NLS-1$
+		assertTrue(tokenizer.next());
+		assertEquals("Object", tokenizer.token()); //$NON-NLS-1$
+		assertTrue(tokenizer.next());
+		assertTrue(tokenizer.contains('o'));
+		assertFalse(tokenizer.contains('c'));
+		assertEquals(12, tokenizer.start());
+		assertEquals(14, tokenizer.end());
+		assertTrue(tokenizer.next());
+		assertEquals("", tokenizer.token()); //$NON-NLS-1$
+		assertFalse(tokenizer.next());
+
+		tokenizer = new Util.Tokenizer("", '|'); //$NON-NLS-1$
+		assertNull(tokenizer.token());
+		assertTrue(tokenizer.next());
+		assertEquals("", tokenizer.token()); //$NON-NLS-1$
+		assertFalse(tokenizer.next());
+	}
+
+	public void testTokenizerDecodesLikeDecodeData()
+	{
+		String[] data = { "", "plain", "a*b|c#d", "##", "#2#1#0", "#" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+		for (String string : data)
+		{
+			String encoded = Util.encodeData(string);
+			Util.Tokenizer tokenizer = new Util.Tokenizer("x|" + encoded + "|y", '|'); //$NON-NLS-1$ //$NON-NLS-2$
+			tokenizer.next();
+			tokenizer.next();
+			assertEquals(string, tokenizer.decodedToken());
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.debug.core.internal.model;
+
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class DebugConnectionTest extends TestCase
+{
+
+	private FakeDebugHost host;
+	private DebugConnection connection;
+	private List<String[]> messages;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		host = new FakeDebugHost();
+		host.start();
+		connection = DebugConnection.createConnection(new Socket("localhost", host.getPort())); //$NON-NLS-1$
+		messages = new ArrayList<String[]>();
+		connection.start(new DebugConnection.IHandler()
+		{
+			public void handleMessage(String[] args)
+			{
+				synchronized (messages)
+				{
+					messages.add(args);
+					messages.notifyAll();
+				}
+			}
+
+			public void handleShutdown()
+			{
+			}
+		});
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		try
+		{
+			// let the host close the socket first, so that the connection's reader thread ends
+			host.close();
+			connection.stop();
+			connection.dispose();
+		}
+		finally
+		{
+			connection = null;
+			host = null;
+			messages = null;
+			super.tearDown();
+		}
+	}
+
+	public void testSendCommandAndWait() throws Exception
+	{
+		host.reply("version", "1*2"); //$NON-NLS-1$ //$NON-NLS-2$
+		String[] args = connection.sendCommandAndWait("version"); //$NON-NLS-1$
+		assertNotNull(args);
+		assertEquals(3, args.length);
+		assertEquals("1", args[1]); //$NON-NLS-1$
+		assertEquals("2", args[2]); //$NON-NLS-1$
+	}
+
+	public void testPipelinedCommands() throws Exception
+	{
+		int count = 20;
+		String[] commands = new String[count];
+		for (int i = 0; i < count; ++i)
+		{
+			commands[i] = "variables*0*frame[" + i + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+			host.reply(commands[i], "v" + i + "|Number|w|" + i); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		// the host replies only once all the commands are received, in reverse order
+		host.setBatchSize(count);
+		String[][] replies = connection.sendCommandsAndWait(commands);
+		assertEquals(count, host.getMaxPending());
+		for (int i = 0; i < count; ++i)
+		{
+			assertNotNull(replies[i]);
+			assertEquals("v" + i + "|Number|w|" + i, replies[i][1]); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		assertTrue(messages.isEmpty());
+	}
+
+	public void testAsyncCommands() throws Exception
+	{
+		host.reply("frames*0", "0|f|||1|0|0|0"); //$NON-NLS-1$ //$NON-NLS-2$
+		host.reply("variables*0*frame[0]", "a|Number|w|1*b|String|w|x"); //$NON-NLS-1$ //$NON-NLS-2$
+		host.setBatchSize(2);
+		Future<String[]>[] replies = connection.sendCommandsAsync(new String[] { "frames*0", "variables*0*frame[0]" }); //$NON-NLS-1$ //$NON-NLS-2$
+		String[] frames = replies[0].get(DebugConnection.COMMAND_TIMEOUT, TimeUnit.MILLISECONDS);
+		String[] variables = replies[1].get(DebugConnection.COMMAND_TIMEOUT, TimeUnit.MILLISECONDS);
+		assertEquals("0|f|||1|0|0|0", frames[1]); //$NON-NLS-1$
+		assertEquals(3, variables.length);
+		assertEquals("b|String|w|x", variables[2]); //$NON-NLS-1$
+	}
+
+	public void testMessagesAreHandled() throws Exception
+	{
+		host.send("log*out*hello"); //$NON-NLS-1$
+		synchronized (messages)
+		{
+			long deadline = System.currentTimeMillis() + DebugConnection.COMMAND_TIMEOUT;
+			while (messages.isEmpty() && System.currentTimeMillis() < deadline)
+			{
+				messages.wait(100);
+			}
+		}
+		assertEquals(1, messages.size());
+		String[] args = messages.get(0);
+		assertEquals(3, args.length);
+		assertEquals("log", args[0]); //$NON-NLS-1$
+		assertEquals("hello", args[2]); //$NON-NLS-1$
+	}
+
+	public void testStopCancelsPendingCommands() throws Exception
+	{
+		// never replies
+		host.setBatchSize(Integer.MAX_VALUE);
+		Future<String[]> reply = connection.sendCommandsAsync(new String[] { "version" })[0]; //$NON-NLS-1$
+		assertFalse(reply.isDone());
+		connection.stop();
+		assertTrue(reply.isCancelled());
+		assertNull(connection.sendCommandAndWait("version")); //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,194 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.debug.core.internal.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A scripted debug host listening on a local port. It answers the commands with the replies registered through
+ * {@link #reply(String, String)}. Replies can be held back until a number of commands have been received, in which
+ * case they are sent in reverse order.
+ */
+class FakeDebugHost extends Thread
+{
+
+	private final ServerSocket serverSocket;
+	private final Map<String, String> replies = new HashMap<String, String>();
+	private final List<String> commands = new ArrayList<String>();
+	private int batchSize = 1;
+	private int maxPending;
+	private Socket socket;
+	private Writer writer;
+
+	FakeDebugHost() throws IOException
+	{
+		super("Fake Debug Host"); //$NON-NLS-1$
+		serverSocket = new ServerSocket(0);
+		setDaemon(true);
+	}
+
+	int getPort()
+	{
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Registers the reply to a command. The reply is sent as <code>reqid*reply</code>.
+	 */
+	synchronized void reply(String command, String reply)
+	{
+		replies.put(command, reply);
+	}
+
+	/**
+	 * Holds the replies back until the given number of commands is received.
+	 */
+	synchronized void setBatchSize(int batchSize)
+	{
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @return the maximum number of commands that were waiting for a reply at the same time
+	 */
+	synchronized int getMaxPending()
+	{
+		return maxPending;
+	}
+
+	synchronized List<String> getCommands()
+	{
+		return new ArrayList<String>(commands);
+	}
+
+	/**
+	 * Sends a message that is not a reply to a command
+	 */
+	void send(String message) throws IOException
+	{
+		synchronized (this)
+		{
+			while (writer == null)
+			{
+				try
+				{
+					wait();
+				}
+				catch (InterruptedException e)
+				{
+					throw new IOException(e.getMessage());
+				}
+			}
+		}
+		write(message);
+	}
+
+	void close() throws IOException
+	{
+		serverSocket.close();
+		if (socket != null)
+		{
+			socket.close();
+		}
+	}
+
+	@Override
+	public void run()
+	{
+		try
+		{
+			Socket socket = serverSocket.accept();
+			Reader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+			synchronized (this)
+			{
+				this.socket = socket;
+				writer = new OutputStreamWriter(socket.getOutputStream());
+				notifyAll();
+			}
+			List<String> pending = new ArrayList<String>();
+			String message;
+			while ((message = readMessage(reader)) != null)
+			{
+				int index = message.indexOf('*');
+				String reqid = message.substring(0, index);
+				String command = message.substring(index + 1);
+				String reply;
+				int size;
+				synchronized (this)
+				{
+					commands.add(command);
+					reply = replies.get(command);
+					size = batchSize;
+				}
+				pending.add(reqid + '*' + (reply != null ? reply : "unknown")); //$NON-NLS-1$
+				synchronized (this)
+				{
+					maxPending = Math.max(maxPending, pending.size());
+				}
+				if (pending.size() >= size)
+				{
+					for (int i = pending.size() - 1; i >= 0; --i)
+					{
+						write(pending.get(i));
+					}
+					pending.clear();
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			// closed
+		}
+	}
+
+	private void write(String message) throws IOException
+	{
+		synchronized (writer)
+		{
+			writer.write(Integer.toString(message.length()) + '*' + message);
+			writer.flush();
+		}
+	}
+
+	private static String readMessage(Reader reader) throws IOException
+	{
+		StringBuilder size = new StringBuilder();
+		int ch;
+		while ((ch = reader.read()) != '*')
+		{
+			if (ch == -1)
+			{
+				return null;
+			}
+			size.append((char) ch);
+		}
+		char[] buffer = new char[Integer.parseInt(size.toString())];
+		int length = 0;
+		while (length < buffer.length)
+		{
+			int n = reader.read(buffer, length, buffer.length - length);
+			if (n == -1)
+			{
+				return null;
+			}
+			length += n;
+		}
+		return new String(buffer);
+	}
+}
@@ -13,6 +13,7 @@ public class LexerTests extends TestCase
 		//$JUnit-BEGIN$
 		suite.addTestSuite(LexemeTest.class);
 		suite.addTestSuite(RangeTest.class);
+		suite.addTestSuite(TokenTextTableTest.class);
 		//$JUnit-END$
 		return suite;
 	}
@@ -0,0 +1,100 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing.lexer;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("nls")
+public class TokenTextTableTest extends TestCase
+{
+	private TokenTextTable fTable;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		fTable = new TokenTextTable();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		fTable = null;
+		super.tearDown();
+	}
+
+	private String intern(String source, int offset, int length)
+	{
+		return fTable.intern(source.toCharArray(), offset, length);
+	}
+
+	public void testSameTextIsShared()
+	{
+		String first = intern("var abc = abc;", 4, 3);
+		String second = intern("var abc = abc;", 10, 3);
+
+		assertEquals("abc", first);
+		assertSame(first, second);
+		assertEquals(1, fTable.size());
+		assertEquals(1, fTable.getHits());
+		assertEquals(1, fTable.getMisses());
+	}
+
+	public void testDifferentTexts()
+	{
+		assertEquals("ab", intern("abc", 0, 2));
+		assertEquals("bc", intern("abc", 1, 2));
+		assertEquals("", intern("abc", 1, 0));
+		assertEquals(3, fTable.size());
+	}
+
+	public void testLongTextsAreNotKept()
+	{
+		StringBuilder builder = new StringBuilder();
+
+		for (int i = 0; i <= TokenTextTable.MAX_TEXT_LENGTH; i++)
+		{
+			builder.append('x');
+		}
+
+		String source = builder.toString();
+		String first = intern(source, 0, source.length());
+
+		assertEquals(source, first);
+		assertNotSame(first, intern(source, 0, source.length()));
+		assertEquals(0, fTable.size());
+	}
+
+	public void testGrow()
+	{
+		String[] texts = new String[5000];
+
+		for (int i = 0; i < texts.length; i++)
+		{
+			texts[i] = intern("id" + i, 0, ("id" + i).length());
+		}
+
+		assertEquals(texts.length, fTable.size());
+
+		for (int i = 0; i < texts.length; i++)
+		{
+			assertSame(texts[i], intern("id" + i, 0, ("id" + i).length()));
+		}
+	}
+
+	public void testClear()
+	{
+		String first = intern("abc", 0, 3);
+
+		fTable.clear();
+
+		assertEquals(0, fTable.size());
+		assertEquals(0, fTable.getHits());
+		assertNotSame(first, intern("abc", 0, 3));
+	}
+}
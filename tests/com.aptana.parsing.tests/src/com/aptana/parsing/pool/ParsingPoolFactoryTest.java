@@ -7,8 +7,6 @@
  */
 package com.aptana.parsing.pool;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Queue;
@@ -17,14 +15,14 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import junit.framework.TestCase;
 import beaver.Symbol;
 
-import com.aptana.core.epl.util.LRUCacheWithSoftPrunedValues;
+import com.aptana.internal.parsing.ParseCache;
 import com.aptana.parsing.AbstractParser;
 import com.aptana.parsing.IParseState;
 import com.aptana.parsing.IParseStateCacheKey;
 import com.aptana.parsing.IParser;
 import com.aptana.parsing.IParserPool;
+import com.aptana.parsing.ParseCacheStatistics;
 import com.aptana.parsing.ParseState;
-import com.aptana.parsing.ParseStateCacheKey;
 import com.aptana.parsing.ParseStateCacheKeyWithComments;
 import com.aptana.parsing.ParsingEngine;
 import com.aptana.parsing.WorkingParseResult;
@@ -363,7 +361,6 @@ public class ParsingPoolFactoryTest extends TestCase
 
 	}
 
-	@SuppressWarnings({ "rawtypes" })
 	public void testParseWithSubParses() throws Exception
 	{
 		ParserWithSubParse mainParser = new ParserWithSubParse();
@@ -373,44 +370,77 @@ public class ParsingPoolFactoryTest extends TestCase
 		contentTypeToPool.put("mainContent", new ParserPool(mainParser));
 		contentTypeToPool.put("subContent", new ParserPool(subParser));
 
-		parsingEngine = new ParsingEngine(new ParserPoolProvider(contentTypeToPool));
-
-		// Change the cache for a cache with an auxiliary cache that's predictable.
-		Field declaredField = parsingEngine.getClass().getDeclaredField("fParseCache");
-		declaredField.setAccessible(true);
-		Map auxiliaryCache = new HashMap();
-		Constructor<LRUCacheWithSoftPrunedValues> constructor = LRUCacheWithSoftPrunedValues.class
-				.getDeclaredConstructor(int.class, Map.class);
-		constructor.setAccessible(true);
-		LRUCacheWithSoftPrunedValues cache = constructor.newInstance(1, auxiliaryCache);
-		declaredField.set(parsingEngine, cache);
+		// Room for 2 of the results (all the sources have the same length).
+		parsingEngine = new ParsingEngine(new ParserPoolProvider(contentTypeToPool), 2 * ParseCache.weigh("main"));
 
 		mainParser.setParsingEngine(parsingEngine);
 
-		// In the end, the mainContent should be in the LRU, while the subContent should be in the auxiliary cache.
+		// In the end, the mainContent should still be in the cache, the sub-parses evicting each other.
 		parsingEngine.parse("mainContent", new ParseState("main"));
 
-		assertEquals(1, cache.keys().size());
-		for (Object key : cache.keys())
-		{
-			ParseStateCacheKey cacheKey = (ParseStateCacheKey) key;
-			Object content = cacheKey.getAt(0);
-			if (!"mainContent".equals(content))
-			{
-				fail("Could not find mainContent in LRU main memory. Found: " + content);
-			}
-		}
-		assertEquals(3, auxiliaryCache.size());
-		for (Object key : auxiliaryCache.keySet())
-		{
-			ParseStateCacheKey cacheKey = (ParseStateCacheKey) key;
-			Object content = cacheKey.getAt(0);
-			if (!"subContent".equals(content))
-			{
-				fail("Could not find subContent in LRU main memory. Found: " + content);
-			}
-		}
+		ParseCacheStatistics statistics = parsingEngine.getCacheStatistics();
+		assertEquals(2, statistics.getEntries());
+		assertEquals(2, statistics.getEvictions());
+		assertEquals(4, statistics.getParses());
+		assertEquals(1, statistics.getContentTypes().get("mainContent").getEntries());
+		assertEquals(0, statistics.getContentTypes().get("mainContent").getEvictions());
+		assertEquals(1, statistics.getContentTypes().get("subContent").getEntries());
+		assertEquals(2, statistics.getContentTypes().get("subContent").getEvictions());
+
+		parsingEngine.parse("mainContent", new ParseState("main"));
+		statistics = parsingEngine.getCacheStatistics();
+		assertEquals(1, statistics.getHits());
+		assertEquals(4, statistics.getMisses());
+		assertEquals(4, statistics.getParses());
+	}
+
+	public void testCacheBoundedBySourceLength() throws Exception
+	{
+		parsingEngine = new ParsingEngine(new ParserPoolProvider(parserPool), ParseCache.weigh("a")
+				+ ParseCache.weigh("long source"));
+
+		queue.add(parseRootNode);
+		parsingEngine.parse("test", new ParseState("a", 0));
+		queue.add(parseRootNode);
+		parsingEngine.parse("test", new ParseState("long source", 0));
+		assertEquals(2, parser.parses);
+		assertEquals(2, parsingEngine.getCacheStatistics().getEntries());
+		assertEquals(0, parsingEngine.getCacheStatistics().getEvictions());
+
+		// Heavier than "a": evicts both of the others, except the most recent one.
+		queue.add(parseRootNode);
+		parsingEngine.parse("test", new ParseState("longer source", 0));
+		assertEquals(3, parser.parses);
+		ParseCacheStatistics statistics = parsingEngine.getCacheStatistics();
+		assertEquals(1, statistics.getEntries());
+		assertEquals(2, statistics.getEvictions());
+		assertEquals(ParseCache.weigh("longer source"), statistics.getWeight());
+
+		parsingEngine.parse("test", new ParseState("longer source", 0));
+		assertEquals(3, parser.parses);
+
+		queue.add(parseRootNode);
+		parsingEngine.parse("test", new ParseState("a", 0));
+		assertEquals(4, parser.parses);
+		statistics = parsingEngine.getCacheStatistics();
+		assertEquals(1, statistics.getHits());
+		assertEquals(4, statistics.getMisses());
+	}
+
+	public void testClearCacheKeepsStatistics() throws Exception
+	{
+		queue.add(parseRootNode);
+		parsingEngine.parse("test", new ParseState("", 0));
+		parsingEngine.clearCache();
 
+		ParseCacheStatistics statistics = parsingEngine.getCacheStatistics();
+		assertEquals(0, statistics.getEntries());
+		assertEquals(0, statistics.getWeight());
+		assertEquals(1, statistics.getMisses());
+		assertEquals(1, statistics.getParses());
+
+		parsingEngine.dispose();
+		assertNull(parsingEngine.getCacheStatistics());
 	}
 
 }
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -10,6 +10,7 @@ package com.aptana.scope;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
 import junit.framework.TestCase;
@@ -449,4 +450,17 @@ public class ScopeSelectorTests extends TestCase
 		assertFalse("Selector shouldn't match, but does",
 				textSourceSelector.matches("text.html.basic source.ruby.embedded.html"));
 	}
+
+	public void testRequiredNames()
+	{
+		assertEquals(new HashSet<String>(Arrays.asList("source")),
+				new ScopeSelector("source.ruby").getRequiredNames());
+		assertEquals(new HashSet<String>(Arrays.asList("string")),
+				new ScopeSelector("source.ruby string.quoted").getRequiredNames());
+		assertEquals(new HashSet<String>(Arrays.asList("meta", "string")), new ScopeSelector(
+				"meta.tag, (string.quoted)").getRequiredNames());
+		assertEquals(new HashSet<String>(Arrays.asList("text")),
+				new ScopeSelector("text.html - (source | string)").getRequiredNames());
+		assertTrue(new ScopeSelector("").getRequiredNames().isEmpty());
+	}
 }
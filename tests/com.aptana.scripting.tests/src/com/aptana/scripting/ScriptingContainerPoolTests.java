@@ -0,0 +1,252 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.scripting;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.jruby.embed.LocalContextScope;
+import org.jruby.embed.ScriptingContainer;
+
+public class ScriptingContainerPoolTests extends TestCase
+{
+	private static final int THREADS = 4;
+	private static final int COMMANDS_PER_THREAD = 5;
+	private static final String SYNTHETIC_COMMAND = "sleep 0.05"; //$NON-NLS-1$
+	private static final long START_TIME = 60000;
+
+	/**
+	 * createPool
+	 * 
+	 * @param size
+	 * @return
+	 */
+	protected ScriptingContainerPool createPool(int size)
+	{
+		return new ScriptingContainerPool(size)
+		{
+			@Override
+			protected ScriptingContainer createContainer()
+			{
+				return new ScriptingContainer(LocalContextScope.SINGLETHREAD);
+			}
+		};
+	}
+
+	/**
+	 * Starts all the runtimes of the pool, so that timings only measure the commands
+	 * 
+	 * @param pool
+	 * @throws InterruptedException
+	 */
+	protected void fill(ScriptingContainerPool pool) throws InterruptedException
+	{
+		List<ScriptingContainer> containers = new ArrayList<ScriptingContainer>();
+
+		for (int i = 0; i < pool.getMaxSize(); i++)
+		{
+			containers.add(pool.acquire(START_TIME));
+		}
+		for (ScriptingContainer container : containers)
+		{
+			pool.release(container);
+		}
+	}
+
+	/**
+	 * Runs the synthetic commands from several threads at once
+	 * 
+	 * @param pool
+	 * @return the time it took in milliseconds
+	 * @throws Exception
+	 */
+	protected long runCommands(final ScriptingContainerPool pool) throws Exception
+	{
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		List<Thread> threads = new ArrayList<Thread>();
+
+		for (int i = 0; i < THREADS; i++)
+		{
+			threads.add(new Thread()
+			{
+				public void run()
+				{
+					try
+					{
+						for (int j = 0; j < COMMANDS_PER_THREAD; j++)
+						{
+							ScriptingContainer container = pool.acquire(10000);
+
+							try
+							{
+								container.runScriptlet(SYNTHETIC_COMMAND);
+							}
+							finally
+							{
+								pool.release(container);
+							}
+						}
+					}
+					catch (Throwable e)
+					{
+						synchronized (errors)
+						{
+							errors.add(e);
+						}
+					}
+				}
+			});
+		}
+
+		long start = System.currentTimeMillis();
+
+		for (Thread thread : threads)
+		{
+			thread.start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+
+		long time = System.currentTimeMillis() - start;
+
+		assertTrue(errors.toString(), errors.isEmpty());
+
+		return time;
+	}
+
+	/**
+	 * testAcquireWaitsForBackgroundStart
+	 * 
+	 * @throws Exception
+	 */
+	public void testAcquireWaitsForBackgroundStart() throws Exception
+	{
+		ScriptingContainerPool pool = createPool(2);
+
+		// nothing is started on the calling thread
+		assertNull(pool.acquire(0));
+
+		ScriptingContainer first = pool.acquire(START_TIME);
+		ScriptingContainer second = pool.acquire(START_TIME);
+
+		assertNotNull(first);
+		assertNotNull(second);
+		assertNotSame(first, second);
+		assertEquals(2, pool.getSize());
+		assertEquals(2, pool.getBusyCount());
+		assertEquals(1.0, pool.getUtilization(), 0.001);
+
+		assertNull(pool.acquire(10));
+		assertEquals(2, pool.getTimeoutCount());
+
+		pool.release(first);
+		assertSame(first, pool.acquire(0));
+		assertEquals(2, pool.getSize());
+		assertEquals(3, pool.getAcquisitionCount());
+	}
+
+	/**
+	 * testRuntimesAreIsolated
+	 * 
+	 * @throws Exception
+	 */
+	public void testRuntimesAreIsolated() throws Exception
+	{
+		ScriptingContainerPool pool = createPool(2);
+
+		ScriptingContainer first = pool.acquire(START_TIME);
+		ScriptingContainer second = pool.acquire(START_TIME);
+
+		first.runScriptlet("$pool_test = 42"); //$NON-NLS-1$
+
+		assertNotSame(first.getProvider().getRuntime(), second.getProvider().getRuntime());
+		assertNull(second.runScriptlet("$pool_test")); //$NON-NLS-1$
+	}
+
+	/**
+	 * testDiscardedContainerIsReplaced
+	 * 
+	 * @throws Exception
+	 */
+	public void testDiscardedContainerIsReplaced() throws Exception
+	{
+		ScriptingContainerPool pool = createPool(1);
+
+		ScriptingContainer first = pool.acquire(START_TIME);
+		first.runScriptlet("$pool_test = 42"); //$NON-NLS-1$
+		pool.discard(first);
+
+		assertEquals(0, pool.getBusyCount());
+
+		ScriptingContainer second = pool.acquire(START_TIME);
+
+		assertNotNull(second);
+		assertNotSame(first, second);
+		assertNull(second.runScriptlet("$pool_test")); //$NON-NLS-1$
+		assertEquals(1, pool.getSize());
+	}
+
+	/**
+	 * testWaitTimeIsRecorded
+	 * 
+	 * @throws Exception
+	 */
+	public void testWaitTimeIsRecorded() throws Exception
+	{
+		final ScriptingContainerPool pool = createPool(1);
+		final ScriptingContainer container = pool.acquire(START_TIME);
+		long waitedToStart = pool.getTotalWaitTime();
+
+		Thread releaser = new Thread()
+		{
+			public void run()
+			{
+				try
+				{
+					Thread.sleep(100);
+				}
+				catch (InterruptedException e)
+				{
+					// release now
+				}
+				pool.release(container);
+			}
+		};
+		releaser.start();
+
+		assertSame(container, pool.acquire(10000));
+		releaser.join();
+
+		assertTrue(pool.getTotalWaitTime() - waitedToStart >= 50);
+		assertTrue(pool.getMaxWaitTime() >= 50);
+	}
+
+	/**
+	 * testThroughputScalesWithPoolSize
+	 * 
+	 * @throws Exception
+	 */
+	public void testThroughputScalesWithPoolSize() throws Exception
+	{
+		ScriptingContainerPool single = createPool(1);
+		fill(single);
+		long singleTime = runCommands(single);
+
+		ScriptingContainerPool pooled = createPool(THREADS);
+		fill(pooled);
+		long pooledTime = runCommands(pooled);
+
+		assertTrue(pooledTime * 2 < singleTime);
+		assertEquals(THREADS * COMMANDS_PER_THREAD + THREADS, pooled.getAcquisitionCount());
+		assertEquals(0, pooled.getBusyCount());
+	}
+}
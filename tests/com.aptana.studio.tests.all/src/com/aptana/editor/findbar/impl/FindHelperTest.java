@@ -0,0 +1,126 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.findbar.impl;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.ui.texteditor.ITextEditor;
+
+import com.aptana.core.util.EclipseUtil;
+import com.aptana.editor.epl.tests.EditorTestHelper;
+import com.aptana.index.core.IPreferenceConstants;
+import com.aptana.index.core.IndexPlugin;
+import com.aptana.index.core.TrigramIndex;
+
+@SuppressWarnings("nls")
+public class FindHelperTest extends TestCase
+{
+
+	private static final String PROJECT_NAME = "find_scope";
+
+	private IProject project;
+	private TrigramIndex index;
+	private ITextEditor editor;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		EclipseUtil.instanceScope().getNode(IndexPlugin.PLUGIN_ID)
+				.putBoolean(IPreferenceConstants.ENABLE_CONTENT_INDEX, true);
+		index = IndexPlugin.getDefault().getIndexManager().getContentIndex();
+		project = ResourcesPlugin.getWorkspace().getRoot().getProject(PROJECT_NAME);
+		project.create(new NullProgressMonitor());
+		project.open(new NullProgressMonitor());
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		try
+		{
+			if (editor != null)
+			{
+				// Need to force the editor shut, without saving it
+				EditorTestHelper.closeEditor(editor);
+			}
+			index.removeAll(project.getLocationURI());
+			project.delete(true, new NullProgressMonitor());
+			EclipseUtil.instanceScope().getNode(IndexPlugin.PLUGIN_ID)
+					.remove(IPreferenceConstants.ENABLE_CONTENT_INDEX);
+		}
+		finally
+		{
+			editor = null;
+			project = null;
+			index = null;
+			super.tearDown();
+		}
+	}
+
+	protected IFile createFile(String fileName, String contents) throws CoreException
+	{
+		IFile file = project.getFile(fileName);
+		file.create(new ByteArrayInputStream(contents.getBytes()), true, new NullProgressMonitor());
+		return file;
+	}
+
+	protected List<IResource> getScope(String searchText)
+	{
+		return Arrays.asList(FindHelper.createSearchScope(new IResource[] { project }, searchText, false).getRoots());
+	}
+
+	public void testIndexNarrowsScope() throws Exception
+	{
+		IFile match = createFile("match.txt", "var needle;");
+		IFile other = createFile("other.txt", "var unrelated;");
+		index.add(match.getLocationURI(), "var needle;", match.getLocalTimeStamp());
+		index.add(other.getLocationURI(), "var unrelated;", other.getLocalTimeStamp());
+
+		List<IResource> scope = getScope("needle");
+		assertTrue(scope.contains(match));
+		assertFalse(scope.contains(other));
+	}
+
+	public void testDirtyBufferIsSearched() throws Exception
+	{
+		IFile file = createFile("dirty.txt", "var oldContent;");
+		IFile other = createFile("other.txt", "var unrelated;");
+		index.add(file.getLocationURI(), "var oldContent;", file.getLocalTimeStamp());
+		index.add(other.getLocationURI(), "var unrelated;", other.getLocalTimeStamp());
+		assertFalse(getScope("dirtyNeedle").contains(file));
+
+		editor = (ITextEditor) EditorTestHelper.openInEditor(file, EditorTestHelper.TEXT_EDITOR_ID, true);
+		EditorTestHelper.getDocument(editor).set("var dirtyNeedle;");
+		assertTrue(editor.isDirty());
+
+		// the buffer is searched even though neither the file nor the index have the text
+		List<IResource> scope = getScope("dirtyNeedle");
+		assertTrue(scope.contains(file));
+		assertFalse(scope.contains(other));
+	}
+
+	public void testFileModifiedAfterIndexingIsSearched() throws Exception
+	{
+		IFile file = createFile("modified.txt", "var newNeedle;");
+		// the indexed content was read before the last modification of the file
+		index.add(file.getLocationURI(), "var oldContent;", file.getLocalTimeStamp() - 1000);
+
+		assertTrue(getScope("newNeedle").contains(file));
+	}
+}
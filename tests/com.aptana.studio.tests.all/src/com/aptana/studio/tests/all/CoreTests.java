@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -32,8 +32,10 @@ public class CoreTests
 		// suite.addTest(com.aptana.filesystem.ftp.tests.AllTests.suite());
 		// suite.addTest(com.aptana.filesystem.secureftp.tests.AllTests.suite());
 		suite.addTest(com.aptana.filesystem.http.tests.AllTests.suite());
+		suite.addTest(com.aptana.filewatcher.AllTests.suite());
 		suite.addTest(com.aptana.git.core.tests.AllGitCoreTests.suite());
 		suite.addTest(com.aptana.index.core.tests.AllIndexCoreTests.suite());
+		suite.addTest(com.aptana.js.debug.core.tests.AllTests.suite());
 		suite.addTest(com.aptana.parsing.tests.AllTests.suite());
 		suite.addTest(com.aptana.plist.tests.AllTests.suite());
 		suite.addTest(com.aptana.samples.tests.AllTests.suite());
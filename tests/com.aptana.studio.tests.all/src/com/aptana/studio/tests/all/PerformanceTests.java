@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -33,14 +33,17 @@ public class PerformanceTests
 		};
 		// $JUnit-BEGIN$
 		suite.addTest(com.aptana.studio.tests.startup.AllTests.suite());
+		suite.addTest(com.aptana.core.io.tests.PerformanceTests.suite());
 		suite.addTest(com.aptana.scripting.tests.PerformanceTests.suite());
 		suite.addTest(com.aptana.editor.coffee.tests.PerformanceTests.suite());
 		suite.addTest(com.aptana.editor.common.tests.PerformanceTests.suite());
 		suite.addTest(com.aptana.editor.css.tests.PerformanceTests.suite());
 		suite.addTest(com.aptana.editor.html.tests.PerformanceTests.suite());
 		suite.addTest(com.aptana.editor.js.tests.PerformanceTests.suite());
+		suite.addTest(com.aptana.editor.js.formatter.tests.PerformanceTests.suite());
 		suite.addTest(com.aptana.editor.json.tests.PerformanceTests.suite());
 		suite.addTest(com.aptana.editor.xml.tests.PerformanceTests.suite());
+		suite.addTest(com.aptana.explorer.tests.PerformanceTests.suite());
 		suite.addTest(com.aptana.git.core.tests.PerformanceTests.suite());
 		// $JUnit-END$
 		return suite;
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -12,6 +12,7 @@ import junit.framework.TestSuite;
 
 import com.aptana.editor.common.internal.commands.ExpandCollapseAllHandlerTest;
 import com.aptana.editor.common.internal.commands.NextPreviousEditorHandlerTest;
+import com.aptana.editor.findbar.impl.FindHelperTest;
 
 public class UITests
 {
@@ -39,7 +40,7 @@ public class UITests
 		suite.addTest(com.aptana.editor.xml.tests.AllTests.suite());
 		suite.addTest(com.aptana.editor.xml.formatter.tests.AllTests.suite());
 		suite.addTest(com.aptana.editor.yaml.tests.AllTests.suite());
-		// suite.addTest(com.aptana.explorer.tests.AllTests.suite()); // TODO Add Tests for explorer
+		suite.addTest(com.aptana.explorer.tests.AllTests.suite());
 		// FIXME I think the way we do passwords causes us to have to run s3 tests in the UI!
 		suite.addTest(com.aptana.filesystem.s3.tests.AllTests.suite());
 		suite.addTest(com.aptana.git.ui.AllTests.suite());
@@ -59,6 +60,8 @@ public class UITests
 		// FIXME These tests are inconsistent and fail intermittently on test build
 		// suite.addTestSuite(ExpandLevelHandlerTest.class);
 		suite.addTestSuite(NextPreviousEditorHandlerTest.class);
+		// opens a text editor to search its unsaved buffer
+		suite.addTestSuite(FindHelperTest.class);
 		return suite;
 	}
 
@@ -0,0 +1,72 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.testing.utils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+/**
+ * Reads the number of bytes allocated by the current thread, on virtual machines which count them (HotSpot 6u25 and
+ * later). Performance tests use it to report the allocations of the code they measure.
+ */
+public final class AllocationCounter
+{
+	private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+	private static final Method ALLOCATED_BYTES = getAllocatedBytesMethod();
+
+	private AllocationCounter()
+	{
+	}
+
+	private static Method getAllocatedBytesMethod()
+	{
+		try
+		{
+			// declared by the extension of the management interface, whose implementation is not public
+			Method method = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", //$NON-NLS-1$ //$NON-NLS-2$
+					long.class);
+			if (((Long) method.invoke(THREAD_BEAN, Thread.currentThread().getId())) >= 0)
+			{
+				return method;
+			}
+		}
+		catch (Exception e)
+		{
+			// not counted by this virtual machine
+		}
+		return null;
+	}
+
+	/**
+	 * @return true if the allocations are counted
+	 */
+	public static boolean isSupported()
+	{
+		return ALLOCATED_BYTES != null;
+	}
+
+	/**
+	 * @return the number of bytes allocated by the current thread since it started, or -1 if not counted
+	 */
+	public static long getAllocatedBytes()
+	{
+		if (ALLOCATED_BYTES == null)
+		{
+			return -1;
+		}
+		try
+		{
+			return (Long) ALLOCATED_BYTES.invoke(THREAD_BEAN, Thread.currentThread().getId());
+		}
+		catch (Exception e)
+		{
+			return -1;
+		}
+	}
+}
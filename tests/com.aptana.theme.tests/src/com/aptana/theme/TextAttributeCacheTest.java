@@ -0,0 +1,56 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.theme;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jface.text.TextAttribute;
+
+@SuppressWarnings("nls")
+public class TextAttributeCacheTest extends TestCase
+{
+
+	public void testHitsAndMisses()
+	{
+		TextAttributeCache cache = new TextAttributeCache(10);
+		TextAttribute attribute = new TextAttribute(null);
+
+		assertNull(cache.get("source.ruby"));
+		cache.put("source.ruby", attribute);
+		assertSame(attribute, cache.get("source.ruby"));
+		assertSame(attribute, cache.get("source.ruby"));
+
+		assertEquals(2, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.size());
+	}
+
+	public void testBounded()
+	{
+		TextAttributeCache cache = new TextAttributeCache(8);
+		for (int i = 0; i < 100; i++)
+		{
+			cache.put("source.scope" + i, new TextAttribute(null));
+			assertTrue(cache.size() <= cache.getMaxSize());
+		}
+		assertNotNull(cache.get("source.scope99"));
+	}
+
+	public void testMaxSizeProperty()
+	{
+		System.setProperty(TextAttributeCache.MAX_SIZE_PROPERTY, "16");
+		try
+		{
+			assertEquals(16, new TextAttributeCache().getMaxSize());
+		}
+		finally
+		{
+			System.clearProperty(TextAttributeCache.MAX_SIZE_PROPERTY);
+		}
+	}
+}
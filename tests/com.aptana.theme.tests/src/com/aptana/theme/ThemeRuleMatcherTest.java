@@ -0,0 +1,98 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.theme;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.aptana.scope.IScopeSelector;
+import com.aptana.scope.ScopeSelector;
+
+@SuppressWarnings("nls")
+public class ThemeRuleMatcherTest extends TestCase
+{
+
+	private static final String[] SELECTORS = { "source", "source.ruby", "string", "string.quoted.double",
+			"text.html - (source | string)", "meta.tag, entity.name.tag", "source.css entity.name.tag.css",
+			"entity.name.tag.css", "comment & source.js", "keyword" };
+
+	private static final String[] SCOPES = { "source.ruby", "source.ruby string.quoted.double.ruby",
+			"text.html.basic", "text.html.basic source.js.embedded.html", "text.html.basic meta.tag.any.html",
+			"source.css entity.name.tag.css", "source.css meta.selector.css entity.name.tag.css", "source.js comment",
+			"text.plain", "", "  source.php   keyword.control.php " };
+
+	private List<ThemeRule> rules;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		rules = new ArrayList<ThemeRule>();
+		for (String selector : SELECTORS)
+		{
+			rules.add(new ThemeRule(selector, new ScopeSelector(selector), new DelayedTextAttribute(null)));
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		rules = null;
+		super.tearDown();
+	}
+
+	public void testMatchesLikeBestMatch()
+	{
+		ThemeRuleMatcher matcher = new ThemeRuleMatcher(rules);
+		for (String scope : SCOPES)
+		{
+			List<IScopeSelector> selectors = new ArrayList<IScopeSelector>();
+			for (ThemeRule rule : rules)
+			{
+				selectors.add(rule.getScopeSelector());
+			}
+			IScopeSelector expected = ScopeSelector.bestMatch(selectors, scope);
+			ThemeRule rule = matcher.match(scope);
+			if (expected == null)
+			{
+				assertNull(scope, rule);
+			}
+			else
+			{
+				assertNotNull(scope, rule);
+				assertSame(scope, expected, rule.getScopeSelector());
+			}
+		}
+	}
+
+	public void testLastRuleWinsTie()
+	{
+		rules.add(new ThemeRule("second keyword", new ScopeSelector("keyword"), new DelayedTextAttribute(null)));
+		ThemeRuleMatcher matcher = new ThemeRuleMatcher(rules);
+
+		assertEquals("second keyword", matcher.match("source.php keyword.control.php").getName());
+	}
+
+	public void testSkipsSeparators()
+	{
+		rules.add(new ThemeRule("Separator", null, new DelayedTextAttribute(null)));
+		ThemeRuleMatcher matcher = new ThemeRuleMatcher(rules);
+
+		assertEquals("keyword", matcher.match("keyword").getName());
+	}
+
+	public void testNoRules()
+	{
+		ThemeRuleMatcher matcher = new ThemeRuleMatcher(new ArrayList<ThemeRule>());
+
+		assertNull(matcher.match("source.ruby"));
+		assertNull(matcher.match(null));
+	}
+}
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -289,4 +289,32 @@ public class ThemeTest extends TestCase
 		ThemeRule rule = theme.winningRule(scope);
 		assertEquals("CSS: Tag", rule.getName());
 	}
+
+	public void testTextAttributesAreCached()
+	{
+		String scope = "source.js constant.language.js";
+		TextAttribute attribute = theme.getTextAttribute(scope);
+		assertSame(attribute, theme.getTextAttribute(scope));
+
+		TextAttributeCache cache = theme.getTextAttributeCache();
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	public void testReorderRuleWipesCache()
+	{
+		for (ThemeRule entry : theme.getTokens())
+		{
+			theme.remove(entry);
+		}
+		theme.addNewRule(0, "First", new ScopeSelector("keyword"), new DelayedTextAttribute(new RGBa(0, 0, 0)));
+		theme.addNewRule(1, "Second", new ScopeSelector("keyword"), new DelayedTextAttribute(new RGBa(255, 255, 255)));
+
+		String scope = "source.php keyword.control.php";
+		assertEquals(new RGB(255, 255, 255), theme.getTextAttribute(scope).getForeground().getRGB());
+
+		theme.reorderRule(1, 0);
+		assertEquals("Second", theme.getTokens().get(0).getName());
+		assertEquals(new RGB(0, 0, 0), theme.getTextAttribute(scope).getForeground().getRGB());
+	}
 }
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -17,8 +17,10 @@ public class ThemeTests
 	{
 		TestSuite suite = new TestSuite(ThemeTests.class.getName());
 		//$JUnit-BEGIN$
+		suite.addTestSuite(TextAttributeCacheTest.class);
 		suite.addTestSuite(TextmateImporterTest.class);
 		suite.addTestSuite(ThemeExporterTest.class);
+		suite.addTestSuite(ThemeRuleMatcherTest.class);
 		suite.addTestSuite(ThemeTest.class);
 		//$JUnit-END$
 		return suite;
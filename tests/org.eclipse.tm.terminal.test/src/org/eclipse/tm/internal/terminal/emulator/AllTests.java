@@ -30,6 +30,7 @@ public class AllTests extends TestCase {
 	public static Test suite() {
 		TestSuite suite = new TestSuite(AllTests.class.getName());
 		suite.addTestSuite(VT100EmulatorBackendTest.class);
+		suite.addTestSuite(VT100EmulatorPerformanceTest.class);
 		return suite;
 	}
 
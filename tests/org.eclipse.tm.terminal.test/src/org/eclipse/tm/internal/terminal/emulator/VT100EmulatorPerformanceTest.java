@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Appcelerator, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Appcelerator, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tm.internal.terminal.emulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+
+import junit.framework.TestCase;
+
+import org.eclipse.tm.internal.terminal.control.impl.ITerminalControlForText;
+import org.eclipse.tm.internal.terminal.provisional.api.ITerminalConnector;
+import org.eclipse.tm.internal.terminal.provisional.api.TerminalState;
+import org.eclipse.tm.internal.terminal.textcanvas.PipedInputStream;
+import org.eclipse.tm.terminal.model.ITerminalTextData;
+import org.eclipse.tm.terminal.model.TerminalTextDataFactory;
+
+/**
+ * Replays a large log through the same pipe the terminal control uses
+ * between the connector and the emulator, and reports the throughput in MB/s.
+ */
+public class VT100EmulatorPerformanceTest extends TestCase {
+	private static final int LINES=200000;
+	private static final int WRITE_SIZE=4096;
+
+	public void testReplayPlainText() throws Exception {
+		replay("plain", makeLog(false));
+	}
+	public void testReplayColoredText() throws Exception {
+		replay("ansi ", makeLog(true));
+	}
+	private void replay(String label, final byte[] log) throws Exception {
+		ITerminalTextData term=TerminalTextDataFactory.makeTerminalTextData();
+		term.setMaxHeight(1000);
+		// same buffer size as VT100TerminalControl
+		PipedInputStream in=new PipedInputStream(8*1024);
+		final OutputStream out=in.getOutputStream();
+		Reader reader=new InputStreamReader(in, "ISO-8859-1");
+		VT100Emulator emulator=makeEmulator(term, reader);
+		emulator.setDimensions(24, 80);
+		emulator.setCrAfterNewLine(true);
+		// the connector
+		Thread writer=new Thread("writer") {
+			public void run() {
+				try {
+					for (int offset = 0; offset < log.length; offset+=WRITE_SIZE) {
+						out.write(log, offset, Math.min(WRITE_SIZE, log.length-offset));
+					}
+					out.close();
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		long t0=System.currentTimeMillis();
+		writer.start();
+		// the reader job of the terminal control
+		while(writer.isAlive() || reader.ready()) {
+			while(in.available()==0 && writer.isAlive()) {
+				in.waitForAvailable(500);
+			}
+			emulator.processText();
+		}
+		long time=Math.max(1, System.currentTimeMillis()-t0);
+		double mb=log.length/(1024.0*1024.0);
+		System.out.println(label+" "+Math.round(mb*10000/time)/10.0+" MB/sec ("+Math.round(mb)+" MB in "+time+" ms)");
+		assertEquals(1000, term.getHeight());
+		assertEquals('L', term.getChar(term.getHeight()-2, 0));
+	}
+	/**
+	 * @return a log of {@link #LINES} lines, starting with "Line"
+	 */
+	private byte[] makeLog(boolean colored) {
+		StringBuffer buffer=new StringBuffer();
+		for (int i = 0; i < LINES; i++) {
+			buffer.append("Line ").append(i);
+			if(colored)
+				buffer.append(" \033[32mPASSED\033[0m");
+			else
+				buffer.append(" PASSED");
+			buffer.append(" test/unit/module").append(i%100).append("_test.js\n");
+		}
+		byte[] log=new byte[buffer.length()];
+		for (int i = 0; i < log.length; i++) {
+			log[i]=(byte) buffer.charAt(i);
+		}
+		return log;
+	}
+	private VT100Emulator makeEmulator(ITerminalTextData term, Reader reader) {
+		return new VT100Emulator(term,new ITerminalControlForText() {
+			public OutputStream getOutputStream() {
+				return new ByteArrayOutputStream();
+			}
+			public TerminalState getState() {
+				return TerminalState.CONNECTED;
+			}
+			public ITerminalConnector getTerminalConnector() {
+				return null;
+			}
+			public void setState(TerminalState state) {
+			}
+			public void setTerminalTitle(String title) {
+			}
+			public void setApplicationKeypad(boolean mode) {
+			}
+		}, reader);
+	}
+}
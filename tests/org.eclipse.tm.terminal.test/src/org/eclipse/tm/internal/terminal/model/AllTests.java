@@ -31,6 +31,8 @@ public class AllTests extends TestCase {
 		TestSuite suite = new TestSuite(AllTests.class.getName());
 		suite.addTestSuite(SnapshotChangesTest.class);
 		suite.addTestSuite(SynchronizedTerminalTextDataTest.class);
+		suite.addTestSuite(TerminalTextDataCompactStorePerformanceTest.class);
+		suite.addTestSuite(TerminalTextDataCompactStoreTest.class);
 		suite.addTestSuite(TerminalTextDataFastScrollTest.class);
 		suite.addTestSuite(TerminalTextDataFastScrollTestMaxHeigth.class);
 		suite.addTestSuite(TerminalTextDataPerformanceTest.class);
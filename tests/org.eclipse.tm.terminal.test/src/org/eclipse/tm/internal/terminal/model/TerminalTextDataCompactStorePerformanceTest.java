@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Appcelerator, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Appcelerator, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tm.internal.terminal.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayReader;
+import java.io.OutputStream;
+
+import junit.framework.TestCase;
+
+import org.eclipse.tm.internal.terminal.control.impl.ITerminalControlForText;
+import org.eclipse.tm.internal.terminal.emulator.VT100Emulator;
+import org.eclipse.tm.internal.terminal.provisional.api.ITerminalConnector;
+import org.eclipse.tm.internal.terminal.provisional.api.TerminalState;
+import org.eclipse.tm.terminal.model.ITerminalTextData;
+import org.eclipse.tm.terminal.model.ITerminalTextDataSnapshot;
+
+/**
+ * Replays a large ANSI colored build log into a terminal with a big scroll back
+ * buffer and reports the throughput and the memory retained by the terminal model.
+ */
+public class TerminalTextDataCompactStorePerformanceTest extends TestCase {
+	private static final int LINES=100000;
+	private static final int HEIGHT=40;
+	private static final int WIDTH=132;
+	private static final int CHUNK_SIZE=8192;
+
+	public void testReplayStore() {
+		replay(new TerminalTextDataStore(), "store  ");
+	}
+	public void testReplayCompactStore() {
+		replay(new TerminalTextDataCompactStore(), "compact");
+	}
+	private void replay(ITerminalTextData store, String label) {
+		char[] log=makeLog();
+		long memory=usedMemory();
+		ITerminalTextData term=new TerminalTextData(new TerminalTextDataFastScroll(store,1));
+		term.setMaxHeight(LINES);
+		ITerminalTextDataSnapshot snapshot=term.makeSnapshot();
+		VT100Emulator emulator=makeEmulator(term);
+		emulator.setDimensions(HEIGHT, WIDTH);
+		emulator.setCrAfterNewLine(true);
+		long t0=System.currentTimeMillis();
+		for (int offset = 0; offset < log.length; offset+=CHUNK_SIZE) {
+			emulator.setInputStreamReader(new CharArrayReader(log,offset,Math.min(CHUNK_SIZE, log.length-offset)));
+			emulator.processText();
+			// like the text canvas, we are only interested in the visible lines
+			snapshot.setInterestWindow(Math.max(0, term.getHeight()-HEIGHT), HEIGHT);
+			snapshot.updateSnapshot(false);
+		}
+		long time=Math.max(1, System.currentTimeMillis()-t0);
+		memory=usedMemory()-memory;
+		System.out.println(label+" "+(log.length*1000L/time)+" chars/sec "+(memory/1024)+" KB for "+term.getHeight()+" lines");
+		assertEquals(LINES, term.getHeight());
+		snapshot.detach();
+	}
+	/**
+	 * @return a log with colored (and some uncolored) lines
+	 */
+	private char[] makeLog() {
+		StringBuffer buffer=new StringBuffer();
+		for (int i = 0; i < LINES; i++) {
+			switch(i%10) {
+			case 0:
+				buffer.append("\033[1;31m[ERROR]\033[0m src/com/example/module"+i%97+"/File"+i+".java:["+i%300+",12] cannot find symbol\n");
+				break;
+			case 1:
+			case 2:
+				buffer.append("\033[33m[WARNING]\033[0m deprecated API used in \033[1mcom.example.Class"+i+"\033[0m\n");
+				break;
+			default:
+				buffer.append("\033[32m[INFO]\033[0m Compiling "+i+" source files to /home/build/workspace/target/classes\n");
+			}
+		}
+		char[] log=new char[buffer.length()];
+		buffer.getChars(0, log.length, log, 0);
+		return log;
+	}
+	private VT100Emulator makeEmulator(ITerminalTextData term) {
+		return new VT100Emulator(term,new ITerminalControlForText() {
+			public OutputStream getOutputStream() {
+				return new ByteArrayOutputStream();
+			}
+			public TerminalState getState() {
+				return TerminalState.CONNECTED;
+			}
+			public ITerminalConnector getTerminalConnector() {
+				return null;
+			}
+			public void setState(TerminalState state) {
+			}
+			public void setTerminalTitle(String title) {
+			}
+			public void setApplicationKeypad(boolean mode) {
+			}
+		}, null);
+	}
+	private static long usedMemory() {
+		Runtime runtime=Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory()-runtime.freeMemory();
+	}
+}
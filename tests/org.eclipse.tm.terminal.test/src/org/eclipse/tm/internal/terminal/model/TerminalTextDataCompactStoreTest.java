@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Appcelerator, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Appcelerator, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tm.internal.terminal.model;
+
+import org.eclipse.tm.terminal.model.ITerminalTextData;
+import org.eclipse.tm.terminal.model.LineSegment;
+import org.eclipse.tm.terminal.model.Style;
+import org.eclipse.tm.terminal.model.StyleColor;
+
+public class TerminalTextDataCompactStoreTest extends AbstractITerminalTextDataTest {
+	protected ITerminalTextData makeITerminalTextData() {
+		return new TerminalTextDataCompactStore();
+	}
+	private Style getStyle(String fg) {
+		return Style.getStyle(StyleColor.getStyleColor(fg), StyleColor.getStyleColor("bg"), false, false, false, false);
+	}
+	public void testOverwriteStyleRuns() {
+		Style a=getStyle("a");
+		Style b=getStyle("b");
+		ITerminalTextData term=makeITerminalTextData();
+		term.setDimensions(1, 10);
+		term.setChars(0, 0, "aaaaaaaaaa".toCharArray(), a);
+		term.setChars(0, 3, "bbb".toCharArray(), b);
+		LineSegment[] segments=term.getLineSegments(0, 0, 10);
+		assertEquals(3, segments.length);
+		assertSegment(0, "aaa", a, segments[0]);
+		assertSegment(3, "bbb", b, segments[1]);
+		assertSegment(6, "aaaa", a, segments[2]);
+		// overwriting with the same style merges the runs again
+		term.setChars(0, 2, "xxxxx".toCharArray(), a);
+		segments=term.getLineSegments(0, 0, 10);
+		assertEquals(1, segments.length);
+		assertSegment(0, "aaxxxxxaaa", a, segments[0]);
+		assertEquals(a, term.getStyle(0, 9));
+		assertEquals(10, term.getStyles(0).length);
+	}
+	public void testCompactRecentLines() {
+		Style a=getStyle("a");
+		int n=TerminalTextDataCompactStore.RECENT_LINES+10;
+		ITerminalTextData term=makeITerminalTextData();
+		term.setDimensions(n, 5);
+		for (int line = 0; line < n; line++) {
+			term.setChars(line, 0, getText(line).toCharArray(), a);
+		}
+		// the old lines are compacted but can still be modified
+		term.setChar(0, 4, '!', a);
+		for (int line = 0; line < n; line++) {
+			String text=getText(line);
+			assertEquals(text.charAt(text.length()-1), term.getChar(line, text.length()-1));
+			assertEquals(a, term.getStyle(line, 0));
+		}
+		assertEquals('!', term.getChar(0, 4));
+		assertEquals('\000', term.getChar(0, 3));
+		assertNull(term.getStyle(0, 3));
+	}
+	/**
+	 * @return a text with a character that fits into a byte on even lines
+	 */
+	private String getText(int line) {
+		return (line%2==0?"\u00e9":"\u20ac")+line;
+	}
+	public void testCopyOnWrite() {
+		Style a=getStyle("a");
+		ITerminalTextData term=new TerminalTextData(new TerminalTextDataFastScroll(new TerminalTextDataCompactStore(), 3));
+		fill(term, "abc\n" +
+				"def\n" +
+				"ghi");
+		ITerminalTextData copy=makeITerminalTextData();
+		copy.copy(term);
+		term.setChar(1, 1, 'X', a);
+		copy.setChar(2, 1, 'Y', a);
+		assertEqualsTerm("abc\n" +
+				"dXf\n" +
+				"ghi", toMultiLineText(term));
+		assertEqualsTerm("abc\n" +
+				"def\n" +
+				"gYi", toMultiLineText(copy));
+	}
+}